@@ -14,7 +14,12 @@
 
 // imports:
 import java.util.Scanner;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 /** Represents a Roman numeral desk calculator.
  * @author Gary Sockut
@@ -31,15 +36,46 @@ import java.util.LinkedList;
  *   4) Parse and evaluate the tokenized line to calculate result as an integer.
  *      There is no need for a parse tree, since we evaluate while parsing.
  *   5) Display the result after converting the integer to Romans.
+ * Steps 1 through 4 are performed by RomanEngine, which does not display
+ * anything, so that it can also be used by other programs; main displays
+ * the result or message that the engine's outcome calls for, through a
+ * RomanOutput, which writes at once if the user is watching, but otherwise
+ * collects the output into large writes.  The end of input ends the run,
+ * the same as QUIT (but without saying goodbye).
+ * The user's lines are measured by a RomanMetrics; a line that is only
+ * METRICS (in any case) displays a snapshot of it, instead of being
+ * evaluated.
  */
 class Roman {
-    static Scanner sc = new Scanner(System.in);	// to read typed lines
+    static Scanner sc;	// to read typed lines; main creates it only for the
+    	// interactive session, so that other modes don't load Scanner and its
+    	// regular expressions at startup
     static String ROMAN_LETTERS = "MDCLXVIO";
     	// valid letters in a Roman numeral; stand-alone letter O means zero.
+    	
+    // messages for lines that are not evaluated:
+    static final String PLEASE_TYPE_MESSAGE =
+    	"[] Please type an expression, QUIT, or EXIT.";	// for empty line
+    static final String ZERO_DIGIT_MESSAGE =
+    	"[] For zero, specify the LETTER (NOT DIGIT) O.";	// for digit 0
+    static final String BYE_MESSAGE = "[] Bye!  Visit again!";	// for QUIT
+    static final String METRICS_COMMAND = "METRICS";
+    	// a line that displays a snapshot of the metrics
 
     // valid range of Roman numerals:
     static final int MININT = -3999;	// smallest Roman numeral (-MMMCMXCIX)
     static final int MAXINT = 3999;	// largest Roman numeral (MMMCMXCIX)
+    // extended range, which a session can opt into (see
+    // RomanEngine.Session.setExtendedRange), for results above MAXINT:
+    static final long EXTENDED_MAX = Long.MAX_VALUE;	// largest result
+    	// (and the smallest is -EXTENDED_MAX)
+    static final char VINCULUM = '_';	// written before a letter to multiply
+    	// it by 1,000, as a bar over it does, e.g., _V_I is 6,000 and __M is
+    	// 1,000,000,000; a numeral above MAXINT is its thousands (with one
+    	// more _ before each letter) and then the rest, e.g., _X_I_ICCXXXIV
+    	// is 12,234, and __X_I_ICCC is 10,002,300
+    static final long OUT_OF_RANGE = Long.MIN_VALUE;
+    	// what power gives for a result whose magnitude is too large
     	
     // Most tokens represent text that the user enters within a line.
     // One exceptional token represents the end of a line.
@@ -60,27 +96,239 @@ class Roman {
    	static final int DIV = 9;	// token type for /
    	static final int EXP = 10;	// token type for ** (exponentiate)
    	
+    // These are the codes for kinds of errors that a line can have;
+    // each indexes DESCRIPTION_OF_ERROR:
+    static final int NO_ERROR = 0;	// line has no error
+    static final int INVALID_CHARACTER = 1;	// e.g., a digit other than 0
+    static final int MISSING_EXPRESSION = 2;	// e.g., ()
+    static final int INVALID_EXPRESSION = 3;	// e.g., (+ I)
+    static final int INCOMPLETE_EXPRESSION = 4;	// e.g., (I
+    static final int MISSING_OPERATOR = 5;	// e.g., I (I)
+    static final int MISSING_OPERAND = 6;	// e.g., I +
+    static final int DIVISION_BY_ZERO = 7;	// e.g., I / O
+    static final int RESULT_OUT_OF_RANGE = 8;	// e.g., MMM + M
+    static final int INVALID_LINE_REFERENCE = 9;
+    	// e.g., #12, when line 12 of the history has no result
+    static final int FRACTIONAL_EXPONENT = 10;
+    	// e.g., IV ** (I / II), in fraction mode
+    static final String[] DESCRIPTION_OF_ERROR = {"no error",
+    	"an invalid character", "a missing expression", "an invalid expression",
+    	"an incomplete expression", "a missing operator", "a missing operand",
+    	"a division by zero", "a result out of range",
+    	"a reference to a line without a result",
+    	"an exponent that isn't an integer"};
+    	// description of each kind of error, for an error message
+   	
     // These arrays of constants are indexed by a digit number (ones, tens,
-    // 100s, 1000s); they are used for analyzing Roman letters for that digit:
-    static final int[] VALUE_OF_DIGIT = {1, 10, 100, 1000};
-    	// the value of one of a digit (Roman I, X, C, M)
+    // 100s, 1000s); they are used for producing Roman letters for that digit:
     static final char[] ONE_CHAR_FOR_DIGIT = {'I', 'X', 'C', 'M'};
     	// the Roman letter for one of that digit
     static final char[] FIVE_CHAR_FOR_DIGIT = {'V', 'L', 'D', ' '};
     	// the Roman letter for five of that digit; not applicable to 1000s
-    static final String[] FOLLOWERS = {"", "VI", "LXVI", "DCLXVI"};
-    	// the Roman letters that can begin a digit after the current digit
+
+    // These tables hold the Roman and Arabic representations of every integer
+    // in the valid range; they are indexed by (integer - MININT).  They are
+    // built once, at class initialization, so that displaying a result
+    // does no conversion and no string concatenation:
+    static final String[] ROMAN_STRINGS = new String[MAXINT - MININT + 1];
+    	// Roman numeral for each integer, as an interned String
+    static final byte[][] ROMAN_BYTES = new byte[MAXINT - MININT + 1][];
+    	// Roman numeral for each integer, as ASCII bytes
+    static final byte[][] ARABIC_BYTES = new byte[MAXINT - MININT + 1][];
+    	// Arabic number for each integer, as ASCII bytes
+    static {	// build the tables of representations
+    	// The tables are built before the first line is evaluated, while the
+    	// JVM is still interpreting, so each entry is built cheaply: a
+    	// positive numeral is the numerals of its nonzero digits (e.g.,
+    	// MCMXX is M, CM, and XX), and a negative one is "-" and its
+    	// positive numeral.
+    	byte[][] digitBytes = new byte[40][];	// numeral for each digit at
+    		// each place, indexed by (place * 10 + digit), e.g., CM at 29
+    	byte[] numeral;	// a numeral being built
+    	int length;	// number of bytes of the numeral
+    	int digit;	// a digit of the integer
+    	for (int place = 0, scale = 1; place < 4; place++, scale *= 10)
+    		for (int d = 1; d <= 9 && d * scale <= MAXINT; d++)
+    			digitBytes[place * 10 + d] = computeRoman(d * scale)
+    				.getBytes(StandardCharsets.US_ASCII);
+    	ROMAN_BYTES[-MININT] = new byte[] {'O'};
+    	for (int n = 1; n <= MAXINT; n++)
+    	{	// for each positive integer
+    		length = 0;
+    		for (int place = 3, scale = 1000; place >= 0; place--, scale /= 10)
+    			if (n / scale % 10 != 0)	// the digit has letters
+    				length += digitBytes[place * 10 + n / scale % 10].length;
+    		numeral = new byte[length];
+    		length = 0;
+    		for (int place = 3, scale = 1000; place >= 0; place--, scale /= 10)
+    		{	// for each place, starting with 1000s
+    			digit = n / scale % 10;
+    			if (digit == 0)	// the digit has no letters
+    				continue;
+    			System.arraycopy(digitBytes[place * 10 + digit], 0, numeral,
+    				length, digitBytes[place * 10 + digit].length);
+    			length += digitBytes[place * 10 + digit].length;
+    		}	// for each place, starting with 1000s
+    		ROMAN_BYTES[n - MININT] = numeral;
+    		numeral = new byte[length + 1];
+    		numeral[0] = '-';
+    		System.arraycopy(ROMAN_BYTES[n - MININT], 0, numeral, 1, length);
+    		ROMAN_BYTES[-n - MININT] = numeral;
+    	}	// for each positive integer
+    	for (int n = MININT; n <= MAXINT; n++)
+    	{	// for each integer in the valid range
+    		ROMAN_STRINGS[n - MININT] = new String(ROMAN_BYTES[n - MININT],
+    			StandardCharsets.US_ASCII).intern();
+    		ARABIC_BYTES[n - MININT] =
+    			Integer.toString(n).getBytes(StandardCharsets.US_ASCII);
+    	}	// for each integer in the valid range
+    }	// build the tables of representations
+
+    // These tables form a finite automaton that recognizes a Roman numeral and
+    // computes its value in one pass, with one table lookup per character.
+    // Each character is first mapped to a letter class, which is its index in
+    // ROMAN_LETTERS, or NOT_A_LETTER for any other character.
+    // Every prefix of a valid Roman numeral is itself a valid Roman numeral
+    // (e.g., MCM, MC, M), so each state is just the value of the letters read
+    // so far (1 through MAXINT); state NUMERAL_ZERO is the stand-alone letter
+    // O, and state NUMERAL_START is before the first letter.  No transition
+    // leads back to NUMERAL_START, so it also marks "no transition", i.e., the
+    // next character can't extend the numeral.
+    static final int NOT_A_LETTER = 8;	// letter class of a non-Roman char
+    static final int LETTER_CLASSES = 9;	// number of letter classes
+    static final int NUMERAL_START = 0;	// state before first letter
+    static final int NUMERAL_ZERO = MAXINT + 1;	// state after stand-alone O
+    static final byte[] LETTER_CLASS_OF_CHAR = new byte[128];
+    	// letter class of each ASCII char; any other char is NOT_A_LETTER
+    static final short[] NEXT_NUMERAL_STATE =
+    	new short[(NUMERAL_ZERO + 1) * LETTER_CLASSES];
+    	// next state, indexed by (state * LETTER_CLASSES + letter class)
+    static final int[] VALUE_OF_NUMERAL_STATE = new int[NUMERAL_ZERO + 1];
+    	// value of the numeral that has been read when in each state
+    static final int[] PREFIX_DIGIT = {0, 0, 1, 2, 1, 0, 5, 6, 7, 1};
+    	// for each digit, the digit whose letters are its letters except the
+    	// last, e.g., 1 (I) for 4 (IV), and 5 (V) for 6 (VI)
+    static {	// build the automaton from the table of Roman numerals
+    	int state;	// state reached by a numeral's letters except its last
+    	byte[] numeral;	// a valid Roman numeral
+    	int scale;	// place value of the numeral's last nonzero digit
+    	int digit;	// that digit
+    	Arrays.fill(LETTER_CLASS_OF_CHAR, (byte)NOT_A_LETTER);
+    	for (int c = 0; c < ROMAN_LETTERS.length(); c++)
+    		LETTER_CLASS_OF_CHAR[ROMAN_LETTERS.charAt(c)] = (byte)c;
+    	NEXT_NUMERAL_STATE[letterClassOf('O')] = NUMERAL_ZERO;
+    		// stand-alone O is zero; nothing can follow it
+    	for (int n = 1; n <= MAXINT; n++)
+    	{	// for each positive integer
+    		// The numeral's letters except its last are the numeral of the
+    		// integer whose last nonzero digit is that digit's prefix digit,
+    		// and that numeral's state is its value (e.g., MCMXIX ends with
+    		// 9 ones, so its prefix MCMXI is n - 9 + 1), so the prefix
+    		// needn't be followed letter by letter:
+    		numeral = ROMAN_BYTES[n - MININT];
+    		for (scale = 1; n / scale % 10 == 0; scale *= 10)
+    			;	// find the last nonzero digit
+    		digit = n / scale % 10;
+    		state = n - (digit - PREFIX_DIGIT[digit]) * scale;
+    		NEXT_NUMERAL_STATE[state * LETTER_CLASSES +
+    			letterClassOf((char)numeral[numeral.length - 1])] = (short)n;
+    			// the last letter leads to the state for this integer
+    		VALUE_OF_NUMERAL_STATE[n] = n;
+    	}	// for each positive integer
+    }	// build the automaton from the table of Roman numerals
    	
     /** Main method for Roman numeral desk calculator.
-     * @param args arguments (optional; ignored)
+     * @param args arguments (optional); "-e" and expressions evaluate just
+     *	those expressions, which RomanOneShot describes; "--batch" selects
+     *	batch mode, which
+     *	RomanBatch describes, "--compile" and "--run" compile a file of
+     *	expressions and run the compiled file, which RomanCompiled
+     *	describes, "--stream" selects stream mode, which
+     *	RomanStream describes, "--server" selects server mode, which
+     *	RomanServer describes, and "--worksheet" selects worksheet mode,
+     *	which RomanWorksheet describes; "--history" and a file name keep the
+     *	interactive session's history in that file, which RomanHistory
+     *	describes, "--extended" opts into the extended range, whose
+     *	numerals above MAXINT use VINCULUM, and "--fractions" opts into
+     *	fraction mode, whose results RomanFraction describes; any other
+     *	args are ignored
      */    
-    public static void main(String[] args) {	// any args are ignored
-    	InfoForLine lineInfo = new InfoForLine();
-    		// info for a line that the user enters
-    	int resultOfEvaluation;	// result of evaluation of line
+    public static void main(String[] args) {
+    	if (args.length > 0 && args[0].equals("-e"))
+    	{	// evaluate the expressions in the args, and exit
+    		RomanOneShot.main(args);
+    		return;
+    	}	// evaluate the expressions in the args, and exit
+    	if (args.length > 0 && args[0].equals("--batch"))
+    	{	// non-interactive batch mode over files
+    		RomanBatch.main(args);
+    		return;
+    	}	// non-interactive batch mode over files
+    	if (args.length > 0 &&
+    		(args[0].equals("--compile") || args[0].equals("--run")))
+    	{	// compile a file of expressions, or run a compiled file
+    		RomanCompiled.main(args);
+    		return;
+    	}	// compile a file of expressions, or run a compiled file
+    	if (args.length > 0 && args[0].equals("--stream"))
+    	{	// non-interactive stream mode, for lines of any length
+    		RomanStream.main(args);
+    		return;
+    	}	// non-interactive stream mode, for lines of any length
+    	if (args.length > 0 && args[0].equals("--server"))
+    	{	// serve clients over a loopback port
+    		RomanServer.main(args);
+    		return;
+    	}	// serve clients over a loopback port
+    	if (args.length > 0 && args[0].equals("--worksheet"))
+    	{	// edit a file, evaluating only the lines that the edits affect
+    		RomanWorksheet.main(args);
+    		return;
+    	}	// edit a file, evaluating only the lines that the edits affect
+    	RomanMetrics metrics = new RomanMetrics();
+    		// measurements of the user's lines
+    	RomanEngine.Session session = new RomanEngine.Session(null, metrics);
+    		// the user's session, which holds the previous line's result
+    	ResultFormatter output = new ResultFormatter();
+    		// formats each line's result or message
+    	RomanOutput display = RomanOutput.forStandardOutput();
+    		// writes the formatted output, at once if the user is watching
+    	String line;	// a line that the user enters, in upper case
+    	int outcome;	// outcome of evaluating a line
+    	long phaseStart;	// when formatting or writing started
+    	String historyFile = null;	// file of the session's history, if any
+    	RomanHistory history = null;	// the session's history; null if none
+    	boolean extended = false;	// whether the session is in the extended
+    		// range
+    	boolean fractions = false;	// whether the session is in fraction mode
+    	long lineOffset;	// offset of a line in the user's input
+    	long inputLength = 0;	// number of chars that the user has entered,
+    		// counting each line ending as one
     		
+    	try {
+    	for (int a = 0; a < args.length; a++)
+    	{	// for each argument
+    		if (args[a].equals("--history") && a + 1 < args.length)
+    			historyFile = args[++a];
+    		else if (args[a].equals("--extended"))
+    			extended = true;
+    		else if (args[a].equals("--fractions"))
+    			fractions = true;
+    	}	// for each argument
+    	if (fractions && historyFile != null)
+    	{	// the history's results would be in the wrong mode
+    		System.err.println("[] --fractions can't be used with --history.");
+    		System.exit(2);
+    	}	// the history's results would be in the wrong mode
+    	session.setExtendedRange(extended);
+    	session.setFractions(fractions);
+    	if (historyFile != null)
+    	{	// resume the history in the file, or start one, in the range
+    		history = new RomanHistory(historyFile);
+    		session.setHistory(history);
+    	}	// resume the history in the file, or start one, in the range
         // Display the introductory text:
-    	System.out.println("[] Welcome to the Roman numeral desk calculator!"
+    	output.appendMessage("[] Welcome to the Roman numeral desk calculator!"
     		+ "\n[] Any number of times, you can type an expression and Enter"
             + "\n[] to see the result; type QUIT or EXIT to quit."
             + "\n[] You can end a line with = (but the = has no effect)."
@@ -93,100 +341,183 @@ class Roman {
             + "\n[] use O, -, and a positive integer; you MUST include the O."
             + "\n[] If you start a line with an operator,"
             + "\n[] the operator's left operand is the previous line's result."
-            + "\n[] NO fractions are allowed in expressions or in results.");
+            + (fractions
+            	? "\n[] / divides exactly, so results can be fractions;"
+            	+ "\n[] twelfths are written with S for 6/12 and . for 1/12,"
+            	+ "\n[] e.g., IIS.. is Arabic 2 8/12, and others as II III/VII."
+            	: "\n[] NO fractions are allowed in expressions or in results.")
+            + "\n[] Type METRICS to see statistics about your lines so far.");
         	// Do not support unary minus, to avoid ambiguity between starting
         	// with a negative integer and subtracting from the previous result.
+    	if (extended)	// mention how to write the larger numerals
+    		output.appendMessage("[] In the extended range, _ before a letter"
+    			+ " multiplies it by 1,000;\n[] e.g., _V_I is Arabic 6,000,"
+    			+ " and _X_I_ICCXXXIV is Arabic 12,234.");
+    	if (history != null)	// mention the history's line numbers
+    		output.appendMessage("[] Your history has " + history.size()
+    			+ " lines; to use the result of line 12, type #12.");
+    	display.write(output);
 
-        lineInfo.m_result = 0;
-        	// there have not been any lines or results so far
         // Iteration for each line that the user enters:
-        while (true) {	// iterate for each line that the user enters
-        	lineInfo.m_lineHasError = false;	// no error detected in line yet
-        	
-        	// 1) Get the line and check for empty:
-        	lineInfo.m_line = sc.nextLine().toUpperCase().trim();
-        		// the line, in upper case, without leading / trailing blanks
-        	if (lineInfo.m_line.equals("=") | lineInfo.m_line.equals(""))
-        	{	// only "=" or nothing at all
-        		System.out.println(
-        			"[] Please type an expression, QUIT, or EXIT.");
-        		continue;
-        	}	// only "=" or nothing at all
-        	if (lineInfo.m_line.indexOf("0") > -1)
-        	{	// line contains the DIGIT 0.
-        		// Handle this particular invalid character specially,
-        		// because it could be hard for a user to find the problem
-        		// if we issue a generic "invalid character" message.
-        		System.out.println(
-        			"[] For zero, specify the LETTER (NOT DIGIT) O.");
+    	sc = new Scanner(System.in);
+        while (sc.hasNextLine()) {	// iterate for each line that the user enters
+        	line = sc.nextLine();
+        	lineOffset = inputLength;
+        	inputLength += line.length() + 1;	// the line and its ending
+        	line = line.toUpperCase();
+        		// the engine converts to upper case too, but String's
+        		// conversion uses the user's locale
+        	if (line.trim().equals(METRICS_COMMAND))
+        	{	// display a snapshot of the metrics, instead of evaluating
+        		output.appendText(metrics.toString());
+        		display.write(output);
         		continue;
-        	}	// line contains the DIGIT 0.
-        	if (lineInfo.m_line.endsWith("="))	// non-blanks and then "="
-        		lineInfo.m_line =
-        			lineInfo.m_line.substring(0, lineInfo.m_line.length()-1);
-        			// strip off (ignore) the ending "="
-        	lineInfo.m_line += " ";	// append blank to ease tokenization
+        	}	// display a snapshot of the metrics, instead of evaluating
 
-        	// 2) Check for QUIT or EXIT:
-        	if (lineInfo.m_line.indexOf("QUIT") +
-        		lineInfo.m_line.indexOf("EXIT") > -2)
-        	{	// contains QUIT or EXIT
-        		System.out.println("[] Bye!  Visit again!");	// say goodbye
-        		break;	// quit
-        	}	// contains QUIT or EXIT
-        	
-        	// 3) Tokenize the line, including converting Romans to integers:
-        	lineInfo.tokenize();	// tokenize
-        	if (lineInfo.m_lineHasError)	// if line has error
-        		continue;	// skip parse and evaluate; iterate to next line  		
-        		
-        	// 4) Parse and evaluate the tokenized line:
-        	resultOfEvaluation = lineInfo.parseAndEvaluate(0)[0];
-        		// parse and evaluate the line, including error message if error
-        	if (lineInfo.m_lineHasError)	// if line has error
-        		continue;	// skip display result; iterate to next line  	
-        	
-        	// 5) Display the result after converting the integer to Roman:
-        	lineInfo.m_result = resultOfEvaluation;
-        		// update result, now that we know it's error-frree
-			// In the next statement, the conditional part tests whether the
-			// first token is an operator (whose left operand is the previous
-			// line's result).  If true, the displayed result mentions that the
-			// result uses the previous line's result.  The purpose is to avoid
-			// surprising a user who begins the current line with a minus sign.
-			System.out.println("[] Result" +
-				((lineInfo.m_tokenizedLine.get(0).m_tokenType > OPERATOR_BOUND)
-					? " (which uses previous line's result)" : "") +
-				": Roman " + toRoman(lineInfo.m_result) + " (Arabic " +
-        		Integer.toString(lineInfo.m_result) + ").");
-        		// display result in Roman and Arabic
+        	// 1) through 4):
+        	outcome = RomanEngine.evaluate(line, session);
+        	if (history != null)	// the line becomes part of the history
+        		history.append(lineOffset, outcome, session);
         	
+        	// 5) Display the result or message:
+        	phaseStart = System.nanoTime();
+        	output.appendOutcome(outcome, session);
+        	phaseStart = metrics.endPhase(RomanMetrics.FORMAT, phaseStart);
+        	display.write(output);
+        	metrics.endPhase(RomanMetrics.WRITE, phaseStart);
+        	if (outcome == RomanEngine.QUIT)	// contains QUIT or EXIT
+        		break;	// quit
         };	// iterate for each line that the user enters
+    	display.flush();	// the end of input also ends the session
+    	if (history != null)
+    		history.close();	// force it to the disk
+    	}	// try
+    	catch (IOException e)
+    	{	// can't write the output or the history
+    		System.err.println("[] Output or history failed: " + e.getMessage());
+    		System.exit(1);
+    	}	// can't write the output or the history
     }	// main method
     
-    /** Process an error by setting lineHasError & displaying an error message.
+    /** Process an error by setting lineHasError and recording the error's
+     * kind and position, for the engine's caller to report.
      * @param p_theInfoForLine info for the line that contains the error
      * @param p_thePosition the position of the character where error was found
-     * @param p_descriptionOfError description of the error 
+     * @param p_kindOfError kind of the error, e.g., INVALID_CHARACTER
      */    
     public static void processAnError(
     	InfoForLine p_theInfoForLine,
     	int p_thePosition,
-    	String p_descriptionOfError) {
+    	int p_kindOfError) {
     	p_theInfoForLine.m_lineHasError = true;	// indicate error
-    	System.out.println("[] There's " + p_descriptionOfError +
-    		" detected at the end of this text:\n[] " +
-    		p_theInfoForLine.m_line.substring(0, p_thePosition + 1));
-    		// describe the error and its context
+    	p_theInfoForLine.m_errorKind = p_kindOfError;
+    	p_theInfoForLine.m_errorPosition = p_thePosition;
     }	// processAnError method
 
+    /** Get the letter class of a character, for the numeral automaton.
+     * @param p_theChar the character
+     * @return int its index in ROMAN_LETTERS, or NOT_A_LETTER
+     */    
+    static int letterClassOf(char p_theChar) {
+    	return (p_theChar < LETTER_CLASS_OF_CHAR.length)
+    		? LETTER_CLASS_OF_CHAR[p_theChar] : NOT_A_LETTER;
+    }	// letterClassOf method
+
+    /** Convert a character to upper case, quickly if it's ASCII.
+     * @param p_theChar the character
+     * @return char the character in upper case
+     */
+    static char upperCaseOf(char p_theChar) {
+    	if (p_theChar < 128)	// ASCII, which is what an expression can contain
+    		return (p_theChar >= 'a' && p_theChar <= 'z')
+    			? (char)(p_theChar - ('a' - 'A')) : p_theChar;
+    	return Character.toUpperCase(p_theChar);
+    }	// upperCaseOf method
+
     /** Produce a String that is the Roman numeral representation of an integer,
      * which is assumed to be in the valid range (-3,999 to +3,999).
+     * The String comes from a table that was built at class initialization,
+     * so this does no conversion and allocates nothing.
      * @param p_theInteger the integer
      * @return String the Roman numeral representation
      */    
     public static String toRoman(int p_theInteger) {
-    	String theResult = "";	// accumulates the result if it's not zero
+    	return ROMAN_STRINGS[p_theInteger - MININT];	// look it up
+    }	// toRoman method
+
+    /** Produce a String that is the Roman numeral representation of an
+     * integer in the extended range, with VINCULUM before each letter that
+     * is multiplied by 1,000 (once for each time) if it's above MAXINT.
+     * @param p_theInteger the integer, from -EXTENDED_MAX to EXTENDED_MAX
+     * @return String the Roman numeral representation
+     */
+    public static String toRoman(long p_theInteger) {
+    	StringBuilder theResult;	// accumulates the numeral
+    	String thousands;	// Roman numeral for the thousands
+    	if (p_theInteger >= MININT && p_theInteger <= MAXINT)	// valid range
+    		return ROMAN_STRINGS[(int)p_theInteger - MININT];	// look it up
+    	if (p_theInteger < 0)	// negative
+    		return "-" + toRoman(-p_theInteger);
+    	theResult = new StringBuilder(32);
+    	thousands = toRoman(p_theInteger / 1000);	// at least IV
+    	for (int i = 0; i < thousands.length(); i++)
+    	{	// for each char of the thousands, multiply it by 1,000
+    		if (thousands.charAt(i) != VINCULUM)
+    			theResult.append(VINCULUM);	// before the letter
+    		theResult.append(thousands.charAt(i));
+    	}	// for each char of the thousands, multiply it by 1,000
+    	if (p_theInteger % 1000 != 0)	// the rest isn't zero
+    		theResult.append(ROMAN_STRINGS[(int)(p_theInteger % 1000) - MININT]);
+    	return theResult.toString();
+    }	// toRoman method for the extended range
+
+    /** Raise an integer to an integer power exactly, with integer
+     * arithmetic, stopping as soon as the power's magnitude is too large.
+     * A negative exponent gives the integer part of the fraction, as
+     * (int)Math.pow did: 1 or -1 for a base of 1 or -1, and otherwise 0,
+     * except that 0 to a negative power is too large (infinite).
+     * Since the magnitude at least doubles with each multiplication, there
+     * are at most 63 of them, and at most 12 in the valid range.
+     * @param p_base the base
+     * @param p_exponent the exponent
+     * @param p_limit the largest magnitude that the power may have
+     * @return long the power, or OUT_OF_RANGE if its magnitude is larger
+     *	than p_limit
+     */
+    static long power(long p_base, long p_exponent, long p_limit) {
+    	long result = 1;	// the power so far
+    	long resultLimit;	// largest magnitude of the power so far that can
+    		// be multiplied by the base without exceeding p_limit
+
+    	if (p_base == 0)	// 0, 1, or infinite
+    		return (p_exponent > 0) ? 0
+    			: (p_exponent == 0) ? 1 : OUT_OF_RANGE;
+    	if (p_base == 1)
+    		return 1;
+    	if (p_base == -1)	// 1 or -1, depending on the exponent's parity
+    		return ((p_exponent & 1) == 0) ? 1 : -1;
+    	if (p_exponent < 0)	// a fraction whose magnitude is less than 1
+    		return 0;
+    	resultLimit = p_limit / Math.abs(p_base);
+    	for (; p_exponent > 0; p_exponent--)
+    	{	// for each multiplication, until the power is too large
+    		if (Math.abs(result) > resultLimit)	// next power is too large
+    			return OUT_OF_RANGE;	// so fail fast
+    		result *= p_base;
+    	}	// for each multiplication, until the power is too large
+    	return result;
+    }	// power method
+
+    /** Compute the Roman numeral representation of an integer,
+     * which is assumed to be in the valid range (-3,999 to +3,999).
+     * This is used only once for each digit at each place, to build
+     * ROMAN_BYTES.
+     * @param p_theInteger the integer
+     * @return String the Roman numeral representation
+     */    
+    static String computeRoman(int p_theInteger) {
+    	StringBuilder theResult = new StringBuilder(15);
+    		// accumulates the result if it's not zero
     	String arabic = Integer.toString(Math.abs(p_theInteger));
     		// the nonnegative version of the integer, as an Arabic number
     	int d;	// iteration for each possible Arabic digit (ending with ones).
@@ -197,7 +528,7 @@ class Roman {
     	if (p_theInteger == 0)	// zero
     		return "O";	// return Roman zero (O) immediately
     	if (p_theInteger < 0)	// negative
-    		theResult = "-";	// start with minus
+    		theResult.append('-');	// start with minus
     	// The following loop examines each digit and (if the digit is not 0)
     	// appends the Roman letters for that digit:
     	for (d = arabic.length() - 1; d >= 0; d--)
@@ -208,208 +539,383 @@ class Roman {
     		switch(aDigitAsInt)	// what's the digit's value?
     		{	// handle the digit's value
     		case 9:
-    			theResult += ONE_CHAR_FOR_DIGIT[d];
-    			theResult += ONE_CHAR_FOR_DIGIT[d + 1];
+    			theResult.append(ONE_CHAR_FOR_DIGIT[d]);
+    			theResult.append(ONE_CHAR_FOR_DIGIT[d + 1]);
     				// append CM, XC, or IX
     			break;	// finished with this digit
     		case 4:
-    			theResult += ONE_CHAR_FOR_DIGIT[d];
-    			theResult += FIVE_CHAR_FOR_DIGIT[d];
+    			theResult.append(ONE_CHAR_FOR_DIGIT[d]);
+    			theResult.append(FIVE_CHAR_FOR_DIGIT[d]);
     				// append CD, XL, or IV
     			break;	// finished with this digit
     		default:	// not 9 or 4
     			if (aDigitAsInt >= 5)	// at least 5
     			{	// at least 5
-    				theResult += FIVE_CHAR_FOR_DIGIT[d];	// append D, L, or V
+    				theResult.append(FIVE_CHAR_FOR_DIGIT[d]);	// append D, L, or V
     				aDigitAsInt -= 5;
     					// subtract the 5; then append remaining letters, if any
     			}	// at least 5
     			for (j = aDigitAsInt; j > 0; j--)
     				// for 1, 2, or 3, or (we have subtracted 5) 6, 7, or 8
-    				theResult += ONE_CHAR_FOR_DIGIT[d];	// append C, X, or I
+    				theResult.append(ONE_CHAR_FOR_DIGIT[d]);	// append C, X, or I
     		}	// handle the digit's value
     	}	// for each possible Arabic digit (ending with ones).
-    	return theResult;	// all done.  return the result.
-    }	// toRoman method
+    	return theResult.toString();	// all done.  return the result.
+    }	// computeRoman method
    
     /** Information for a line that the user enters.
+     * RomanEngine.Session holds one, which is reused for each line.
      */
     static class InfoForLine {
     	// members that apply to the entire line:
-    	public String m_line;	// the line, which will be converted
-     		// to upper case and will have leading and trailing blanks removed.
+    	public CharSequence m_line;	// the text that contains the line
+    	public int m_lineStart;	// index (in m_line) of the line's first char
+    	public int m_lineLength;	// number of chars in the line
+    		// the line, as charOfLine gets it, is converted to upper case,
+    		// has leading and trailing blanks and any ending "=" removed,
+    		// and has a blank appended to ease tokenization.
     		// it includes any intermediate blanks but not a carriage return.
     	public boolean m_lineHasError;	// indicates whether line has error
-    	public LinkedList<Token> m_tokenizedLine;	// tokenized version of line
-    	public int m_result;	// final result of a line's expression
+    	public int m_errorKind;	// kind of error, e.g., INVALID_CHARACTER
+    	public int m_errorPosition;	// position of char where error was found
+    	public TokenBuffer m_tokenizedLine = new TokenBuffer();
+    		// tokenized version of line; reused for each line
+    	public long m_result;	// final result of a line's expression
+    	public boolean m_usedPreviousResult;
+    		// indicates whether line used previous line's result, i.e.,
+    		// m_result from before the line, because it starts with an operator
+    	public int m_endTokenNumber;	// token number of the last token of
+    		// the expression that parseAndEvaluate most recently evaluated
+    	public RomanHistory m_history;	// the session's history, whose lines'
+    		// results a line can use, e.g., #12; null if none
+    	public long m_maxResult = MAXINT;	// largest magnitude of a result,
+    		// i.e., MAXINT, or EXTENDED_MAX in the extended range
+    	public boolean m_fractions;	// whether the line is in fraction mode,
+    		// in which / divides exactly, and every value (of a token, of a
+    		// result, and on m_evaluationStack) is a packed RomanFraction
 		// members that apply to an individual character or integer in the line:
 		public char m_c1;	// a char from the line
     	public int m_tokenIntValue;	// value of a tokenized integer
+    	// members for evaluation token by token (see evaluateToken):
+    	long[] m_evaluationStack = new long[64];
+    		// for each enclosing parenthesized expression, the result so far
+    		// and the pending operator of the expression that contains it;
+    		// reused for each line
+    	int m_evaluationDepth;	// number of enclosing parenthesized expressions
+    	int m_evaluationState;	// what the next token must be, e.g.,
+    		// EXPECTING_OPERATOR
+    	long m_evaluationResult;	// result so far of the innermost expression
+    	int m_pendingOperator;	// operator whose second operand is expected
+    	// These are the codes for m_evaluationState:
+    	static final int EXPECTING_EXPRESSION = 0;	// start of an expression
+    	static final int EXPECTING_OPERATOR = 1;	// operator or expression ender
+    	static final int EXPECTING_OPERAND = 2;	// integer or left paren
+    	
+    	/** Make a line (part of some text) the line to tokenize.
+    	 * @param p_theText the text that contains the line
+    	 * @param p_lineStart index of the line's first char, not a blank
+    	 * @param p_lineLength number of chars in the line, which must not
+    	 *	end with a blank or "="
+    	 */
+    	public void setLine(
+    		CharSequence p_theText,
+    		int p_lineStart,
+    		int p_lineLength) {
+    		m_line = p_theText;
+    		m_lineStart = p_lineStart;
+    		m_lineLength = p_lineLength;
+    	}	// setLine method
+    	
+    	/** Get a char of the line, in upper case.
+    	 * @param p_index index (in line) of the char, which may be the index of
+    	 *	the appended blank
+    	 * @return char the char
+    	 */
+    	public char charOfLine(int p_index) {
+    		if (p_index == m_lineLength)	// after last char
+    			return ' ';	// the appended blank
+    		return upperCaseOf(m_line.charAt(m_lineStart + p_index));
+    	}	// charOfLine method
+    	
+    	/** Get the line, through a position, e.g., for an error message.
+    	 * @param p_thePosition the position of the last char to get
+    	 * @return String the line, in upper case, through the position
+    	 */
+    	public String lineThrough(int p_thePosition) {
+    		StringBuilder theText = new StringBuilder(p_thePosition + 1);
+    		for (int i = 0; i <= p_thePosition; i++)
+    			theText.append(charOfLine(i));
+    		return theText.toString();
+    	}	// lineThrough method
+    	
+    	/** Test whether the line contains some text, e.g., QUIT.
+    	 * @param p_theText the text, in upper case
+    	 * @return boolean whether the line contains the text
+    	 */
+    	public boolean lineContains(String p_theText) {
+    		int i;	// iteration for each possible starting index
+    		int j;	// iteration for each char of the text
+    		for (i = 0; i + p_theText.length() <= m_lineLength; i++)
+    		{	// for each possible starting index
+    			for (j = 0; j < p_theText.length() &&
+    				charOfLine(i + j) == p_theText.charAt(j); j++)
+    				;	// compare the chars
+    			if (j == p_theText.length())	// all chars matched
+    				return true;
+    		}	// for each possible starting index
+    		return false;
+    	}	// lineContains method
     	
     	/** Tokenize a line, including appending a token for end of line.
          */    
     	public void tokenize() {
-    		m_tokenizedLine = new LinkedList<Token>();	// empty token list
-    		// iteration counters, all listed here to avoid confusion:
-    		int i;	// for each character in line
-    		int d;	// for each possible digit (thousands through ones)
-    		int j;	// for each instance of a repeatable Roman letter, e.g., III
+    		m_tokenizedLine.clear();	// empty the token buffer
+    		int i;	// iteration for each character in line
+    		int state;	// state of the numeral automaton
+    		int nextState;	// state after the next character, if any
     		
-        	for (i = 0; i < m_line.length(); i++)
+        	for (i = 0; i <= m_lineLength; i++)
         	{	// for each char in line; we know that last is blank
-        		m_c1 = m_line.charAt(i);	// ith character
-        		if (ROMAN_LETTERS.indexOf(m_c1) > -1)	// char is Roman letter
+        		m_c1 = charOfLine(i);	// ith character
+        		if (letterClassOf(m_c1) != NOT_A_LETTER)	// char is Roman letter
         		{	// try to tokenize as an integer
-        			m_tokenIntValue = 0;	// start with 0; add to it later
-        			if (m_c1 != 'O')
-        				// if int is 'O' (zero), we're done evaluating int.
-        				// if int is not 'O', we must evaluate the int:
-        				for (d = 3; d >= 0; d--)
-        				{	// for each possible digit (thousands through ones).
-        					// Each digit other than thousands might have 9
-        					// times that digit (e.g., IX), 4 times that digit
-        					// (e.g., IV), or 5 times that digit (e.g., V).
-        					// Each digit including thousands might have a
-        					// series of 1, 2, or 3 of that digit (e.g., III).
-        					// Each digit other than thousands might have the
-        					// series alone or after the 5 times (e.g., VIII).
-        					// This uses some static final arrays that were
-        					// declared at the beginning of the Roman class.
-        					// When finished tokenizing int,
-        					// i should point to the last char of the int.
-        					m_c1 = m_line.charAt(i);
-        						// reset in case this is not first iteration
-        					if (d < 3 && m_c1 == ONE_CHAR_FOR_DIGIT[d] &&
-        						m_line.charAt(i+1) == ONE_CHAR_FOR_DIGIT[d + 1])
-        					{	// 9 times the digit, e.g., IX
-        						m_tokenIntValue += 9 * VALUE_OF_DIGIT[d];
-        							// add 9 times the digit
-        						i++;	// point to the digit's second char
-        						if (d > 0 &&
-        							FOLLOWERS[d].indexOf(m_line.charAt(i + 1))
-        							> -1)
-        							// if there are more chars in this int
-        							i++;	// skip to next char
-        						continue;	// iterate; we've found entire digit
-        					}	// 9 times the digit, e.g., IX
-        					if (d < 3 && m_c1 == ONE_CHAR_FOR_DIGIT[d] &&
-        						m_line.charAt(i + 1) == FIVE_CHAR_FOR_DIGIT[d])
-        					{	// 4 times the digit, e.g., IV
-        						m_tokenIntValue += 4 * VALUE_OF_DIGIT[d];
-        							// add 4 times the digit
-        						i++;	// point to the digit's second char
-        						if (d > 0 &&
-        							FOLLOWERS[d].indexOf(m_line.charAt(i + 1))
-        							> -1)
-        							// if there are more chars in this int
-        							i++;	// skip to next char
-        						continue;	// iterate; we've found entire digit
-        					}	// 4 times the digit, e.g., IV
-        					if (m_c1 == FIVE_CHAR_FOR_DIGIT[d])
-        					{	// 5 char
-        						m_tokenIntValue += 5 * VALUE_OF_DIGIT[d];
-        							// add 5 times the digit, e.g., V.
-        						if ((m_line.charAt(i + 1) ==
-        							ONE_CHAR_FOR_DIGIT[d]) ||
-        							(d > 0 &&
-        							FOLLOWERS[d].indexOf(m_line.charAt(i + 1))
-        							> -1))
-        								// if there are more chars in this int
-        							i++;	// skip to next letter
-        						// if we found another char in this int,
-        						// we're pointing to it.  if we didn't find it,
-        						// we're still pointing to this digit's 5 char.
-        						if (m_line.charAt(i) != ONE_CHAR_FOR_DIGIT[d])
-        							// we found either a lower digit or a
-        							// non-digit, so we're done with this digit
-        							continue;	// iterate.
-        						// if we found a 1 digit, fall through
-        					}	// 5 char
-        					if (m_line.charAt(i) == ONE_CHAR_FOR_DIGIT[d])
-        					{	// i points to the one char for this digit        						
-        						m_tokenIntValue += VALUE_OF_DIGIT[d];
-        							// add digit
-        						for (j = 1; j <= 2; j++)
-        						{	// for each in a series of the one char
-        							if (m_line.charAt(i + 1) ==
-        								ONE_CHAR_FOR_DIGIT[d])
-        							{	// the digit, e.g., I
-        								m_tokenIntValue += VALUE_OF_DIGIT[d];
-        									// add the digit
-        								i++;	// skip to next letter
-        							}	// the digit, e.g., I
-        						}	// for each in a series of the one char
-        						if (d > 0 &&
-        							FOLLOWERS[d].indexOf(m_line.charAt(i + 1))
-        							> -1)
-        							// if there are more chars in this int
-        							i++;	// skip to next char
-        					}	// i points to the one char for this digit
-        					
-        				}	// for each possible digit (thousands through ones).
-        			if (ROMAN_LETTERS.indexOf(m_line.charAt(i + 1)) > -1)
-						processAnError (this, i + 1, "an invalid character");
+        			// Run the numeral automaton from this letter for as long
+        			// as the next character extends a valid numeral.
+        			// When finished tokenizing int,
+        			// i should point to the last char of the int.
+        			state = NEXT_NUMERAL_STATE[letterClassOf(m_c1)];
+        				// state after first letter; every letter starts a numeral
+        			while ((nextState = NEXT_NUMERAL_STATE[state * LETTER_CLASSES
+        				+ letterClassOf(charOfLine(i + 1))]) != NUMERAL_START)
+        			{	// next char extends the numeral
+        				state = nextState;
+        				i++;	// skip to next letter
+        			}	// next char extends the numeral
+        			m_tokenIntValue = VALUE_OF_NUMERAL_STATE[state];
+        			if (letterClassOf(charOfLine(i + 1)) != NOT_A_LETTER)
+						processAnError (this, i + 1, INVALID_CHARACTER);
         					// int followed by another Roman letter is not valid
         			if (! m_lineHasError)
-        				m_tokenizedLine.add(new Token(INT, i, m_tokenIntValue));
-        					// append a token for integer
+        				m_tokenizedLine.add(INT, i, m_fractions
+        					? RomanFraction.ofInteger(m_tokenIntValue)
+        					: m_tokenIntValue);	// append a token for integer
         		}	// try to tokenize as an integer
         		else switch (m_c1)
         		{	// try to tokenize as a non-integer; what is the char?
         		case '+':
-        			m_tokenizedLine.add(new Token(ADD, i));
+        			m_tokenizedLine.add(ADD, i);
         				// append a token for +
         			break;
         		case '-':
-        			m_tokenizedLine.add(new Token(SUB, i));
+        			m_tokenizedLine.add(SUB, i);
         				// append a token for -
         			break;
         		case '*':
-        			if (m_line.charAt(i+1) == '*')
+        			if (charOfLine(i+1) == '*')
         			{	// ** (exponentiate)
         				i++;	// advance to second asterisk
-        				m_tokenizedLine.add(new Token(EXP, i));
+        				m_tokenizedLine.add(EXP, i);
         					// append a token for **
         			}	// ** (exponentiate)
-        			else m_tokenizedLine.add(new Token(MUL, i));
+        			else m_tokenizedLine.add(MUL, i);
         				// append a token for *
         			break;
         		case '/':
-        			m_tokenizedLine.add(new Token(DIV, i));
+        			m_tokenizedLine.add(DIV, i);
         				// append a token for /
         			break;
         		case '(':
-        			m_tokenizedLine.add(new Token(L_P, i));
+        			m_tokenizedLine.add(L_P, i);
         				// append a token for (
         			break;
         		case ')':
-        			m_tokenizedLine.add(new Token(R_P, i));
+        			m_tokenizedLine.add(R_P, i);
         				// append a token for )
         			break;
         		case ' ':
         			// do nothing for white space
         			break;
+        		case VINCULUM:
+        			if (m_maxResult == MAXINT)	// not the extended range
+        			{	// it's an invalid character, as in the valid range
+        				processAnError(this, i, INVALID_CHARACTER);
+        				break;
+        			}	// it's an invalid character, as in the valid range
+        			i = tokenizeExtendedNumeral(i);
+        				// append a token for the numeral
+        			break;
+        		case '#':
+        			if (m_history == null)	// no lines to refer to
+        			{	// it's an invalid character, as without a history
+        				processAnError(this, i, INVALID_CHARACTER);
+        				break;
+        			}	// it's an invalid character, as without a history
+        			i = tokenizeLineReference(i);
+        				// append a token for the line's result
+        			break;
         		default:
-					processAnError (this, i, "an invalid character");
+					processAnError (this, i, INVALID_CHARACTER);
         				// any other char is error
         		}	// try to tokenize as a non-integer; what is the char?
         		if (m_lineHasError)	// if line has error
-        			i = m_line.length() - 1;
+        			i = m_lineLength;
         				// to end the iteration for each CHAR in line
         	}   // for each char in line; we know that last is blank
-        	m_tokenizedLine.add(new Token(END, m_line.length() - 1));
+        	m_tokenizedLine.add(END, m_lineLength);
         		// append an artificial token for end of line
     	}	// tokenize method
 
+    	/** Tokenize a reference to a line of the history, e.g., #12, as an
+    	 * integer, whose value is the result of that line.  The result is an
+    	 * error if it's outside the session's range, since the history might
+    	 * be from a session in the extended range.
+    	 * This method might set m_lineHasError by calling processAnError;
+    	 * therefore, caller should test m_lineHasError.
+    	 * @param p_index index (in line) of the #
+    	 * @return int index of the reference's last char
+    	 */
+    	int tokenizeLineReference(int p_index) {
+    		int i = p_index;	// iteration for each digit
+    		long lineNumber = 0;	// the line number, or, if it's too big,
+    			// one more than the number of lines in the history
+    		char digit;	// a digit of the line number
+    		long value;	// the line's result
+
+    		while ((digit = charOfLine(i + 1)) >= '0' && digit <= '9')
+    		{	// for each digit
+    			lineNumber = Math.min(10 * lineNumber + (digit - '0'),
+    				m_history.size() + 1);
+    			i++;	// skip to next digit
+    		}	// for each digit
+    		if (lineNumber < 1 || lineNumber > m_history.size() ||
+    			m_history.getOutcome(lineNumber - 1) != RomanEngine.RESULT)
+    			// no digits, or no such line, or the line has no result
+    		{	// error (invalid reference)
+    			processAnError(this, i, INVALID_LINE_REFERENCE);
+    			return i;
+    		}	// error (invalid reference)
+    		value = m_history.getResult(lineNumber - 1);
+    		if (! isInRange(value))	// e.g., from the extended range
+    			processAnError(this, i, RESULT_OUT_OF_RANGE);
+    		else m_tokenizedLine.add(INT, i, value);
+    			// append a token for an integer; a session in fraction mode
+    			// uses only a history of fractions, so it's already one
+    		return i;
+    	}	// tokenizeLineReference method
+
+    	/** Tell whether a result is in the session's range, e.g., a result
+    	 * from the history, which might be from another session.
+    	 * @param p_theResult the result, which is a fraction in fraction mode
+    	 * @return boolean whether its magnitude is at most m_maxResult
+    	 */
+    	boolean isInRange(long p_theResult) {
+    		return m_fractions
+    			? ! RomanFraction.exceeds(p_theResult, m_maxResult)
+    			: p_theResult >= -m_maxResult && p_theResult <= m_maxResult;
+    	}	// isInRange method
+
+    	/** Tokenize a numeral above MAXINT, e.g., _V_I (6,000), as an integer.
+    	 * Each letter has the same number of VINCULUMs before it as the
+    	 * letters before it, or fewer, and the letters that have the same
+    	 * number form a numeral, which is multiplied by 1,000 for each one.
+    	 * This method might set m_lineHasError by calling processAnError;
+    	 * therefore, caller should test m_lineHasError.
+    	 * @param p_index index (in line) of the first VINCULUM
+    	 * @return int index of the numeral's last char
+    	 */
+    	int tokenizeExtendedNumeral(int p_index) {
+    		int i = p_index - 1;	// index of the last char so far
+    		int j;	// index of the next letter
+    		int level = Integer.MAX_VALUE;	// number of VINCULUMs before
+    			// each letter of the current part, e.g., 1 for thousands
+    		int state = NUMERAL_START;	// state of the numeral automaton for
+    			// the current part
+    		int nextState;	// state after the next letter
+    		long value = 0;	// value of the parts before the current part
+    		long multiplier = 1;	// value of a letter I of the current part
+
+    		while (true)
+    		{	// for each letter, with the VINCULUMs before it
+    			for (j = i + 1; charOfLine(j) == VINCULUM; j++)
+    				;	// count the VINCULUMs
+    			if (letterClassOf(charOfLine(j)) == NOT_A_LETTER)
+    			{	// no letter
+    				if (j > i + 1)	// VINCULUMs without a letter
+    					processAnError(this, j, INVALID_CHARACTER);
+    				break;	// end of the numeral
+    			}	// no letter
+    			if (j - i - 1 == level)	// same part
+    				nextState = NEXT_NUMERAL_STATE[state * LETTER_CLASSES
+    					+ letterClassOf(charOfLine(j))];
+    			else if (j - i - 1 < level)	// next part
+    			{	// add the current part, and start the next
+    				value = addPart(value, state, multiplier, j);
+    				level = j - i - 1;
+    				multiplier = 1;
+    				for (int k = 0; k < level && multiplier != 0; k++)
+    					multiplier = (multiplier <= EXTENDED_MAX / 1000)
+    						? 1000 * multiplier : 0;	// 0 if too large
+    				nextState = NEXT_NUMERAL_STATE[letterClassOf(charOfLine(j))];
+    			}	// add the current part, and start the next
+    			else nextState = NUMERAL_START;	// more VINCULUMs than before
+    			if (nextState == NUMERAL_START || nextState == NUMERAL_ZERO
+    				|| m_lineHasError)
+    			{	// letter doesn't extend the numeral
+    				if (! m_lineHasError)
+    					processAnError(this, j, INVALID_CHARACTER);
+    				return j;
+    			}	// letter doesn't extend the numeral
+    			state = nextState;
+    			i = j;	// the letter is the last char so far
+    		}	// for each letter, with the VINCULUMs before it
+    		value = addPart(value, state, multiplier, i);
+    		if (m_fractions && ! m_lineHasError)	// as a fraction, if it fits
+    		{	// numerator is the integer, and denominator is 1
+    			value = RomanFraction.ofInteger(value);
+    			if (value == OUT_OF_RANGE)	// numerator doesn't fit in an int
+    				processAnError(this, i, RESULT_OUT_OF_RANGE);
+    		}	// numerator is the integer, and denominator is 1
+    		if (! m_lineHasError)
+    			m_tokenizedLine.add(INT, i, value);	// append a token for integer
+    		return i;
+    	}	// tokenizeExtendedNumeral method
+
+    	/** Add a part of a numeral above MAXINT to the parts before it.
+    	 * This method might set m_lineHasError by calling processAnError;
+    	 * therefore, caller should test m_lineHasError.
+    	 * @param p_value value of the parts before it
+    	 * @param p_state state of the numeral automaton after the part, or
+    	 *	NUMERAL_START if there is no part yet
+    	 * @param p_multiplier value of a letter I of the part, or 0 if it's
+    	 *	larger than EXTENDED_MAX
+    	 * @param p_position position of the char after the part, for an error
+    	 * @return long value of the parts, including this one
+    	 */
+    	long addPart(long p_value, int p_state, long p_multiplier,
+    		int p_position) {
+    		long part = (p_state == NUMERAL_START) ? 0
+    			: VALUE_OF_NUMERAL_STATE[p_state];	// value of the part's letters
+    		if (part == 0)	// no part yet
+    			return p_value;
+    		if (p_multiplier == 0 ||
+    			part > (EXTENDED_MAX - p_value) / p_multiplier)
+    		{	// error (out of range)
+    			processAnError(this, p_position, RESULT_OUT_OF_RANGE);
+    			return 0;
+    		}	// error (out of range)
+    		return p_value + part * p_multiplier;
+    	}	// addPart method
+
     /** Parse and evaluate the expression
      * in a tokenized line or a parenthesized subset of it.
      * This method might set m_lineHasError by calling processAnError;
      * therefore, caller should test m_lineHasError.
+     * This method sets m_endTokenNumber to the token number of expression's
+     * last token (end of line or right paren).
      * @param p_startingTokenNumber - starting point within token list.
-     * @return int array containing (0) result of evaluating an expression and
-     *	(1) token number of expression's last token (end of line or right paren)
+     * @return long result of evaluating an expression (0 if error)
      */    
-    public int[] parseAndEvaluate(
+    public long parseAndEvaluate(
     	int p_startingTokenNumber	// starting point within token list.
     	// If starting point is 0, it's first token, we're parsing the outermost
     	// expression, which may begin with either an operand or an operator,
@@ -424,12 +930,8 @@ class Roman {
     		int expressionEnder = (p_startingTokenNumber == 0) ? END : R_P;
     			// the desired token code (end of line or ')') to end expression
     		int currentOperator;	// token code for current operator
-    		int secondOperandValue;	// value of second operand of an operator
-    		int currentResult;	// current result of evaluation
-    		int[] valuesToReturn = new int[2];
-    			// array of ints to return (result and token number)
-    		int[] valuesReturned = new int[2];
-    			// array returned from a recursive call to parseAndEvaluate
+    		long secondOperandValue;	// value of second operand of an operator
+    		long currentResult;	// current result of evaluation
     			
     		// Here are the stages:
     		// 1) Do initial processing, which depends on first token's type.
@@ -439,45 +941,45 @@ class Roman {
     		
     		// 1) Do initial processing, which depends on first token's type:
 			currentTokenType =
-				m_tokenizedLine.get(currentTokenNumber).m_tokenType;
+				m_tokenizedLine.m_tokenType[currentTokenNumber];
 				// get first token's type, which determines the processing
 			if (currentTokenType < ENDER_BOUND)
 			{	// first token is end of line or right parenthesis
 				processAnError(this,
-					m_tokenizedLine.get(currentTokenNumber).m_tokenEndIndex,
-					"a missing expression");	// error
-				return valuesToReturn;	// so return immediately
+					m_tokenizedLine.m_tokenEndIndex[currentTokenNumber],
+					MISSING_EXPRESSION);	// error
+				return 0;	// so return immediately
 			}	// first token is end of line or right parenthesis
 			switch (currentTokenType)	// if not end of line or right paren
     		{	// not end of line or right paren
         		case INT:	// integer
         			currentResult =
-    					m_tokenizedLine.get(currentTokenNumber).m_integerValue;
+    					m_tokenizedLine.m_integerValue[currentTokenNumber];
     					// get int's value
         			break;
         		case L_P:	// first operand is parenthesized expression
-    				valuesReturned = parseAndEvaluate(currentTokenNumber + 1);
+    				currentResult = parseAndEvaluate(currentTokenNumber + 1);
     					// recursively call to evaluate parenthesized expression
     				if (m_lineHasError)	// there was an error
-    					return valuesToReturn;	// so return immediately
-    				currentResult = valuesReturned[0];	// value
-    				currentTokenNumber = valuesReturned[1];	// token number
+    					return 0;	// so return immediately
+    				currentTokenNumber = m_endTokenNumber;	// token number
         			break;
         		default:	// an operator
         			if (currentTokenNumber == 0)
         			{	// line's first token is an operator 
         				currentResult = m_result;
     						// first operand is previous line's result
+    					m_usedPreviousResult = true;	// note that for caller
     					currentTokenNumber--;	// Do a brief backup.  The
     						// forthcoming iteration on pairs of operator token
     						// and operand token will ++ to initial operator.
         			}	// line's first token is an operator
         			else
         			{	// parenthesized expression's first token is an operator
-        				processAnError(this, m_tokenizedLine.
-        					get(currentTokenNumber).m_tokenEndIndex,
-        					"an invalid expression");	// error
-        				return valuesToReturn;	// so return immediately
+        				processAnError(this,
+        					m_tokenizedLine.m_tokenEndIndex[currentTokenNumber],
+        					INVALID_EXPRESSION);	// error
+        				return 0;	// so return immediately
         			}	// parenthesized expression's first token is an operator
         	}	// not end of line or right paren	
    		
@@ -487,7 +989,7 @@ class Roman {
     			// 2A) try to find an operator token:
     			currentTokenNumber++;	// advance to next token
     			currentOperator =
-    				m_tokenizedLine.get(currentTokenNumber).m_tokenType;
+    				m_tokenizedLine.m_tokenType[currentTokenNumber];
     				// type of token (we want an operator or expression ender)
     			if (currentOperator == expressionEnder)
     				// we found end of expression, instead of operator
@@ -499,123 +1001,677 @@ class Roman {
     				// if not an expression ender or an operator,
     				// error (invalid ender, integer or left parenthesis).
     			{	// it's an error
-    				processAnError(this, m_tokenizedLine.
-        				get(currentTokenNumber).m_tokenEndIndex,
+    				processAnError(this,
+    					m_tokenizedLine.m_tokenEndIndex[currentTokenNumber],
         				((currentOperator < ENDER_BOUND) ?
-        					"an incomplete expression" : "a missing operator"));
+        					INCOMPLETE_EXPRESSION : MISSING_OPERATOR));
         				// error.  invalid ender means incomoplete expression;
         				// integer or left parenthesis means missing operator.
-    				return valuesToReturn;	// so return immediately
+    				return 0;	// so return immediately
     			}	// it's an error				
     				
     			// 2B) try to find an operand token:
     			currentTokenNumber++;	// advance to next token
     			currentTokenType =
-    				m_tokenizedLine.get(currentTokenNumber).m_tokenType;
+    				m_tokenizedLine.m_tokenType[currentTokenNumber];
     				// token type
     			if (currentTokenType < ENDER_BOUND ||
     				currentTokenType > OPERATOR_BOUND)
     				// if expression ender or operator, error (missing operand).
     			{	// it's an error
-    				processAnError(this, m_tokenizedLine.
-        				get(currentTokenNumber).m_tokenEndIndex,
-        				"a missing operand");	// error
-    				return valuesToReturn;	// so return immediately
+    				processAnError(this,
+    					m_tokenizedLine.m_tokenEndIndex[currentTokenNumber],
+        				MISSING_OPERAND);	// error
+    				return 0;	// so return immediately
     			}	// it's an error
 				// fall through if not an error:
     			if (currentTokenType == INT)
     				secondOperandValue =
-    					m_tokenizedLine.get(currentTokenNumber).m_integerValue;
+    					m_tokenizedLine.m_integerValue[currentTokenNumber];
     					// if operand is int, pick up its int value
     			else
     			{	// operand is parenthesized expression
-    				valuesReturned = parseAndEvaluate(currentTokenNumber + 1);
+    				secondOperandValue =
+    					parseAndEvaluate(currentTokenNumber + 1);
     					// recursively call to evaluate parenthesized expression
     				if (m_lineHasError)	// there was an error
-    					return valuesToReturn;	// so return immediately
-    				secondOperandValue = valuesReturned[0];	// value
-    				currentTokenNumber = valuesReturned[1];	// token number
+    					return 0;	// so return immediately
+    				currentTokenNumber = m_endTokenNumber;	// token number
     			}	// operand is parenthesized expression
-    			switch (currentOperator)
-    			{	// evaluation depends on operator
- 	       			case ADD:
- 	       				currentResult += secondOperandValue;	// add
- 	       				break;
- 	       			case SUB:
- 	       				currentResult -= secondOperandValue;	// subtract
- 	       				break;
- 	       			case MUL:
- 	       				currentResult *= secondOperandValue;	// multiply
- 	       				break;
- 	       			case DIV:
- 	       				if (secondOperandValue == 0)	// divide by zero
- 	       				{	// error (divide by zero)
- 	       					processAnError(this, m_tokenizedLine.
- 	       						get(currentTokenNumber).m_tokenEndIndex,
- 	       						"a division by zero");	// error
- 	       					return valuesToReturn;	// so return immediately
-    					}	// error (divide by zero)
- 	       				// if not zero, fall through:
- 	       				currentResult /= secondOperandValue;	// divide
- 	       				break;
- 	       			default:	// we know that it's EXP (exponentiation).
- 	       				// note that the casting to int in the following
- 	       				// statement prevents a result larger than an int.
- 	       				currentResult =
-        					(int)Math.pow(currentResult, secondOperandValue);
-        					// exponentiate
-        				break;
-        		}	// evaluation depends on operator
-        		if (currentResult < MININT || currentResult > MAXINT)
-        			{	// error (out of range)
- 	       				processAnError(this, m_tokenizedLine.
- 	       					get(currentTokenNumber).m_tokenEndIndex,
- 	       					"a result out of range");	// error
- 	       				return valuesToReturn;	// so return immediately
-    				}	// error (out of range)
+    			currentResult = applyOperator(currentOperator, currentResult,
+    				secondOperandValue,
+    				m_tokenizedLine.m_tokenEndIndex[currentTokenNumber]);
+    				// evaluate
+    			if (m_lineHasError)	// there was an error
+    				return 0;	// so return immediately
     		}	// iterate on possible pairs of operator token and operand token
 
 			// 3) Return the result:
-			valuesToReturn[0] = currentResult;
-			valuesToReturn[1] = currentTokenNumber;
-    		return valuesToReturn;	// return the result
+			m_endTokenNumber = currentTokenNumber;
+    		return currentResult;	// return the result
     	}	// parseAndEvaluate method
     	
+    	/** Apply an operator to two operands, detecting division by zero and a
+    	 * result out of range.
+    	 * This method might set m_lineHasError by calling processAnError;
+    	 * therefore, caller should test m_lineHasError.
+    	 * @param p_operator token code for the operator, e.g., ADD
+    	 * @param p_firstOperand value of the first operand
+    	 * @param p_secondOperand value of the second operand
+    	 * @param p_errorPosition index (in line) of second operand's last char
+    	 *	(of an integer or right paren), where an error is reported
+    	 * @return long result of the operation (0 if error)
+    	 */
+    	long applyOperator(
+    		int p_operator,
+    		long p_firstOperand,
+    		long p_secondOperand,
+    		int p_errorPosition) {
+    		long currentResult = p_firstOperand;	// current result of evaluation
+    		if (m_fractions)	// the operands are fractions
+    			return applyFractionOperator(p_operator, p_firstOperand,
+    				p_secondOperand, p_errorPosition);
+    		try {
+    		switch (p_operator)
+    		{	// evaluation depends on operator
+    			case ADD:
+    				currentResult = Math.addExact(currentResult,
+    					p_secondOperand);	// add
+    				break;
+    			case SUB:
+    				currentResult = Math.subtractExact(currentResult,
+    					p_secondOperand);	// subtract
+    				break;
+    			case MUL:
+    				currentResult = Math.multiplyExact(currentResult,
+    					p_secondOperand);	// multiply
+    				break;
+    			case DIV:
+    				if (p_secondOperand == 0)	// divide by zero
+    				{	// error (divide by zero)
+    					processAnError(this, p_errorPosition,
+    						DIVISION_BY_ZERO);	// error
+    					return 0;	// so return immediately
+    				}	// error (divide by zero)
+    				// if not zero, fall through:
+    				currentResult /= p_secondOperand;	// divide
+    				break;
+    			default:	// we know that it's EXP (exponentiation).
+    				currentResult = power(currentResult, p_secondOperand,
+    					m_maxResult);	// exponentiate
+    				break;
+    		}	// evaluation depends on operator
+    		}	// try
+    		catch (ArithmeticException e)
+    		{	// beyond a long, which only the extended range can reach
+    			currentResult = OUT_OF_RANGE;
+    		}	// beyond a long
+    		if (currentResult < -m_maxResult || currentResult > m_maxResult)
+    		{	// error (out of range)
+    			processAnError(this, p_errorPosition,
+    				RESULT_OUT_OF_RANGE);	// error
+    			return 0;	// so return immediately
+    		}	// error (out of range)
+    		return currentResult;
+    	}	// applyOperator method
+    	
+    	/** Apply an operator to two fractions, exactly, detecting division by
+    	 * zero, an exponent that isn't an integer, and a result out of range,
+    	 * which includes a result whose numerator or denominator doesn't fit
+    	 * in a RomanFraction.
+    	 * This method might set m_lineHasError by calling processAnError;
+    	 * therefore, caller should test m_lineHasError.
+    	 * @param p_operator token code for the operator, e.g., ADD
+    	 * @param p_firstOperand the first operand, a packed RomanFraction
+    	 * @param p_secondOperand the second operand, a packed RomanFraction
+    	 * @param p_errorPosition index (in line) of second operand's last char
+    	 *	(of an integer or right paren), where an error is reported
+    	 * @return long result of the operation, packed (0/1 if error)
+    	 */
+    	long applyFractionOperator(
+    		int p_operator,
+    		long p_firstOperand,
+    		long p_secondOperand,
+    		int p_errorPosition) {
+    		long currentResult;	// current result of evaluation
+    		switch (p_operator)
+    		{	// evaluation depends on operator
+    			case ADD:
+    				currentResult = RomanFraction.add(p_firstOperand,
+    					p_secondOperand);	// add
+    				break;
+    			case SUB:
+    				currentResult = RomanFraction.subtract(p_firstOperand,
+    					p_secondOperand);	// subtract
+    				break;
+    			case MUL:
+    				currentResult = RomanFraction.multiply(p_firstOperand,
+    					p_secondOperand);	// multiply
+    				break;
+    			case DIV:
+    				if (p_secondOperand == RomanFraction.ZERO)	// divide by zero
+    				{	// error (divide by zero)
+    					processAnError(this, p_errorPosition,
+    						DIVISION_BY_ZERO);	// error
+    					return RomanFraction.ZERO;	// so return immediately
+    				}	// error (divide by zero)
+    				// if not zero, fall through:
+    				currentResult = RomanFraction.divide(p_firstOperand,
+    					p_secondOperand);	// divide exactly
+    				break;
+    			default:	// we know that it's EXP (exponentiation).
+    				if (RomanFraction.denominatorOf(p_secondOperand) != 1)
+    				{	// error (the exponent isn't an integer)
+    					processAnError(this, p_errorPosition,
+    						FRACTIONAL_EXPONENT);	// error
+    					return RomanFraction.ZERO;	// so return immediately
+    				}	// error (the exponent isn't an integer)
+    				currentResult = RomanFraction.power(p_firstOperand,
+    					RomanFraction.numeratorOf(p_secondOperand));
+    					// exponentiate
+    				break;
+    		}	// evaluation depends on operator
+    		if (currentResult == OUT_OF_RANGE ||
+    			RomanFraction.exceeds(currentResult, m_maxResult))
+    		{	// error (out of range)
+    			processAnError(this, p_errorPosition,
+    				RESULT_OUT_OF_RANGE);	// error
+    			return RomanFraction.ZERO;	// so return immediately
+    		}	// error (out of range)
+    		return currentResult;
+    	}	// applyFractionOperator method
+    	
+    	/** Parse and evaluate the expression in a tokenized line, exactly as
+    	 * parseAndEvaluate(0) does (same results, same errors at the same
+    	 * positions), but without recursion, so that any depth of nesting of
+    	 * parentheses uses the same (small) amount of thread stack.
+    	 * The tokens are given in turn to evaluateToken; the stack that it
+    	 * uses is first made big enough for the line, so nothing is
+    	 * allocated per parenthesis.
+    	 * This method might set m_lineHasError by calling processAnError;
+    	 * therefore, caller should test m_lineHasError.
+    	 * This method sets m_endTokenNumber to the token number of the end
+    	 * of line.
+    	 * @return long result of evaluating the expression (0 if error)
+    	 */
+    	public long evaluateIteratively() {
+    		int currentTokenNumber;	// the current token number
+    		
+    		if (m_evaluationStack.length < 2 * m_tokenizedLine.m_tokenCount)
+    			// a line can't have more left parens than tokens
+    			m_evaluationStack = new long[2 * m_tokenizedLine.m_tokenCount];
+    		startEvaluation();
+    		for (currentTokenNumber = 0; ! evaluateToken(
+    			m_tokenizedLine.m_tokenType[currentTokenNumber],
+    			m_tokenizedLine.m_tokenEndIndex[currentTokenNumber],
+    			m_tokenizedLine.m_integerValue[currentTokenNumber]);
+    			currentTokenNumber++)
+    			;	// evaluate each token, until end of line or error
+    		if (m_lineHasError)	// there was an error
+    			return 0;
+    		m_endTokenNumber = currentTokenNumber;
+    		return m_evaluationResult;	// return the result
+    	}	// evaluateIteratively method
+    	
+    	/** Start evaluating an expression whose tokens are then given, in
+    	 * order, to evaluateToken.
+    	 */
+    	public void startEvaluation() {
+    		m_evaluationState = EXPECTING_EXPRESSION;
+    		m_evaluationDepth = 0;
+    	}	// startEvaluation method
+    	
+    	/** Evaluate the next token of an expression, the same way that
+    	 * parseAndEvaluate(0) treats that token, so that tokens can be
+    	 * evaluated as soon as they are found, e.g., while a line is still
+    	 * being read.  Instead of recursion, when a left parenthesis starts
+    	 * an operand, the result so far and the pending operator are pushed
+    	 * onto m_evaluationStack, and the matching right parenthesis pops
+    	 * them and applies the operator to the parenthesized expression's
+    	 * result; so the only state, besides a few ints, is 2 ints for each
+    	 * enclosing left parenthesis.
+    	 * This method might set m_lineHasError by calling processAnError;
+    	 * therefore, caller should test m_lineHasError.
+    	 * @param p_tokenType the token's type, e.g., INT
+    	 * @param p_tokenEndIndex index (in line) of the token's last char
+    	 * @param p_integerValue the token's value, if it's an integer
+    	 * @return boolean whether evaluation is finished, because the token is
+    	 *	the end of line (then m_evaluationResult is the result) or because
+    	 *	an error was found
+    	 */
+    	public boolean evaluateToken(
+    		int p_tokenType,
+    		int p_tokenEndIndex,
+    		long p_integerValue) {
+    		long secondOperandValue;	// value of second operand of an operator
+    		int currentOperator;	// token code for pending operator
+    		
+    		if (m_evaluationState == EXPECTING_EXPRESSION)
+    		{	// do initial processing, which depends on first token's type
+    			if (p_tokenType < ENDER_BOUND)
+    			{	// first token is end of line or right parenthesis
+    				processAnError(this, p_tokenEndIndex, MISSING_EXPRESSION);
+    				return true;	// error
+    			}	// first token is end of line or right parenthesis
+    			if (p_tokenType == INT)	// integer
+    			{	// first operand is integer
+    				m_evaluationResult = p_integerValue;	// get int's value
+    				m_evaluationState = EXPECTING_OPERATOR;
+    				return false;
+    			}	// first operand is integer
+    			if (p_tokenType == L_P)	// parenthesized expression
+    			{	// first operand is parenthesized expression
+    				push(0, END);	// no result so far, and no pending operator
+    				return false;	// next, start nested expression
+    			}	// first operand is parenthesized expression
+    			if (m_evaluationDepth > 0)
+    			{	// parenthesized expression's first token is an operator
+    				processAnError(this, p_tokenEndIndex, INVALID_EXPRESSION);
+    				return true;	// error
+    			}	// parenthesized expression's first token is an operator
+    			// line's first token is an operator:
+    			m_evaluationResult = m_result;
+    				// first operand is previous line's result
+    			m_usedPreviousResult = true;	// note that for caller
+    			m_evaluationState = EXPECTING_OPERATOR;
+    				// and evaluate the token as that operator, below
+    		}	// do initial processing, which depends on first token's type
+    		
+    		if (m_evaluationState == EXPECTING_OPERATOR)
+    		{	// try to find an operator token
+    			if (p_tokenType == ((m_evaluationDepth == 0) ? END : R_P))
+    			{	// we found end of expression, instead of operator
+    				if (m_evaluationDepth == 0)	// end of line
+    					return true;	// we're done with expression
+    				m_evaluationDepth--;	// right paren ends nested expression
+    				secondOperandValue = m_evaluationResult;	// its result
+    				currentOperator =
+    					(int)m_evaluationStack[2 * m_evaluationDepth + 1];
+    				m_evaluationResult = m_evaluationStack[2 * m_evaluationDepth];
+    				if (currentOperator == END)	// it was the first operand
+    					m_evaluationResult = secondOperandValue;
+    				else	// second operand of the pending operator
+    					m_evaluationResult = applyOperator(currentOperator,
+    						m_evaluationResult, secondOperandValue,
+    						p_tokenEndIndex);	// evaluate
+    				return m_lineHasError;	// next, try to find an operator
+    			}	// we found end of expression, instead of operator
+    			if (p_tokenType < OPERATOR_BOUND)
+    			{	// it's an error, as in parseAndEvaluate
+    				processAnError(this, p_tokenEndIndex,
+    					((p_tokenType < ENDER_BOUND) ?
+    						INCOMPLETE_EXPRESSION : MISSING_OPERATOR));
+    				return true;	// error
+    			}	// it's an error
+    			m_pendingOperator = p_tokenType;
+    			m_evaluationState = EXPECTING_OPERAND;
+    			return false;	// next, try to find an operand token
+    		}	// try to find an operator token
+    		
+    		// try to find an operand token:
+    		if (p_tokenType < ENDER_BOUND || p_tokenType > OPERATOR_BOUND)
+    			// if expression ender or operator, error (missing operand).
+    		{	// it's an error
+    			processAnError(this, p_tokenEndIndex, MISSING_OPERAND);
+    			return true;	// error
+    		}	// it's an error
+    		if (p_tokenType == L_P)
+    		{	// operand is parenthesized expression; evaluate it first
+    			push(m_evaluationResult, m_pendingOperator);
+    			m_evaluationState = EXPECTING_EXPRESSION;
+    			return false;	// next, start nested expression
+    		}	// operand is parenthesized expression; evaluate it first
+    		m_evaluationResult = applyOperator(m_pendingOperator,
+    			m_evaluationResult, p_integerValue, p_tokenEndIndex);
+    			// operand is int; evaluate
+    		m_evaluationState = EXPECTING_OPERATOR;
+    		return m_lineHasError;	// next, try to find an operator token
+    	}	// evaluateToken method
+    	
+    	/** Start a nested (parenthesized) expression, saving the enclosing
+    	 * expression's result so far and its pending operator, and growing
+    	 * the stack if it's full.
+    	 * @param p_resultSoFar the enclosing expression's result so far
+    	 * @param p_pendingOperator the operator that is to be applied to the
+    	 *	nested expression's result, or END if it's the first operand
+    	 */
+    	void push(long p_resultSoFar, int p_pendingOperator) {
+    		if (2 * m_evaluationDepth + 1 >= m_evaluationStack.length)	// full
+    			m_evaluationStack = Arrays.copyOf(m_evaluationStack,
+    				2 * m_evaluationStack.length);
+    		m_evaluationStack[2 * m_evaluationDepth] = p_resultSoFar;
+    		m_evaluationStack[2 * m_evaluationDepth + 1] = p_pendingOperator;
+    		m_evaluationDepth++;
+    		m_evaluationState = EXPECTING_EXPRESSION;
+    	}	// push method
+    	
      }	// InfoForLine class
     
-    /** A token within the line that the user entered.
-     * A LinkedList of tokens is output of tokenization and input to parsing.
+    /** Formats result records ("[] Result: Roman ... (Arabic ...).") as ASCII
+     * bytes in a reusable buffer, using the precomputed tables of Roman and
+     * Arabic representations, so that formatting creates no temporary Strings.
+     * Messages (e.g., for errors) are appended to the same buffer, so that
+     * the output for many lines can be written at once.
+     * This is how the calculator's own clients of RomanEngine display an
+     * outcome; it is not thread-safe, so each client thread needs its own.
+     */    
+    static class ResultFormatter {
+    	// fixed text of a result record, as ASCII bytes:
+    	static final byte[] RESULT_TEXT = ascii("[] Result");
+    	static final byte[] USES_PREVIOUS_TEXT =
+    		ascii(" (which uses previous line's result)");
+    	static final byte[] ROMAN_TEXT = ascii(": Roman ");
+    	static final byte[] ARABIC_TEXT = ascii(" (Arabic ");
+    	static final byte[] END_TEXT = ascii(").");
+    	static final byte[] LINE_SEPARATOR = ascii(System.lineSeparator());
+    	// complete records for lines that are not evaluated, as ASCII bytes:
+    	static final byte[] PLEASE_TYPE_RECORD =
+    		ascii(PLEASE_TYPE_MESSAGE + System.lineSeparator());
+    	static final byte[] ZERO_DIGIT_RECORD =
+    		ascii(ZERO_DIGIT_MESSAGE + System.lineSeparator());
+    	static final byte[] BYE_RECORD =
+    		ascii(BYE_MESSAGE + System.lineSeparator());
+    	// text of a fraction, as ASCII bytes:
+    	static final byte[] MINUS_TEXT = ascii("-");
+    	static final byte[] SPACE_TEXT = ascii(" ");	// after the integer part
+    	static final byte[] SLASH_TEXT = ascii("/");	// between the numerator
+    		// and the denominator
+    	static final byte[][] UNCIA_TEXT = {ascii(""), ascii("."), ascii(".."),
+    		ascii("..."), ascii("...."), ascii("....."), ascii("S"),
+    		ascii("S."), ascii("S.."), ascii("S..."), ascii("S...."),
+    		ascii("S.....")};
+    		// Roman notation for each number of twelfths (unciae): S (semis)
+    		// for 6, and a dot (written here as ".") for each other one
+    	
+    	byte[] m_bytes = new byte[256];	// the formatted records
+    	int m_length;	// number of bytes of formatted records in m_bytes
+    	
+    	/** Append a result record, including the line separator.
+    	 * @param p_theResult the result, in the valid range
+    	 * @param p_usesPreviousResult whether the result uses the previous
+    	 *	line's result (because the line starts with an operator)
+    	 */
+    	public void appendResult(int p_theResult, boolean p_usesPreviousResult) {
+    		append(RESULT_TEXT);
+    		if (p_usesPreviousResult)	// line starts with an operator
+    			append(USES_PREVIOUS_TEXT);
+    		append(ROMAN_TEXT);
+    		append(ROMAN_BYTES[p_theResult - MININT]);
+    		append(ARABIC_TEXT);
+    		append(ARABIC_BYTES[p_theResult - MININT]);
+    		append(END_TEXT);
+    		append(LINE_SEPARATOR);
+    	}	// appendResult method
+
+    	/** Append a result record for a result that might be in the extended
+    	 * range, including the line separator.
+    	 * @param p_theResult the result, from -EXTENDED_MAX to EXTENDED_MAX
+    	 * @param p_usesPreviousResult whether the result uses the previous
+    	 *	line's result (because the line starts with an operator)
+    	 */
+    	public void appendResult(long p_theResult, boolean p_usesPreviousResult) {
+    		if (p_theResult >= MININT && p_theResult <= MAXINT)	// valid range
+    		{	// from the tables
+    			appendResult((int)p_theResult, p_usesPreviousResult);
+    			return;
+    		}	// from the tables
+    		append(RESULT_TEXT);
+    		if (p_usesPreviousResult)	// line starts with an operator
+    			append(USES_PREVIOUS_TEXT);
+    		append(ROMAN_TEXT);
+    		append(ascii(toRoman(p_theResult)));
+    		append(ARABIC_TEXT);
+    		append(ascii(Long.toString(p_theResult)));
+    		append(END_TEXT);
+    		append(LINE_SEPARATOR);
+    	}	// appendResult method for the extended range
+    	
+    	/** Append a result record for a result in fraction mode, including
+    	 * the line separator.  A result that is an integer is displayed as in
+    	 * integer mode; one that is an exact number of twelfths is displayed
+    	 * with UNCIA_TEXT after its integer part, e.g., IIS.. (Arabic 2 2/3);
+    	 * and any other one is displayed in mixed form, e.g., II III/VII
+    	 * (Arabic 2 3/7).
+    	 * @param p_theResult the result, a packed RomanFraction
+    	 * @param p_usesPreviousResult whether the result uses the previous
+    	 *	line's result (because the line starts with an operator)
+    	 */
+    	public void appendFraction(
+    		long p_theResult,
+    		boolean p_usesPreviousResult) {
+    		long numerator = RomanFraction.numeratorOf(p_theResult);
+    		long denominator = RomanFraction.denominatorOf(p_theResult);
+    		long whole = Math.abs(numerator) / denominator;
+    			// magnitude of the integer part
+    		long part = Math.abs(numerator) % denominator;
+    			// numerator of the rest, which is less than 1
+    		
+    		if (denominator == 1)	// an integer
+    		{	// as in integer mode
+    			appendResult(numerator, p_usesPreviousResult);
+    			return;
+    		}	// as in integer mode
+    		append(RESULT_TEXT);
+    		if (p_usesPreviousResult)	// line starts with an operator
+    			append(USES_PREVIOUS_TEXT);
+    		append(ROMAN_TEXT);
+    		if (numerator < 0)
+    			append(MINUS_TEXT);
+    		if (whole != 0)
+    			appendRoman(whole);
+    		if (12 % denominator == 0)	// twelfths
+    			append(UNCIA_TEXT[(int)(12 * part / denominator)]);
+    		else
+    		{	// mixed form
+    			if (whole != 0)
+    				append(SPACE_TEXT);
+    			appendRoman(part);
+    			append(SLASH_TEXT);
+    			appendRoman(denominator);
+    		}	// mixed form
+    		append(ARABIC_TEXT);
+    		if (numerator < 0)
+    			append(MINUS_TEXT);
+    		if (whole != 0)
+    		{	// the integer part
+    			appendArabic(whole);
+    			append(SPACE_TEXT);
+    		}	// the integer part
+    		appendArabic(part);
+    		append(SLASH_TEXT);
+    		appendArabic(denominator);
+    		append(END_TEXT);
+    		append(LINE_SEPARATOR);
+    	}	// appendFraction method
+    	
+    	/** Append the Roman numeral for a positive integer.
+    	 * @param p_theInteger the integer, up to EXTENDED_MAX
+    	 */
+    	void appendRoman(long p_theInteger) {
+    		append((p_theInteger <= MAXINT)
+    			? ROMAN_BYTES[(int)p_theInteger - MININT]
+    			: ascii(toRoman(p_theInteger)));
+    	}	// appendRoman method
+    	
+    	/** Append the Arabic number for a positive integer.
+    	 * @param p_theInteger the integer, up to EXTENDED_MAX
+    	 */
+    	void appendArabic(long p_theInteger) {
+    		append((p_theInteger <= MAXINT)
+    			? ARABIC_BYTES[(int)p_theInteger - MININT]
+    			: ascii(Long.toString(p_theInteger)));
+    	}	// appendArabic method
+    	
+    	/** Append the result or message that an outcome of RomanEngine calls
+    	 * for, including the line separator.
+    	 * @param p_outcome the outcome, e.g., RomanEngine.RESULT
+    	 * @param p_theSession the session that produced the outcome
+    	 */
+    	public void appendOutcome(int p_outcome, RomanEngine.Session p_theSession) {
+    		switch (p_outcome)
+    		{	// what the line was
+    		case RomanEngine.RESULT:
+				// The displayed result mentions whether the result uses the
+				// previous line's result.  The purpose is to avoid surprising
+				// a user who begins the current line with a minus sign.
+    			if (p_theSession.m_lineInfo.m_fractions)	// fraction mode
+    				appendFraction(p_theSession.getLongResult(),
+    					p_theSession.usedPreviousResult());
+    			else appendResult(p_theSession.getLongResult(),
+    				p_theSession.usedPreviousResult());
+    			break;
+    		case RomanEngine.EMPTY_LINE:
+    			append(PLEASE_TYPE_RECORD);
+    			break;
+    		case RomanEngine.ZERO_DIGIT:
+    			append(ZERO_DIGIT_RECORD);
+    			break;
+    		case RomanEngine.QUIT:
+    			append(BYE_RECORD);	// say goodbye
+    			break;
+    		default:	// error
+    			appendError(p_theSession.getErrorKind(),
+    				p_theSession.getErrorText());
+    		}	// what the line was
+    	}	// appendOutcome method
+    	
+    	/** Append a message that describes an error and its context.
+    	 * @param p_errorKind the kind of error, e.g., INVALID_CHARACTER
+    	 * @param p_errorText the line, in upper case, through the error
+    	 */
+    	public void appendError(int p_errorKind, CharSequence p_errorText) {
+    		appendMessage("[] There's " + DESCRIPTION_OF_ERROR[p_errorKind]
+    			+ " detected at the end of this text:\n[] " + p_errorText);
+    			// describe the error and its context
+    	}	// appendError method
+    	
+    	/** Append a message, including the line separator.
+    	 * @param p_theMessage the message, which is encoded the same way as
+    	 *	System.out encodes it
+    	 */
+    	public void appendMessage(String p_theMessage) {
+    		appendText(p_theMessage);
+    		append(LINE_SEPARATOR);
+    	}	// appendMessage method
+    	
+    	/** Append text, which might include line separators.
+    	 * @param p_theText the text, which is encoded the same way as
+    	 *	System.out encodes it
+    	 */
+    	public void appendText(String p_theText) {
+    		append(p_theText.getBytes(Charset.defaultCharset()));
+    	}	// appendText method
+    	
+    	/** Append bytes, growing the buffer if necessary.
+    	 * @param p_theBytes the bytes
+    	 */
+    	void append(byte[] p_theBytes) {
+    		if (m_length + p_theBytes.length > m_bytes.length)	// it's full
+    			m_bytes = Arrays.copyOf(m_bytes,
+    				Math.max(2 * m_bytes.length, m_length + p_theBytes.length));
+    		System.arraycopy(p_theBytes, 0, m_bytes, m_length, p_theBytes.length);
+    		m_length += p_theBytes.length;
+    	}	// append method
+    	
+    	/** Write the formatted records to a channel and empty the buffer for
+    	 * reuse.
+    	 * @param p_theChannel the channel, e.g., an output file
+    	 * @throws IOException if the channel can't be written
+    	 */
+    	public void writeTo(WritableByteChannel p_theChannel)
+    		throws IOException {
+    		ByteBuffer theBytes = ByteBuffer.wrap(m_bytes, 0, m_length);
+    		while (theBytes.hasRemaining())	// channel might write only part
+    			p_theChannel.write(theBytes);
+    		m_length = 0;	// empty the buffer
+    	}	// writeTo method
+    	
+    	/** Empty the buffer without writing it.
+    	 */
+    	public void clear() {
+    		m_length = 0;
+    	}	// clear method
+    	
+    	/** Convert a String that contains only ASCII characters to bytes.
+    	 * @param p_theText the String
+    	 * @return byte[] the ASCII bytes
+    	 */
+    	static byte[] ascii(String p_theText) {
+    		return p_theText.getBytes(StandardCharsets.US_ASCII);
+    	}	// ascii method
+    }	// ResultFormatter class
+    
+    /** The tokens within the line that the user entered.
+     * A TokenBuffer is output of tokenization and input to parsing.
      * A token can be a Roman integer, +, -, *, /, **, (, or ).
+     * Tokens are kept in parallel arrays that are indexed by token number,
+     * rather than as one object per token, so that getting a token by number
+     * takes constant time, and so that one buffer can be reused for each line
+     * without allocating anything per token.
      */    
-    static class Token {
-    	int m_tokenType;	// type of token
-    	int m_tokenEndIndex;
-    		// index (in line) of token's last char, for possible error message
-    	int m_integerValue;	// value of token if an integer; else unused
+    static class TokenBuffer {
+    	int[] m_tokenType;	// type of each token
+    	int[] m_tokenEndIndex;
+    		// index (in line) of each token's last char, for possible error msg
+    	long[] m_integerValue;	// value of each token if an integer; else unused
+    	int m_tokenCount;	// number of tokens currently in the buffer
 
     	// Constructors:
     	
-    	/** Create a token that includes integer value.
+    	/** Create an empty token buffer with a default capacity.
+    	 */
+    	public TokenBuffer()
+    	{	// constructor with default capacity
+    		this(64);
+    	}	// constructor with default capacity
+    	
+    	/** Create an empty token buffer.
+    	 * @param initialCapacity - number of tokens before the buffer grows.
+    	 */
+    	public TokenBuffer(int initialCapacity)
+    	{	// constructor with given capacity
+    		m_tokenType = new int[initialCapacity];
+    		m_tokenEndIndex = new int[initialCapacity];
+    		m_integerValue = new long[initialCapacity];
+    	}	// constructor with given capacity
+    	
+    	/** Remove all tokens, keeping the arrays for reuse.
+    	 */
+    	public void clear() {
+    		m_tokenCount = 0;
+    	}	// clear method
+    	
+    	/** Append a token that includes integer value.
     	 * @param tokenType - token type.
     	 * @param tokenEndIndex - index of end of token.
     	 * @param integerValue - integer value of token.
     	 */
-    	public Token(int tokenType, int tokenEndIndex, int integerValue)
-    	{	// constructor that includes integer value
-    		m_tokenType = tokenType;
-    		m_tokenEndIndex = tokenEndIndex;
-    		m_integerValue = integerValue;
-    	}	// constructor that includes integer value
+    	public void add(int tokenType, int tokenEndIndex, long integerValue) {
+    		if (m_tokenCount == m_tokenType.length)	// buffer is full
+    			grow();	// make room; this happens only for long lines
+    		m_tokenType[m_tokenCount] = tokenType;
+    		m_tokenEndIndex[m_tokenCount] = tokenEndIndex;
+    		m_integerValue[m_tokenCount] = integerValue;
+    		m_tokenCount++;
+    	}	// add method that includes integer value
     	
-    	/** Create a token that omits integer value.
+    	/** Append a token that omits integer value.
     	 * @param tokenType - token type.
     	 * @param tokenEndIndex - index of end of token.
     	 */
-    	public Token(int tokenType, int tokenEndIndex)
-    	{	// constructor that omits integer value
-    		m_tokenType = tokenType;
-    		m_tokenEndIndex = tokenEndIndex;
-    	}	// constructor that omits integer value
-    }	// Token class
+    	public void add(int tokenType, int tokenEndIndex) {
+    		add(tokenType, tokenEndIndex, 0);
+    	}	// add method that omits integer value
+    	
+    	/** Double the capacity of the arrays, keeping the existing tokens.
+    	 */
+    	private void grow() {
+    		int newCapacity = 2 * m_tokenType.length;
+    		m_tokenType = Arrays.copyOf(m_tokenType, newCapacity);
+    		m_tokenEndIndex =
+    			Arrays.copyOf(m_tokenEndIndex, newCapacity);
+    		m_integerValue = Arrays.copyOf(m_integerValue, newCapacity);
+    	}	// grow method
+    }	// TokenBuffer class
     
 }	// Roman class
\ No newline at end of file
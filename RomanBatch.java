@@ -0,0 +1,358 @@
+/*
+ * File:	RomanBatch.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanBatch
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+// imports:
+import java.io.FileOutputStream;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/** Runs the Roman numeral desk calculator non-interactively over a file of
+ * expressions, e.g.:
+ *	java Roman --batch in.txt --out out.txt
+ * If --out is omitted, the output goes to standard output.
+ * If --parallel is specified, the lines are evaluated by RomanParallel on
+ * all processors, or on the number of threads that follows --parallel.
+ * If --cache is specified, lines that repeat are found in a RomanCache of
+ * that many lines, rather than evaluated again, and the cache's statistics
+ * are displayed (on standard error) at the end.
+ * If --metrics is specified, the lines are measured by a RomanMetrics,
+ * whose snapshot is displayed (on standard error) at the end.
+ * If --history is specified, each line's outcome is appended to the
+ * RomanHistory in the file that follows --history, and a line can use the
+ * result of any line in it, e.g., #12; it can't be used with --parallel.
+ * If --extended is specified, the lines are evaluated in the extended range
+ * (see RomanEngine.Session.setExtendedRange), e.g., MMM * MMM is __I_XM.
+ *
+ * Class:	RomanBatch
+ *
+ * Each line of the input file is processed the same way as a line that the
+ * user enters in the interactive calculator, including use of the previous
+ * line's result by a line that starts with an operator, ignoring an ending
+ * "=", and stopping at a line that contains QUIT or EXIT; the output file
+ * gets the same results and messages, but not the introductory text.
+ * The end of the input file also ends the run.
+ *
+ * The input file is memory-mapped, and lines are found and given to
+ * RomanEngine directly from the mapped bytes, without creating a String for
+ * each line.  A line that contains a non-ASCII byte is decoded and converted
+ * to upper case the same way as in the interactive calculator, since only
+ * ASCII characters can be in a valid expression.  A line ends with \n, \r,
+ * or \r\n.  Output is collected in a ResultFormatter and written to the
+ * output channel in large pieces.
+ */
+class RomanBatch {
+    static final long MAP_WINDOW = 1L << 30;
+    	// largest number of bytes of the input file that are mapped at once
+    static final int FLUSH_THRESHOLD = 1 << 16;
+    	// number of bytes of output that are collected before writing them
+    static final String USAGE = "[] Usage: java Roman --batch <input file>"
+    	+ " [--out <output file>] [--parallel [<threads>]]"
+    	+ " [--cache <lines>] [--metrics] [--history <history file>]"
+    	+ " [--extended]";
+
+    /** Main method for batch mode.
+     * @param args arguments: "--batch", the input file, and optionally
+     *	"--out" and the output file, "--parallel" and number of threads,
+     *	"--cache" and number of lines to cache, "--metrics", "--history"
+     *	and the history file, and "--extended"
+     */
+    public static void main(String[] args) {
+    	String outputFile = null;	// output file; null for standard output
+    	int threads = 0;	// number of threads for --parallel; 0 if none
+    	RomanCache cache = null;	// cache for --cache; null if none
+    	RomanMetrics metrics = null;	// metrics for --metrics; null if none
+    	String historyFile = null;	// file for --history; null if none
+    	RomanHistory history = null;	// the history, once it's open
+    	boolean extended = false;	// whether --extended is specified
+    	int a;	// iteration for each argument after the input file
+
+    	for (a = 2; a < args.length; a++)
+    	{	// for each argument after the input file
+    		if (args[a].equals("--out") && a + 1 < args.length)
+    			outputFile = args[++a];
+    		else if (args[a].equals("--parallel"))
+    			threads = (a + 1 < args.length &&
+    				args[a + 1].matches("[1-9]\\d*"))
+    				? Integer.parseInt(args[++a])	// number of threads
+    				: Runtime.getRuntime().availableProcessors();
+    		else if (args[a].equals("--cache") && a + 1 < args.length &&
+    			args[a + 1].matches("[1-9]\\d*"))
+    			cache = new RomanCache(Integer.parseInt(args[++a]), 0);
+    		else if (args[a].equals("--metrics"))
+    			metrics = new RomanMetrics();
+    		else if (args[a].equals("--history") && a + 1 < args.length)
+    			historyFile = args[++a];
+    		else if (args[a].equals("--extended"))
+    			extended = true;
+    		else break;	// invalid argument
+    	}	// for each argument after the input file
+    	if (args.length < 2 || a < args.length ||	// missing or invalid argument
+    		(historyFile != null && threads > 0))
+    		// a line's reference to an earlier line can't be evaluated until
+    		// that line is, so the lines can't be evaluated in parallel
+    	{	// invalid arguments
+    		System.err.println(USAGE);
+    		System.exit(2);
+    	}	// invalid arguments
+    	try (FileChannel input = FileChannel.open(Paths.get(args[1]),
+    			StandardOpenOption.READ);
+    		FileChannel output = (outputFile == null)
+    			? new FileOutputStream(FileDescriptor.out).getChannel()
+    			: FileChannel.open(Paths.get(outputFile),
+    				StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+    				StandardOpenOption.TRUNCATE_EXISTING))
+    	{	// process the file
+    		if (historyFile != null)	// --history
+    			history = new RomanHistory(historyFile);
+    		if (threads > 0)	// --parallel
+    			RomanParallel.run(input, output, threads, cache, metrics,
+    				extended);
+    		else run(input, output, cache, metrics, history, extended);
+    		if (history != null)	// --history
+    			history.close();	// force it to the disk
+    		if (cache != null)	// --cache
+    			System.err.println(cache);	// display its statistics
+    		if (metrics != null)	// --metrics
+    			System.err.print(metrics);	// display a snapshot
+    	}	// process the file
+    	catch (IOException e)
+    	{	// can't read or write a file
+    		System.err.println("[] Batch mode failed: " + e.getMessage());
+    		System.exit(1);
+    	}	// can't read or write a file
+    }	// main method
+
+    /** Process each line of an input file, writing the results and messages.
+     * @param p_input the input file
+     * @param p_output the channel for the results and messages
+     * @param p_cache cache of lines' outcomes, or null for none
+     * @param p_metrics where to measure the lines, or null for nowhere
+     * @param p_history history to resume, and to append each line's outcome
+     *	to, or null for none
+     * @param p_extended whether the lines are evaluated in the extended range
+     * @throws IOException if a file can't be read or written, or if a line is
+     *	longer than MAP_WINDOW
+     */
+    static void run(FileChannel p_input, FileChannel p_output,
+    	RomanCache p_cache, RomanMetrics p_metrics, RomanHistory p_history,
+    	boolean p_extended) throws IOException {
+    	RomanEngine.Session session =
+    		new RomanEngine.Session(p_cache, p_metrics);
+    		// the file's session; it carries the previous line's result
+    	Roman.ResultFormatter output = new Roman.ResultFormatter();
+    		// the lines' results and messages, until they are written
+    	MappedLine mappedLine = new MappedLine();
+    		// view of each line's bytes, which the engine reads
+    	long fileSize = p_input.size();	// number of bytes in input file
+    	long windowStart = 0;	// file position of the mapped bytes
+    	int windowLength;	// number of mapped bytes
+    	boolean lastWindow;	// whether the mapped bytes end the file
+    	MappedByteBuffer window;	// the mapped bytes
+    	int lineStart;	// index (in window) of a line's first byte
+    	int lineEnd;	// index (in window) of the byte after a line
+    	boolean lineSaysQuit = false;	// whether a line says QUIT or EXIT
+    	int outcome;	// outcome of evaluating a line
+
+    	session.setExtendedRange(p_extended);
+    	session.setHistory(p_history);	// which resumes in the range
+    	while (windowStart < fileSize && ! lineSaysQuit)
+    	{	// for each window of mapped bytes
+    		windowLength = (int)Math.min(MAP_WINDOW, fileSize - windowStart);
+    		lastWindow = (windowStart + windowLength == fileSize);
+    		window = p_input.map(FileChannel.MapMode.READ_ONLY,
+    			windowStart, windowLength);
+    		lineStart = 0;
+    		while (lineStart < windowLength)
+    		{	// for each line that starts in the window
+    			lineEnd = findLineEnd(window, lineStart, windowLength);
+    			if (! lastWindow && lineEnd >= windowLength - 1)
+    			{	// line or its ending might continue past the window
+    				if (lineStart == 0)	// line fills the whole window
+    					throw new IOException("a line is longer than " +
+    						MAP_WINDOW + " bytes");
+    				break;	// map a new window that starts with this line
+    			}	// line or its ending might continue past the window
+    			outcome = processLine(window, lineStart, lineEnd,
+    				session, mappedLine, output);
+    			if (p_history != null)	// --history
+    				p_history.append(windowStart + lineStart, outcome, session);
+    			lineSaysQuit = (outcome == RomanEngine.QUIT);
+    			if (lineSaysQuit || output.m_length >= FLUSH_THRESHOLD)
+    				write(output, p_output, p_metrics);
+    			if (lineSaysQuit)	// contains QUIT or EXIT
+    				break;	// quit
+    			lineStart = nextLineStart(window, lineEnd, windowLength);
+    		}	// for each line that starts in the window
+    		windowStart += lineStart;	// next window starts with next line
+    	}	// for each window of mapped bytes
+    	write(output, p_output, p_metrics);	// write what remains
+    }	// run method
+
+    /** Write formatted output to a channel, measuring the write.
+     * @param p_output the formatted output, which is then empty
+     * @param p_channel the channel for the output
+     * @param p_metrics where to measure the write, or null for nowhere
+     * @throws IOException if the channel can't be written
+     */
+    static void write(
+    	Roman.ResultFormatter p_output,
+    	WritableByteChannel p_channel,
+    	RomanMetrics p_metrics) throws IOException {
+    	long startTime = (p_metrics != null) ? System.nanoTime() : 0;
+    		// when the write started, if measured
+    	p_output.writeTo(p_channel);
+    	if (p_metrics != null)
+    		p_metrics.endPhase(RomanMetrics.WRITE, startTime);
+    }	// write method
+
+    /** Find the end of a line, i.e., its \n or \r, within mapped bytes.
+     * @param p_theBytes the mapped bytes
+     * @param p_lineStart index of the line's first byte
+     * @param p_limit index after the last byte that may be examined
+     * @return int index of the line's \n or \r, or p_limit if there is none
+     */
+    static int findLineEnd(ByteBuffer p_theBytes, int p_lineStart, int p_limit) {
+    	int lineEnd = p_lineStart;	// index of the line's \n or \r
+    	byte b;	// a byte of the line
+    	while (lineEnd < p_limit &&
+    		(b = p_theBytes.get(lineEnd)) != '\n' && b != '\r')
+    		lineEnd++;	// find the end of the line
+    	return lineEnd;
+    }	// findLineEnd method
+
+    /** Find the start of the line after a line, by skipping the line's ending,
+     * which, as for Scanner.nextLine, is \n, \r, or \r\n.
+     * @param p_theBytes the mapped bytes
+     * @param p_lineEnd index of the line's \n or \r
+     * @param p_limit index after the last byte that may be examined
+     * @return int index of the next line's first byte
+     */
+    static int nextLineStart(ByteBuffer p_theBytes, int p_lineEnd, int p_limit) {
+    	if (p_lineEnd < p_limit - 1 && p_theBytes.get(p_lineEnd) == '\r'
+    		&& p_theBytes.get(p_lineEnd + 1) == '\n')
+    		return p_lineEnd + 2;	// skip \r\n
+    	return p_lineEnd + 1;	// skip \n or \r
+    }	// nextLineStart method
+
+    /** Process a line of mapped bytes, the same way that Roman.main
+     * processes a line that the user enters, but appending its result or
+     * message to an output buffer instead of displaying it.
+     * @param p_theBytes the mapped bytes
+     * @param p_lineStart index of the line's first byte
+     * @param p_lineEnd index of the line's \n or \r, or after the line
+     * @param p_theSession the session, which holds the previous result
+     * @param p_mappedLine a view to use for the line's bytes
+     * @param p_output where to append the line's result or message
+     * @return int the outcome, e.g., RomanEngine.RESULT
+     */
+    static int processLine(
+    	ByteBuffer p_theBytes,
+    	int p_lineStart,
+    	int p_lineEnd,
+    	RomanEngine.Session p_theSession,
+    	MappedLine p_mappedLine,
+    	Roman.ResultFormatter p_output) {
+    	byte[] lineBytes;	// the line's bytes, if they must be decoded
+    	int outcome;	// outcome of evaluating the line
+    	long startTime;	// when formatting started, if measured
+    	int i;	// iteration for each byte in line
+
+    	for (i = p_lineStart; i < p_lineEnd && p_theBytes.get(i) >= 0; i++)
+    		;	// look for a non-ASCII byte
+    	if (i == p_lineEnd)	// all ASCII, which is the usual case
+    	{	// evaluate the bytes in place
+    		p_mappedLine.set(p_theBytes, p_lineStart, p_lineEnd - p_lineStart);
+    		outcome = RomanEngine.evaluate(p_mappedLine, p_theSession);
+    	}	// evaluate the bytes in place
+    	else
+    	{	// decode the line, as Scanner would, and convert to upper case
+    		lineBytes = new byte[p_lineEnd - p_lineStart];
+    		for (i = 0; i < lineBytes.length; i++)
+    			lineBytes[i] = p_theBytes.get(p_lineStart + i);
+    		outcome = RomanEngine.evaluate(
+    			new String(lineBytes, Charset.defaultCharset()).toUpperCase(),
+    			p_theSession);
+    	}	// decode the line, as Scanner would, and convert to upper case
+    	if (p_theSession.m_metrics == null)	// not measured
+    		p_output.appendOutcome(outcome, p_theSession);
+    	else
+    	{	// format, and measure the formatting
+    		startTime = System.nanoTime();
+    		p_output.appendOutcome(outcome, p_theSession);
+    		p_theSession.m_metrics.endPhase(RomanMetrics.FORMAT, startTime);
+    	}	// format, and measure the formatting
+    	return outcome;
+    }	// processLine method
+
+    /** A view of a line of ASCII bytes within mapped bytes, which the engine
+     * reads as chars.  One MappedLine is reused for each line.
+     */
+    static class MappedLine implements CharSequence {
+    	ByteBuffer m_bytes;	// the mapped bytes
+    	int m_start;	// index of the line's first byte
+    	int m_length;	// number of bytes in the line
+
+    	/** Make this a view of another line.
+    	 * @param p_theBytes the mapped bytes
+    	 * @param p_start index of the line's first byte
+    	 * @param p_length number of bytes in the line
+    	 */
+    	void set(ByteBuffer p_theBytes, int p_start, int p_length) {
+    		m_bytes = p_theBytes;
+    		m_start = p_start;
+    		m_length = p_length;
+    	}	// set method
+
+    	/** Get the number of chars.
+    	 * @return int the number of chars
+    	 */
+    	public int length() {
+    		return m_length;
+    	}	// length method
+
+    	/** Get a char.
+    	 * @param p_index index of the char
+    	 * @return char the char
+    	 */
+    	public char charAt(int p_index) {
+    		return (char)m_bytes.get(m_start + p_index);
+    	}	// charAt method
+
+    	/** Get a subsequence as a String.
+    	 * @param p_start index of first char
+    	 * @param p_end index after last char
+    	 * @return CharSequence the subsequence
+    	 */
+    	public CharSequence subSequence(int p_start, int p_end) {
+    		StringBuilder theText = new StringBuilder(p_end - p_start);
+    		for (int i = p_start; i < p_end; i++)
+    			theText.append(charAt(i));
+    		return theText.toString();
+    	}	// subSequence method
+
+    	/** Get the line as a String.
+    	 * @return String the line
+    	 */
+    	public String toString() {
+    		return subSequence(0, length()).toString();
+    	}	// toString method
+    }	// MappedLine class
+}	// RomanBatch class
@@ -0,0 +1,318 @@
+/*
+ * File:	RomanCache.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanCache
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+// imports:
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A bounded cache of the outcomes of evaluated lines, which sessions can
+ * share to avoid retokenizing and reevaluating lines that repeat, e.g.:
+ *	RomanCache cache = new RomanCache(10000, 0);
+ *	RomanEngine.Session session = new RomanEngine.Session(cache);
+ *
+ * Class:	RomanCache
+ *
+ * A line is cached by its normalized text: the line as RomanEngine reads
+ * it, i.e., in upper case, with leading and trailing blanks and any ending
+ * "=" removed.  Intermediate blanks are kept, since they separate numerals
+ * (e.g., "X X" is an error but "XX" is XX) and they affect error positions.
+ * A line that starts with an operator uses the previous line's result, so
+ * that result is also part of its key.  So is the session's mode, since the
+ * same line can have another outcome in the extended range (e.g., MMM * II
+ * has a result there, but is out of range otherwise) or in fraction mode
+ * (e.g., X / III is III in integer mode, but 3 1/3 in fraction mode).  Only
+ * lines that are tokenized and evaluated (i.e., that have a result or an
+ * error) are cached; the cache holds the result, or the kind and position
+ * of the error.
+ *
+ * The cache is bounded by a number of entries, or by an estimate of the
+ * bytes that its entries use, or both; each segment gets an equal share
+ * (of at least one entry).  It is divided into segments, each
+ * with its own lock, so that concurrent sessions seldom wait for each
+ * other; each segment evicts its least recently used entries.  Looking up
+ * a line allocates nothing: each session has a reusable Key that reads the
+ * line in place, and only a miss copies the line, to make its entry.
+ * The numbers of hits, misses, and evictions are counted.
+ */
+class RomanCache {
+    static final int SEGMENT_BITS = 4;	// log2 of number of segments
+    static final int SEGMENTS = 1 << SEGMENT_BITS;
+    	// number of independently locked segments
+    static final int ENTRY_OVERHEAD = 96;
+    	// estimated bytes for an entry, in addition to its text's chars
+    static final long NO_PREVIOUS_RESULT = Long.MIN_VALUE;
+    	// previous result in the key of a line that doesn't start with an
+    	// operator, which never uses it
+    static final int EXTENDED_MODE = 1;	// bit of a key's mode, for the
+    	// extended range
+    static final int FRACTIONS_MODE = 2;	// bit of a key's mode, for
+    	// fraction mode
+
+    Segment[] m_segments = new Segment[SEGMENTS];	// the segments
+    LongAdder m_hits = new LongAdder();	// number of lookups that found a line
+    LongAdder m_misses = new LongAdder();	// number that didn't find a line
+    LongAdder m_evictions = new LongAdder();	// number of entries evicted
+
+    /** Create a cache.
+     * @param p_maxEntries the most entries that the cache holds, or 0 for no
+     *	limit on entries
+     * @param p_maxBytes the most bytes (estimated) that the entries use, or 0
+     *	for no limit on bytes
+     */
+    RomanCache(int p_maxEntries, long p_maxBytes)
+    {	// constructor
+    	for (int s = 0; s < SEGMENTS; s++)
+    		m_segments[s] = new Segment(
+    			(p_maxEntries == 0) ? Integer.MAX_VALUE
+    				: Math.max(1, p_maxEntries / SEGMENTS),
+    			(p_maxBytes == 0) ? Long.MAX_VALUE
+    				: Math.max(1, p_maxBytes / SEGMENTS));
+    }	// constructor
+
+    /** Look up a line.
+     * @param p_key the line's key
+     * @return Outcome the line's cached outcome, or null if it isn't cached
+     */
+    Outcome get(Key p_key) {
+    	Segment segment = segmentFor(p_key);	// segment that has the line
+    	Outcome outcome;	// the cached outcome
+    	synchronized (segment)
+    	{	// look up the line
+    		outcome = segment.get(p_key);	// also makes it most recently used
+    	}	// look up the line
+    	if (outcome == null)	// not cached
+    		m_misses.increment();
+    	else m_hits.increment();
+    	return outcome;
+    }	// get method
+
+    /** Cache a line's outcome, evicting least recently used entries if the
+     * cache is then too big.
+     * @param p_key the line's key, which is copied
+     * @param p_outcome the line's outcome
+     */
+    void put(Key p_key, Outcome p_outcome) {
+    	Segment segment = segmentFor(p_key);	// segment for the line
+    	Key key = p_key.copy();	// key that doesn't refer to the line
+    	Iterator<Key> eldest;	// iteration from least recently used entry
+    	synchronized (segment)
+    	{	// add the line, then evict
+    		if (segment.put(key, p_outcome) == null)	// line is new
+    			segment.m_bytes += key.bytes();
+    		eldest = segment.keySet().iterator();
+    		while (segment.size() > 1 && (segment.size() > segment.m_maxEntries
+    			|| segment.m_bytes > segment.m_maxBytes))
+    		{	// evict least recently used entry
+    			segment.m_bytes -= eldest.next().bytes();
+    			eldest.remove();
+    			m_evictions.increment();
+    		}	// evict least recently used entry
+    	}	// add the line, then evict
+    }	// put method
+
+    /** Get the segment for a key.
+     * @param p_key the key
+     * @return Segment the segment
+     */
+    Segment segmentFor(Key p_key) {
+    	return m_segments[(p_key.hashCode() * 0x9E3779B9) >>> (32 - SEGMENT_BITS)];
+    		// the high bits of the mixed hash code; a segment's own table
+    		// uses the low bits, which must still vary within a segment
+    }	// segmentFor method
+
+    /** Get the number of cached lines.
+     * @return int the number of cached lines
+     */
+    public int size() {
+    	int size = 0;	// number of cached lines
+    	for (Segment segment : m_segments)
+    		synchronized (segment)
+    		{	// count the segment's lines
+    			size += segment.size();
+    		}	// count the segment's lines
+    	return size;
+    }	// size method
+
+    /** Get the number of lookups that found a line.
+     * @return long the number
+     */
+    public long getHits() {
+    	return m_hits.sum();
+    }	// getHits method
+
+    /** Get the number of lookups that didn't find a line.
+     * @return long the number
+     */
+    public long getMisses() {
+    	return m_misses.sum();
+    }	// getMisses method
+
+    /** Get the number of entries that were evicted.
+     * @return long the number
+     */
+    public long getEvictions() {
+    	return m_evictions.sum();
+    }	// getEvictions method
+
+    /** Describe the cache's statistics.
+     * @return String the description
+     */
+    public String toString() {
+    	long hits = getHits();	// number of hits
+    	long lookups = hits + getMisses();	// number of lookups
+    	return "[] Cache: " + size() + " lines, " + hits + " hits, " +
+    		getMisses() + " misses (" + ((lookups == 0) ? 0 : 100 * hits / lookups)
+    		+ "% hit), " + getEvictions() + " evictions";
+    }	// toString method
+
+    /** A segment of the cache, whose entries are in order from least to most
+     * recently used.  The segment is the lock for its entries.
+     * The cache is never serialized, so the segment has no serialVersionUID.
+     */
+    @SuppressWarnings("serial")
+    static class Segment extends LinkedHashMap<Key, Outcome> {
+    	int m_maxEntries;	// most entries that the segment holds
+    	long m_maxBytes;	// most bytes that the segment's entries use
+    	long m_bytes;	// bytes that the segment's entries use
+
+    	/** Create a segment.
+    	 * @param p_maxEntries the most entries that the segment holds
+    	 * @param p_maxBytes the most bytes that the segment's entries use
+    	 */
+    	Segment(int p_maxEntries, long p_maxBytes)
+    	{	// constructor
+    		super(16, 0.75f, true);	// in order of access
+    		m_maxEntries = p_maxEntries;
+    		m_maxBytes = p_maxBytes;
+    	}	// constructor
+    }	// Segment class
+
+    /** The key of a line: its normalized text, the session's mode, and the
+     * previous result if the line starts with an operator.  A session's key
+     * reads the text in place, from the session's InfoForLine; a cached key
+     * has a copy.
+     */
+    static class Key {
+    	Roman.InfoForLine m_lineInfo;	// the line, if the key reads in place
+    	String m_text;	// copy of the normalized text, if the key is cached
+    	long m_previousResult;	// previous result, or NO_PREVIOUS_RESULT
+    	int m_mode;	// the session's mode, e.g., EXTENDED_MODE, or 0
+    	int m_hash;	// the hash code
+
+    	/** Make this the key of a line, which the engine has normalized.
+    	 * @param p_lineInfo the info for the line
+    	 * @param p_previousResult the previous line's result
+    	 */
+    	void set(Roman.InfoForLine p_lineInfo, long p_previousResult) {
+    		char first = p_lineInfo.charOfLine(0);	// the line's first char
+    		int hash;	// the hash code
+    		m_lineInfo = p_lineInfo;
+    		m_text = null;
+    		m_previousResult = (first == '+' || first == '-' || first == '*'
+    			|| first == '/') ? p_previousResult : NO_PREVIOUS_RESULT;
+    			// only a line that starts with an operator uses it
+    		m_mode = ((p_lineInfo.m_maxResult != Roman.MAXINT) ? EXTENDED_MODE
+    			: 0) | (p_lineInfo.m_fractions ? FRACTIONS_MODE : 0);
+    		hash = 31 * Long.hashCode(m_previousResult) + m_mode;
+    		for (int i = 0; i < length(); i++)
+    			hash = 31 * hash + charAt(i);
+    		m_hash = hash;
+    	}	// set method
+
+    	/** Copy the key, so that it doesn't refer to the line.
+    	 * @return Key the copy
+    	 */
+    	Key copy() {
+    		Key key = new Key();	// the copy
+    		key.m_text = m_lineInfo.lineThrough(m_lineInfo.m_lineLength - 1);
+    		key.m_previousResult = m_previousResult;
+    		key.m_mode = m_mode;
+    		key.m_hash = m_hash;
+    		return key;
+    	}	// copy method
+
+    	/** Get the length of the text.
+    	 * @return int the length
+    	 */
+    	int length() {
+    		return (m_text != null) ? m_text.length() : m_lineInfo.m_lineLength;
+    	}	// length method
+
+    	/** Get a char of the text.
+    	 * @param p_index index of the char
+    	 * @return char the char
+    	 */
+    	char charAt(int p_index) {
+    		return (m_text != null) ? m_text.charAt(p_index)
+    			: m_lineInfo.charOfLine(p_index);
+    	}	// charAt method
+
+    	/** Estimate the bytes that a cached key and its outcome use.
+    	 * @return long the estimate
+    	 */
+    	long bytes() {
+    		return ENTRY_OVERHEAD + 2L * length();
+    	}	// bytes method
+
+    	/** Get the hash code.
+    	 * @return int the hash code
+    	 */
+    	public int hashCode() {
+    		return m_hash;
+    	}	// hashCode method
+
+    	/** Test whether another key is of the same line.
+    	 * @param p_other the other key
+    	 * @return boolean whether it is
+    	 */
+    	public boolean equals(Object p_other) {
+    		Key other;	// the other key
+    		if (! (p_other instanceof Key))
+    			return false;
+    		other = (Key)p_other;
+    		if (other.m_hash != m_hash || other.length() != length()
+    			|| other.m_previousResult != m_previousResult
+    			|| other.m_mode != m_mode)
+    			return false;
+    		for (int i = 0; i < length(); i++)
+    			if (other.charAt(i) != charAt(i))
+    				return false;
+    		return true;
+    	}	// equals method
+    }	// Key class
+
+    /** The cached outcome of a line: its result, or its error.
+     */
+    static class Outcome {
+    	final int m_outcome;	// RomanEngine.RESULT or RomanEngine.ERROR
+    	final long m_result;	// the result, if any
+    	final boolean m_usedPreviousResult;	// whether it used previous result
+    	final int m_errorKind;	// kind of error, if any
+    	final int m_errorPosition;	// position of error, if any
+
+    	/** Create the outcome of a line.
+    	 * @param p_lineInfo the info for the line, after it is evaluated
+    	 * @param p_outcome RomanEngine.RESULT or RomanEngine.ERROR
+    	 */
+    	Outcome(Roman.InfoForLine p_lineInfo, int p_outcome)
+    	{	// constructor
+    		m_outcome = p_outcome;
+    		m_result = p_lineInfo.m_result;
+    		m_usedPreviousResult = p_lineInfo.m_usedPreviousResult;
+    		m_errorKind = p_lineInfo.m_errorKind;
+    		m_errorPosition = p_lineInfo.m_errorPosition;
+    	}	// constructor
+    }	// Outcome class
+}	// RomanCache class
@@ -0,0 +1,217 @@
+/*
+ * File:	RomanColumns.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanColumns
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+// imports:
+import java.nio.ByteBuffer;
+
+/** Converts whole columns of Roman numerals to integers and back, e.g., the
+ * year fields of a data file:
+ *	int invalid = RomanColumns.decode(numerals, offsets, years);
+ *	// years[i] is the value of numeral i, or NOT_A_NUMERAL
+ *	RomanColumns.encode(years, buffer);	// one numeral per line
+ *
+ * Class:	RomanColumns
+ *
+ * A column of numerals is ASCII bytes, with numeral i from
+ * numerals[offsets[i]] up to (but not including) numerals[offsets[i + 1]],
+ * which is how columnar formats (e.g., Apache Arrow) lay out a column of
+ * strings.  A numeral is valid if it's one that the calculator displays
+ * (e.g., MCMXCIX, O, or -XL), in either case; this is what the numeral
+ * automaton in Roman accepts as an integer token, plus an optional minus,
+ * so that decode(encode(v)) is v for every value in the valid range.
+ *
+ * There are two ways of converting, which give the same results:
+ * - with the Vector API (jdk.incubator.vector), which RomanColumnsVector
+ *   describes, if the module is present, i.e., if Java is run with
+ *   --add-modules jdk.incubator.vector; and otherwise
+ * - one value at a time, in this class: decoding runs the numeral
+ *   automaton over each numeral, and encoding copies each numeral from
+ *   Roman.ROMAN_BYTES.
+ * Neither allocates anything per numeral, and any number of threads can
+ * convert at once.
+ */
+class RomanColumns {
+    static final int NOT_A_NUMERAL = Integer.MIN_VALUE;
+    	// value that decode gives for a numeral that isn't valid
+    static final byte LINE_END = '\n';	// what encode writes after a numeral
+    static final boolean VECTORIZED = ModuleLayer.boot()
+    	.findModule("jdk.incubator.vector").isPresent();
+    	// whether RomanColumnsVector can be used; its classes aren't loaded
+    	// unless it can be
+
+    /** Convert a column of Roman numerals to integers.
+     * @param p_numerals the numerals, as ASCII bytes
+     * @param p_offsets where each numeral starts, followed by where the last
+     *	one ends, so there is one more offset than there are numerals
+     * @param p_out gets each numeral's value, or NOT_A_NUMERAL if it isn't a
+     *	valid numeral
+     * @return int the number of numerals that aren't valid
+     * @throws IllegalArgumentException if the offsets decrease or aren't
+     *	in p_numerals, or if p_out is too short
+     */
+    public static int decode(byte[] p_numerals, int[] p_offsets, int[] p_out) {
+    	checkOffsets(p_numerals, p_offsets, p_out.length);
+    	return VECTORIZED
+    		? RomanColumnsVector.decode(p_numerals, p_offsets, p_out)
+    		: decodeScalar(p_numerals, p_offsets, p_out);
+    }	// decode method
+
+    /** Convert integers to Roman numerals, each followed by LINE_END, for as
+     * many of the integers as the buffer has room for.
+     * @param p_values the integers
+     * @param p_out gets the numerals, starting at its position, which is
+     *	advanced past them
+     * @return int the number of integers converted; if it's less than
+     *	p_values.length, the buffer is full, and the caller can empty it and
+     *	call the other encode method for the rest
+     * @throws IllegalArgumentException if an integer is out of range
+     */
+    public static int encode(int[] p_values, ByteBuffer p_out) {
+    	return encode(p_values, 0, p_values.length, p_out);
+    }	// encode method for every value
+
+    /** Convert some integers to Roman numerals, each followed by LINE_END,
+     * for as many of the integers as the buffer has room for.
+     * @param p_values the integers
+     * @param p_from index of the first integer
+     * @param p_to index after the last integer
+     * @param p_out gets the numerals, starting at its position, which is
+     *	advanced past them
+     * @return int index after the last integer converted, which is less than
+     *	p_to if the buffer is full
+     * @throws IllegalArgumentException if an integer is out of range
+     */
+    public static int encode(
+    	int[] p_values,
+    	int p_from,
+    	int p_to,
+    	ByteBuffer p_out) {
+    	return VECTORIZED
+    		? RomanColumnsVector.encode(p_values, p_from, p_to, p_out)
+    		: encodeScalar(p_values, p_from, p_to, p_out);
+    }	// encode method
+
+    /** Check that a column's offsets are in order and in its numerals, so
+     * that neither way of decoding has to.
+     * @param p_numerals the numerals
+     * @param p_offsets where each numeral starts, and where the last ends
+     * @param p_outLength room for output, e.g., the length of the array
+     *	that gets each numeral's value
+     * @throws IllegalArgumentException if they aren't
+     */
+    static void checkOffsets(
+    	byte[] p_numerals,
+    	int[] p_offsets,
+    	int p_outLength) {
+    	if (p_offsets.length == 0 || p_outLength < p_offsets.length - 1)
+    		throw new IllegalArgumentException("[] There must be one more " +
+    			"offset than numerals, and a value for each numeral");
+    	if (p_offsets[0] < 0 ||
+    		p_offsets[p_offsets.length - 1] > p_numerals.length)
+    		throw new IllegalArgumentException(
+    			"[] The offsets must be in the numerals");
+    	for (int i = 1; i < p_offsets.length; i++)
+    		if (p_offsets[i] < p_offsets[i - 1])	// numeral would end early
+    			throw new IllegalArgumentException("[] Offset " + i +
+    				" is before the one that precedes it");
+    }	// checkOffsets method
+
+    /** Convert a column of Roman numerals to integers, one at a time.
+     * @param p_numerals the numerals, as ASCII bytes
+     * @param p_offsets where each numeral starts, and where the last ends;
+     *	checkOffsets has checked them
+     * @param p_out gets each numeral's value, or NOT_A_NUMERAL
+     * @return int the number of numerals that aren't valid
+     */
+    static int decodeScalar(byte[] p_numerals, int[] p_offsets, int[] p_out) {
+    	int invalid = 0;	// number of numerals that aren't valid
+    	for (int i = 0; i + 1 < p_offsets.length; i++)
+    	{	// for each numeral
+    		p_out[i] = decodeNumeral(p_numerals, p_offsets[i], p_offsets[i + 1]);
+    		if (p_out[i] == NOT_A_NUMERAL)
+    			invalid++;
+    	}	// for each numeral
+    	return invalid;
+    }	// decodeScalar method
+
+    /** Convert one Roman numeral to an integer, with the numeral automaton.
+     * @param p_numerals bytes that contain the numeral
+     * @param p_start index of the numeral's first byte
+     * @param p_end index after its last byte
+     * @return int its value, or NOT_A_NUMERAL if it isn't a valid numeral
+     */
+    static int decodeNumeral(byte[] p_numerals, int p_start, int p_end) {
+    	boolean negative = false;	// whether the numeral starts with minus
+    	int state = Roman.NUMERAL_START;	// state of the numeral automaton
+    	int c;	// a byte of the numeral, as an unsigned value
+
+    	if (p_start < p_end && p_numerals[p_start] == '-')
+    	{	// minus
+    		negative = true;
+    		p_start++;
+    	}	// minus
+    	for (int i = p_start; i < p_end; i++)
+    	{	// for each letter, until one doesn't extend the numeral
+    		c = p_numerals[i] & 0xFF;
+    		if (c >= 128)	// not ASCII, so not a letter
+    			return NOT_A_NUMERAL;
+    		state = Roman.NEXT_NUMERAL_STATE[state * Roman.LETTER_CLASSES +
+    			Roman.letterClassOf(Roman.upperCaseOf((char)c))];
+    		if (state == Roman.NUMERAL_START)	// letter doesn't extend it
+    			return NOT_A_NUMERAL;
+    	}	// for each letter, until one doesn't extend the numeral
+    	if (state == Roman.NUMERAL_START ||	// no letters
+    		(negative && state == Roman.NUMERAL_ZERO))	// -O isn't displayed
+    		return NOT_A_NUMERAL;
+    	return negative ? -Roman.VALUE_OF_NUMERAL_STATE[state]
+    		: Roman.VALUE_OF_NUMERAL_STATE[state];
+    }	// decodeNumeral method
+
+    /** Convert some integers to Roman numerals, one at a time, each
+     * followed by LINE_END, for as many as the buffer has room for.
+     * @param p_values the integers
+     * @param p_from index of the first integer
+     * @param p_to index after the last integer
+     * @param p_out gets the numerals
+     * @return int index after the last integer converted
+     * @throws IllegalArgumentException if an integer is out of range
+     */
+    static int encodeScalar(
+    	int[] p_values,
+    	int p_from,
+    	int p_to,
+    	ByteBuffer p_out) {
+    	byte[] numeral;	// a Roman numeral
+    	int i;	// iteration for each integer
+    	for (i = p_from; i < p_to; i++)
+    	{	// for each integer, until the buffer is full
+    		checkRange(p_values[i]);
+    		numeral = Roman.ROMAN_BYTES[p_values[i] - Roman.MININT];
+    		if (p_out.remaining() < numeral.length + 1)	// no room
+    			break;
+    		p_out.put(numeral).put(LINE_END);
+    	}	// for each integer, until the buffer is full
+    	return i;
+    }	// encodeScalar method
+
+    /** Check that an integer can be converted to a Roman numeral.
+     * @param p_value the integer
+     * @throws IllegalArgumentException if it's out of range
+     */
+    static void checkRange(int p_value) {
+    	if (p_value < Roman.MININT || p_value > Roman.MAXINT)
+    		throw new IllegalArgumentException("[] " + p_value +
+    			" is out of range for a Roman numeral");
+    }	// checkRange method
+}	// RomanColumns class
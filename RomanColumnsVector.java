@@ -0,0 +1,291 @@
+/*
+ * File:	RomanColumnsVector.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanColumnsVector
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+// imports:
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/** Converts columns of Roman numerals to integers and back, as RomanColumns
+ * does, but with the Vector API, so only if Java is run with
+ * --add-modules jdk.incubator.vector.  RomanColumns calls it; nothing else
+ * should, since its class can't be loaded without that module.
+ *
+ * Class:	RomanColumnsVector
+ *
+ * Decoding doesn't run the numeral automaton, which reads one letter at a
+ * time, each step depending on the previous one.  Instead it uses the fact
+ * that each valid value has only one numeral, which is at most SLOT bytes
+ * long.  For a block of up to BLOCK bytes of numerals at a time:
+ * - each vector of bytes (e.g., 64 of them, for several numerals) is
+ *   classified at once, giving each byte its rank, i.e., its place in
+ *   RANKED_LETTERS, or ZERO_RANK, MINUS_RANK, or OTHER_RANK, so that upper
+ *   and lower case letters have the same rank; and
+ * - for each numeral, its ranks (padded with zeros to SLOT bytes) are
+ *   read as two longs and looked up in a hash table of the ranks of the
+ *   numerals that the calculator displays, i.e., of every valid numeral.
+ * So it gives the same values, and finds the same numerals invalid, as the
+ * automaton does.  No step for a numeral depends on its length, so there
+ * are no branches for the processor to mispredict on a column of
+ * numerals of mixed lengths.  (Adding up each numeral's letters within
+ * one vector also avoids them, but widening the letters' values and
+ * adding across a vector's lanes took longer than the automaton does,
+ * with Java 17.)
+ *
+ * Encoding copies each numeral, and the line end after it, from a table
+ * that has a SLOT of 16 bytes for each value, with one 16-byte vector
+ * load and store, whatever the numeral's length; the next numeral then
+ * overwrites the padding.  The only numeral that doesn't fit in a slot
+ * (-MMMDCCCLXXXVIII, with its line end) is copied from Roman.ROMAN_BYTES,
+ * as is any numeral near the end of the buffer.
+ */
+class RomanColumnsVector {
+    static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    	// the widest vectors of bytes, e.g., 64 bytes with AVX-512
+    static final VectorSpecies<Byte> SLOT_BYTES = ByteVector.SPECIES_128;
+    	// a vector that holds one numeral, for encoding
+    static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(
+    	long[].class, ByteOrder.LITTLE_ENDIAN);
+    	// reads 8 bytes of a byte array at once, first byte lowest
+    static final int SLOT = 16;	// most bytes in a numeral (-MMMDCCCLXXXVIII)
+    static final int BLOCK = 4096;	// most bytes of numerals decoded at once
+    static final int VALUES = Roman.MAXINT - Roman.MININT + 1;
+    	// number of valid values
+
+    // These are the ranks of bytes, and the hash table, for decoding:
+    static final String RANKED_LETTERS = "IVXLCDM";
+    	// Roman letters whose rank is 1 + their index
+    static final int ZERO_RANK = 8;	// rank of O (zero)
+    static final int MINUS_RANK = 9;	// rank of -
+    static final int OTHER_RANK = 15;	// rank of any other byte
+    static final long[] LOW_MASK = new long[SLOT + 1];
+    	// bits of a slot's first 8 bytes that hold its first n bytes, by n
+    static final long[] HIGH_MASK = new long[SLOT + 1];
+    	// bits of a slot's last 8 bytes that hold its first n bytes, by n
+    static final long[] RANK_SLOTS = new long[2 * VALUES];
+    	// ranks of each value's numeral, as two longs, indexed by
+    	// 2 * (value - MININT)
+    static final int HASH_BITS = 15;	// a quarter of the table is used
+    static final short[] HASH_TABLE = new short[1 << HASH_BITS];
+    	// (value - MININT + 1) for each valid numeral, where the hash of its
+    	// ranks (or a later entry, if that one is used) says, or 0 for none
+
+    // These are the slots for encoding:
+    static final byte[] SLOTS = new byte[SLOT * VALUES];
+    	// each value's numeral and line end, in a slot indexed by
+    	// (value - MININT), padded with zeros
+    static final byte[] SLOT_LENGTH = new byte[VALUES];
+    	// bytes of each slot that are used, or 0 if the numeral doesn't fit
+
+    static {	// build the tables from the calculator's numerals
+    	byte[] numeral;	// a value's numeral
+    	byte[] ranks = new byte[SLOT];	// ranks of its bytes
+    	int entry;	// index in HASH_TABLE of its entry
+    	for (int n = 1; n <= SLOT; n++)
+    	{	// for each number of bytes
+    		LOW_MASK[n] = (n >= 8) ? -1L : (1L << (8 * n)) - 1;
+    		HIGH_MASK[n] = (n <= 8) ? 0L
+    			: (n == SLOT) ? -1L : (1L << (8 * (n - 8))) - 1;
+    	}	// for each number of bytes
+    	for (int v = 0; v < VALUES; v++)
+    	{	// for each value, minus MININT
+    		numeral = Roman.ROMAN_BYTES[v];
+    		for (int i = 0; i < SLOT; i++)
+    			ranks[i] = (byte)((i < numeral.length) ? rankOf(numeral[i]) : 0);
+    		RANK_SLOTS[2 * v] = (long)LONGS.get(ranks, 0);
+    		RANK_SLOTS[2 * v + 1] = (long)LONGS.get(ranks, 8);
+    		for (entry = hash(RANK_SLOTS[2 * v], RANK_SLOTS[2 * v + 1]);
+    			HASH_TABLE[entry] != 0; entry = (entry + 1) & (HASH_TABLE.length - 1))
+    			;	// find an unused entry
+    		HASH_TABLE[entry] = (short)(v + 1);
+    		if (numeral.length < SLOT)
+    		{	// numeral and line end fit in a slot
+    			System.arraycopy(numeral, 0, SLOTS, SLOT * v, numeral.length);
+    			SLOTS[SLOT * v + numeral.length] = RomanColumns.LINE_END;
+    			SLOT_LENGTH[v] = (byte)(numeral.length + 1);
+    		}	// numeral and line end fit in a slot
+    	}	// for each value, minus MININT
+    }	// build the tables from the calculator's numerals
+
+    /** Get the rank of a byte, one at a time, as classify does many at once.
+     * @param p_theByte the byte
+     * @return int its rank, e.g., 1 for I or i
+     */
+    static int rankOf(byte p_theByte) {
+    	if (p_theByte == '-')
+    		return MINUS_RANK;
+    	if ((p_theByte & 0xDF) == 'O')	// O or o
+    		return ZERO_RANK;
+    	for (int r = 0; r < RANKED_LETTERS.length(); r++)
+    		if ((p_theByte & 0xDF) == RANKED_LETTERS.charAt(r))
+    			return r + 1;	// upper or lower case Roman letter
+    	return OTHER_RANK;
+    }	// rankOf method
+
+    /** Hash a numeral's ranks, for finding them in HASH_TABLE.
+     * @param p_low the ranks of its first 8 bytes
+     * @param p_high the ranks of its next 8 bytes
+     * @return int index of the first entry to look at
+     */
+    static int hash(long p_low, long p_high) {
+    	return (int)(((p_low * 0x9E3779B97F4A7C15L) ^ p_high)
+    		* 0xC2B2AE3D27D4EB4FL >>> (Long.SIZE - HASH_BITS));
+    }	// hash method
+
+    /** Convert a column of Roman numerals to integers.
+     * @param p_numerals the numerals, as ASCII bytes
+     * @param p_offsets where each numeral starts, and where the last ends;
+     *	RomanColumns.checkOffsets has checked them
+     * @param p_out gets each numeral's value, or RomanColumns.NOT_A_NUMERAL
+     * @return int the number of numerals that aren't valid
+     */
+    static int decode(byte[] p_numerals, int[] p_offsets, int[] p_out) {
+    	byte[] ranks = new byte[BLOCK + Math.max(BYTES.length(), SLOT)];
+    		// rank of each byte of a block; a vector, or a numeral's slot,
+    		// can go past the block
+    	int invalid = 0;	// number of numerals that aren't valid
+    	int base;	// index in p_numerals of the block's first byte
+    	int next;	// index of the numeral after the block's last one
+
+    	for (int first = 0; first + 1 < p_offsets.length; first = next)
+    	{	// for each block of numerals
+    		base = p_offsets[first];
+    		if (p_offsets[first + 1] - base > SLOT)
+    		{	// numeral is too long to be valid, and might not fit a block
+    			p_out[first] = RomanColumns.NOT_A_NUMERAL;
+    			invalid++;
+    			next = first + 1;
+    			continue;
+    		}	// numeral is too long to be valid, and might not fit a block
+    		for (next = first + 1; next + 1 < p_offsets.length &&
+    			p_offsets[next + 1] - base <= BLOCK; next++)
+    			;	// find the numerals that fit in the block
+    		classify(p_numerals, base, p_offsets[next] - base, ranks);
+    		for (int i = first; i < next; i++)
+    		{	// for each numeral in the block
+    			p_out[i] = decodeNumeral(ranks, p_offsets[i] - base,
+    				p_offsets[i + 1] - base);
+    			if (p_out[i] == RomanColumns.NOT_A_NUMERAL)
+    				invalid++;
+    		}	// for each numeral in the block
+    	}	// for each block of numerals
+    	return invalid;
+    }	// decode method
+
+    /** Get the ranks of a block of bytes, a vector at a time, and of any
+     * bytes at the end of the array that a vector would go past one at a
+     * time.  Clearing bit 5 of a byte makes a lower case letter upper case,
+     * and changes no other byte into a letter.
+     * @param p_numerals the numerals
+     * @param p_base index of the block's first byte
+     * @param p_length number of bytes in the block
+     * @param p_ranks gets each byte's rank
+     */
+    static void classify(
+    	byte[] p_numerals,
+    	int p_base,
+    	int p_length,
+    	byte[] p_ranks) {
+    	ByteVector bytes;	// a vector of bytes
+    	ByteVector upper;	// the same, with letters in upper case
+    	ByteVector ranks;	// their ranks
+    	int i;	// index in the block of a byte
+    	for (i = 0; i < p_length &&
+    		p_base + i + BYTES.length() <= p_numerals.length;
+    		i += BYTES.length())
+    	{	// for each vector of bytes
+    		bytes = ByteVector.fromArray(BYTES, p_numerals, p_base + i);
+    		upper = bytes.and((byte)0xDF);
+    		ranks = ByteVector.broadcast(BYTES, (byte)OTHER_RANK);
+    		for (int r = 0; r < RANKED_LETTERS.length(); r++)
+    			ranks = ranks.blend((byte)(r + 1),
+    				upper.eq((byte)RANKED_LETTERS.charAt(r)));
+    		ranks.blend((byte)ZERO_RANK, upper.eq((byte)'O'))
+    			.blend((byte)MINUS_RANK, bytes.eq((byte)'-'))
+    			.intoArray(p_ranks, i);
+    	}	// for each vector of bytes
+    	for (; i < p_length; i++)
+    		p_ranks[i] = (byte)rankOf(p_numerals[p_base + i]);
+    }	// classify method
+
+    /** Convert one numeral, whose bytes have been ranked, to an integer.
+     * @param p_ranks the ranks of the bytes, with at least SLOT bytes after
+     *	the numeral's first byte
+     * @param p_start index of the numeral's first byte
+     * @param p_end index after its last byte
+     * @return int its value, or RomanColumns.NOT_A_NUMERAL if it isn't a
+     *	valid numeral
+     */
+    static int decodeNumeral(byte[] p_ranks, int p_start, int p_end) {
+    	int length = p_end - p_start;	// number of bytes in the numeral
+    	long low;	// ranks of its first 8 bytes
+    	long high;	// ranks of its next 8 bytes
+    	int entry;	// index of an entry of HASH_TABLE
+    	int v;	// a value, minus MININT, that an entry holds
+
+    	if (length < 1 || length > SLOT)
+    		return RomanColumns.NOT_A_NUMERAL;	// no numeral is that long
+    	low = (long)LONGS.get(p_ranks, p_start) & LOW_MASK[length];
+    	high = (long)LONGS.get(p_ranks, p_start + 8) & HIGH_MASK[length];
+    	for (entry = hash(low, high); HASH_TABLE[entry] != 0;
+    		entry = (entry + 1) & (HASH_TABLE.length - 1))
+    	{	// for each entry that the numeral could be in
+    		v = HASH_TABLE[entry] - 1;
+    		if (RANK_SLOTS[2 * v] == low && RANK_SLOTS[2 * v + 1] == high)
+    			return v + Roman.MININT;	// the value's numeral
+    	}	// for each entry that the numeral could be in
+    	return RomanColumns.NOT_A_NUMERAL;	// not any value's numeral
+    }	// decodeNumeral method
+
+    /** Convert some integers to Roman numerals, each followed by
+     * RomanColumns.LINE_END, for as many as the buffer has room for.
+     * @param p_values the integers
+     * @param p_from index of the first integer
+     * @param p_to index after the last integer
+     * @param p_out gets the numerals
+     * @return int index after the last integer converted
+     * @throws IllegalArgumentException if an integer is out of range
+     */
+    static int encode(int[] p_values, int p_from, int p_to, ByteBuffer p_out) {
+    	int position = p_out.position();	// where the next numeral goes
+    	int limit = p_out.limit();	// where the buffer's room ends
+    	int slot;	// index of a value's slot
+    	byte[] numeral;	// a numeral that doesn't fit in a slot
+    	int i;	// iteration for each integer
+
+    	for (i = p_from; i < p_to; i++)
+    	{	// for each integer, until the buffer is full
+    		RomanColumns.checkRange(p_values[i]);
+    		slot = p_values[i] - Roman.MININT;
+    		if (SLOT_LENGTH[slot] > 0 && position + SLOT <= limit)
+    		{	// copy the whole slot; the padding gets overwritten
+    			ByteVector.fromArray(SLOT_BYTES, SLOTS, SLOT * slot)
+    				.intoByteBuffer(p_out, position, ByteOrder.nativeOrder());
+    			position += SLOT_LENGTH[slot];
+    			continue;
+    		}	// copy the whole slot; the padding gets overwritten
+    		numeral = Roman.ROMAN_BYTES[slot];
+    		if (position + numeral.length + 1 > limit)	// no room
+    			break;
+    		p_out.put(position, numeral).put(position + numeral.length,
+    			RomanColumns.LINE_END);
+    		position += numeral.length + 1;
+    	}	// for each integer, until the buffer is full
+    	p_out.position(position);
+    	return i;
+    }	// encode method
+}	// RomanColumnsVector class
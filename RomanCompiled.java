@@ -0,0 +1,682 @@
+/*
+ * File:	RomanCompiled.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanCompiled
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+// imports:
+import java.io.FileOutputStream;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/** Compiles a file of expressions into a file of tokens, which can then be
+ * run again and again without tokenizing the expressions again, e.g.:
+ *	java Roman --compile in.txt in.rtok
+ *	java Roman --run in.rtok --out out.txt
+ * Running the compiled file gives the same output as batch mode (see
+ * RomanBatch) gives for the file of expressions, including the same error
+ * messages at the same positions.  If --extended is specified when
+ * compiling, the lines are evaluated in the extended range when they are
+ * run.  A line can't refer to the history (e.g., #12), whose results
+ * aren't known until the line is run, so # is an invalid character, as in
+ * batch mode without --history.
+ *
+ * Class:	RomanCompiled
+ *
+ * The compiled file is a header and then one record for each line, in
+ * order, up to the first line that contains QUIT or EXIT.  The header holds
+ * MAGIC, VERSION, flags (e.g., EXTENDED_FLAG), the size and last-modified
+ * time of the file of expressions, the length of the records, a checksum,
+ * and the name of the file of expressions.  The checksum is a CRC-32C of
+ * the records and then of the header, with the checksum itself as 0.
+ * Running checks all of these before it evaluates anything: a file with
+ * another MAGIC or VERSION, or whose checksum doesn't match, isn't used,
+ * and neither is one whose file of expressions still exists but has
+ * changed since it was compiled.
+ *
+ * A record is its length and then its contents, which start with the
+ * line's outcome from steps 1 through 3 of RomanEngine.evaluate:
+ * - RomanEngine.RESULT: the line's length, its text (in upper case,
+ *   trimmed, without an ending "="), which only an error message uses,
+ *   and then its tokens, without the end of line.  A token is its type, its
+ *   end index (as the difference from the previous token's end index),
+ *   and, for an integer, its value.  The text is omitted if textOf gives it
+ *   from the tokens, as it does unless a numeral above MAXINT isn't in the
+ *   form that Roman.toRoman gives, e.g., _X_IMCC instead of _X_I_ICC; a
+ *   flag in the length tells which.
+ * - RomanEngine.ERROR: an error found by tokenizing, which doesn't depend
+ *   on the previous result; its kind, its position, and the line through
+ *   the position, for the error message.
+ * - RomanEngine.EMPTY_LINE, ZERO_DIGIT, or QUIT: nothing else.
+ * Every length, index, and value is a variable-length integer (7 bits per
+ * byte, low bits first, with the high bit set in each byte but the last),
+ * so a typical token takes 2 or 3 bytes; a value is zigzag-encoded, so a
+ * small negative one is short too.
+ *
+ * Running memory-maps the compiled file, a window at a time, as batch mode
+ * maps its input, and reads the tokens straight from the mapped bytes into
+ * the session's token buffer; a line's text is read in place, through a
+ * RomanBatch.MappedLine, or made by textOf, only if its evaluation finds an
+ * error.  So running a line does no case conversion, trimming, or numeral
+ * decoding.
+ */
+class RomanCompiled {
+    static final long MAGIC = 0x524F4D414E544F4BL;	// "ROMANTOK", in ASCII
+    static final int VERSION = 1;	// version of the file's layout
+    static final int EXTENDED_FLAG = 1;	// flag for --extended
+    // offsets in the header:
+    static final int MAGIC_OFFSET = 0;	// MAGIC (long)
+    static final int VERSION_OFFSET = 8;	// VERSION (int)
+    static final int FLAGS_OFFSET = 12;	// flags, e.g., EXTENDED_FLAG (int)
+    static final int SOURCE_SIZE_OFFSET = 16;	// size of the file of
+    	// expressions (long)
+    static final int SOURCE_TIME_OFFSET = 24;	// last-modified time of the
+    	// file of expressions, in milliseconds (long)
+    static final int BODY_LENGTH_OFFSET = 32;	// length of the records (long)
+    static final int CHECKSUM_OFFSET = 40;	// checksum (int)
+    static final int NAME_LENGTH_OFFSET = 44;	// length of the name of the
+    	// file of expressions, whose UTF-8 bytes end the header (int)
+    static final int HEADER_SIZE = 48;	// number of bytes in the header,
+    	// before the name
+    static final int TEXT_FLAG = 1;	// flag in the length of a line that
+    	// has tokens, if its text follows the length
+    static final String[] TEXT_OF_TOKEN = {"", ")", "", "(", "", "", "+",
+    	"-", "*", "/", "**"};	// text of each type of token but an integer,
+    	// indexed by the type
+    static final int MAX_VARINT_BYTES = 10;	// most bytes in a variable-
+    	// length integer
+    static final String USAGE = "[] Usage: java Roman --compile <input file>"
+    	+ " <compiled file> [--extended]" + System.lineSeparator()
+    	+ "[] Usage: java Roman --run <compiled file> [--out <output file>]";
+
+    /** Main method for compiling and for running a compiled file.
+     * @param args arguments: "--compile", the input file, the compiled
+     *	file, and optionally "--extended"; or "--run", the compiled file,
+     *	and optionally "--out" and the output file
+     */
+    public static void main(String[] args) {
+    	boolean compiling = args[0].equals("--compile");	// or --run
+    	boolean extended = false;	// whether --extended is specified
+    	String outputFile = null;	// output file; null for standard output
+    	int a;	// iteration for each argument after the file names
+
+    	for (a = compiling ? 3 : 2; a < args.length; a++)
+    	{	// for each argument after the file names
+    		if (compiling && args[a].equals("--extended"))
+    			extended = true;
+    		else if (! compiling && args[a].equals("--out") &&
+    			a + 1 < args.length)
+    			outputFile = args[++a];
+    		else break;	// invalid argument
+    	}	// for each argument after the file names
+    	if (args.length < (compiling ? 3 : 2) || a < args.length)
+    	{	// missing or invalid argument
+    		System.err.println(USAGE);
+    		System.exit(2);
+    	}	// missing or invalid argument
+    	try {
+    	if (compiling)
+    		compile(Paths.get(args[1]), Paths.get(args[2]), extended);
+    	else try (FileChannel output = (outputFile == null)
+    			? new FileOutputStream(FileDescriptor.out).getChannel()
+    			: FileChannel.open(Paths.get(outputFile),
+    				StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+    				StandardOpenOption.TRUNCATE_EXISTING))
+    	{	// run the compiled file
+    		run(Paths.get(args[1]), output);
+    	}	// run the compiled file
+    	}	// try
+    	catch (IOException e)
+    	{	// can't read or write a file, or the compiled file isn't valid
+    		System.err.println((compiling ? "[] Compiling failed: "
+    			: "[] Running failed: ") + e.getMessage());
+    		System.exit(1);
+    	}	// can't read or write a file, or the compiled file isn't valid
+    }	// main method
+
+    /** Compile a file of expressions.
+     * @param p_source the file of expressions
+     * @param p_target the compiled file, which is replaced if it exists
+     * @param p_extended whether the lines are evaluated in the extended range
+     * @throws IOException if a file can't be read or written, or if a line is
+     *	longer than RomanBatch.MAP_WINDOW
+     */
+    static void compile(Path p_source, Path p_target, boolean p_extended)
+    	throws IOException {
+    	RomanEngine.Session session = new RomanEngine.Session();
+    		// the session that tokenizes each line; it evaluates nothing
+    	RomanBatch.MappedLine mappedLine = new RomanBatch.MappedLine();
+    		// view of each line's bytes, which the engine reads
+    	Encoder record = new Encoder();	// each line's record, after its length
+    	Encoder output = new Encoder();	// the records, until they are written
+    	CRC32C checksum = new CRC32C();	// checksum of what has been written
+    	byte[] sourceName = p_source.toAbsolutePath().toString()
+    		.getBytes(StandardCharsets.UTF_8);	// name in the header
+    	ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + sourceName.length);
+    	long bodyLength = 0;	// number of bytes of records written
+    	long windowStart = 0;	// file position of the mapped bytes
+    	int windowLength;	// number of mapped bytes
+    	boolean lastWindow;	// whether the mapped bytes end the file
+    	MappedByteBuffer window;	// the mapped bytes
+    	int lineStart;	// index (in window) of a line's first byte
+    	int lineEnd;	// index (in window) of the byte after a line
+    	boolean lineSaysQuit = false;	// whether a line says QUIT or EXIT
+    	int outcome;	// outcome of steps 1 through 3 for a line
+
+    	session.setExtendedRange(p_extended);
+    	try (FileChannel input = FileChannel.open(p_source,
+    			StandardOpenOption.READ);
+    		FileChannel target = FileChannel.open(p_target,
+    			StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+    			StandardOpenOption.TRUNCATE_EXISTING))
+    	{	// compile the file
+    	long fileSize = input.size();	// number of bytes in input file
+    	target.position(header.capacity());	// the header is written last
+    	while (windowStart < fileSize && ! lineSaysQuit)
+    	{	// for each window of mapped bytes
+    		windowLength = (int)Math.min(RomanBatch.MAP_WINDOW,
+    			fileSize - windowStart);
+    		lastWindow = (windowStart + windowLength == fileSize);
+    		window = input.map(FileChannel.MapMode.READ_ONLY,
+    			windowStart, windowLength);
+    		lineStart = 0;
+    		while (lineStart < windowLength)
+    		{	// for each line that starts in the window
+    			lineEnd = RomanBatch.findLineEnd(window, lineStart,
+    				windowLength);
+    			if (! lastWindow && lineEnd >= windowLength - 1)
+    			{	// line or its ending might continue past the window
+    				if (lineStart == 0)	// line fills the whole window
+    					throw new IOException("a line is longer than " +
+    						RomanBatch.MAP_WINDOW + " bytes");
+    				break;	// map a new window that starts with this line
+    			}	// line or its ending might continue past the window
+    			outcome = compileLine(window, lineStart, lineEnd,
+    				session, mappedLine, record);
+    			output.putVarint(record.m_length);
+    			output.put(record.m_bytes, record.m_length);
+    			lineSaysQuit = (outcome == RomanEngine.QUIT);
+    			if (lineSaysQuit)	// contains QUIT or EXIT
+    				break;	// no later line is run
+    			if (output.m_length >= RomanBatch.FLUSH_THRESHOLD)
+    				bodyLength += output.writeTo(target, checksum);
+    			lineStart = RomanBatch.nextLineStart(window, lineEnd,
+    				windowLength);
+    		}	// for each line that starts in the window
+    		windowStart += lineStart;	// next window starts with next line
+    	}	// for each window of mapped bytes
+    	bodyLength += output.writeTo(target, checksum);	// write what remains
+    	header.putLong(MAGIC_OFFSET, MAGIC);
+    	header.putInt(VERSION_OFFSET, VERSION);
+    	header.putInt(FLAGS_OFFSET, p_extended ? EXTENDED_FLAG : 0);
+    	header.putLong(SOURCE_SIZE_OFFSET, fileSize);
+    	header.putLong(SOURCE_TIME_OFFSET,
+    		Files.getLastModifiedTime(p_source).toMillis());
+    	header.putLong(BODY_LENGTH_OFFSET, bodyLength);
+    	header.putInt(NAME_LENGTH_OFFSET, sourceName.length);
+    	header.position(HEADER_SIZE);
+    	header.put(sourceName);
+    	checksum.update(header.array(), 0, header.capacity());
+    		// its checksum field is still 0
+    	header.putInt(CHECKSUM_OFFSET, (int)checksum.getValue());
+    	header.position(0);
+    	target.write(header, 0);
+    	}	// compile the file
+    }	// compile method
+
+    /** Compile a line of mapped bytes, i.e., perform steps 1 through 3 of
+     * RomanEngine.evaluate for it, the same way that batch mode does, and
+     * encode the outcome as the line's record.
+     * @param p_theBytes the mapped bytes
+     * @param p_lineStart index of the line's first byte
+     * @param p_lineEnd index of the line's \n or \r, or after the line
+     * @param p_theSession the session that tokenizes the line
+     * @param p_mappedLine a view to use for the line's bytes
+     * @param p_record where to put the record, without its length
+     * @return int the outcome, e.g., RomanEngine.QUIT, or RomanEngine.RESULT
+     *	if the line is tokenized
+     */
+    static int compileLine(
+    	ByteBuffer p_theBytes,
+    	int p_lineStart,
+    	int p_lineEnd,
+    	RomanEngine.Session p_theSession,
+    	RomanBatch.MappedLine p_mappedLine,
+    	Encoder p_record) {
+    	Roman.InfoForLine lineInfo = p_theSession.m_lineInfo;
+    		// info for the line, which has its tokens after tokenizing
+    	Roman.TokenBuffer tokens = lineInfo.m_tokenizedLine;	// its tokens
+    	byte[] lineBytes;	// the line's bytes, if they must be decoded
+    	CharSequence line;	// the line, as RomanEngine reads it
+    	byte[] errorText;	// the line through its error, in UTF-8
+    	String tokensText;	// the text that the tokens give
+    	int outcome;	// outcome of steps 1 through 3
+    	int previousEnd = -1;	// end index of the previous token
+    	int i;	// iteration for each byte in line, or for each token
+
+    	for (i = p_lineStart; i < p_lineEnd && p_theBytes.get(i) >= 0; i++)
+    		;	// look for a non-ASCII byte
+    	if (i == p_lineEnd)	// all ASCII, which is the usual case
+    	{	// read the bytes in place
+    		p_mappedLine.set(p_theBytes, p_lineStart, p_lineEnd - p_lineStart);
+    		line = p_mappedLine;
+    	}	// read the bytes in place
+    	else
+    	{	// decode the line, as batch mode does, and convert to upper case
+    		lineBytes = new byte[p_lineEnd - p_lineStart];
+    		for (i = 0; i < lineBytes.length; i++)
+    			lineBytes[i] = p_theBytes.get(p_lineStart + i);
+    		line = new String(lineBytes, Charset.defaultCharset())
+    			.toUpperCase();
+    	}	// decode the line, as batch mode does, and convert to upper case
+    	outcome = RomanEngine.prepareLine(line, p_theSession);	// 1) and 2)
+    	if (outcome == RomanEngine.RESULT)	// line has an expression
+    	{	// 3) tokenize the line
+    		lineInfo.tokenize();
+    		if (lineInfo.m_lineHasError)	// if line has error
+    			outcome = RomanEngine.ERROR;
+    	}	// 3) tokenize the line
+    	p_record.clear();
+    	p_record.putByte(outcome);
+    	if (outcome == RomanEngine.ERROR)
+    	{	// the error, and the text of its message
+    		errorText = lineInfo.lineThrough(lineInfo.m_errorPosition)
+    			.getBytes(StandardCharsets.UTF_8);
+    		p_record.putVarint(lineInfo.m_errorKind);
+    		p_record.putVarint(lineInfo.m_errorPosition);
+    		p_record.putVarint(errorText.length);
+    		p_record.put(errorText, errorText.length);
+    	}	// the error, and the text of its message
+    	else if (outcome == RomanEngine.RESULT)
+    	{	// the text, if the tokens don't give it, and the tokens
+    		tokensText = textOf(tokens);
+    		for (i = 0; i < lineInfo.m_lineLength &&
+    			tokensText.charAt(i) == lineInfo.charOfLine(i); i++)
+    			;	// compare the text with what the tokens give
+    		if (i == lineInfo.m_lineLength)	// the tokens give the text
+    			p_record.putVarint(2L * lineInfo.m_lineLength);
+    		else
+    		{	// the text, which is ASCII, since it has no error
+    			p_record.putVarint(2L * lineInfo.m_lineLength + TEXT_FLAG);
+    			for (i = 0; i < lineInfo.m_lineLength; i++)
+    				p_record.putByte(lineInfo.charOfLine(i));
+    		}	// the text, which is ASCII, since it has no error
+    		for (i = 0; i < tokens.m_tokenCount - 1; i++)
+    		{	// for each token, except the end of line
+    			p_record.putByte(tokens.m_tokenType[i]);
+    			p_record.putVarint(tokens.m_tokenEndIndex[i] - previousEnd);
+    			previousEnd = tokens.m_tokenEndIndex[i];
+    			if (tokens.m_tokenType[i] == Roman.INT)
+    				p_record.putSigned(tokens.m_integerValue[i]);
+    		}	// for each token, except the end of line
+    	}	// the text, if the tokens don't give it, and the tokens
+    	return outcome;
+    }	// compileLine method
+
+    /** Run a compiled file, writing the results and messages.
+     * @param p_compiled the compiled file
+     * @param p_output the channel for the results and messages
+     * @throws IOException if a file can't be read or written, or if the
+     *	compiled file isn't valid or is older than its file of expressions
+     */
+    static void run(Path p_compiled, FileChannel p_output) throws IOException {
+    	RomanEngine.Session session = new RomanEngine.Session();
+    		// the file's session; it carries the previous line's result
+    	Roman.ResultFormatter output = new Roman.ResultFormatter();
+    		// the lines' results and messages, until they are written
+    	RomanBatch.MappedLine mappedLine = new RomanBatch.MappedLine();
+    		// view of each line's text, which an error message reads
+    	Decoder record = new Decoder();	// reads each record
+    	long bodyStart;	// file position of the first record
+    	long windowStart;	// file position of the mapped bytes
+    	int windowLength;	// number of mapped bytes
+    	boolean lastWindow;	// whether the mapped bytes end the file
+    	int recordStart;	// index (in window) of a record's length
+    	int recordEnd;	// index (in window) after a record
+    	boolean lineSaysQuit = false;	// whether a line says QUIT or EXIT
+    	int outcome;	// outcome of evaluating a line
+
+    	try (FileChannel input = FileChannel.open(p_compiled,
+    		StandardOpenOption.READ))
+    	{	// run the file
+    	long fileSize = input.size();	// number of bytes in compiled file
+    	bodyStart = check(p_compiled, input, session);
+    	windowStart = bodyStart;
+    	while (windowStart < fileSize && ! lineSaysQuit)
+    	{	// for each window of mapped bytes
+    		windowLength = (int)Math.min(RomanBatch.MAP_WINDOW,
+    			fileSize - windowStart);
+    		lastWindow = (windowStart + windowLength == fileSize);
+    		record.m_bytes = input.map(FileChannel.MapMode.READ_ONLY,
+    			windowStart, windowLength);
+    		recordStart = 0;
+    		while (recordStart < windowLength)
+    		{	// for each record that starts in the window
+    			if (! lastWindow && recordStart > windowLength - MAX_VARINT_BYTES)
+    				break;	// its length might continue past the window
+    			record.m_position = recordStart;
+    			recordEnd = (int)record.getVarint();
+    			recordEnd += record.m_position;
+    			if (recordEnd > windowLength)
+    			{	// record continues past the window
+    				if (recordStart == 0 || lastWindow)	// can't be mapped
+    					throw new IOException("a record is longer than " +
+    						RomanBatch.MAP_WINDOW + " bytes");
+    				break;	// map a new window that starts with this record
+    			}	// record continues past the window
+    			outcome = runRecord(record, recordEnd, session, mappedLine);
+    			output.appendOutcome(outcome, session);
+    			lineSaysQuit = (outcome == RomanEngine.QUIT);
+    			if (lineSaysQuit ||
+    				output.m_length >= RomanBatch.FLUSH_THRESHOLD)
+    				output.writeTo(p_output);
+    			if (lineSaysQuit)	// contains QUIT or EXIT
+    				break;	// quit
+    			recordStart = recordEnd;
+    		}	// for each record that starts in the window
+    		windowStart += recordStart;	// next window starts with next record
+    	}	// for each window of mapped bytes
+    	output.writeTo(p_output);	// write what remains
+    	}	// run the file
+    }	// run method
+
+    /** Check a compiled file's header and checksum, and whether its file of
+     * expressions has changed, and set a session to the file's flags.
+     * @param p_compiled the compiled file
+     * @param p_input the compiled file's channel
+     * @param p_theSession the session that runs the file
+     * @return long file position of the first record
+     * @throws IOException if the file can't be read, or if it isn't valid or
+     *	is older than its file of expressions
+     */
+    static long check(
+    	Path p_compiled,
+    	FileChannel p_input,
+    	RomanEngine.Session p_theSession) throws IOException {
+    	ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    		// the header, and then the name of the file of expressions
+    	CRC32C checksum = new CRC32C();	// checksum of the file
+    	long fileSize = p_input.size();	// number of bytes in compiled file
+    	long position;	// file position of the bytes to check next
+    	int nameLength;	// length of the name of the file of expressions
+    	Path source;	// the file of expressions
+    	int storedChecksum;	// checksum in the header
+
+    	p_input.read(header, 0);
+    	if (header.position() < HEADER_SIZE ||
+    		header.getLong(MAGIC_OFFSET) != MAGIC)
+    		throw new IOException(p_compiled + " isn't a compiled file");
+    	if (header.getInt(VERSION_OFFSET) != VERSION)
+    		throw new IOException(p_compiled + " was compiled by another" +
+    			" version; compile it again");
+    	nameLength = header.getInt(NAME_LENGTH_OFFSET);
+    	position = HEADER_SIZE + (long)nameLength;	// the first record
+    	if (nameLength < 0 || position +
+    		header.getLong(BODY_LENGTH_OFFSET) != fileSize)
+    		throw new IOException(p_compiled + " is damaged (wrong length)");
+    	header = ByteBuffer.wrap(Arrays.copyOf(header.array(),
+    		(int)position));
+    	header.position(HEADER_SIZE);
+    	p_input.read(header, HEADER_SIZE);	// the name
+    	while (position < fileSize)
+    	{	// for each window of the records
+    		checksum.update(p_input.map(FileChannel.MapMode.READ_ONLY, position,
+    			Math.min(RomanBatch.MAP_WINDOW, fileSize - position)));
+    		position += Math.min(RomanBatch.MAP_WINDOW, fileSize - position);
+    	}	// for each window of the records
+    	storedChecksum = header.getInt(CHECKSUM_OFFSET);
+    	header.putInt(CHECKSUM_OFFSET, 0);	// as it was when it was computed
+    	checksum.update(header.array(), 0, header.capacity());
+    	if ((int)checksum.getValue() != storedChecksum)
+    		throw new IOException(p_compiled + " is damaged (wrong checksum)");
+    	source = Paths.get(new String(header.array(), HEADER_SIZE, nameLength,
+    		StandardCharsets.UTF_8));
+    	if (Files.exists(source) &&	// otherwise, it can't have changed
+    		(Files.size(source) != header.getLong(SOURCE_SIZE_OFFSET) ||
+    		Files.getLastModifiedTime(source).toMillis() !=
+    			header.getLong(SOURCE_TIME_OFFSET)))
+    		throw new IOException(p_compiled + " is older than " + source +
+    			"; compile it again");
+    	p_theSession.setExtendedRange(
+    		(header.getInt(FLAGS_OFFSET) & EXTENDED_FLAG) != 0);
+    	return HEADER_SIZE + (long)nameLength;
+    }	// check method
+
+    /** Run a line's record, i.e., perform step 4 of RomanEngine.evaluate for
+     * a line that has tokens, or restore the outcome that steps 1 through 3
+     * found for a line that doesn't.
+     * @param p_record reads the record, after its length
+     * @param p_recordEnd index after the record
+     * @param p_theSession the session, which holds the previous result
+     * @param p_mappedLine a view to use for the line's text
+     * @return int the outcome, e.g., RomanEngine.RESULT
+     */
+    static int runRecord(
+    	Decoder p_record,
+    	int p_recordEnd,
+    	RomanEngine.Session p_theSession,
+    	RomanBatch.MappedLine p_mappedLine) {
+    	Roman.InfoForLine lineInfo = p_theSession.m_lineInfo;
+    		// info for the line, which gets its tokens
+    	Roman.TokenBuffer tokens = lineInfo.m_tokenizedLine;	// its tokens
+    	int outcome = p_record.getByte();	// outcome of steps 1 through 3
+    	int textLength;	// number of bytes of the line's text
+    	boolean hasText;	// whether the record has the line's text
+    	String errorText;	// the line through its error
+    	int errorKind;	// kind of the line's error
+    	int errorPosition;	// position of the line's error
+    	int tokenType;	// type of a token
+    	int tokenEnd = -1;	// end index of a token
+
+    	if (outcome == RomanEngine.ERROR)
+    	{	// as though the error were found
+    		errorKind = (int)p_record.getVarint();
+    		errorPosition = (int)p_record.getVarint();
+    		errorText = p_record.getText((int)p_record.getVarint());
+    		lineInfo.setLine(errorText, 0, errorText.length());
+    			// the line through its error, which is all that its message
+    			// shows; it has a char for each position through the error's
+    		lineInfo.m_usedPreviousResult = false;
+    		Roman.processAnError(lineInfo, errorPosition, errorKind);
+    	}	// as though the error were found
+    	else if (outcome == RomanEngine.RESULT)
+    	{	// evaluate the tokens
+    		textLength = (int)p_record.getVarint();
+    		hasText = (textLength & TEXT_FLAG) != 0;
+    		textLength >>>= 1;
+    		if (hasText)	// read it in place
+    		{	// the line's text, for an error message
+    			p_mappedLine.set(p_record.m_bytes, p_record.m_position,
+    				textLength);
+    			lineInfo.setLine(p_mappedLine, 0, textLength);
+    			p_record.m_position += textLength;
+    		}	// the line's text, for an error message
+    		tokens.clear();
+    		while (p_record.m_position < p_recordEnd)
+    		{	// for each token, except the end of line
+    			tokenType = p_record.getByte();
+    			tokenEnd += (int)p_record.getVarint();
+    			tokens.add(tokenType, tokenEnd, (tokenType == Roman.INT)
+    				? p_record.getSigned() : 0);
+    		}	// for each token, except the end of line
+    		tokens.add(Roman.END, textLength);
+    			// append an artificial token for end of line
+    		outcome = RomanEngine.evaluateTokenizedLine(p_theSession);
+    		if (outcome == RomanEngine.ERROR && ! hasText)
+    		{	// the tokens give the text for the error message
+    			errorText = textOf(tokens);
+    			lineInfo.setLine(errorText, 0, errorText.length());
+    		}	// the tokens give the text for the error message
+    	}	// evaluate the tokens
+    	return outcome;
+    }	// runRecord method
+
+    /** Make the text of a line from its tokens, i.e., each token's text
+     * (for an integer, its numeral, from Roman.toRoman), with blanks before
+     * it up to its end index, and blanks after the last one up to the end
+     * of line's index.
+     * @param p_tokens the tokens, which end with the end of line and have no
+     *	reference to a line of the history
+     * @return String the text, in upper case
+     */
+    static String textOf(Roman.TokenBuffer p_tokens) {
+    	StringBuilder theText = new StringBuilder();	// the text so far
+    	String tokenText;	// text of a token
+    	int end = 0;	// end index of a token
+    	for (int i = 0; i < p_tokens.m_tokenCount; i++)
+    	{	// for each token
+    		tokenText = (p_tokens.m_tokenType[i] == Roman.INT)
+    			? Roman.toRoman(p_tokens.m_integerValue[i])
+    			: TEXT_OF_TOKEN[p_tokens.m_tokenType[i]];
+    		end = p_tokens.m_tokenEndIndex[i];
+    		while (theText.length() < end + 1 - tokenText.length())
+    			theText.append(' ');	// the blanks before it
+    		theText.append(tokenText);
+    	}	// for each token
+    	theText.setLength(end);	// the end of line's index is past the end
+    	return theText.toString();
+    }	// textOf method
+
+    /** Encodes bytes and variable-length integers into a reusable buffer,
+     * for a record or for the records until they are written.
+     */
+    static class Encoder {
+    	byte[] m_bytes = new byte[256];	// the encoded bytes
+    	int m_length;	// number of encoded bytes in m_bytes
+
+    	/** Remove all the bytes, keeping the buffer for reuse.
+    	 */
+    	void clear() {
+    		m_length = 0;
+    	}	// clear method
+
+    	/** Append a byte, growing the buffer if necessary.
+    	 * @param p_theByte the byte, in its low 8 bits
+    	 */
+    	void putByte(int p_theByte) {
+    		if (m_length == m_bytes.length)	// it's full
+    			m_bytes = Arrays.copyOf(m_bytes, 2 * m_bytes.length);
+    		m_bytes[m_length++] = (byte)p_theByte;
+    	}	// putByte method
+
+    	/** Append bytes, growing the buffer if necessary.
+    	 * @param p_theBytes the bytes
+    	 * @param p_length number of them to append
+    	 */
+    	void put(byte[] p_theBytes, int p_length) {
+    		if (m_length + p_length > m_bytes.length)	// it's full
+    			m_bytes = Arrays.copyOf(m_bytes,
+    				Math.max(2 * m_bytes.length, m_length + p_length));
+    		System.arraycopy(p_theBytes, 0, m_bytes, m_length, p_length);
+    		m_length += p_length;
+    	}	// put method
+
+    	/** Append a variable-length integer that isn't negative.
+    	 * @param p_theValue the integer
+    	 */
+    	void putVarint(long p_theValue) {
+    		while ((p_theValue & ~0x7FL) != 0)	// more than 7 bits remain
+    		{	// append the low 7 bits, and say that more follow
+    			putByte((int)(p_theValue & 0x7F) | 0x80);
+    			p_theValue >>>= 7;
+    		}	// append the low 7 bits, and say that more follow
+    		putByte((int)p_theValue);
+    	}	// putVarint method
+
+    	/** Append a variable-length integer that might be negative, zigzag-
+    	 * encoded, so that 0, -1, 1, -2, ... are 0, 1, 2, 3, ...
+    	 * @param p_theValue the integer
+    	 */
+    	void putSigned(long p_theValue) {
+    		putVarint((p_theValue << 1) ^ (p_theValue >> 63));
+    	}	// putSigned method
+
+    	/** Write the bytes to a channel, adding them to a checksum, and then
+    	 * remove them.
+    	 * @param p_channel the channel
+    	 * @param p_checksum the checksum
+    	 * @return int the number of bytes written
+    	 * @throws IOException if the channel can't be written
+    	 */
+    	int writeTo(FileChannel p_channel, CRC32C p_checksum)
+    		throws IOException {
+    		ByteBuffer theBytes = ByteBuffer.wrap(m_bytes, 0, m_length);
+    		int written = m_length;	// number of bytes written
+    		p_checksum.update(m_bytes, 0, m_length);
+    		while (theBytes.hasRemaining())
+    			p_channel.write(theBytes);
+    		m_length = 0;
+    		return written;
+    	}	// writeTo method
+    }	// Encoder class
+
+    /** Decodes bytes and variable-length integers from mapped bytes, at a
+     * position that advances past each one.
+     */
+    static class Decoder {
+    	ByteBuffer m_bytes;	// the mapped bytes
+    	int m_position;	// index of the next byte to decode
+
+    	/** Get the next byte.
+    	 * @return int the byte, from 0 to 255
+    	 */
+    	int getByte() {
+    		return m_bytes.get(m_position++) & 0xFF;
+    	}	// getByte method
+
+    	/** Get the next variable-length integer that isn't negative.
+    	 * @return long the integer
+    	 */
+    	long getVarint() {
+    		long theValue = 0;	// the bits so far
+    		int shift = 0;	// position of the next 7 bits
+    		int b;	// a byte of the integer
+    		do
+    		{	// for each byte, while more follow
+    			b = getByte();
+    			theValue |= (long)(b & 0x7F) << shift;
+    			shift += 7;
+    		}	// for each byte, while more follow
+    		while ((b & 0x80) != 0);
+    		return theValue;
+    	}	// getVarint method
+
+    	/** Get the next zigzag-encoded variable-length integer.
+    	 * @return long the integer
+    	 */
+    	long getSigned() {
+    		long zigzag = getVarint();	// the encoded integer
+    		return (zigzag >>> 1) ^ -(zigzag & 1);
+    	}	// getSigned method
+
+    	/** Get the next bytes as UTF-8 text.
+    	 * @param p_length number of bytes
+    	 * @return String the text
+    	 */
+    	String getText(int p_length) {
+    		byte[] theText = new byte[p_length];	// the bytes of the text
+    		m_bytes.get(m_position, theText);
+    		m_position += p_length;
+    		return new String(theText, StandardCharsets.UTF_8);
+    	}	// getText method
+    }	// Decoder class
+}	// RomanCompiled class
@@ -0,0 +1,411 @@
+/*
+ * File:	RomanEngine.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanEngine
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+// imports:
+import jdk.jfr.FlightRecorder;
+
+/** Evaluates lines for the Roman numeral desk calculator, without displaying
+ * anything, so that other programs can use the calculator, e.g.:
+ *	RomanEngine.Session session = new RomanEngine.Session();
+ *	if (RomanEngine.evaluate("MCM + XX", session) == RomanEngine.RESULT)
+ *		use(session.getResult());	// 1920
+ *
+ * Class:	RomanEngine
+ *
+ * evaluate performs steps 1 through 4 that the Roman class comment lists
+ * and returns an outcome code; the session holds the result, or the kind
+ * and position of the error, until the next line is evaluated.  A line that
+ * starts with an operator uses the result of the session's previous line
+ * that had a result.
+ *
+ * The engine itself has no state, so any number of threads can use it at
+ * once; each session holds its own previous result and its own reusable
+ * token buffer, so a session must be used by one thread at a time.
+ * Evaluating a line that has a result allocates nothing: the line is read
+ * in place (in upper case, trimmed, without an ending "="), rather than
+ * copied; an error allocates only when its text is requested.
+ *
+ * A session can have a RomanCache, which sessions (on any threads) can
+ * share; then a line whose outcome is cached isn't tokenized or evaluated
+ * again, but its outcome is the same as if it were.
+ *
+ * A session can also have a RomanMetrics, which records the latency of each
+ * phase of each line and counts the lines' outcomes, tokens, errors, and
+ * cache hits; a session without one tests only for null per phase.  Each
+ * line is also a Java Flight Recorder event, RomanMetrics.LineEvent, while
+ * Flight Recorder records that event.
+ */
+class RomanEngine {
+    // These are the codes for the outcome of evaluating a line:
+    static final int RESULT = 0;	// line has a result
+    static final int EMPTY_LINE = 1;	// line is only "=" or nothing at all
+    static final int ZERO_DIGIT = 2;	// line contains the DIGIT 0
+    static final int QUIT = 3;	// line contains QUIT or EXIT
+    static final int ERROR = 4;	// line has an error, which session describes
+
+    /** Evaluate a line.
+     * @param p_theLine the line, as the user entered it, without a line ending
+     * @param p_theSession the session, which holds the previous result
+     * @return int the outcome, e.g., RESULT
+     */
+    public static int evaluate(CharSequence p_theLine, Session p_theSession) {
+    	RomanMetrics metrics = p_theSession.m_metrics;
+    		// measurements of the session's lines, or null if none
+    	RomanMetrics.LineEvent event = null;
+    		// the line's event, if Flight Recorder is recording it
+    	long phaseStart = 0;	// when the first phase started, if measured
+    	int outcome;	// outcome of evaluating the line
+
+    	if (FlightRecorder.isInitialized()
+    		&& RomanMetrics.LineEvent.PROBE.isEnabled())	// event is recorded
+    	{	// start the line's event
+    		event = new RomanMetrics.LineEvent();
+    		event.begin();
+    	}	// start the line's event
+    	if (metrics != null)
+    		phaseStart = System.nanoTime();
+    	outcome = prepareLine(p_theLine, p_theSession);	// 1) and 2)
+    	if (metrics != null)
+    		metrics.endPhase(RomanMetrics.PREPROCESS, phaseStart);
+    	if (outcome == RESULT)	// line might have a result
+    		outcome = evaluatePreparedLine(p_theSession);	// 3) and 4)
+    	if (metrics != null)
+    		metrics.countLine(outcome, p_theSession.m_lineInfo.m_errorKind);
+    	if (event != null)
+    		event.commitLine(p_theLine, outcome, p_theSession);
+    	return outcome;
+    }	// evaluate method
+
+    /** Prepare a line to be tokenized and evaluated, i.e., steps 1 and 2 of
+     * evaluate, by checking for empty, DIGIT 0, and QUIT or EXIT, and setting
+     * the session's InfoForLine to the rest of the line.
+     * @param p_theLine the line, as the user entered it, without a line ending
+     * @param p_theSession the session, which holds the previous result
+     * @return int the outcome, EMPTY_LINE, ZERO_DIGIT, or QUIT, or RESULT if
+     *	the line must be tokenized and evaluated to find its outcome
+     */
+    static int prepareLine(CharSequence p_theLine, Session p_theSession) {
+    	Roman.InfoForLine lineInfo = p_theSession.m_lineInfo;
+    		// info for the line, which is reused for each line
+    	int start = 0;	// index of the line's first non-blank char
+    	int end = p_theLine.length();	// index after last non-blank char
+    	int i;	// iteration for each char in line
+    	char c;	// a char of the line
+    	boolean hasHistory = (lineInfo.m_history != null);
+    		// whether the line can refer to lines of the session's history
+    	boolean inReference = false;	// whether a char is in a reference to
+    		// a line of the history, e.g., #10, whose 0 is a digit
+
+    	lineInfo.m_lineHasError = false;	// no error detected yet
+    	lineInfo.m_errorKind = Roman.NO_ERROR;
+    	lineInfo.m_usedPreviousResult = false;
+    		// previous line's result hasn't been used yet
+    	p_theSession.m_cacheHit = false;
+
+    	// 1) Check for empty:
+    	while (start < end && p_theLine.charAt(start) <= ' ')
+    		start++;	// skip leading blank (or control character)
+    	while (end > start && p_theLine.charAt(end - 1) <= ' ')
+    		end--;	// skip trailing blank (or control character)
+    	if (end == start || (end == start + 1 && p_theLine.charAt(start) == '='))
+    		return EMPTY_LINE;	// only "=" or nothing at all
+    	for (i = start; i < end; i++)
+    	{	// for each char, until a DIGIT 0
+    		c = p_theLine.charAt(i);
+    		if (c == '0' && ! inReference)
+    			// Handle this particular invalid character specially,
+    			// because it could be hard for a user to find the problem
+    			// if we issue a generic "invalid character" message.
+    			return ZERO_DIGIT;	// line contains the DIGIT 0.
+    		if (hasHistory)	// the line can refer to the history's lines
+    			inReference = (c == '#') || (inReference && c >= '0' && c <= '9');
+    	}	// for each char, until a DIGIT 0
+    	if (p_theLine.charAt(end - 1) == '=')	// non-blanks and then "="
+    		end--;	// strip off (ignore) the ending "="
+    	lineInfo.setLine(p_theLine, start, end - start);
+
+    	// 2) Check for QUIT or EXIT:
+    	if (lineInfo.lineContains("QUIT") || lineInfo.lineContains("EXIT"))
+    		return QUIT;	// contains QUIT or EXIT
+    	return RESULT;	// not yet known
+    }	// prepareLine method
+
+    /** Tokenize and evaluate a prepared line, i.e., steps 3 and 4 of
+     * evaluate, unless the session's cache has the line's outcome.
+     * @param p_theSession the session, whose InfoForLine has the line
+     * @return int the outcome, RESULT or ERROR
+     */
+    static int evaluatePreparedLine(Session p_theSession) {
+    	Roman.InfoForLine lineInfo = p_theSession.m_lineInfo;
+    		// info for the line
+    	RomanCache.Outcome cachedOutcome;	// the line's outcome, if cached
+    	int outcome;	// outcome of evaluating the line
+
+    	if (p_theSession.m_cache == null ||	// no cache
+    		(lineInfo.m_history != null && lineInfo.lineContains("#")))
+    		// a line that refers to the history depends on more than its text
+    		// and the previous result, which are all that the cache's key has
+    		return tokenizeAndEvaluate(lineInfo, p_theSession.m_metrics);
+    	p_theSession.m_cacheKey.set(lineInfo, lineInfo.m_result);
+    	cachedOutcome = p_theSession.m_cache.get(p_theSession.m_cacheKey);
+    	p_theSession.m_cacheHit = (cachedOutcome != null);
+    	if (p_theSession.m_metrics != null)
+    		p_theSession.m_metrics.countCacheLookup(p_theSession.m_cacheHit);
+    	if (cachedOutcome == null)
+    	{	// not cached; evaluate the line, and cache its outcome
+    		outcome = tokenizeAndEvaluate(lineInfo, p_theSession.m_metrics);
+    		p_theSession.m_cache.put(p_theSession.m_cacheKey,
+    			new RomanCache.Outcome(lineInfo, outcome));
+    		return outcome;
+    	}	// not cached; evaluate the line, and cache its outcome
+    	if (cachedOutcome.m_outcome == RESULT)	// line has a result
+    	{	// as though the line were evaluated
+    		lineInfo.m_result = cachedOutcome.m_result;
+    		lineInfo.m_usedPreviousResult = cachedOutcome.m_usedPreviousResult;
+    	}	// as though the line were evaluated
+    	else
+    	{	// as though the error were found
+    		lineInfo.m_lineHasError = true;
+    		lineInfo.m_errorKind = cachedOutcome.m_errorKind;
+    		lineInfo.m_errorPosition = cachedOutcome.m_errorPosition;
+    	}	// as though the error were found
+    	return cachedOutcome.m_outcome;
+    }	// evaluatePreparedLine method
+
+    /** Tokenize and evaluate a line, i.e., steps 3 and 4 of evaluate.
+     * @param p_lineInfo info for the line, which is set to the line
+     * @param p_metrics where to record the phases' latencies and the number
+     *	of tokens, or null for nowhere
+     * @return int the outcome, RESULT or ERROR
+     */
+    static int tokenizeAndEvaluate(
+    	Roman.InfoForLine p_lineInfo,
+    	RomanMetrics p_metrics) {
+    	long phaseStart = 0;	// when a phase started, if measured
+
+    	// 3) Tokenize the line, including converting Romans to integers:
+    	if (p_metrics != null)
+    		phaseStart = System.nanoTime();
+    	p_lineInfo.tokenize();	// tokenize
+    	if (p_metrics != null)
+    	{	// measure the tokenizing
+    		phaseStart = p_metrics.endPhase(RomanMetrics.TOKENIZE, phaseStart);
+    		p_metrics.countTokens(p_lineInfo.m_tokenizedLine.m_tokenCount - 1);
+    			// not counting the end of line
+    	}	// measure the tokenizing
+    	if (p_lineInfo.m_lineHasError)	// if line has error
+    		return ERROR;	// skip parse and evaluate
+    	return evaluateTokens(p_lineInfo, p_metrics, phaseStart);	// 4)
+    }	// tokenizeAndEvaluate method
+
+    /** Evaluate a line that was tokenized earlier, e.g., by RomanCompiled,
+     * i.e., only step 4 of evaluate.  The session's token buffer has the
+     * line's tokens, including the end of line, and the session's line has
+     * the text that an error message shows.
+     * @param p_theSession the session, which holds the previous result
+     * @return int the outcome, RESULT or ERROR
+     */
+    static int evaluateTokenizedLine(Session p_theSession) {
+    	Roman.InfoForLine lineInfo = p_theSession.m_lineInfo;
+    		// info for the line, whose tokens are already in its buffer
+
+    	lineInfo.m_lineHasError = false;	// no error detected yet
+    	lineInfo.m_errorKind = Roman.NO_ERROR;
+    	lineInfo.m_usedPreviousResult = false;
+    		// previous line's result hasn't been used yet
+    	p_theSession.m_cacheHit = false;
+    	return evaluateTokens(lineInfo, p_theSession.m_metrics,
+    		(p_theSession.m_metrics != null) ? System.nanoTime() : 0);
+    }	// evaluateTokenizedLine method
+
+    /** Parse and evaluate a tokenized line, i.e., step 4 of evaluate.
+     * @param p_lineInfo info for the line, which has the line's tokens
+     * @param p_metrics where to record the phase's latency, or null for
+     *	nowhere
+     * @param p_phaseStart when the phase started, if measured
+     * @return int the outcome, RESULT or ERROR
+     */
+    static int evaluateTokens(
+    	Roman.InfoForLine p_lineInfo,
+    	RomanMetrics p_metrics,
+    	long p_phaseStart) {
+    	long resultOfEvaluation;	// result of evaluation of line
+
+    	// 4) Parse and evaluate the tokenized line:
+    	resultOfEvaluation = p_lineInfo.evaluateIteratively();
+    		// same as parseAndEvaluate(0), at any depth of parentheses
+    	if (p_metrics != null)
+    		p_metrics.endPhase(RomanMetrics.EVALUATE, p_phaseStart);
+    	if (p_lineInfo.m_lineHasError)	// if line has error
+    		return ERROR;
+    	p_lineInfo.m_result = resultOfEvaluation;
+    		// update result, now that we know it's error-free
+    	return RESULT;
+    }	// evaluateTokens method
+
+    /** A sequence of lines that are evaluated in order, e.g., a user's
+     * interactive session or a batch file.
+     */
+    static class Session {
+    	Roman.InfoForLine m_lineInfo = new Roman.InfoForLine();
+    		// info for each line; it holds the previous line's result
+    	RomanCache m_cache;	// cache of lines' outcomes, or null if none
+    	RomanCache.Key m_cacheKey = new RomanCache.Key();
+    		// key of each line, which is reused for each line
+    	boolean m_cacheHit;	// whether the last line's outcome was cached
+    	RomanMetrics m_metrics;	// measurements of lines, or null if none
+
+    	/** Create a session without a cache.
+    	 */
+    	Session()
+    	{	// constructor
+    	}	// constructor
+
+    	/** Create a session that uses a cache.
+    	 * @param p_cache the cache, which may be shared, or null for none
+    	 */
+    	Session(RomanCache p_cache)
+    	{	// constructor
+    		m_cache = p_cache;
+    	}	// constructor
+
+    	/** Create a session that uses a cache and is measured.
+    	 * @param p_cache the cache, which may be shared, or null for none
+    	 * @param p_metrics the metrics, which may be shared, or null for none
+    	 */
+    	Session(RomanCache p_cache, RomanMetrics p_metrics)
+    	{	// constructor
+    		m_cache = p_cache;
+    		m_metrics = p_metrics;
+    	}	// constructor
+
+    	/** Get the result of the last line that had a result, which a line
+    	 * that starts with an operator uses.
+    	 * @return int the result, or 0 if no line has had a result; it's in
+    	 *	the valid range unless the session is in the extended range
+    	 */
+    	public int getResult() {
+    		return (int)m_lineInfo.m_result;
+    	}	// getResult method
+
+    	/** Get the result of the last line that had a result, which a line
+    	 * that starts with an operator uses, in the extended range.
+    	 * @return long the result, or 0 if no line has had a result; in
+    	 *	fraction mode, it's a packed RomanFraction
+    	 */
+    	public long getLongResult() {
+    		return m_lineInfo.m_result;
+    	}	// getLongResult method
+
+    	/** Set the result that the next line uses if it starts with an
+    	 * operator, e.g., to resume an earlier session.
+    	 * @param p_theResult the result, in the session's range
+    	 */
+    	public void setResult(long p_theResult) {
+    		m_lineInfo.m_result = p_theResult;
+    	}	// setResult method
+
+    	/** Opt into (or out of) the extended range: the session's results,
+    	 * and numerals, can then be as large as Roman.EXTENDED_MAX, and a
+    	 * numeral above MAXINT is written with Roman.VINCULUM, e.g., _V for
+    	 * 5,000.  A previous result outside the new range becomes 0.
+    	 * @param p_extended whether the session is in the extended range
+    	 */
+    	public void setExtendedRange(boolean p_extended) {
+    		m_lineInfo.m_maxResult = p_extended ? Roman.EXTENDED_MAX
+    			: Roman.MAXINT;
+    		if (! m_lineInfo.isInRange(m_lineInfo.m_result))	// too large
+    			m_lineInfo.m_result = 0;
+    	}	// setExtendedRange method
+
+    	/** Opt into (or out of) fraction mode, in which / divides exactly, so
+    	 * the session's results can be fractions, e.g., I / II is 1/2; each
+    	 * result (from getLongResult or setResult) is then a packed
+    	 * RomanFraction, whose numerator and denominator are ints.  The
+    	 * previous result is converted to the new mode (a fraction becomes
+    	 * its integer part).  A session in fraction mode can share a cache
+    	 * with one that isn't, since the cache keys lines by mode, but must
+    	 * not use the history of one that isn't.
+    	 * @param p_fractions whether the session is in fraction mode
+    	 */
+    	public void setFractions(boolean p_fractions) {
+    		long result = m_lineInfo.m_result;	// the previous result
+
+    		if (p_fractions == m_lineInfo.m_fractions)	// no change
+    			return;
+    		m_lineInfo.m_fractions = p_fractions;
+    		if (p_fractions)	// the integer over 1
+    		{	// unless it doesn't fit in a fraction
+    			result = RomanFraction.ofInteger(result);
+    			m_lineInfo.m_result = (result == Roman.OUT_OF_RANGE)
+    				? RomanFraction.ZERO : result;
+    		}	// unless it doesn't fit in a fraction
+    		else m_lineInfo.m_result = RomanFraction.numeratorOf(result) /
+    			RomanFraction.denominatorOf(result);	// the integer part
+    	}	// setFractions method
+
+    	/** Give the session a history, whose lines' results its lines can
+    	 * use, e.g., #12, and resume after the history's last line.  The
+    	 * caller appends each line's outcome to the history.  If the
+    	 * history's previous result is outside the session's range (e.g., it
+    	 * is from a session in the extended range), the session resumes with
+    	 * 0, and a line that uses a result outside the range has an error.
+    	 * @param p_history the history, or null for none
+    	 */
+    	public void setHistory(RomanHistory p_history) {
+    		m_lineInfo.m_history = p_history;
+    		if (p_history != null)	// resume with its previous result
+    			m_lineInfo.m_result = m_lineInfo.isInRange(
+    				p_history.lastResult()) ? p_history.lastResult() : 0;
+    	}	// setHistory method
+
+    	/** Tell whether the last line used the previous line's result,
+    	 * because it starts with an operator.
+    	 * @return boolean whether it did
+    	 */
+    	public boolean usedPreviousResult() {
+    		return m_lineInfo.m_usedPreviousResult;
+    	}	// usedPreviousResult method
+
+    	/** Get the kind of the last line's error.
+    	 * @return int the kind, e.g., Roman.INVALID_CHARACTER, or
+    	 *	Roman.NO_ERROR if the last line had no error
+    	 */
+    	public int getErrorKind() {
+    		return m_lineInfo.m_errorKind;
+    	}	// getErrorKind method
+
+    	/** Get the position of the last line's error.
+    	 * @return int the position (in the line, after leading blanks are
+    	 *	removed) of the char where the error was found
+    	 */
+    	public int getErrorPosition() {
+    		return m_lineInfo.m_errorPosition;
+    	}	// getErrorPosition method
+
+    	/** Get the description of the last line's error.
+    	 * @return String the description, e.g., "an invalid character"
+    	 */
+    	public String getErrorDescription() {
+    		return Roman.DESCRIPTION_OF_ERROR[m_lineInfo.m_errorKind];
+    	}	// getErrorDescription method
+
+    	/** Get the text of the last line through its error.
+    	 * @return String the line, in upper case, through the error's position
+    	 */
+    	public String getErrorText() {
+    		return m_lineInfo.lineThrough(m_lineInfo.m_errorPosition);
+    	}	// getErrorText method
+    }	// Session class
+}	// RomanEngine class
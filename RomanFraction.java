@@ -0,0 +1,226 @@
+/*
+ * File:	RomanFraction.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanFraction
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+/** Does exact arithmetic on fractions, for a session in fraction mode (see
+ * RomanEngine.Session.setFractions), in which / divides exactly, e.g.:
+ *	long half = RomanFraction.divide(RomanFraction.ofInteger(1),
+ *		RomanFraction.ofInteger(2));	// 1/2
+ *
+ * Class:	RomanFraction
+ *
+ * A fraction is packed into one long, so that the evaluator can carry it
+ * wherever it carries an integer result (in a token, on the evaluation
+ * stack, and as the previous line's result) without allocating anything:
+ * the numerator is the high 32 bits, as a signed int, and the denominator
+ * is the low 32 bits, as a positive int.  A packed fraction is always in
+ * lowest terms, so each fraction has one packed form, and an integer n is
+ * n/1.  Roman.OUT_OF_RANGE, whose denominator is 0, is never a fraction;
+ * an operation returns it if its result's numerator or denominator doesn't
+ * fit in an int.
+ *
+ * Each operation multiplies ints into longs, which can't overflow, and then
+ * divides them by their greatest common divisor, which is found by the
+ * binary GCD algorithm, without division.  Operations on integers (whose
+ * denominators are 1) skip the GCD.
+ */
+class RomanFraction {
+    static final long ZERO = ofInteger(0);	// 0/1, packed
+    static final long DENOMINATOR_MASK = 0xFFFFFFFFL;	// bits of denominator
+    static final long POWER_LIMIT = -(long)Integer.MIN_VALUE;	// largest
+    	// magnitude of an int, which a numerator or denominator can't exceed
+
+    /** Pack an integer as a fraction.
+     * @param p_theInteger the integer
+     * @return long the integer over 1, packed, or Roman.OUT_OF_RANGE if
+     *	it doesn't fit in an int
+     */
+    static long ofInteger(long p_theInteger) {
+    	if (p_theInteger < Integer.MIN_VALUE || p_theInteger > Integer.MAX_VALUE)
+    		return Roman.OUT_OF_RANGE;
+    	return (p_theInteger << 32) | 1;
+    }	// ofInteger method
+
+    /** Pack a fraction, in lowest terms.
+     * @param p_numerator the numerator
+     * @param p_denominator the denominator, which isn't 0
+     * @return long the fraction, packed, or Roman.OUT_OF_RANGE if its
+     *	numerator or denominator (in lowest terms) doesn't fit in an int
+     */
+    static long of(long p_numerator, long p_denominator) {
+    	long divisor;	// greatest common divisor of the two
+
+    	if (p_denominator < 0)	// the sign goes in the numerator
+    	{	// negate both
+    		if (p_numerator == Long.MIN_VALUE || p_denominator == Long.MIN_VALUE)
+    			return Roman.OUT_OF_RANGE;	// can't be negated
+    		p_numerator = -p_numerator;
+    		p_denominator = -p_denominator;
+    	}	// negate both
+    	if (p_denominator != 1)	// it might not be in lowest terms
+    	{	// reduce it
+    		divisor = gcd(Math.abs(p_numerator), p_denominator);
+    		p_numerator /= divisor;
+    		p_denominator /= divisor;
+    	}	// reduce it
+    	if (p_numerator < Integer.MIN_VALUE || p_numerator > Integer.MAX_VALUE
+    		|| p_denominator > Integer.MAX_VALUE)	// doesn't fit
+    		return Roman.OUT_OF_RANGE;
+    	return (p_numerator << 32) | p_denominator;
+    }	// of method
+
+    /** Get the numerator of a fraction.
+     * @param p_fraction the fraction, packed
+     * @return int the numerator, which has the fraction's sign
+     */
+    static int numeratorOf(long p_fraction) {
+    	return (int)(p_fraction >> 32);
+    }	// numeratorOf method
+
+    /** Get the denominator of a fraction.
+     * @param p_fraction the fraction, packed
+     * @return int the denominator, which is positive
+     */
+    static int denominatorOf(long p_fraction) {
+    	return (int)(p_fraction & DENOMINATOR_MASK);
+    }	// denominatorOf method
+
+    /** Find the greatest common divisor of two numbers, by the binary GCD
+     * algorithm: remove the factors of 2 that both have, and then
+     * repeatedly subtract the smaller from the larger, which is even, and
+     * remove its factors of 2, until they are equal.
+     * @param p_first a number, which isn't negative
+     * @param p_second a number, which is positive
+     * @return long their greatest common divisor
+     */
+    static long gcd(long p_first, long p_second) {
+    	int twos;	// factors of 2 that both have
+    	long difference;	// the larger minus the smaller
+
+    	if (p_first == 0)	// every number divides 0
+    		return p_second;
+    	twos = Long.numberOfTrailingZeros(p_first | p_second);
+    	p_first >>>= Long.numberOfTrailingZeros(p_first);
+    	p_second >>>= Long.numberOfTrailingZeros(p_second);
+    	while (p_first != p_second)
+    	{	// both are odd; replace the larger by their difference, halved
+    		if (p_first > p_second)
+    		{	// the first is larger
+    			difference = p_first - p_second;
+    			p_first = difference >>> Long.numberOfTrailingZeros(difference);
+    		}	// the first is larger
+    		else
+    		{	// the second is larger
+    			difference = p_second - p_first;
+    			p_second = difference >>> Long.numberOfTrailingZeros(difference);
+    		}	// the second is larger
+    	}	// both are odd; replace the larger by their difference, halved
+    	return p_first << twos;
+    }	// gcd method
+
+    /** Add two fractions.
+     * @param p_first a fraction, packed
+     * @param p_second a fraction, packed
+     * @return long their sum, packed, or Roman.OUT_OF_RANGE
+     */
+    static long add(long p_first, long p_second) {
+    	long firstDenominator = denominatorOf(p_first);
+    	long secondDenominator = denominatorOf(p_second);
+
+    	if (firstDenominator == 1 && secondDenominator == 1)	// integers
+    		return ofInteger((long)numeratorOf(p_first) + numeratorOf(p_second));
+    	return of(numeratorOf(p_first) * secondDenominator
+    		+ numeratorOf(p_second) * firstDenominator,
+    		firstDenominator * secondDenominator);
+    }	// add method
+
+    /** Subtract a fraction from another.
+     * @param p_first a fraction, packed
+     * @param p_second the fraction to subtract, packed
+     * @return long their difference, packed, or Roman.OUT_OF_RANGE
+     */
+    static long subtract(long p_first, long p_second) {
+    	long firstDenominator = denominatorOf(p_first);
+    	long secondDenominator = denominatorOf(p_second);
+
+    	if (firstDenominator == 1 && secondDenominator == 1)	// integers
+    		return ofInteger((long)numeratorOf(p_first) - numeratorOf(p_second));
+    	return of(numeratorOf(p_first) * secondDenominator
+    		- numeratorOf(p_second) * firstDenominator,
+    		firstDenominator * secondDenominator);
+    }	// subtract method
+
+    /** Multiply two fractions.
+     * @param p_first a fraction, packed
+     * @param p_second a fraction, packed
+     * @return long their product, packed, or Roman.OUT_OF_RANGE
+     */
+    static long multiply(long p_first, long p_second) {
+    	long firstDenominator = denominatorOf(p_first);
+    	long secondDenominator = denominatorOf(p_second);
+
+    	if (firstDenominator == 1 && secondDenominator == 1)	// integers
+    		return ofInteger((long)numeratorOf(p_first) * numeratorOf(p_second));
+    	return of((long)numeratorOf(p_first) * numeratorOf(p_second),
+    		firstDenominator * secondDenominator);
+    }	// multiply method
+
+    /** Divide a fraction by another, exactly.
+     * @param p_first a fraction, packed
+     * @param p_second the fraction to divide by, packed, which isn't 0
+     * @return long their quotient, packed, or Roman.OUT_OF_RANGE
+     */
+    static long divide(long p_first, long p_second) {
+    	return of((long)numeratorOf(p_first) * denominatorOf(p_second),
+    		(long)denominatorOf(p_first) * numeratorOf(p_second));
+    }	// divide method
+
+    /** Raise a fraction to an integer power exactly; a negative exponent
+     * gives the power of the fraction's reciprocal.
+     * @param p_base the base, packed
+     * @param p_exponent the exponent
+     * @return long the power, packed, or Roman.OUT_OF_RANGE if its numerator
+     *	or denominator doesn't fit in an int, or if the base is 0 and the
+     *	exponent is negative (because the power is infinite)
+     */
+    static long power(long p_base, long p_exponent) {
+    	long numerator = numeratorOf(p_base);	// numerator of the base
+    	long denominator = denominatorOf(p_base);	// its denominator
+
+    	if (p_exponent < 0)	// power of the reciprocal
+    	{	// swap the numerator and the denominator
+    		if (numerator == 0)	// infinite
+    			return Roman.OUT_OF_RANGE;
+    		numerator = denominatorOf(p_base);
+    		denominator = numeratorOf(p_base);
+    		p_exponent = -p_exponent;
+    	}	// swap the numerator and the denominator
+    	numerator = Roman.power(numerator, p_exponent, POWER_LIMIT);
+    	denominator = Roman.power(denominator, p_exponent, POWER_LIMIT);
+    	if (numerator == Roman.OUT_OF_RANGE || denominator == Roman.OUT_OF_RANGE)
+    		return Roman.OUT_OF_RANGE;
+    	return of(numerator, denominator);	// moves a negative denominator's
+    		// sign to the numerator
+    }	// power method
+
+    /** Tell whether a fraction's magnitude is larger than a limit.
+     * @param p_fraction the fraction, packed
+     * @param p_limit the limit, which is positive
+     * @return boolean whether it's larger
+     */
+    static boolean exceeds(long p_fraction, long p_limit) {
+    	return p_limit < Integer.MAX_VALUE &&	// otherwise, every int fits
+    		Math.abs((long)numeratorOf(p_fraction))
+    			> p_limit * denominatorOf(p_fraction);
+    }	// exceeds method
+}	// RomanFraction class
@@ -0,0 +1,314 @@
+/*
+ * File:	RomanHistory.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanHistory
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+// imports:
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/** A session's history, i.e., the outcome of each line that the session
+ * has evaluated, kept in a file so that it survives the session, e.g.:
+ *	java Roman --history session.hst
+ *	java Roman --batch in.txt --out out.txt --history session.hst
+ * While a session has a history, an expression can use the result of any
+ * line in the history, by its line number after #; e.g., #12 * II is twice
+ * the result of line 12.  If the file already has lines (e.g., from an
+ * earlier run), the session resumes after them: its previous result is the
+ * one that the last line left, and its lines are numbered after them.
+ *
+ * Class:	RomanHistory
+ *
+ * The file is a header and then one fixed-width record (RECORD_SIZE bytes)
+ * for each line, in order; a record holds the line's offset in its input
+ * (in bytes for batch mode, and in chars, counting a line ending as one, in
+ * the interactive calculator), its outcome, its kind of error, and the
+ * previous result after it, i.e., its result if it has one.  So finding a
+ * line's result is one multiplication and one read, however long the
+ * history is.  The header holds the number of records.
+ *
+ * The file is memory-mapped, SEGMENT_RECORDS records at a time, so that
+ * appending a line's record only stores into memory, without a system
+ * call; only mapping another segment (every SEGMENT_RECORDS lines) and
+ * closing, which forces the records to the disk, are system calls.
+ * Appending is crash-safe: the record is stored first, with a checksum of
+ * its contents and its line number, and then the header's number of
+ * records.  If the session's process crashes, the stores are already in
+ * the operating system's copy of the file, so no line is lost.  If the
+ * operating system crashes, some pages of the file might not reach the
+ * disk; then, when the file is opened, the records whose checksums don't
+ * match (including all-zero ones) are not part of the history, which is the
+ * longest prefix of valid records, and the next line is appended after it.
+ * Opening looks only at the records near the header's number of records,
+ * so resuming doesn't read or replay the history.
+ *
+ * A history is appended to by one session, and the file is locked, so no
+ * other process can append to it at the same time.
+ */
+class RomanHistory {
+    static final long MAGIC = 0x524F4D414E485354L;	// "ROMANHST", in ASCII
+    static final int VERSION = 1;	// version of the file's layout
+    static final int RECORD_SIZE = 24;	// number of bytes in a record
+    	// (and in the header, which takes the place of a record 0)
+    static final int SEGMENT_RECORDS = 1 << 20;	// records mapped at once
+    // offsets in the header:
+    static final int MAGIC_OFFSET = 0;	// MAGIC (long)
+    static final int VERSION_OFFSET = 8;	// VERSION (int)
+    static final int RECORD_SIZE_OFFSET = 12;	// RECORD_SIZE (int)
+    static final int COUNT_OFFSET = 16;	// number of records (long)
+    // offsets in a record:
+    static final int LINE_OFFSET = 0;	// offset of the line (long)
+    static final int RESULT_OFFSET = 8;	// previous result after line (long)
+    static final int OUTCOME_OFFSET = 16;	// the outcome, e.g., RESULT (byte)
+    static final int ERROR_OFFSET = 17;	// kind of error (byte)
+    static final int CHECKSUM_OFFSET = 20;	// checksum of the record (int)
+
+    FileChannel m_file;	// the file
+    FileLock m_lock;	// lock on the file, while it's open
+    MappedByteBuffer[] m_segments = new MappedByteBuffer[4];
+    	// each segment of the file, once it's mapped; segment 0 has the header
+    long m_count;	// number of records, i.e., lines in the history
+
+    /** Open a history file, creating it if it doesn't exist.  The header
+     * of a file that isn't empty is read and checked before the file is
+     * mapped, since mapping extends the file; so another file (e.g., one
+     * named by mistake) is neither extended nor overwritten.
+     * @param p_fileName name of the file
+     * @throws IOException if the file can't be read, written, or locked,
+     *	or isn't a history file
+     */
+    RomanHistory(String p_fileName) throws IOException
+    {	// constructor
+    	ByteBuffer headerBytes = ByteBuffer.allocate(RECORD_SIZE);
+    		// the header, as read from an existing file
+    	MappedByteBuffer header;	// the first segment, with the header
+    	long records;	// most records that the file has room for
+
+    	m_file = FileChannel.open(Paths.get(p_fileName),
+    		StandardOpenOption.READ, StandardOpenOption.WRITE,
+    		StandardOpenOption.CREATE);
+    	try {
+    	m_lock = m_file.tryLock();
+    	if (m_lock == null)	// another process has the file open
+    		throw new IOException(p_fileName + " is in use by another session");
+    	records = m_file.size() / RECORD_SIZE - 1;
+    	if (m_file.size() > 0)	// an existing file
+    	{	// check its header, before mapping extends the file
+    		m_file.read(headerBytes, 0);
+    		if (headerBytes.position() < RECORD_SIZE ||
+    			headerBytes.getLong(MAGIC_OFFSET) != MAGIC ||
+    			headerBytes.getInt(VERSION_OFFSET) != VERSION ||
+    			headerBytes.getInt(RECORD_SIZE_OFFSET) != RECORD_SIZE)
+    			throw new IOException(p_fileName + " isn't a history file");
+    	}	// check its header, before mapping extends the file
+    	header = segment(0);
+    	if (records < 0)	// a new file
+    	{	// write the header
+    		header.putInt(VERSION_OFFSET, VERSION);
+    		header.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+    		header.putLong(COUNT_OFFSET, 0);
+    		header.putLong(MAGIC_OFFSET, MAGIC);
+    		records = 0;
+    	}	// write the header
+    	m_count = Math.max(0, Math.min(records,
+    		header.getLong(COUNT_OFFSET)));
+    	while (m_count > 0 && ! isValid(m_count - 1))
+    		m_count--;	// the header counts a record that didn't reach disk
+    	while (m_count < records && isValid(m_count))
+    		m_count++;	// a record reached disk, but the header didn't
+    	header.putLong(COUNT_OFFSET, m_count);
+    	}	// try
+    	catch (IOException e)
+    	{	// can't use the file
+    		m_file.close();	// which releases the lock
+    		throw e;
+    	}	// can't use the file
+    }	// constructor
+
+    /** Get the number of lines in the history.
+     * @return long the number of lines
+     */
+    public long size() {
+    	return m_count;
+    }	// size method
+
+    /** Get a line's outcome.
+     * @param p_line index (starting at 0) of the line in the history
+     * @return int its outcome, e.g., RomanEngine.RESULT
+     */
+    public int getOutcome(long p_line) {
+    	return segmentOf(p_line).get(offsetOf(p_line) + OUTCOME_OFFSET);
+    }	// getOutcome method
+
+    /** Get a line's result, or, if it has none, the previous result.
+     * @param p_line index (starting at 0) of the line in the history
+     * @return long the result
+     */
+    public long getResult(long p_line) {
+    	return segmentOf(p_line).getLong(offsetOf(p_line) + RESULT_OFFSET);
+    }	// getResult method
+
+    /** Get a line's kind of error.
+     * @param p_line index (starting at 0) of the line in the history
+     * @return int its kind of error, or Roman.NO_ERROR
+     */
+    public int getErrorKind(long p_line) {
+    	return segmentOf(p_line).get(offsetOf(p_line) + ERROR_OFFSET);
+    }	// getErrorKind method
+
+    /** Get a line's offset in its input.
+     * @param p_line index (starting at 0) of the line in the history
+     * @return long its offset
+     */
+    public long getLineOffset(long p_line) {
+    	return segmentOf(p_line).getLong(offsetOf(p_line) + LINE_OFFSET);
+    }	// getLineOffset method
+
+    /** Get the previous result for the line after the history, i.e., the
+     * result that the session resumes with.
+     * @return long the previous result, which is 0 if the history is empty
+     */
+    public long lastResult() {
+    	return (m_count == 0) ? 0 : getResult(m_count - 1);
+    }	// lastResult method
+
+    /** Append a line's outcome, which a session has just evaluated.
+     * @param p_lineOffset offset of the line in its input
+     * @param p_outcome the line's outcome, e.g., RomanEngine.RESULT
+     * @param p_theSession the session, which has the line's result or error
+     * @throws IOException if the file can't be extended
+     */
+    public void append(
+    	long p_lineOffset,
+    	int p_outcome,
+    	RomanEngine.Session p_theSession) throws IOException {
+    	long result = p_theSession.getLongResult();
+    		// the line's result, or the previous result if it has none
+    	int errorKind = (p_outcome == RomanEngine.ERROR)
+    		? p_theSession.getErrorKind() : Roman.NO_ERROR;
+    		// the line's kind of error
+    	MappedByteBuffer segment = segment((m_count + 1) / SEGMENT_RECORDS);
+    		// the segment that gets the record, after the header
+    	int offset = offsetOf(m_count);	// the record's offset in the segment
+
+    	segment.putLong(offset + LINE_OFFSET, p_lineOffset);
+    	segment.putLong(offset + RESULT_OFFSET, result);
+    	segment.put(offset + OUTCOME_OFFSET, (byte)p_outcome);
+    	segment.put(offset + ERROR_OFFSET, (byte)errorKind);
+    	segment.putInt(offset + CHECKSUM_OFFSET, checksum(m_count,
+    		p_lineOffset, result, p_outcome, errorKind));
+    	m_count++;	// the record is complete; now the header counts it
+    	m_segments[0].putLong(COUNT_OFFSET, m_count);
+    }	// append method
+
+    /** Force the history to the disk, and close the file, which is then
+     * only as long as the history.
+     * @throws IOException if the file can't be written
+     */
+    public void close() throws IOException {
+    	for (MappedByteBuffer segment : m_segments)
+    		if (segment != null)	// mapped
+    			segment.force();
+    	Arrays.fill(m_segments, null);	// the file is truncated past them
+    	m_file.truncate((m_count + 1) * RECORD_SIZE);
+    	m_file.close();	// which releases the lock
+    }	// close method
+
+    /** Test whether a record's checksum matches its contents.
+     * @param p_line index of the record
+     * @return boolean whether it matches
+     * @throws IOException if the record's segment can't be mapped
+     */
+    boolean isValid(long p_line) throws IOException {
+    	MappedByteBuffer segment = segment((p_line + 1) / SEGMENT_RECORDS);
+    		// the record's segment, after the header
+    	int offset = offsetOf(p_line);	// the record's offset in it
+    	return segment.getInt(offset + CHECKSUM_OFFSET) == checksum(p_line,
+    		segment.getLong(offset + LINE_OFFSET),
+    		segment.getLong(offset + RESULT_OFFSET),
+    		segment.get(offset + OUTCOME_OFFSET),
+    		segment.get(offset + ERROR_OFFSET));
+    }	// isValid method
+
+    /** Compute a record's checksum, which also depends on the record's line
+     * number, so that a record that is all zeros, or that was written for
+     * another line, doesn't match.
+     * @param p_line index of the record
+     * @param p_lineOffset offset of the line in its input
+     * @param p_result the line's result, or the previous result
+     * @param p_outcome the line's outcome
+     * @param p_errorKind the line's kind of error
+     * @return int the checksum
+     */
+    static int checksum(
+    	long p_line,
+    	long p_lineOffset,
+    	long p_result,
+    	int p_outcome,
+    	int p_errorKind) {
+    	long h = MAGIC;	// the hash so far
+    	h = (h ^ p_line) * 0x9E3779B97F4A7C15L;
+    	h = (h ^ p_lineOffset) * 0xBF58476D1CE4E5B9L;
+    	h = (h ^ p_result) * 0x94D049BB133111EBL;
+    	h = (h ^ (p_outcome << 8 | (p_errorKind & 0xFF))) * 0x9E3779B97F4A7C15L;
+    	return (int)(h ^ (h >>> 32));
+    }	// checksum method
+
+    /** Get the segment that has a record, mapping it if it isn't mapped,
+     * e.g., to get a line that a session appended before it resumed.
+     * @param p_line index of the record
+     * @return MappedByteBuffer the segment
+     * @throws UncheckedIOException if the segment can't be mapped
+     */
+    MappedByteBuffer segmentOf(long p_line) {
+    	try {
+    	return segment((p_line + 1) / SEGMENT_RECORDS);	// after the header
+    	}	// try
+    	catch (IOException e)
+    	{	// can't map it, e.g., because the disk is full
+    		throw new UncheckedIOException(e);
+    	}	// can't map it
+    }	// segmentOf method
+
+    /** Get the offset of a record in its segment.
+     * @param p_line index of the record
+     * @return int the offset
+     */
+    static int offsetOf(long p_line) {
+    	return (int)((p_line + 1) % SEGMENT_RECORDS) * RECORD_SIZE;
+    }	// offsetOf method
+
+    /** Get a segment of the file, mapping it, and extending the file to its
+     * end, if it isn't mapped.
+     * @param p_segment index of the segment
+     * @return MappedByteBuffer the segment
+     * @throws IOException if the segment can't be mapped
+     */
+    MappedByteBuffer segment(long p_segment) throws IOException {
+    	if (p_segment >= m_segments.length)	// no room for it
+    		m_segments = Arrays.copyOf(m_segments,
+    			(int)Math.max(2 * m_segments.length, p_segment + 1));
+    	if (m_segments[(int)p_segment] == null)	// not mapped yet
+    		m_segments[(int)p_segment] = m_file.map(
+    			FileChannel.MapMode.READ_WRITE,
+    			p_segment * SEGMENT_RECORDS * RECORD_SIZE,
+    			(long)SEGMENT_RECORDS * RECORD_SIZE);
+    	return m_segments[(int)p_segment];
+    }	// segment method
+}	// RomanHistory class
@@ -0,0 +1,225 @@
+/*
+ * File:	RomanLoadGenerator.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanLoadGenerator
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+// imports:
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Measures the latency and throughput of RomanServer, by opening many
+ * connections to it at once and sending expressions on each, e.g.:
+ *	java Roman --server 3999 &
+ *	java RomanLoadGenerator --connections 10000 --requests 100 --pipeline 4
+ *
+ * Class:	RomanLoadGenerator
+ *
+ * Here are the phases:
+ * - Open all the connections.
+ * - On every connection at once, send the requests, a group of
+ *   --pipeline lines at a time, and read each group's responses.  A
+ *   request's latency is the time from sending its group to receiving its
+ *   response.
+ * - Report throughput (requests per second, over the time from the first
+ *   send to the last response) and the 50th, 99th, and 100th percentile
+ *   latencies, plus the number of connections that failed.
+ * Each connection runs on its own thread, which is a virtual thread if the
+ * Java runtime has them; for 10,000 connections without virtual threads,
+ * the process needs permission for that many threads.
+ */
+class RomanLoadGenerator {
+    static final String[] EXPRESSIONS = {"MCM + XX", "(X * X) / V",
+    	"+ I", "MMMCMXCIX - (C * XX)", "- IV", "((I + II) * III) ** II"};
+    	// the requests, which are sent in turn; some use the previous result;
+    	// each has a result, so each response is one line
+
+    /** Main method for the load generator.
+     * @param args arguments, each optional, in pairs: "--port" and the
+     *	server's port, "--connections" and the number of connections,
+     *	"--requests" and the number of requests per connection, and
+     *	"--pipeline" and the number of requests sent at once
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static void main(String[] args) throws InterruptedException {
+    	int port = RomanServer.DEFAULT_PORT;	// the server's port
+    	int connections = 10000;	// number of connections
+    	int requests = 100;	// number of requests per connection
+    	int pipeline = 1;	// number of requests sent at once
+    	long[][] latencies;	// each connection's latencies, in nanoseconds
+    	long[] allLatencies;	// all latencies, sorted
+    	CountDownLatch connected;	// counts connections that are open
+    	CountDownLatch finished;	// counts connections that are finished
+    	AtomicInteger failures = new AtomicInteger();
+    		// number of connections that failed
+    	ExecutorService executor = RomanServer.newThreadPerTaskExecutor();
+    	long startTime;	// time of first send, in nanoseconds
+    	long elapsedTime;	// time from first send to last response
+    	int count = 0;	// number of latencies
+
+    	for (int a = 0; a + 1 < args.length; a += 2)
+    	{	// for each pair of arguments
+    		int value = Integer.parseInt(args[a + 1]);
+    		switch (args[a])
+    		{	// which argument
+    		case "--port": port = value; break;
+    		case "--connections": connections = value; break;
+    		case "--requests": requests = value; break;
+    		case "--pipeline": pipeline = value; break;
+    		default:
+    			System.err.println("[] Usage: java RomanLoadGenerator"
+    				+ " [--port <port>] [--connections <n>]"
+    				+ " [--requests <n>] [--pipeline <n>]");
+    			System.exit(2);
+    		}	// which argument
+    	}	// for each pair of arguments
+
+    	// Open all the connections, then send on all at once:
+    	latencies = new long[connections][];
+    	connected = new CountDownLatch(connections);
+    	finished = new CountDownLatch(connections);
+    	CountDownLatch go = new CountDownLatch(1);	// starts the sends
+    	for (int c = 0; c < connections; c++)
+    	{	// for each connection
+    		final int theConnection = c;
+    		final int thePort = port;
+    		final int theRequests = requests;
+    		final int thePipeline = pipeline;
+    		executor.execute(() -> {
+    			try {
+    				latencies[theConnection] = runConnection(thePort,
+    					theRequests, thePipeline, connected, go);
+    			}	// try
+    			catch (IOException | InterruptedException e)
+    			{	// connection failed
+    				failures.incrementAndGet();
+    				connected.countDown();	// in case it failed to open
+    			}	// connection failed
+    			finished.countDown();
+    		});
+    	}	// for each connection
+    	connected.await();
+    	startTime = System.nanoTime();
+    	go.countDown();
+    	finished.await();
+    	elapsedTime = System.nanoTime() - startTime;
+    	executor.shutdown();
+    	executor.awaitTermination(1, TimeUnit.MINUTES);
+
+    	// Report:
+    	for (long[] l : latencies)
+    		if (l != null)
+    			count += l.length;
+    	allLatencies = new long[count];
+    	count = 0;
+    	for (long[] l : latencies)
+    		if (l != null)
+    		{	// connection succeeded
+    			System.arraycopy(l, 0, allLatencies, count, l.length);
+    			count += l.length;
+    		}	// connection succeeded
+    	Arrays.sort(allLatencies);
+    	System.out.println("[] connections: " + connections + " (failed: "
+    		+ failures.get() + "), requests: " + count + ", pipeline: "
+    		+ pipeline);
+    	System.out.printf("[] throughput: %.0f requests/second%n",
+    		count / (elapsedTime / 1e9));
+    	if (count > 0)
+    		System.out.printf(
+    			"[] latency: p50 %.1f us, p99 %.1f us, max %.1f us%n",
+    			percentile(allLatencies, 50) / 1e3,
+    			percentile(allLatencies, 99) / 1e3,
+    			allLatencies[count - 1] / 1e3);
+    }	// main method
+
+    /** Open a connection, wait for the signal, then send the requests and
+     * read their responses.
+     * @param p_port the server's port
+     * @param p_requests the number of requests
+     * @param p_pipeline the number of requests sent at once
+     * @param p_connected counted down when the connection is open
+     * @param p_go the signal to start sending
+     * @return long[] each request's latency, in nanoseconds
+     * @throws IOException if the connection fails
+     * @throws InterruptedException if interrupted while waiting
+     */
+    static long[] runConnection(
+    	int p_port,
+    	int p_requests,
+    	int p_pipeline,
+    	CountDownLatch p_connected,
+    	CountDownLatch p_go) throws IOException, InterruptedException {
+    	long[] latencies = new long[p_requests];	// each request's latency
+    	ByteBuffer request = ByteBuffer.allocate(256 * p_pipeline);
+    		// a group of requests
+    	ByteBuffer response = ByteBuffer.allocate(8192);
+    		// responses that have been received
+    	int sent = 0;	// number of requests sent
+    	int answered;	// number of requests answered
+    	int groupSize;	// number of requests in a group
+    	long sendTime;	// time of sending a group
+    	int i;	// iteration for each byte of responses
+
+    	try (SocketChannel connection = SocketChannel.open(
+    		new InetSocketAddress(InetAddress.getLoopbackAddress(), p_port)))
+    	{	// use the connection
+    		p_connected.countDown();
+    		p_go.await();
+    		while (sent < p_requests)
+    		{	// for each group of requests
+    			groupSize = Math.min(p_pipeline, p_requests - sent);
+    			request.clear();
+    			for (int r = 0; r < groupSize; r++)
+    				request.put((EXPRESSIONS[(sent + r) % EXPRESSIONS.length]
+    					+ "\n").getBytes(StandardCharsets.US_ASCII));
+    			request.flip();
+    			sendTime = System.nanoTime();
+    			while (request.hasRemaining())
+    				connection.write(request);
+    			answered = 0;
+    			while (answered < groupSize)
+    			{	// read until each request has a response line
+    				if (connection.read(response) < 0)	// server closed
+    					throw new IOException("connection closed");
+    				for (i = 0; i < response.position(); i++)
+    					if (response.get(i) == '\n')	// end of a response
+    					{	// a response
+    						latencies[sent + answered] =
+    							System.nanoTime() - sendTime;
+    						answered++;
+    					}	// a response
+    				response.clear();	// responses are only counted
+    			}	// read until each request has a response line
+    			sent += groupSize;
+    		}	// for each group of requests
+    	}	// use the connection
+    	return latencies;
+    }	// runConnection method
+
+    /** Get a percentile of sorted values.
+     * @param p_values the values, sorted, at least one
+     * @param p_percent the percentile, e.g., 99
+     * @return long the value at that percentile
+     */
+    static long percentile(long[] p_values, int p_percent) {
+    	int index = (int)Math.ceil(p_percent / 100.0 * p_values.length) - 1;
+    	return p_values[Math.max(index, 0)];
+    }	// percentile method
+}	// RomanLoadGenerator class
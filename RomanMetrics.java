@@ -0,0 +1,301 @@
+/*
+ * File:	RomanMetrics.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanMetrics
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+// imports:
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Measures where the time goes for each line, and counts what the lines
+ * were, for sessions that have one, e.g.:
+ *	RomanMetrics metrics = new RomanMetrics();
+ *	RomanEngine.Session session = new RomanEngine.Session(null, metrics);
+ *	...
+ *	System.err.print(metrics);	// a snapshot
+ *
+ * Class:	RomanMetrics
+ *
+ * Here are the phases of a line that are timed, each in a histogram of
+ * latencies:
+ * - preprocess: steps 1 and 2 that the Roman class comment lists, i.e.,
+ *   checking for empty, DIGIT 0, and QUIT or EXIT
+ * - tokenize: step 3
+ * - evaluate: step 4
+ * - format: converting the result to Romans and formatting the result or
+ *   message, in a ResultFormatter
+ * - write: writing formatted output, which is timed once per write (for a
+ *   batch file, once per many lines)
+ * These are counted: lines (in total, and by outcome), tokens (not counting
+ * the end of line), errors by kind, and cache hits and misses, if the
+ * session has a cache.  A line whose outcome is cached isn't tokenized or
+ * evaluated, so it adds nothing to those phases or to the tokens.
+ *
+ * A histogram has a bucket for each power of 2 nanoseconds, so a percentile
+ * is reported as the upper bound of its bucket (but no more than the
+ * maximum), i.e., within a factor of 2.  Counters are LongAdders, so any
+ * number of sessions (on any threads) can share one RomanMetrics, and a
+ * snapshot can be taken at any time; a snapshot taken while lines are
+ * being evaluated might not be consistent from counter to counter.
+ *
+ * A session without a RomanMetrics isn't measured, and the engine then
+ * costs only a test for null per phase.  Separately from RomanMetrics, the
+ * engine emits a LineEvent for each line while Java Flight Recorder is
+ * recording that event (e.g., with -XX:StartFlightRecording); otherwise it
+ * creates no event.  Until Flight Recorder starts, the engine doesn't even
+ * load LineEvent, since loading an event class loads much of Flight
+ * Recorder, which would slow the calculator's start.
+ */
+class RomanMetrics {
+    // These are the phases that are timed; each indexes PHASE_NAMES:
+    static final int PREPROCESS = 0;	// steps 1 and 2
+    static final int TOKENIZE = 1;	// step 3
+    static final int EVALUATE = 2;	// step 4
+    static final int FORMAT = 3;	// formatting a result or message
+    static final int WRITE = 4;	// writing formatted output
+    static final String[] PHASE_NAMES = {"preprocess", "tokenize", "evaluate",
+    	"format", "write"};	// name of each phase, for a snapshot
+    static final String[] OUTCOME_NAMES = {"results", "empty",
+    	"zero digits", "quits", "errors"};
+    	// name of each of RomanEngine's outcomes, e.g., RESULT, for a snapshot
+
+    Histogram[] m_phases = new Histogram[PHASE_NAMES.length];
+    	// latencies of each phase
+    LongAdder m_lines = new LongAdder();	// number of lines
+    LongAdder[] m_outcomes = new LongAdder[OUTCOME_NAMES.length];
+    	// number of lines with each outcome
+    LongAdder m_tokens = new LongAdder();	// number of tokens
+    LongAdder[] m_errors = new LongAdder[Roman.DESCRIPTION_OF_ERROR.length];
+    	// number of errors of each kind
+    LongAdder m_cacheHits = new LongAdder();	// lines found in a cache
+    LongAdder m_cacheMisses = new LongAdder();	// lines not found in a cache
+
+    /** Create metrics, with nothing measured or counted yet.
+     */
+    RomanMetrics()
+    {	// constructor
+    	for (int p = 0; p < m_phases.length; p++)
+    		m_phases[p] = new Histogram();
+    	for (int o = 0; o < m_outcomes.length; o++)
+    		m_outcomes[o] = new LongAdder();
+    	for (int k = 0; k < m_errors.length; k++)
+    		m_errors[k] = new LongAdder();
+    }	// constructor
+
+    /** Record the latency of a phase that has ended.
+     * @param p_phase the phase, e.g., TOKENIZE
+     * @param p_startTime when the phase started, from System.nanoTime
+     * @return long when the phase ended, which can start the next phase
+     */
+    long endPhase(int p_phase, long p_startTime) {
+    	long endTime = System.nanoTime();	// when the phase ended
+    	m_phases[p_phase].record(endTime - p_startTime);
+    	return endTime;
+    }	// endPhase method
+
+    /** Count a line that has been evaluated.
+     * @param p_outcome the line's outcome, e.g., RomanEngine.RESULT
+     * @param p_errorKind the kind of its error, if the outcome is ERROR
+     */
+    void countLine(int p_outcome, int p_errorKind) {
+    	m_lines.increment();
+    	m_outcomes[p_outcome].increment();
+    	if (p_outcome == RomanEngine.ERROR)	// line has an error
+    		m_errors[p_errorKind].increment();
+    }	// countLine method
+
+    /** Count a line that was evaluated by a session that had no metrics,
+     * as though it were measured, except for its latencies.
+     * @param p_outcome the line's outcome, e.g., RomanEngine.RESULT
+     * @param p_theSession the session that evaluated the line
+     */
+    void countUnmeasuredLine(int p_outcome, RomanEngine.Session p_theSession) {
+    	countLine(p_outcome, p_theSession.getErrorKind());
+    	if (p_outcome != RomanEngine.RESULT && p_outcome != RomanEngine.ERROR)
+    		return;	// line wasn't tokenized
+    	if (p_theSession.m_cache != null)	// session has a cache
+    		countCacheLookup(p_theSession.m_cacheHit);
+    	if (! p_theSession.m_cacheHit)	// line was tokenized
+    		countTokens(p_theSession.m_lineInfo.m_tokenizedLine.m_tokenCount - 1);
+    }	// countUnmeasuredLine method
+
+    /** Count the tokens of a line that has been tokenized.
+     * @param p_tokens the number of tokens, not counting the end of line
+     */
+    void countTokens(int p_tokens) {
+    	m_tokens.add(p_tokens);
+    }	// countTokens method
+
+    /** Count a lookup of a line in a cache.
+     * @param p_hit whether the cache had the line
+     */
+    void countCacheLookup(boolean p_hit) {
+    	if (p_hit)
+    		m_cacheHits.increment();
+    	else m_cacheMisses.increment();
+    }	// countCacheLookup method
+
+    /** Describe the counts and latencies so far, in lines that each end
+     * with a line separator.
+     * @return String the description
+     */
+    public String toString() {
+    	StringBuilder theText = new StringBuilder();	// the description
+    	String separator = System.lineSeparator();	// ends each line
+    	long hits = m_cacheHits.sum();	// number of cache hits
+    	long lookups = hits + m_cacheMisses.sum();	// number of cache lookups
+    	long errors;	// number of errors of a kind
+
+    	theText.append("[] Metrics: ").append(m_lines.sum()).append(" lines (");
+    	for (int o = 0; o < m_outcomes.length; o++)
+    		theText.append((o == 0) ? "" : ", ").append(m_outcomes[o].sum())
+    			.append(' ').append(OUTCOME_NAMES[o]);
+    	theText.append("), ").append(m_tokens.sum()).append(" tokens")
+    		.append(separator);
+    	for (int k = 0; k < m_errors.length; k++)
+    		if ((errors = m_errors[k].sum()) > 0)	// some errors of this kind
+    			theText.append("[] Errors: ").append(errors).append(' ')
+    				.append(Roman.DESCRIPTION_OF_ERROR[k]).append(separator);
+    	if (lookups > 0)	// session has a cache
+    		theText.append("[] Cache: ").append(hits).append(" hits, ")
+    			.append(lookups - hits).append(" misses (")
+    			.append(100 * hits / lookups).append("% hit)").append(separator);
+    	theText.append(String.format("[] %-10s %10s %10s %10s %10s %12s%s",
+    		"Phase (ns)", "count", "mean", "p50", "p99", "max", separator));
+    	for (int p = 0; p < m_phases.length; p++)
+    		theText.append(String.format("[] %-10s %10d %10d %10d %10d %12d%s",
+    			PHASE_NAMES[p], m_phases[p].count(), m_phases[p].mean(),
+    			m_phases[p].percentile(50), m_phases[p].percentile(99),
+    			m_phases[p].m_max.get(), separator));
+    	return theText.toString();
+    }	// toString method
+
+    /** A histogram of latencies, with a bucket for each power of 2.
+     */
+    static class Histogram {
+    	LongAdder[] m_buckets = new LongAdder[Long.SIZE + 1];
+    		// number of latencies in each bucket; bucket b holds latencies
+    		// from 2**(b-1) through 2**b - 1 nanoseconds, and bucket 0 holds 0
+    	LongAdder m_total = new LongAdder();	// sum of the latencies
+    	AtomicLong m_max = new AtomicLong();	// largest latency
+
+    	/** Create an empty histogram.
+    	 */
+    	Histogram()
+    	{	// constructor
+    		for (int b = 0; b < m_buckets.length; b++)
+    			m_buckets[b] = new LongAdder();
+    	}	// constructor
+
+    	/** Record a latency.
+    	 * @param p_nanos the latency, in nanoseconds
+    	 */
+    	void record(long p_nanos) {
+    		long max;	// largest latency before this one
+    		m_buckets[Long.SIZE - Long.numberOfLeadingZeros(p_nanos)].increment();
+    		m_total.add(p_nanos);
+    		while (p_nanos > (max = m_max.get())
+    			&& ! m_max.compareAndSet(max, p_nanos))
+    			;	// another thread changed it; try again
+    	}	// record method
+
+    	/** Get the number of latencies.
+    	 * @return long the number
+    	 */
+    	long count() {
+    		long count = 0;	// number of latencies
+    		for (LongAdder bucket : m_buckets)
+    			count += bucket.sum();
+    		return count;
+    	}	// count method
+
+    	/** Get the mean latency.
+    	 * @return long the mean, in nanoseconds, or 0 if there are none
+    	 */
+    	long mean() {
+    		long count = count();	// number of latencies
+    		return (count == 0) ? 0 : m_total.sum() / count;
+    	}	// mean method
+
+    	/** Estimate a percentile of the latencies.
+    	 * @param p_percent the percentile, e.g., 99
+    	 * @return long the upper bound of the bucket that has that percentile
+    	 *	(but no more than the largest latency), or 0 if there are none
+    	 */
+    	long percentile(int p_percent) {
+    		long rank = (long)Math.ceil(p_percent / 100.0 * count());
+    			// number of latencies at or below the percentile
+    		long seen = 0;	// number of latencies in buckets so far
+    		for (int b = 0; b < m_buckets.length; b++)
+    			if ((seen += m_buckets[b].sum()) >= rank && seen > 0)
+    				return (b == 0) ? 0 : Math.min(m_max.get(),
+    					(b == Long.SIZE) ? Long.MAX_VALUE : (1L << b) - 1);
+    		return m_max.get();	// latencies were added while counting
+    	}	// percentile method
+    }	// Histogram class
+
+    /** A Java Flight Recorder event for each line that RomanEngine
+     * evaluates; its duration is the time for steps 1 through 4.
+     */
+    @Name("games.roman.Line")
+    @Label("Roman Line")
+    @Category("Roman Calculator")
+    @Description("A line evaluated by the Roman numeral desk calculator")
+    static class LineEvent extends Event {
+    	static final LineEvent PROBE = new LineEvent();
+    		// never committed; it only tells whether the event is recorded
+    	@Label("Line Length")
+    	int lineLength;	// number of chars in the line, as entered
+    	@Label("Outcome")
+    	String outcome;	// the line's outcome, from OUTCOME_NAMES
+    	@Label("Error")
+    	String error;	// description of the line's error, if any
+    	@Label("Tokens")
+    	int tokens;	// number of tokens, if the line was tokenized
+    	@Label("Result")
+    	long result;	// the line's result, if any
+    	@Label("Cached")
+    	boolean cached;	// whether the line's outcome was found in a cache
+
+    	/** Set the event's fields from a line that has been evaluated, and
+    	 * commit the event.
+    	 * @param p_theLine the line, as entered
+    	 * @param p_outcome the line's outcome, e.g., RomanEngine.RESULT
+    	 * @param p_theSession the session that evaluated the line
+    	 */
+    	void commitLine(
+    		CharSequence p_theLine,
+    		int p_outcome,
+    		RomanEngine.Session p_theSession) {
+    		end();
+    		if (! shouldCommit())	// e.g., shorter than the threshold
+    			return;
+    		lineLength = p_theLine.length();
+    		outcome = OUTCOME_NAMES[p_outcome];
+    		if (p_outcome == RomanEngine.ERROR)
+    			error = p_theSession.getErrorDescription();
+    		if (p_outcome == RomanEngine.RESULT)
+    			result = p_theSession.getLongResult();
+    		cached = p_theSession.m_cacheHit;
+    		if ((p_outcome == RomanEngine.RESULT
+    			|| p_outcome == RomanEngine.ERROR) && ! cached)
+    			tokens = p_theSession.m_lineInfo.m_tokenizedLine.m_tokenCount - 1;
+    			// not counting the end of line
+    		commit();
+    	}	// commitLine method
+    }	// LineEvent class
+}	// RomanMetrics class
@@ -0,0 +1,80 @@
+/*
+ * File:	RomanOneShot.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanOneShot
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+/** Evaluates the expressions given as arguments, displays their results, and
+ * exits, for scripts that run the calculator once per expression, e.g.:
+ *	java Roman -e "MCM + XX"
+ * displays "[] Result: Roman MCMXX (Arabic 1920)."  Each argument after "-e"
+ * is a line, evaluated in order in one session, so a later argument can
+ * start with an operator to use the previous one's result, e.g.:
+ *	java Roman -e "MCM + XX" "/ X"
+ *
+ * Class:	RomanOneShot
+ *
+ * Each line gets the same result or message as in batch mode (RomanBatch),
+ * but there is no introductory text.  A line that contains QUIT or EXIT ends
+ * the run.  The exit status is 0 if every line (except QUIT or EXIT) has a
+ * result, 1 if some line has an error or no expression, and 2 if there are
+ * no arguments after "-e".
+ *
+ * When a run is this short, most of its time is the JVM's startup, so this
+ * mode does as little as possible before the first result: it reads no
+ * input, so it doesn't create Roman.sc (whose Scanner loads the regular
+ * expression classes), and it writes the bytes of its ResultFormatter to
+ * System.out at once, instead of through a RomanOutput, which would start a
+ * thread and open a channel.  Most of what remains is loading and
+ * initializing classes, which an AppCDS archive saves from run to run; the
+ * "appcds" profile of pom.xml creates the archive by running this mode once:
+ *	mvn -B -P appcds package
+ *	java -XX:SharedArchiveFile=target/roman.jsa -jar target/roman.jar
+ *		-e "MCM + XX"
+ * The archive works only with the same JVM and the same jar that created it.
+ */
+class RomanOneShot {
+    static final String USAGE = "[] Usage: java Roman -e <expression>"
+    	+ " [<expression> ...]";
+
+    /** Main method for one-shot mode.
+     * @param args arguments: "-e", and the expressions, one line each
+     */
+    public static void main(String[] args) {
+    	RomanEngine.Session session = new RomanEngine.Session();
+    		// the session, which holds the previous line's result
+    	Roman.ResultFormatter output = new Roman.ResultFormatter();
+    		// the lines' results and messages, until they are written
+    	int outcome;	// outcome of evaluating a line
+    	boolean allResults = true;	// whether every line has had a result
+
+    	if (args.length < 2)	// no expression
+    	{	// invalid arguments
+    		System.err.println(USAGE);
+    		System.exit(2);
+    	}	// invalid arguments
+    	for (int a = 1; a < args.length; a++)
+    	{	// for each expression
+    		outcome = RomanEngine.evaluate(args[a].toUpperCase(), session);
+    			// the engine converts to upper case too, but String's
+    			// conversion uses the user's locale, as in interactive mode
+    		output.appendOutcome(outcome, session);
+    		if (outcome == RomanEngine.QUIT)	// contains QUIT or EXIT
+    			break;	// quit
+    		if (outcome != RomanEngine.RESULT)	// error or no expression
+    			allResults = false;
+    	}	// for each expression
+    	System.out.write(output.m_bytes, 0, output.m_length);
+    	System.out.flush();
+    	if (! allResults)	// tell the script that some line failed
+    		System.exit(1);
+    }	// main method
+}	// class RomanOneShot
@@ -0,0 +1,169 @@
+/*
+ * File:	RomanOutput.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanOutput
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+// imports:
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/** Writes the interactive calculator's output, in large pieces unless a
+ * user is watching, e.g.:
+ *	RomanOutput out = RomanOutput.forStandardOutput();
+ *	out.write(formatter);	// formatted records, which are then removed
+ *	out.flush();	// before exiting
+ *
+ * Class:	RomanOutput
+ *
+ * Formatted records (which a ResultFormatter has already encoded) are
+ * copied into a reusable direct ByteBuffer, which is written to the channel
+ * with one write call:
+ * - when it is full;
+ * - after each record, if the output is interactive, i.e., the calculator
+ *   has a console (System.console() isn't null), so that each result and
+ *   prompt appears immediately;
+ * - otherwise, within FLUSH_INTERVAL of being written, by a daemon thread,
+ *   so that output through a pipe doesn't wait for more input; and
+ * - when flush is called, e.g., before exiting.
+ * So when standard input and output are piped, there is one system call
+ * per CAPACITY bytes (or per FLUSH_INTERVAL), rather than one per line, and
+ * a direct buffer is written without being copied again.
+ *
+ * The daemon thread and the caller synchronize on the RomanOutput.  If the
+ * daemon thread can't write, the failure is thrown by the next write or
+ * flush.
+ */
+class RomanOutput {
+    static final int CAPACITY = 1 << 16;
+    	// number of bytes of output that are collected before writing them
+    static final long FLUSH_INTERVAL = 50;
+    	// most milliseconds that non-interactive output waits to be written
+
+    WritableByteChannel m_channel;	// where the output is written
+    ByteBuffer m_buffer = ByteBuffer.allocateDirect(CAPACITY);
+    	// output that hasn't been written yet
+    boolean m_interactive;	// whether to write after each record
+    IOException m_failure;	// failure of the daemon thread's write, if any
+
+    /** Create output to a channel.
+     * @param p_channel the channel, e.g., standard output
+     * @param p_interactive whether to write after each record; if not, a
+     *	daemon thread writes the output within FLUSH_INTERVAL
+     */
+    RomanOutput(WritableByteChannel p_channel, boolean p_interactive)
+    {	// constructor
+    	Thread flusher;	// writes the output within FLUSH_INTERVAL
+    	m_channel = p_channel;
+    	m_interactive = p_interactive;
+    	if (! p_interactive)
+    	{	// output waits, but not for long
+    		flusher = new Thread("RomanOutput flusher") {
+    			public void run() {
+    				flushPeriodically();
+    			}	// run method
+    		};	// a Thread rather than a lambda, which is slower to start
+    		flusher.setDaemon(true);	// doesn't keep the calculator running
+    		flusher.start();
+    	}	// output waits, but not for long
+    }	// constructor
+
+    /** Create output to standard output, which is interactive if the
+     * calculator has a console.
+     * @return RomanOutput the output
+     */
+    static RomanOutput forStandardOutput() {
+    	return new RomanOutput(
+    		new FileOutputStream(FileDescriptor.out).getChannel(),
+    		System.console() != null);
+    }	// forStandardOutput method
+
+    /** Write formatted records, and remove them from the formatter.
+     * @param p_formatted the formatted records
+     * @throws IOException if the output (now or earlier) can't be written
+     */
+    synchronized void write(Roman.ResultFormatter p_formatted)
+    	throws IOException {
+    	int copied = 0;	// number of the records' bytes copied to the buffer
+    	int count;	// number of bytes to copy at once
+
+    	checkFailure();
+    	while (copied < p_formatted.m_length)
+    	{	// copy the records, writing the buffer whenever it's full
+    		if (! m_buffer.hasRemaining())	// buffer is full
+    			writeBuffer();
+    		count = Math.min(m_buffer.remaining(),
+    			p_formatted.m_length - copied);
+    		m_buffer.put(p_formatted.m_bytes, copied, count);
+    		copied += count;
+    	}	// copy the records, writing the buffer whenever it's full
+    	p_formatted.clear();
+    	if (m_interactive)	// a user is watching
+    		writeBuffer();
+    }	// write method
+
+    /** Write any output that hasn't been written yet.
+     * @throws IOException if the output (now or earlier) can't be written
+     */
+    synchronized void flush() throws IOException {
+    	checkFailure();
+    	writeBuffer();
+    }	// flush method
+
+    /** Throw the daemon thread's failure, if any.
+     * @throws IOException the failure
+     */
+    void checkFailure() throws IOException {
+    	if (m_failure != null)	// daemon thread couldn't write
+    		throw m_failure;
+    }	// checkFailure method
+
+    /** Write the buffer to the channel, and empty it for reuse; the caller
+     * must synchronize on this.
+     * @throws IOException if the channel can't be written
+     */
+    void writeBuffer() throws IOException {
+    	m_buffer.flip();
+    	while (m_buffer.hasRemaining())	// channel might write only part
+    		m_channel.write(m_buffer);
+    	m_buffer.clear();	// empty the buffer
+    }	// writeBuffer method
+
+    /** Every FLUSH_INTERVAL, write any output that hasn't been written,
+     * until a write fails; this is the daemon thread's task.
+     */
+    void flushPeriodically() {
+    	while (m_failure == null)
+    	{	// until a write fails
+    		try {
+    			Thread.sleep(FLUSH_INTERVAL);
+    		}	// try
+    		catch (InterruptedException e)
+    		{	// stop
+    			return;
+    		}	// stop
+    		synchronized (this)
+    		{	// write any output
+    			if (m_buffer.position() > 0)	// output hasn't been written
+    				try {
+    					writeBuffer();
+    				}	// try
+    				catch (IOException e)
+    				{	// report to the next write or flush
+    					m_failure = e;
+    				}	// report to the next write or flush
+    		}	// write any output
+    	}	// until a write fails
+    }	// flushPeriodically method
+}	// RomanOutput class
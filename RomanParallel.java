@@ -0,0 +1,341 @@
+/*
+ * File:	RomanParallel.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanParallel
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+// imports:
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/** Evaluates the lines of a batch input file on several threads, e.g.:
+ *	java Roman --batch in.txt --out out.txt --parallel 32
+ * The output is byte-for-byte the same as RomanBatch's sequential output.
+ *
+ * Class:	RomanParallel
+ *
+ * Only a line that starts with an operator depends on an earlier line,
+ * namely on the result of the last line before it that produced a result.
+ * Therefore, the mapped input is split (at line boundaries) into chunks,
+ * which are evaluated concurrently in a ForkJoinPool, each with its own
+ * RomanEngine.Session.  Here are the phases for a chunk:
+ * - While the chunk's carried-in result is unknown, i.e., until a line
+ *   produces a result without using the previous line's result, the lines
+ *   form the chunk's prefix; their output is discarded.
+ * - From that line on, each line is evaluated exactly, since the previous
+ *   result is known within the chunk; their output is kept.
+ * Then the chunks are stitched together in order on one thread: the
+ * prefix is evaluated again with the result carried from the previous
+ * chunk, its output is written, the chunk's kept output is written, and the
+ * chunk's last result (or, if it has no kept lines, the prefix's) is
+ * carried to the next chunk.  A line that contains QUIT or EXIT ends the
+ * output, as it does sequentially.
+ *
+ * The chunks are evaluated in rounds; a round is stitched and written while
+ * the next round is evaluated, so output memory is bounded by two rounds.
+ * A file that consists mostly of lines that start with operators is mostly
+ * prefix, so it is evaluated nearly sequentially, but still correctly.
+ *
+ * If the lines are measured by a RomanMetrics, a chunk's session measures
+ * only its kept lines, and the stitching session measures the prefixes, so
+ * that each line is counted once, with its exact outcome.  The line that
+ * ends a prefix is evaluated before it is known to be kept, so it is
+ * counted, but its latencies aren't recorded.  Lines after a QUIT or EXIT
+ * that were already evaluated (in the same round) are also counted.
+ */
+class RomanParallel {
+    static final int CHUNK_SIZE = 1 << 18;
+    	// approximate number of input bytes in a chunk
+    static final int CHUNKS_PER_THREAD = 2;
+    	// number of chunks in a round for each thread
+
+    /** Process each line of an input file on several threads, writing the
+     * results and messages in order.
+     * @param p_input the input file
+     * @param p_output the channel for the results and messages
+     * @param p_threads the number of threads
+     * @param p_cache cache of lines' outcomes, which the threads share, or
+     *	null for none
+     * @param p_metrics where to measure the lines, which the threads share,
+     *	or null for nowhere
+     * @param p_extended whether the lines are evaluated in the extended range
+     * @throws IOException if a file can't be read or written, or if a line is
+     *	longer than RomanBatch.MAP_WINDOW
+     */
+    static void run(
+    	FileChannel p_input,
+    	WritableByteChannel p_output,
+    	int p_threads,
+    	RomanCache p_cache,
+    	RomanMetrics p_metrics,
+    	boolean p_extended) throws IOException {
+    	ForkJoinPool pool = new ForkJoinPool(p_threads);	// the threads
+    	RomanEngine.Session stitchSession =
+    		new RomanEngine.Session(p_cache, p_metrics);
+    		// session for stitching; it carries the result from chunk to chunk
+    	stitchSession.setExtendedRange(p_extended);
+    	Roman.ResultFormatter stitchOutput = new Roman.ResultFormatter();
+    		// output of the prefixes, when they are stitched
+    	RomanBatch.MappedLine mappedLine = new RomanBatch.MappedLine();
+    		// view of each line's bytes, for stitching
+    	long fileSize = p_input.size();	// number of bytes in input file
+    	long windowStart = 0;	// file position of the mapped bytes
+    	int windowLength;	// number of mapped bytes
+    	int usableLength;	// number of mapped bytes in complete lines
+    	MappedByteBuffer window;	// the mapped bytes
+    	int chunkStart;	// index (in window) of the next chunk's first byte
+    	int chunkEnd;	// index (in window) after a chunk's last byte
+    	List<ChunkTask> round;	// the chunks of a round
+    	List<ChunkTask> previousRound;	// the round to stitch, if any
+    	ForkJoinTask<Void> runningRound;	// evaluation of a round
+    	boolean sawQuit = false;	// whether a line said QUIT or EXIT
+
+    	try {
+    	while (windowStart < fileSize && ! sawQuit)
+    	{	// for each window of mapped bytes
+    		windowLength = (int)Math.min(RomanBatch.MAP_WINDOW,
+    			fileSize - windowStart);
+    		window = p_input.map(FileChannel.MapMode.READ_ONLY,
+    			windowStart, windowLength);
+    		usableLength = (windowStart + windowLength == fileSize)
+    			? windowLength : completeLinesLength(window, windowLength);
+    		if (usableLength == 0)	// a line fills the whole window
+    			throw new IOException("a line is longer than " +
+    				RomanBatch.MAP_WINDOW + " bytes");
+    		chunkStart = 0;
+    		previousRound = null;
+    		while (! sawQuit &&
+    			(chunkStart < usableLength || previousRound != null))
+    		{	// for each round, and then stitch the last round
+    			round = new ArrayList<ChunkTask>();
+    			while (chunkStart < usableLength &&
+    				round.size() < p_threads * CHUNKS_PER_THREAD)
+    			{	// for each chunk in the round
+    				chunkEnd = (usableLength - chunkStart <= CHUNK_SIZE)
+    					? usableLength
+    					: lineStartAtOrAfter(window, chunkStart + CHUNK_SIZE,
+    						usableLength);
+    				round.add(new ChunkTask(window, chunkStart, chunkEnd,
+    					p_cache, p_metrics, p_extended));
+    				chunkStart = chunkEnd;
+    			}	// for each chunk in the round
+    			runningRound = round.isEmpty()
+    				? null : pool.submit(new RoundTask(round));
+    				// evaluate this round while stitching the previous one
+    			if (previousRound != null)	// there's a round to stitch
+    				for (ChunkTask chunk : previousRound)
+    					if (sawQuit = stitch(chunk, stitchSession,
+    						stitchOutput, mappedLine, p_output))
+    						// contains QUIT or EXIT
+    						break;	// quit
+    			if (runningRound != null)
+    				runningRound.join();	// wait for this round
+    			previousRound = round.isEmpty() ? null : round;
+    		}	// for each round, and then stitch the last round
+    		windowStart += usableLength;	// next window starts with next line
+    	}	// for each window of mapped bytes
+    	}	// try
+    	finally {
+    		pool.shutdownNow();	// stop any round that is no longer needed
+    	}	// finally
+    }	// run method
+
+    /** Find the number of bytes of a window (not the last) that are in
+     * complete lines, i.e., whose endings are within the window.
+     * @param p_theBytes the mapped bytes
+     * @param p_windowLength the number of mapped bytes
+     * @return int the number of bytes, or 0 if no line ends in the window
+     */
+    static int completeLinesLength(ByteBuffer p_theBytes, int p_windowLength) {
+    	int i;	// iteration for each byte, backwards
+    	byte b;	// a byte
+    	for (i = p_windowLength - 2; i >= 0; i--)
+    		// the last byte is skipped, since it might be the \r of \r\n
+    		if ((b = p_theBytes.get(i)) == '\n' || b == '\r')	// line ending
+    			return RomanBatch.nextLineStart(p_theBytes, i, p_windowLength);
+    	return 0;	// no line ends in the window
+    }	// completeLinesLength method
+
+    /** Find the first line start at or after an index.
+     * @param p_theBytes the mapped bytes
+     * @param p_index the index, which is greater than 0
+     * @param p_limit index after the last byte that may be examined
+     * @return int index of the line's first byte, or p_limit if there is none
+     */
+    static int lineStartAtOrAfter(
+    	ByteBuffer p_theBytes,
+    	int p_index,
+    	int p_limit) {
+    	int lineEnd = RomanBatch.findLineEnd(p_theBytes, p_index - 1, p_limit);
+    		// the ending of the line that contains the byte before the index;
+    		// starting there keeps \r\n together
+    	return (lineEnd == p_limit)
+    		? p_limit : RomanBatch.nextLineStart(p_theBytes, lineEnd, p_limit);
+    }	// lineStartAtOrAfter method
+
+    /** Stitch a chunk into the output: evaluate the chunk's prefix with the
+     * carried result, then write its output and the chunk's kept output,
+     * and carry the chunk's last result.
+     * @param p_chunk the chunk, which has been evaluated
+     * @param p_stitchSession session that carries the result from chunk to
+     *	chunk
+     * @param p_stitchOutput output buffer for the prefix
+     * @param p_mappedLine a view to use for the prefix's lines
+     * @param p_output the channel for the results and messages
+     * @return boolean whether a line in the chunk contains QUIT or EXIT
+     * @throws IOException if the output can't be written
+     */
+    static boolean stitch(
+    	ChunkTask p_chunk,
+    	RomanEngine.Session p_stitchSession,
+    	Roman.ResultFormatter p_stitchOutput,
+    	RomanBatch.MappedLine p_mappedLine,
+    	WritableByteChannel p_output) throws IOException {
+    	int lineStart = p_chunk.m_start;	// index of a line's first byte
+    	int lineEnd;	// index of the line's \n or \r
+
+    	while (lineStart < p_chunk.m_prefixEnd)
+    	{	// for each line in the prefix
+    		lineEnd = RomanBatch.findLineEnd(p_chunk.m_bytes, lineStart,
+    			p_chunk.m_prefixEnd);
+    		if (RomanBatch.processLine(p_chunk.m_bytes, lineStart, lineEnd,
+    			p_stitchSession, p_mappedLine, p_stitchOutput)
+    			== RomanEngine.QUIT)
+    		{	// contains QUIT or EXIT
+    			RomanBatch.write(p_stitchOutput, p_output,
+    				p_stitchSession.m_metrics);
+    			return true;	// quit
+    		}	// contains QUIT or EXIT
+    		lineStart = RomanBatch.nextLineStart(p_chunk.m_bytes, lineEnd,
+    			p_chunk.m_prefixEnd);
+    	}	// for each line in the prefix
+    	RomanBatch.write(p_stitchOutput, p_output, p_stitchSession.m_metrics);
+    		// prefix's output
+    	RomanBatch.write(p_chunk.m_output, p_output, p_stitchSession.m_metrics);
+    		// kept output
+    	if (p_chunk.m_resultIsKnown)	// chunk has kept lines
+    		p_stitchSession.setResult(p_chunk.m_session.getLongResult());
+    		// carry the chunk's last result
+    	return p_chunk.m_sawQuit;
+    }	// stitch method
+
+    /** Evaluation of one round of chunks, concurrently.
+     * Tasks are never serialized, so they have no serialVersionUID.
+     */
+    @SuppressWarnings("serial")
+    static class RoundTask extends RecursiveAction {
+    	List<ChunkTask> m_chunks;	// the chunks
+
+    	/** Create evaluation of a round.
+    	 * @param chunks - the chunks.
+    	 */
+    	RoundTask(List<ChunkTask> chunks)
+    	{	// constructor
+    		m_chunks = chunks;
+    	}	// constructor
+
+    	/** Evaluate the chunks, each in its own task.
+    	 */
+    	protected void compute() {
+    		invokeAll(m_chunks);
+    	}	// compute method
+    }	// RoundTask class
+
+    /** Evaluation of one chunk of lines, which the class comment describes.
+     */
+    @SuppressWarnings("serial")
+    static class ChunkTask extends RecursiveAction {
+    	ByteBuffer m_bytes;	// the mapped bytes
+    	int m_start;	// index of the chunk's first byte
+    	int m_end;	// index after the chunk's last byte
+    	int m_prefixEnd;	// index after the chunk's prefix
+    	boolean m_resultIsKnown;	// whether chunk has lines after prefix
+    	boolean m_sawQuit;	// whether a line said QUIT or EXIT
+    	RomanEngine.Session m_session;
+    		// session for the chunk's lines, which ends with the chunk's last
+    		// result
+    	Roman.ResultFormatter m_output = new Roman.ResultFormatter();
+    		// the kept output
+    	RomanMetrics m_metrics;	// where to measure kept lines, or null
+
+    	/** Create evaluation of a chunk.
+    	 * @param bytes - the mapped bytes.
+    	 * @param start - index of the chunk's first byte, a line start.
+    	 * @param end - index after the chunk's last byte, a line start.
+    	 * @param cache - cache of lines' outcomes, or null for none.
+    	 * @param metrics - where to measure kept lines, or null for nowhere.
+    	 * @param extended - whether the lines are in the extended range.
+    	 */
+    	ChunkTask(ByteBuffer bytes, int start, int end, RomanCache cache,
+    		RomanMetrics metrics, boolean extended)
+    	{	// constructor
+    		m_session = new RomanEngine.Session(cache);
+    			// measured only once its lines are kept
+    		m_session.setExtendedRange(extended);
+    		m_metrics = metrics;
+    		m_bytes = bytes;
+    		m_start = start;
+    		m_end = end;
+    		m_prefixEnd = end;	// until a line's result is known
+    	}	// constructor
+
+    	/** Evaluate the chunk's lines.
+    	 */
+    	protected void compute() {
+    		RomanBatch.MappedLine mappedLine = new RomanBatch.MappedLine();
+    			// view of each line's bytes
+    		int lineStart = m_start;	// index of a line's first byte
+    		int lineEnd;	// index of the line's \n or \r
+    		int nextStart;	// index of the next line's first byte
+    		int outcome;	// outcome of evaluating a line
+
+    		while (lineStart < m_end)
+    		{	// for each line in the chunk
+    			lineEnd = RomanBatch.findLineEnd(m_bytes, lineStart, m_end);
+    			nextStart = RomanBatch.nextLineStart(m_bytes, lineEnd, m_end);
+    			outcome = RomanBatch.processLine(m_bytes, lineStart, lineEnd,
+    				m_session, mappedLine, m_output);
+    			m_sawQuit = (outcome == RomanEngine.QUIT);
+    			if (! m_resultIsKnown)
+    			{	// line is in the prefix, unless it makes result known
+    				if (outcome == RomanEngine.RESULT &&
+    					! m_session.usedPreviousResult())
+    				{	// line's result doesn't depend on carried result
+    					m_resultIsKnown = true;
+    					m_prefixEnd = lineStart;	// so this line is kept
+    					if (m_metrics != null)
+    					{	// count this line, and measure the rest
+    						m_metrics.countUnmeasuredLine(outcome, m_session);
+    						m_session.m_metrics = m_metrics;
+    					}	// count this line, and measure the rest
+    				}	// line's result doesn't depend on carried result
+    				else
+    				{	// line is in the prefix
+    					m_output.clear();	// stitching redoes it
+    					if (m_sawQuit)	// contains QUIT or EXIT
+    						m_prefixEnd = nextStart;	// end prefix after it
+    				}	// line is in the prefix
+    			}	// line is in the prefix, unless it makes result known
+    			if (m_sawQuit)	// contains QUIT or EXIT
+    				break;	// quit
+    			lineStart = nextStart;
+    		}	// for each line in the chunk
+    	}	// compute method
+    }	// ChunkTask class
+}	// RomanParallel class
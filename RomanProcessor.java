@@ -0,0 +1,331 @@
+/*
+ * File:	RomanProcessor.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanProcessor
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+// imports:
+import java.nio.charset.Charset;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Evaluates a stream of lines for the Roman numeral desk calculator within
+ * a java.util.concurrent.Flow pipeline, e.g.:
+ *	SubmissionPublisher<String> lines = new SubmissionPublisher<>();
+ *	RomanProcessor processor = new RomanProcessor();
+ *	lines.subscribe(processor);
+ *	processor.subscribe(consumer);
+ *	lines.submit("MCM + XX");	// consumer gets the text of the result,
+ *		// "[] Result: Roman MCMXX (Arabic 1920)."
+ *
+ * Class:	RomanProcessor
+ *
+ * A processor is one stream: it subscribes to one publisher of lines, and
+ * it publishes to one subscriber each line's result or message, as the text
+ * that batch mode writes for the line (without the last line separator), in
+ * the order of the lines.  It has its own session, so a line that starts
+ * with an operator uses the result of the stream's previous line that had a
+ * result.  A line that contains QUIT or EXIT gets the goodbye message, and
+ * then the processor cancels its subscription to the lines and completes.
+ *
+ * The processor honours back-pressure in both directions: a line is
+ * evaluated only after the subscriber has requested its result, and the
+ * processor has at most BATCH lines that it has requested but not
+ * evaluated, so a slow subscriber slows the publisher instead of letting
+ * lines pile up in memory.
+ *
+ * The work is batched: the processor requests lines REPLENISH at a time
+ * (after the first BATCH), and one task on the executor evaluates up to
+ * BATCH lines (as many as have arrived and have been requested), with the
+ * same session and formatter, instead of one task per line.
+ *
+ * Processors for independent streams can share an executor (by default the
+ * common ForkJoinPool), and their lines are evaluated at once on its
+ * threads.  Each processor runs at most one task at a time, which is how
+ * its lines keep their order; a task that has evaluated BATCH lines
+ * submits a new task to continue, instead of looping, so that the other
+ * streams get a turn.  The streams' sessions can share a RomanCache.
+ */
+class RomanProcessor implements Flow.Processor<String, String> {
+    static final int BATCH = 256;
+    	// most lines requested but not evaluated, and most lines that one
+    	// task evaluates
+    static final int REPLENISH = BATCH / 2;
+    	// number of lines requested at once, after the first BATCH
+
+    Executor m_executor;	// runs the tasks that evaluate lines
+    RomanEngine.Session m_session;
+    	// the stream's session, which holds the previous result
+    Roman.ResultFormatter m_output = new Roman.ResultFormatter();
+    	// output of each line, which is reused for each line
+    ConcurrentLinkedQueue<String> m_lines = new ConcurrentLinkedQueue<>();
+    	// lines received but not yet evaluated
+    AtomicLong m_demand = new AtomicLong();
+    	// number of results requested but not yet published
+    AtomicInteger m_signals = new AtomicInteger();
+    	// number of signals (a line, a request, etc.) that no task has
+    	// looked at yet; a task runs while it isn't 0
+    boolean m_subscribed;	// whether a subscriber has subscribed
+    volatile Flow.Subscription m_upstream;	// subscription to the lines
+    volatile Flow.Subscriber<? super String> m_downstream;
+    	// the subscriber, once its onSubscribe has returned
+    volatile Throwable m_error;
+    	// why the lines failed or the subscriber's request was invalid, or
+    	// null if neither
+    volatile boolean m_upstreamDone;	// whether the lines have ended
+    volatile boolean m_cancelled;	// whether the lines are no longer
+    	// wanted, because the subscriber cancelled or got its last signal
+    boolean m_done;	// whether the subscriber has been given its last
+    	// signal or has cancelled; only the task uses it
+    int m_consumed;	// lines evaluated since lines were last requested;
+    	// only the task uses it
+
+    /** Create a processor that runs on the common ForkJoinPool, without a
+     * cache.
+     */
+    RomanProcessor()
+    {	// constructor
+    	this(ForkJoinPool.commonPool(), null);
+    }	// constructor
+
+    /** Create a processor.
+     * @param p_executor runs the tasks that evaluate lines; it may be shared
+     *	by the processors of other streams
+     * @param p_cache cache of lines' outcomes, which may be shared, or null
+     *	for none
+     */
+    RomanProcessor(Executor p_executor, RomanCache p_cache)
+    {	// constructor
+    	m_executor = Objects.requireNonNull(p_executor);
+    	m_session = new RomanEngine.Session(p_cache);
+    }	// constructor
+
+    /** Subscribe to the results.  A processor has only one subscriber, so a
+     * later one gets an IllegalStateException through onError.
+     * @param p_subscriber the subscriber
+     */
+    public void subscribe(Flow.Subscriber<? super String> p_subscriber) {
+    	boolean isFirst;	// whether this is the first subscriber
+
+    	Objects.requireNonNull(p_subscriber);
+    	synchronized (this)
+    	{	// claim the processor
+    		isFirst = !m_subscribed;
+    		m_subscribed = true;
+    	}	// claim the processor
+    	if (!isFirst)
+    	{	// reject a second subscriber
+    		p_subscriber.onSubscribe(new ResultSubscription(false));
+    		p_subscriber.onError(new IllegalStateException(
+    			"A RomanProcessor has only one subscriber"));
+    		return;
+    	}	// reject a second subscriber
+    	p_subscriber.onSubscribe(new ResultSubscription(true));
+    	m_downstream = p_subscriber;	// only now can it get other signals
+    	signal();
+    }	// subscribe method
+
+    /** Receive the subscription to the lines, and request the first BATCH.
+     * @param p_subscription the subscription
+     */
+    public void onSubscribe(Flow.Subscription p_subscription) {
+    	synchronized (this)
+    	{	// accept only the first subscription
+    		if (m_upstream != null)
+    		{	// already subscribed
+    			p_subscription.cancel();
+    			return;
+    		}	// already subscribed
+    		m_upstream = p_subscription;
+    	}	// accept only the first subscription
+    	if (m_cancelled)	// the lines aren't wanted anymore
+    		p_subscription.cancel();
+    	else p_subscription.request(BATCH);
+    }	// onSubscribe method
+
+    /** Receive a line, which is evaluated once its result is requested.
+     * @param p_theLine the line, as the user entered it, without a line
+     *	ending
+     */
+    public void onNext(String p_theLine) {
+    	m_lines.offer(p_theLine);
+    	signal();
+    }	// onNext method
+
+    /** Receive the failure of the lines, which the subscriber gets instead
+     * of the results of lines that aren't evaluated yet.
+     * @param p_throwable why the lines failed
+     */
+    public void onError(Throwable p_throwable) {
+    	m_error = p_throwable;
+    	m_upstreamDone = true;	// after m_error, which the task tests next
+    	signal();
+    }	// onError method
+
+    /** Receive the end of the lines; the subscriber completes after the
+     * results of all the lines.
+     */
+    public void onComplete() {
+    	m_upstreamDone = true;
+    	signal();
+    }	// onComplete method
+
+    /** Note a signal, and start a task to look at it unless one is running.
+     */
+    void signal() {
+    	if (m_signals.getAndIncrement() == 0)	// no task is running
+    		m_executor.execute(this::evaluateLines);
+    }	// signal method
+
+    /** Evaluate the lines whose results have been requested, publish the
+     * results in order, and complete the subscriber when the lines have
+     * ended, until there are no more signals or BATCH lines have been
+     * evaluated; in the latter case, submit a new task to continue.
+     */
+    void evaluateLines() {
+    	int seen = 1;	// number of signals that this task has looked at
+    	int evaluated = 0;	// number of lines that this task has evaluated
+    	Flow.Subscriber<? super String> downstream;	// the subscriber
+    	String line;	// the next line
+    	int outcome;	// outcome of evaluating a line
+
+    	while (true)
+    	{	// until no signals are left
+    		downstream = m_downstream;
+    		if (m_done || m_cancelled)	// nothing more to publish
+    		{	// discard any lines that still arrive
+    			m_done = true;
+    			m_lines.clear();
+    		}	// discard any lines that still arrive
+    		else if (downstream != null)
+    		{	// there's a subscriber
+    			try {
+    				if (m_error != null)	// fail without the remaining lines
+    					finish(downstream);
+    				while (!m_done && evaluated < BATCH && m_demand.get() > 0
+    					&& (line = m_lines.poll()) != null)
+    				{	// for each line whose result is requested
+    					outcome = RomanEngine.evaluate(line, m_session);
+    					m_output.clear();
+    					m_output.appendOutcome(outcome, m_session);
+    					m_demand.decrementAndGet();
+    					evaluated++;
+    					downstream.onNext(new String(m_output.m_bytes, 0,
+    						m_output.m_length
+    						- Roman.ResultFormatter.LINE_SEPARATOR.length,
+    						Charset.defaultCharset()));
+    					if (outcome == RomanEngine.QUIT)	// QUIT or EXIT
+    						finish(downstream);
+    					else if (++m_consumed == REPLENISH)
+    					{	// request the next lines
+    						m_consumed = 0;
+    						m_upstream.request(REPLENISH);
+    					}	// request the next lines
+    				}	// for each line whose result is requested
+    				if (!m_done && m_upstreamDone && m_lines.isEmpty())
+    					finish(downstream);	// all lines are evaluated
+    			}	// try
+    			catch (RuntimeException e)
+    			{	// the subscriber broke the rules, so treat it as cancelled
+    				m_done = true;
+    				m_lines.clear();
+    				cancelUpstream();
+    			}	// the subscriber broke the rules
+    		}	// there's a subscriber
+    		if (evaluated == BATCH && !m_done)
+    		{	// give the other streams a turn
+    			m_executor.execute(this::evaluateLines);
+    			return;	// the new task looks at the remaining signals
+    		}	// give the other streams a turn
+    		seen = m_signals.addAndGet(-seen);
+    		if (seen == 0)	// a new signal will start a new task
+    			return;
+    	}	// until no signals are left
+    }	// evaluateLines method
+
+    /** Give the subscriber its last signal: onError if the lines failed or
+     * its request was invalid, else onComplete.  Also cancel the
+     * subscription to the lines, if they haven't ended.
+     * @param p_downstream the subscriber
+     */
+    void finish(Flow.Subscriber<? super String> p_downstream) {
+    	m_done = true;
+    	m_lines.clear();
+    	cancelUpstream();	// harmless if the lines have ended
+    	if (m_error != null)	// the lines failed, or the request was invalid
+    		p_downstream.onError(m_error);
+    	else p_downstream.onComplete();
+    }	// finish method
+
+    /** Note that the lines aren't wanted anymore, and cancel the
+     * subscription to them, if there is one yet; otherwise, onSubscribe
+     * cancels it.
+     */
+    void cancelUpstream() {
+    	Flow.Subscription upstream;	// subscription to the lines
+
+    	m_cancelled = true;
+    	upstream = m_upstream;
+    	if (upstream != null)	// there's a subscription
+    		upstream.cancel();
+    }	// cancelUpstream method
+
+    /** The subscriber's subscription to the results of the lines.
+     */
+    class ResultSubscription implements Flow.Subscription {
+    	boolean m_isActive;	// whether it's the subscriber's subscription,
+    		// rather than a rejected second one
+
+    	/** Create a subscription.
+    	 * @param p_isActive whether it's the subscriber's subscription
+    	 */
+    	ResultSubscription(boolean p_isActive)
+    	{	// constructor
+    		m_isActive = p_isActive;
+    	}	// constructor
+
+    	/** Request more results; a number that isn't positive is an error,
+    	 * which the subscriber gets through onError.
+    	 * @param p_count the number of results
+    	 */
+    	public void request(long p_count) {
+    		long demand;	// the demand before adding to it
+
+    		if (!m_isActive)	// rejected, so there are no results
+    			return;
+    		if (p_count <= 0)	// an invalid request
+    			m_error = new IllegalArgumentException(
+    				"The number of results requested must be positive: "
+    				+ p_count);
+    		else do
+    			demand = m_demand.get();
+    		while (!m_demand.compareAndSet(demand,
+    			(demand + p_count < 0) ? Long.MAX_VALUE : demand + p_count));
+    			// add, but without overflowing
+    		signal();
+    	}	// request method
+
+    	/** Cancel the results; the subscription to the lines is cancelled,
+    	 * and lines that have arrived are discarded.
+    	 */
+    	public void cancel() {
+    		if (!m_isActive || m_cancelled)	// nothing to cancel
+    			return;
+    		cancelUpstream();
+    		signal();
+    	}	// cancel method
+    }	// ResultSubscription class
+}	// RomanProcessor class
@@ -0,0 +1,175 @@
+/*
+ * File:	RomanServer.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanServer
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+// imports:
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** Serves the Roman numeral desk calculator to many clients at once over a
+ * local (loopback) TCP port, e.g.:
+ *	java Roman --server 3999
+ * RomanLoadGenerator is a client that measures the server's performance.
+ *
+ * Class:	RomanServer
+ *
+ * A client sends one expression per line (ending with \n or \r\n) and gets
+ * back the same result or message that the interactive calculator displays
+ * for that line.  Each connection is a separate session, with its own
+ * previous line's result.  A line that contains QUIT or EXIT gets the
+ * goodbye message, and then the server closes the connection.
+ *
+ * Each connection is served by its own thread, which is a virtual thread
+ * if the Java runtime has them (Java 21 or later); otherwise it is an
+ * ordinary thread from a cached pool.  A connection's thread evaluates
+ * every complete line that it has received before writing any response,
+ * so a client that sends several lines at once (pipelining) gets all of
+ * their responses in one write.
+ */
+class RomanServer {
+    static final int DEFAULT_PORT = 3999;	// port, if none is specified
+    static final int BACKLOG = 16384;	// connections waiting to be accepted
+    static final int BUFFER_SIZE = 8192;	// initial bytes of input buffer
+    static final int MAX_LINE_LENGTH = 1 << 20;
+    	// longest line that the server accepts; it closes the connection
+    	// of a client that sends a longer line
+
+    /** Main method for server mode.
+     * @param args arguments: "--server", and optionally the port
+     */
+    public static void main(String[] args) {
+    	int port = DEFAULT_PORT;	// the port to listen on
+
+    	if (args.length > 2 || (args.length == 2 && !args[1].matches("\\d+")))
+    	{	// invalid arguments
+    		System.err.println("[] Usage: java Roman --server [<port>]");
+    		System.exit(2);
+    	}	// invalid arguments
+    	if (args.length == 2)	// port is specified
+    		port = Integer.parseInt(args[1]);
+    	try (ServerSocketChannel server = ServerSocketChannel.open())
+    	{	// serve until the process is stopped
+    		server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+    			port), BACKLOG);
+    		System.out.println("[] Serving the Roman numeral desk calculator on "
+    			+ server.getLocalAddress());
+    		serve(server, newThreadPerTaskExecutor());
+    	}	// serve until the process is stopped
+    	catch (IOException e)
+    	{	// can't listen
+    		System.err.println("[] Server failed: " + e.getMessage());
+    		System.exit(1);
+    	}	// can't listen
+    }	// main method
+
+    /** Accept connections and serve each one on its own thread, until the
+     * server channel is closed.
+     * @param p_server the server channel
+     * @param p_executor the executor, which runs each task on a new thread
+     * @throws IOException if a connection can't be accepted
+     */
+    static void serve(ServerSocketChannel p_server, ExecutorService p_executor)
+    	throws IOException {
+    	SocketChannel connection;	// a client's connection
+
+    	try {
+    		while (true)
+    		{	// for each connection
+    			connection = p_server.accept();
+    			final SocketChannel theConnection = connection;
+    			p_executor.execute(() -> serveConnection(theConnection));
+    		}	// for each connection
+    	}	// try
+    	finally {
+    		p_executor.shutdown();
+    	}	// finally
+    }	// serve method
+
+    /** Serve one connection until the client closes it or sends QUIT or EXIT.
+     * @param p_connection the connection
+     */
+    static void serveConnection(SocketChannel p_connection) {
+    	RomanEngine.Session session = new RomanEngine.Session();
+    		// the connection's session; it holds the previous line's result
+    	Roman.ResultFormatter output = new Roman.ResultFormatter();
+    		// responses that have not been written yet
+    	RomanBatch.MappedLine lineView = new RomanBatch.MappedLine();
+    		// view of each line's bytes, which the engine reads
+    	ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+    		// bytes that have been received but not yet evaluated
+    	int lineStart;	// index (in input) of a line's first byte
+    	int lineEnd;	// index (in input) of the line's \n or \r
+    	int limit;	// index after the last received byte
+    	boolean endOfInput = false;	// whether the client closed its side
+    	boolean sawQuit = false;	// whether a line said QUIT or EXIT
+
+    	try (SocketChannel connection = p_connection)
+    	{	// serve the connection
+    		while (! endOfInput && ! sawQuit)
+    		{	// for each read from the connection
+    			endOfInput = (connection.read(input) < 0);
+    			limit = input.position();
+    			lineStart = 0;
+    			while (! sawQuit && lineStart < limit)
+    			{	// for each complete line that has been received
+    				lineEnd = RomanBatch.findLineEnd(input, lineStart, limit);
+    				if (! endOfInput && (lineEnd == limit ||
+    					(lineEnd == limit - 1 && input.get(lineEnd) == '\r')))
+    					break;	// line or its \r\n is not complete yet
+    				sawQuit = (RomanBatch.processLine(input, lineStart, lineEnd,
+    					session, lineView, output) == RomanEngine.QUIT);
+    				lineStart = RomanBatch.nextLineStart(input, lineEnd, limit);
+    			}	// for each complete line that has been received
+    			output.writeTo(connection);	// respond to all of those lines
+    			if (lineStart < limit)	// an incomplete line remains
+    			{	// keep the incomplete line, at the buffer's start
+    				input.limit(limit).position(lineStart);
+    				input.compact();
+    				if (! input.hasRemaining())	// buffer is full
+    				{	// make room, unless line is too long
+    					if (input.capacity() >= MAX_LINE_LENGTH)
+    						break;	// line is too long; close connection
+    					input = ByteBuffer.allocate(2 * input.capacity())
+    						.put(input.flip());
+    				}	// make room, unless line is too long
+    			}	// keep the incomplete line, at the buffer's start
+    			else input.clear();	// all lines were evaluated
+    		}	// for each read from the connection
+    	}	// serve the connection
+    	catch (IOException e)
+    	{	// client went away; nothing more to do for it
+    	}	// client went away
+    }	// serveConnection method
+
+    /** Create an executor that runs each task on a new virtual thread, if
+     * the Java runtime has them; otherwise, on a thread of a cached pool.
+     * @return ExecutorService the executor
+     */
+    static ExecutorService newThreadPerTaskExecutor() {
+    	try {
+    		return (ExecutorService)Executors.class
+    			.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    			// Java 21 or later
+    	}	// try
+    	catch (ReflectiveOperationException e)
+    	{	// no virtual threads in this Java runtime
+    		return Executors.newCachedThreadPool();
+    	}	// no virtual threads in this Java runtime
+    }	// newThreadPerTaskExecutor method
+}	// RomanServer class
@@ -0,0 +1,294 @@
+/*
+ * File:	RomanSort.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanSort
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+/** Sorts columns of Roman numerals, and finds the numerals in a range of
+ * values in a sorted column, e.g., the regnal numbers of a data file:
+ *	short[] keys = new short[count];
+ *	int[] rows = RomanSort.sortColumn(numerals, offsets, keys);
+ *	// rows[i] is the row of the i-th smallest numeral, whose key is keys[i]
+ *	int from = RomanSort.firstAtLeast(keys, count, RomanSort.keyOf("XL"));
+ *	int to = RomanSort.firstAtLeast(keys, count, RomanSort.keyOf("CC") + 1);
+ *	// rows[from] through rows[to - 1] are the numerals from XL through CC
+ *
+ * Class:	RomanSort
+ *
+ * A column of numerals is laid out as in RomanColumns, and a numeral is
+ * valid if RomanColumns.decodeNumeral accepts it.  Each numeral's sort key
+ * is a short from 0 to INVALID_KEY, which is found in one pass over the
+ * numeral's bytes by the numeral automaton: a valid numeral's key is its
+ * value - Roman.MININT, so keys are in the same order as values, and every
+ * numeral that isn't valid has INVALID_KEY, so it sorts after every valid
+ * one.  Since a key has only KEY_BITS bits, a column is sorted by key with
+ * a stable LSD radix sort of KEY_BITS / DIGIT_BITS passes, which moves the
+ * keys and rows without comparing them, instead of a comparison sort of
+ * boxed values.
+ *
+ * Sorting n rows allocates an array of n shorts and one of n ints for the
+ * passes, and nothing per row, so a column of hundreds of millions of rows
+ * needs 12 bytes per row, counting the keys and rows themselves; its
+ * numerals can be in
+ * several columns of at most 2 GB each, whose keys go into parts of the
+ * same array of keys (see keys).  A range of values is found in a sorted
+ * column, of keys or of numerals, by binary search, which looks at about
+ * log2(n) keys.
+ */
+class RomanSort {
+    static final int INVALID_KEY = Roman.MAXINT - Roman.MININT + 1;
+    	// key of a numeral that isn't valid; it's after every valid key
+    static final int DIGIT_BITS = 7;	// bits of a key sorted by each pass,
+    	// so that a pass's counts fit in the L1 cache
+    static final int KEY_BITS = 14;	// bits of a key, which is at most
+    	// INVALID_KEY; it's a multiple of DIGIT_BITS
+    static final int BUCKETS = 1 << DIGIT_BITS;	// values of a key's digit
+    static final int PASSES = KEY_BITS / DIGIT_BITS;	// passes of the sort
+
+    /** Get the sort key of a Roman numeral.
+     * @param p_numerals bytes that contain the numeral
+     * @param p_start index of the numeral's first byte
+     * @param p_end index after its last byte
+     * @return int its value - Roman.MININT, or INVALID_KEY if it isn't a
+     *	valid numeral
+     */
+    static short keyOf(byte[] p_numerals, int p_start, int p_end) {
+    	int value = RomanColumns.decodeNumeral(p_numerals, p_start, p_end);
+    		// the numeral's value, or NOT_A_NUMERAL
+    	return (short)((value == RomanColumns.NOT_A_NUMERAL) ? INVALID_KEY
+    		: value - Roman.MININT);
+    }	// keyOf method for bytes
+
+    /** Get the sort key of a Roman numeral that bounds a range, e.g., XL.
+     * @param p_numeral the numeral
+     * @return int its value - Roman.MININT
+     * @throws IllegalArgumentException if it isn't a valid numeral
+     */
+    public static int keyOf(String p_numeral) {
+    	byte[] numeral = new byte[p_numeral.length()];	// its chars, as
+    		// bytes; a char that isn't ASCII becomes one that isn't valid
+    	int key;	// the numeral's key
+
+    	for (int i = 0; i < numeral.length; i++)
+    		numeral[i] = (p_numeral.charAt(i) < 128)
+    			? (byte)p_numeral.charAt(i) : (byte)0;
+    	key = keyOf(numeral, 0, numeral.length);
+    	if (key == INVALID_KEY)
+    		throw new IllegalArgumentException("[] " + p_numeral +
+    			" isn't a valid Roman numeral");
+    	return key;
+    }	// keyOf method for a String
+
+    /** Get the value of a valid numeral from its sort key.
+     * @param p_key the key, which isn't INVALID_KEY
+     * @return int the value
+     */
+    public static int valueOf(int p_key) {
+    	return p_key + Roman.MININT;
+    }	// valueOf method
+
+    /** Get the sort keys of a column of Roman numerals.
+     * @param p_numerals the numerals, as ASCII bytes
+     * @param p_offsets where each numeral starts, followed by where the last
+     *	one ends, so there is one more offset than there are numerals
+     * @param p_keys gets each numeral's key
+     * @param p_at index in p_keys of the first numeral's key, so that the
+     *	keys of several columns can be put in one array
+     * @return int the number of numerals that aren't valid
+     * @throws IllegalArgumentException if the offsets decrease or aren't
+     *	in p_numerals, or if p_keys is too short
+     */
+    public static int keys(
+    	byte[] p_numerals,
+    	int[] p_offsets,
+    	short[] p_keys,
+    	int p_at) {
+    	int invalid = 0;	// number of numerals that aren't valid
+
+    	if (p_at < 0 || p_at > p_keys.length)
+    		throw new IllegalArgumentException("[] The first key must be " +
+    			"in the keys");
+    	RomanColumns.checkOffsets(p_numerals, p_offsets, p_keys.length - p_at);
+    	for (int i = 0; i + 1 < p_offsets.length; i++)
+    	{	// for each numeral
+    		p_keys[p_at + i] =
+    			keyOf(p_numerals, p_offsets[i], p_offsets[i + 1]);
+    		if (p_keys[p_at + i] == INVALID_KEY)
+    			invalid++;
+    	}	// for each numeral
+    	return invalid;
+    }	// keys method
+
+    /** Sort a column of Roman numerals by value, with the ones that aren't
+     * valid at the end.
+     * @param p_numerals the numerals, as ASCII bytes
+     * @param p_offsets where each numeral starts, and where the last ends
+     * @param p_keys gets the numerals' keys, in sorted order
+     * @return int[] the row (index in the column) of each numeral, in sorted
+     *	order; numerals with the same value stay in the same order
+     * @throws IllegalArgumentException if the offsets decrease or aren't
+     *	in p_numerals, or if p_keys is too short
+     */
+    public static int[] sortColumn(
+    	byte[] p_numerals,
+    	int[] p_offsets,
+    	short[] p_keys) {
+    	int count = Math.max(p_offsets.length - 1, 0);	// number of numerals
+    	int[] rows = new int[count];	// row of each numeral, in sorted order
+
+    	keys(p_numerals, p_offsets, p_keys, 0);
+    	for (int i = 0; i < count; i++)
+    		rows[i] = i;
+    	sort(p_keys, rows, count);
+    	return rows;
+    }	// sortColumn method
+
+    /** Sort keys, and the rows that they belong to, by key, with an LSD
+     * radix sort: each pass stably moves them by one digit of DIGIT_BITS
+     * bits, starting with the lowest digit, so after the last pass they're
+     * in order by the whole key.
+     * @param p_keys the keys, each from 0 through INVALID_KEY
+     * @param p_rows the row of each key, e.g., its index in its column;
+     *	the rows move with the keys
+     * @param p_count the number of keys, which are the first ones in
+     *	p_keys and p_rows
+     * @throws IllegalArgumentException if a key is out of range, or if
+     *	p_keys or p_rows is too short
+     */
+    public static void sort(short[] p_keys, int[] p_rows, int p_count) {
+    	int[] counts = new int[PASSES * BUCKETS];	// number of keys with
+    		// each value of each digit, and then where the next one goes
+    	short[] keys = p_keys;	// keys to move in a pass
+    	int[] rows = p_rows;	// rows to move in a pass
+    	short[] nextKeys;	// where a pass moves the keys
+    	int[] nextRows;	// where a pass moves the rows
+    	short[] swapKeys;	// for swapping the arrays after a pass
+    	int[] swapRows;	// likewise
+    	short key;	// a key
+    	int position;	// where the next key with a digit's value goes
+    	int count;	// number of keys with a digit's value
+    	boolean moved = false;	// whether a pass has moved anything
+
+    	if (p_count < 0 || p_keys.length < p_count || p_rows.length < p_count)
+    		throw new IllegalArgumentException(
+    			"[] There must be a key and a row for each of the count");
+    	for (int i = 0; i < p_count; i++)
+    	{	// count every digit of every key, in one pass over the keys
+    		key = p_keys[i];
+    		if (key < 0 || key > INVALID_KEY)
+    			throw new IllegalArgumentException("[] Key " + key +
+    				" is out of range");
+    		for (int d = 0; d < PASSES; d++)
+    			counts[d * BUCKETS + digitOf(key, d)]++;
+    	}	// count every digit of every key, in one pass over the keys
+    	if (p_count < 2)	// nothing to sort
+    		return;
+    	nextKeys = new short[p_count];
+    	nextRows = new int[p_count];
+    	for (int d = 0; d < PASSES; d++)
+    	{	// for each digit, starting with the lowest
+    		if (counts[d * BUCKETS + digitOf(keys[0], d)] == p_count)
+    			continue;	// every key has the same digit, so they stay put
+    		position = 0;
+    		for (int b = 0; b < BUCKETS; b++)
+    		{	// each value's keys go after the smaller values' keys
+    			count = counts[d * BUCKETS + b];
+    			counts[d * BUCKETS + b] = position;
+    			position += count;
+    		}	// each value's keys go after the smaller values' keys
+    		for (int i = 0; i < p_count; i++)
+    		{	// move each key and row, keeping the same order within a value
+    			key = keys[i];
+    			position = counts[d * BUCKETS + digitOf(key, d)]++;
+    			nextKeys[position] = key;
+    			nextRows[position] = rows[i];
+    		}	// move each key and row, keeping the same order within a value
+    		swapKeys = keys;	// the moved keys are the next pass's keys
+    		keys = nextKeys;
+    		nextKeys = swapKeys;
+    		swapRows = rows;	// and so are the moved rows
+    		rows = nextRows;
+    		nextRows = swapRows;
+    		moved = ! moved;
+    	}	// for each digit, starting with the lowest
+    	if (moved)	// the sorted keys and rows are in the other arrays
+    	{	// copy them back
+    		System.arraycopy(keys, 0, p_keys, 0, p_count);
+    		System.arraycopy(rows, 0, p_rows, 0, p_count);
+    	}	// copy them back
+    }	// sort method
+
+    /** Get a digit of a key.
+     * @param p_key the key
+     * @param p_digit which digit, starting with 0 for the lowest
+     * @return int the digit, from 0 through BUCKETS - 1
+     */
+    static int digitOf(int p_key, int p_digit) {
+    	return (p_key >>> (p_digit * DIGIT_BITS)) & (BUCKETS - 1);
+    }	// digitOf method
+
+    /** Find where a key starts in sorted keys, by binary search; for the
+     * range of values from A through B, the keys from firstAtLeast(keyOf(A))
+     * up to (but not including) firstAtLeast(keyOf(B) + 1) are in it.
+     * @param p_sortedKeys the keys, in ascending order
+     * @param p_count the number of keys, which are the first ones
+     * @param p_key the key to find
+     * @return int index of the first key that is at least p_key, or
+     *	p_count if there is none
+     */
+    public static int firstAtLeast(
+    	short[] p_sortedKeys,
+    	int p_count,
+    	int p_key) {
+    	int low = 0;	// every key before low is less than p_key
+    	int high = p_count;	// every key from high on is at least p_key
+    	int middle;	// a key between them
+
+    	while (low < high)
+    	{	// halve the keys that might be the first that is at least p_key
+    		middle = (low + high) >>> 1;
+    		if (p_sortedKeys[middle] < p_key)
+    			low = middle + 1;
+    		else high = middle;
+    	}	// halve the keys that might be the first that is at least p_key
+    	return low;
+    }	// firstAtLeast method for keys
+
+    /** Find where a key starts in a column of Roman numerals that is sorted
+     * by key (e.g., one that is stored sorted), by binary search, getting
+     * the keys of only the numerals that the search looks at.
+     * @param p_numerals the numerals, as ASCII bytes, in order by key
+     * @param p_offsets where each numeral starts, and where the last ends;
+     *	they aren't checked, since that would look at every one
+     * @param p_key the key to find
+     * @return int index of the first numeral whose key is at least p_key, or
+     *	the number of numerals if there is none
+     */
+    public static int firstAtLeast(
+    	byte[] p_numerals,
+    	int[] p_offsets,
+    	int p_key) {
+    	int low = 0;	// every numeral before low is less than p_key
+    	int high = Math.max(p_offsets.length - 1, 0);	// every numeral from
+    		// high on is at least p_key
+    	int middle;	// a numeral between them
+
+    	while (low < high)
+    	{	// halve the numerals that might be the first at least p_key
+    		middle = (low + high) >>> 1;
+    		if (keyOf(p_numerals, p_offsets[middle], p_offsets[middle + 1])
+    			< p_key)
+    			low = middle + 1;
+    		else high = middle;
+    	}	// halve the numerals that might be the first at least p_key
+    	return low;
+    }	// firstAtLeast method for numerals
+}	// RomanSort class
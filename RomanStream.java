@@ -0,0 +1,498 @@
+/*
+ * File:	RomanStream.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanStream
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+// imports:
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/** Runs the Roman numeral desk calculator non-interactively over a stream of
+ * expressions, reading the characters in fixed-size chunks and evaluating
+ * each line as it is read, so that a line of any length (e.g., a generated
+ * expression of hundreds of MB) can be evaluated in a small, fixed amount
+ * of memory, e.g.:
+ *	java Roman --stream huge.txt --out out.txt
+ * If the input file is omitted, the input is standard input; if --out is
+ * omitted, the output goes to standard output.
+ *
+ * Class:	RomanStream
+ *
+ * Each line gets the same result or message as in batch mode (RomanBatch),
+ * except that an error's text shows at most the last EXCERPT_LENGTH
+ * characters through the error, after "...", instead of all of them.
+ *
+ * A line is never stored.  Each character is converted to upper case and
+ * tokenized as soon as it is read; a numeral is tokenized with the numeral
+ * automaton, one character at a time, so a numeral can cross from one chunk
+ * to the next.  Each token is given to InfoForLine.evaluateToken as soon as
+ * it is found, so the only state that grows with a line is 2 ints for each
+ * enclosing left parenthesis.  Only the most recent characters are kept, in
+ * a ring, for the text of an error message.
+ *
+ * Since the end of a line isn't known until it is read, characters whose
+ * meaning depends on what follows them are held as a pending "run": blanks,
+ * control characters, and "=" are ignored at the end of a line (the ending
+ * "=" is stripped, and blanks are trimmed) but are part of the line
+ * otherwise.  A run ends a numeral or "*" in either case, so only its
+ * possible error (a control character, or an "=" that isn't the ending
+ * one) waits until a later character shows that the run is inside the line.
+ * Likewise, a line's outcome is decided at its end, with the same priority
+ * as in RomanEngine: an empty line, then a DIGIT 0 anywhere, then QUIT or
+ * EXIT, then a tokenizing error, then an evaluation error.
+ */
+class RomanStream {
+    static final int CHUNK_SIZE = 1 << 16;	// number of chars read at once
+    static final int EXCERPT_LENGTH = 256;
+    	// most chars of a line that an error message shows
+    static final int RING_SIZE = 2 * EXCERPT_LENGTH;
+    	// number of recent chars kept for error messages
+    static final long QUIT_CHARS = ((long)'Q' << 48) | ((long)'U' << 32) |
+    	('I' << 16) | 'T';	// the 4 chars of QUIT, packed as in m_lastChars
+    static final long EXIT_CHARS = ((long)'E' << 48) | ((long)'X' << 32) |
+    	('I' << 16) | 'T';	// the 4 chars of EXIT, packed as in m_lastChars
+    static final String USAGE = "[] Usage: java Roman --stream [<input file>]"
+    	+ " [--out <output file>]";
+
+    // members that apply to the entire stream:
+    RomanEngine.Session m_session;	// the session; it holds previous result
+    Roman.InfoForLine m_lineInfo;	// the session's info, which evaluates
+    	// each line's tokens and holds an evaluation error
+    Roman.ResultFormatter m_output = new Roman.ResultFormatter();
+    	// the lines' results and messages, until they are written
+    char[] m_recentChars = new char[RING_SIZE];
+    	// recent chars of the line; the char at position p is at p % RING_SIZE
+    StringBuilder m_tokenizingErrorText = new StringBuilder();
+    	// text of the line through a tokenizing error, if any
+    StringBuilder m_evaluationErrorText = new StringBuilder();
+    	// text of the line through an evaluation error, if any
+    // members that apply to the current line:
+    boolean m_lineStarted;	// whether a non-blank char has been read
+    int m_position;	// position (in line, after leading blanks) of next char
+    int m_written;	// position after the last char put in m_recentChars
+    int m_runStart;	// position of the pending run's first char, or -1
+    int m_runEquals;	// position of the run's "=", or -1
+    int m_runControl;	// position of the run's first control char, or -1
+    char m_runControlChar;	// that control char
+    int m_numeralState;	// state of the numeral automaton
+    int m_asteriskPosition;	// position of a "*" that may start "**", or -1
+    int m_tokenizingErrorPosition;	// position of tokenizing error, or -1
+    boolean m_evaluationFinished;	// whether evaluateToken said it's finished
+    boolean m_sawZero;	// whether the line contains the DIGIT 0
+    boolean m_sawQuit;	// whether the line contains QUIT or EXIT
+    long m_lastChars;	// the last 4 chars, 16 bits each, last one lowest
+
+    /** Create a stream evaluator.
+     * @param p_theSession the session, which holds the previous result
+     */
+    RomanStream(RomanEngine.Session p_theSession)
+    {	// constructor
+    	m_session = p_theSession;
+    	m_lineInfo = p_theSession.m_lineInfo;
+    	startLine();
+    }	// constructor
+
+    /** Main method for stream mode.
+     * @param args arguments: "--stream", and optionally the input file, and
+     *	"--out" and the output file
+     */
+    public static void main(String[] args) {
+    	String inputFile = null;	// input file; null for standard input
+    	String outputFile = null;	// output file; null for standard output
+    	int a;	// iteration for each argument after "--stream"
+
+    	for (a = 1; a < args.length; a++)
+    	{	// for each argument after "--stream"
+    		if (args[a].equals("--out") && a + 1 < args.length)
+    			outputFile = args[++a];
+    		else if (inputFile == null && ! args[a].startsWith("--"))
+    			inputFile = args[a];
+    		else break;	// invalid argument
+    	}	// for each argument after "--stream"
+    	if (a < args.length)	// invalid argument
+    	{	// invalid arguments
+    		System.err.println(USAGE);
+    		System.exit(2);
+    	}	// invalid arguments
+    	try (ReadableByteChannel input = (inputFile == null)
+    			? new FileInputStream(FileDescriptor.in).getChannel()
+    			: FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ);
+    		WritableByteChannel output = (outputFile == null)
+    			? new FileOutputStream(FileDescriptor.out).getChannel()
+    			: FileChannel.open(Paths.get(outputFile),
+    				StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+    				StandardOpenOption.TRUNCATE_EXISTING))
+    	{	// process the stream
+    		new RomanStream(new RomanEngine.Session()).run(input, output);
+    	}	// process the stream
+    	catch (IOException e)
+    	{	// can't read or write
+    		System.err.println("[] Stream mode failed: " + e.getMessage());
+    		System.exit(1);
+    	}	// can't read or write
+    }	// main method
+
+    /** Process each line of a channel, decoding its bytes as Scanner would.
+     * @param p_input the channel of lines
+     * @param p_output the channel for the results and messages
+     * @throws IOException if a channel can't be read or written
+     */
+    void run(ReadableByteChannel p_input, WritableByteChannel p_output)
+    	throws IOException {
+    	run(Channels.newReader(p_input, Charset.defaultCharset().newDecoder()
+    		.onMalformedInput(CodingErrorAction.REPLACE)
+    		.onUnmappableCharacter(CodingErrorAction.REPLACE), CHUNK_SIZE),
+    		p_output);
+    }	// run method
+
+    /** Process each line of a reader, which, as for Scanner.nextLine, ends
+     * with \n, \r, or \r\n, or with the end of the input.
+     * @param p_input the reader of lines
+     * @param p_output the channel for the results and messages
+     * @throws IOException if the reader can't be read or the channel written
+     */
+    void run(Reader p_input, WritableByteChannel p_output) throws IOException {
+    	char[] chunk = new char[CHUNK_SIZE];	// chars that have been read
+    	int chunkLength;	// number of chars in chunk
+    	boolean afterReturn = false;	// whether last char was \r
+    	boolean lineHasChars = false;	// whether line has any char
+    	boolean sawQuit = false;	// whether a line said QUIT or EXIT
+    	char c;	// a char of the chunk
+
+    	while (! sawQuit && (chunkLength = p_input.read(chunk)) >= 0)
+    	{	// for each chunk
+    		for (int i = 0; i < chunkLength && ! sawQuit; i++)
+    		{	// for each char in chunk
+    			c = chunk[i];
+    			if (c == '\n' || c == '\r')	// end of line
+    			{	// end the line, unless it's the \n of \r\n
+    				if (c == '\r' || ! afterReturn)	// not \n of \r\n
+    				{	// end the line
+    					sawQuit = (endLine() == RomanEngine.QUIT);
+    					lineHasChars = false;
+    				}	// end the line
+    				afterReturn = (c == '\r');
+    				continue;
+    			}	// end the line, unless it's the \n of \r\n
+    			afterReturn = false;
+    			lineHasChars = true;
+    			addChar(Roman.upperCaseOf(c));
+    		}	// for each char in chunk
+    		if (m_output.m_length >= RomanBatch.FLUSH_THRESHOLD)
+    			m_output.writeTo(p_output);
+    	}	// for each chunk
+    	if (! sawQuit && lineHasChars)	// last line has no line ending
+    		endLine();
+    	m_output.writeTo(p_output);	// write what remains
+    }	// run method
+
+    /** Prepare for the next line.
+     */
+    void startLine() {
+    	m_lineStarted = false;
+    	m_position = 0;
+    	m_written = 0;
+    	m_runStart = m_runEquals = m_runControl = -1;
+    	m_numeralState = Roman.NUMERAL_START;
+    	m_asteriskPosition = -1;
+    	m_tokenizingErrorPosition = -1;
+    	m_evaluationFinished = false;
+    	m_sawZero = m_sawQuit = false;
+    	m_lastChars = 0;
+    	m_lineInfo.m_lineHasError = false;	// no error detected yet
+    	m_lineInfo.m_errorKind = Roman.NO_ERROR;
+    	m_lineInfo.m_usedPreviousResult = false;
+    	m_lineInfo.startEvaluation();
+    }	// startLine method
+
+    /** Add a char to the line.
+     * @param p_theChar the char, in upper case, not a line ending
+     */
+    void addChar(char p_theChar) {
+    	if (! m_lineStarted)	// only blanks so far
+    	{	// skip leading blanks
+    		if (p_theChar <= ' ')	// blank (or control character)
+    			return;	// skip it
+    		m_lineStarted = true;
+    	}	// skip leading blanks
+    	m_lastChars = (m_lastChars << 16) | p_theChar;
+    	if (m_lastChars == QUIT_CHARS || m_lastChars == EXIT_CHARS)
+    		m_sawQuit = true;	// contains QUIT or EXIT
+    	if (p_theChar == '0')
+    		m_sawZero = true;	// contains the DIGIT 0
+    	if (p_theChar <= ' ' || p_theChar == '=')
+    	{	// part of a run, which might end the line
+    		if (p_theChar == '=' && m_runEquals >= 0)	// second "=" in run
+    			endRun();	// so the first one isn't at the end of the line
+    		if (m_runStart < 0)	// first char of a run
+    			m_runStart = m_position;
+    		if (p_theChar == '=')
+    			m_runEquals = m_position;
+    		else if (p_theChar != ' ' && m_runControl < 0)	// first control
+    		{	// remember it, since it's an error unless the run ends line
+    			m_runControl = m_position;
+    			m_runControlChar = p_theChar;
+    		}	// remember it, since it's an error unless the run ends line
+    		endNumeralOrAsterisk();	// as a blank would
+    	}	// part of a run, which might end the line
+    	else
+    	{	// part of the line
+    		if (m_runStart >= 0)	// a run is pending
+    			endRun();	// it's part of the line, since this char follows it
+    		remember(m_position, p_theChar);
+    		tokenizeChar(p_theChar);
+    	}	// part of the line
+    	m_position++;
+    }	// addChar method
+
+    /** End the pending run, which is part of the line because a later
+     * non-blank char follows it: its first "=" or control char, if any, is
+     * an invalid character.
+     */
+    void endRun() {
+    	int errorPosition = m_runEquals;	// position of first error in run
+    	char errorChar = '=';	// the char at that position
+
+    	if (m_runControl >= 0 && (errorPosition < 0 || m_runControl < errorPosition))
+    	{	// a control char is the first error
+    		errorPosition = m_runControl;
+    		errorChar = m_runControlChar;
+    	}	// a control char is the first error
+    	if (errorPosition >= 0 && m_tokenizingErrorPosition < 0)
+    	{	// the run has the line's first tokenizing error
+    		rememberBlanks(m_runStart, errorPosition);
+    		remember(errorPosition, errorChar);
+    		tokenizingError(errorPosition);
+    	}	// the run has the line's first tokenizing error
+    	else if (m_tokenizingErrorPosition < 0)	// no tokenizing error
+    		rememberBlanks(m_runStart, m_position);
+    	m_runStart = m_runEquals = m_runControl = -1;
+    }	// endRun method
+
+    /** Tokenize a char, which is part of the line and not blank, continuing
+     * or ending a numeral or "*", and evaluate any token that it completes.
+     * @param p_theChar the char, in upper case
+     */
+    void tokenizeChar(char p_theChar) {
+    	int letterClass = Roman.letterClassOf(p_theChar);	// its letter class
+    	int nextState;	// state of numeral automaton after the char
+
+    	if (m_tokenizingErrorPosition >= 0)	// line already has an error
+    		return;	// tokenizing stops at the first error
+    	if (m_asteriskPosition >= 0)	// a "*" is pending
+    	{	// it's "**" or "*"
+    		if (p_theChar == '*')
+    		{	// ** (exponentiate)
+    			m_asteriskPosition = -1;
+    			evaluateToken(Roman.EXP, m_position, 0);
+    			return;
+    		}	// ** (exponentiate)
+    		endNumeralOrAsterisk();	// * (multiply)
+    	}	// it's "**" or "*"
+    	if (m_numeralState != Roman.NUMERAL_START)	// a numeral is pending
+    	{	// continue or end the numeral
+    		nextState = Roman.NEXT_NUMERAL_STATE[m_numeralState *
+    			Roman.LETTER_CLASSES + letterClass];
+    		if (nextState != Roman.NUMERAL_START)	// char extends numeral
+    		{	// continue the numeral
+    			m_numeralState = nextState;
+    			return;
+    		}	// continue the numeral
+    		if (letterClass != Roman.NOT_A_LETTER)
+    		{	// int followed by another Roman letter is not valid
+    			tokenizingError(m_position);
+    			return;
+    		}	// int followed by another Roman letter is not valid
+    		endNumeralOrAsterisk();	// the numeral ends before this char
+    	}	// continue or end the numeral
+    	if (letterClass != Roman.NOT_A_LETTER)	// char is Roman letter
+    	{	// start a numeral
+    		m_numeralState = Roman.NEXT_NUMERAL_STATE[letterClass];
+    		return;
+    	}	// start a numeral
+    	switch (p_theChar)
+    	{	// what is the char?
+    	case '+':
+    		evaluateToken(Roman.ADD, m_position, 0);
+    		break;
+    	case '-':
+    		evaluateToken(Roman.SUB, m_position, 0);
+    		break;
+    	case '*':
+    		m_asteriskPosition = m_position;	// it might start "**"
+    		break;
+    	case '/':
+    		evaluateToken(Roman.DIV, m_position, 0);
+    		break;
+    	case '(':
+    		evaluateToken(Roman.L_P, m_position, 0);
+    		break;
+    	case ')':
+    		evaluateToken(Roman.R_P, m_position, 0);
+    		break;
+    	default:
+    		tokenizingError(m_position);	// any other char is error
+    	}	// what is the char?
+    }	// tokenizeChar method
+
+    /** End a pending numeral or "*", because the current char (at
+     * m_position) doesn't continue it, and evaluate its token.
+     */
+    void endNumeralOrAsterisk() {
+    	if (m_tokenizingErrorPosition >= 0)	// line already has an error
+    		return;	// tokenizing stops at the first error
+    	if (m_asteriskPosition >= 0)	// "*" (multiply)
+    	{	// evaluate it
+    		evaluateToken(Roman.MUL, m_asteriskPosition, 0);
+    		m_asteriskPosition = -1;
+    	}	// evaluate it
+    	if (m_numeralState != Roman.NUMERAL_START)	// a numeral
+    	{	// evaluate it; it ended at the previous char
+    		evaluateToken(Roman.INT, m_position - 1,
+    			Roman.VALUE_OF_NUMERAL_STATE[m_numeralState]);
+    		m_numeralState = Roman.NUMERAL_START;
+    	}	// evaluate it; it ended at the previous char
+    }	// endNumeralOrAsterisk method
+
+    /** Evaluate a token, unless evaluation is finished, and keep the text of
+     * an evaluation error.
+     * @param p_tokenType the token's type, e.g., Roman.INT
+     * @param p_tokenEndIndex position of the token's last char
+     * @param p_integerValue the token's value, if it's an integer
+     */
+    void evaluateToken(int p_tokenType, int p_tokenEndIndex, int p_integerValue) {
+    	if (m_evaluationFinished)	// an error was found
+    		return;	// evaluation stops at the first error
+    	m_evaluationFinished = m_lineInfo.evaluateToken(p_tokenType,
+    		p_tokenEndIndex, p_integerValue);
+    	if (m_lineInfo.m_lineHasError)	// error found
+    		excerpt(m_lineInfo.m_errorPosition, m_evaluationErrorText);
+    }	// evaluateToken method
+
+    /** Note a tokenizing error (which is always an invalid character), and
+     * keep its text.
+     * @param p_thePosition position of the invalid character
+     */
+    void tokenizingError(int p_thePosition) {
+    	m_tokenizingErrorPosition = p_thePosition;
+    	excerpt(p_thePosition, m_tokenizingErrorText);
+    }	// tokenizingError method
+
+    /** End the line, appending its result or message to the output, and
+     * prepare for the next line.
+     * @return int the outcome, e.g., RomanEngine.RESULT
+     */
+    int endLine() {
+    	int lineLength = m_position;	// length of the line, as the engine
+    		// would see it, without trailing blanks or the ending "="
+    	int outcome;	// outcome of the line
+
+    	if (m_runStart >= 0)	// the line ends with a run
+    	{	// the run is trimmed, from its "=", if any
+    		if (m_runEquals >= 0)
+    		{	// the run before "=" is part of the line
+    			lineLength = m_position = m_runEquals;
+    			m_runEquals = -1;
+    			if (m_runControl >= lineLength)	// control char is trimmed
+    				m_runControl = -1;
+    			endRun();
+    		}	// the run before "=" is part of the line
+    		else lineLength = m_position = m_runStart;
+    	}	// the run is trimmed, from its "=", if any
+    	remember(lineLength, ' ');	// the appended blank
+    	if (! m_lineStarted || lineLength == 0)	// nothing, or only "="
+    		outcome = RomanEngine.EMPTY_LINE;
+    	else if (m_sawZero)	// contains the DIGIT 0
+    		outcome = RomanEngine.ZERO_DIGIT;
+    	else if (m_sawQuit)	// contains QUIT or EXIT
+    		outcome = RomanEngine.QUIT;
+    	else
+    	{	// end the tokens, with the end of line
+    		endNumeralOrAsterisk();	// as the appended blank would
+    		if (m_tokenizingErrorPosition < 0)	// no tokenizing error
+    			evaluateToken(Roman.END, lineLength, 0);
+    		outcome = (m_tokenizingErrorPosition >= 0 ||
+    			m_lineInfo.m_lineHasError) ? RomanEngine.ERROR : RomanEngine.RESULT;
+    	}	// end the tokens, with the end of line
+    	switch (outcome)
+    	{	// what the line was
+    	case RomanEngine.RESULT:
+    		m_lineInfo.m_result = m_lineInfo.m_evaluationResult;
+    			// update result, now that we know it's error-free
+    		m_output.appendOutcome(outcome, m_session);
+    		break;
+    	case RomanEngine.ERROR:
+    		if (m_tokenizingErrorPosition >= 0)	// tokenizing error is first
+    		{	// report it
+    			m_lineInfo.m_lineHasError = true;
+    			m_lineInfo.m_errorKind = Roman.INVALID_CHARACTER;
+    			m_lineInfo.m_errorPosition = m_tokenizingErrorPosition;
+    			m_output.appendError(Roman.INVALID_CHARACTER,
+    				m_tokenizingErrorText);
+    		}	// report it
+    		else m_output.appendError(m_lineInfo.m_errorKind,
+    			m_evaluationErrorText);
+    		break;
+    	default:	// not evaluated
+    		m_output.appendOutcome(outcome, m_session);
+    	}	// what the line was
+    	startLine();
+    	return outcome;
+    }	// endLine method
+
+    /** Keep a char of the line, for the text of an error message.
+     * @param p_thePosition the char's position
+     * @param p_theChar the char
+     */
+    void remember(int p_thePosition, char p_theChar) {
+    	m_recentChars[p_thePosition % RING_SIZE] = p_theChar;
+    	m_written = p_thePosition + 1;
+    }	// remember method
+
+    /** Keep blanks of the line, for the text of an error message; only the
+     * last RING_SIZE of them matter.
+     * @param p_start position of the first blank
+     * @param p_end position after the last blank
+     */
+    void rememberBlanks(int p_start, int p_end) {
+    	for (int p = Math.max(p_start, p_end - RING_SIZE); p < p_end; p++)
+    		remember(p, ' ');
+    }	// rememberBlanks method
+
+    /** Get the text of the line through a position, or, if the line is
+     * longer than EXCERPT_LENGTH through that position, "..." and the last
+     * EXCERPT_LENGTH chars through it.
+     * @param p_thePosition position of the last char to get, which is one of
+     *	the last few chars that were kept
+     * @param p_theText where to put the text, which is emptied first
+     */
+    void excerpt(int p_thePosition, StringBuilder p_theText) {
+    	int start = Math.max(0, p_thePosition + 1 - EXCERPT_LENGTH);
+    		// position of first char of the text
+    	p_theText.setLength(0);
+    	if (start > 0)	// the text is shortened
+    		p_theText.append("...");
+    	for (int p = start; p <= p_thePosition; p++)
+    		p_theText.append((p < m_written) ? m_recentChars[p % RING_SIZE] : ' ');
+    }	// excerpt method
+}	// RomanStream class
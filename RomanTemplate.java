@@ -0,0 +1,476 @@
+/*
+ * File:	RomanTemplate.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanTemplate
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+// imports:
+import java.util.Arrays;
+
+/** An expression with named variables, compiled once and then evaluated
+ * for many rows of values of the variables, e.g.:
+ *	RomanTemplate formula = RomanTemplate.compile("(A * Y) + B", "A", "Y", "B");
+ *	formula.evaluate(new int[][] {a, y, b}, results, errors);
+ *	// results[r] is (a[r] * y[r]) + b[r], unless errors[r] != Roman.NO_ERROR
+ *
+ * Class:	RomanTemplate
+ *
+ * The grammar is the calculator's, plus variables.  A variable's name is a
+ * run of ASCII letters (in any case) that contains at least one letter that
+ * isn't a Roman letter, so that it can't be read as a numeral; e.g., Y,
+ * RATE, and MAX are names, but X and MIX are numerals.  A template has no
+ * previous line, so it can't start with an operator.
+ *
+ * Compiling tokenizes and parses the expression once, finding the same
+ * syntax errors (of the same kinds, at the same positions) that
+ * RomanEngine would, and translates it into a program in postfix order,
+ * i.e., the order in which the calculator applies the operators (left to
+ * right, with parentheses first).  Each step of the program pushes a
+ * numeral's value or a variable's value, or applies an operator to the
+ * top two values.
+ *
+ * Evaluating runs the program over a block of BLOCK rows at a time: each
+ * step is a loop over the block's rows, on a stack whose entries are int
+ * arrays, so there is no parsing, no allocation, and no dispatch per row,
+ * and the time is linear in the number of rows.  Each row gets the same
+ * result or error as a line that the engine evaluates with that row's
+ * values in place of the variables: an operation whose result is out of
+ * range, or a division by zero, sets the row's error to that kind (unless
+ * the row already has an error), and a row with an error gets result 0.
+ * A variable's value outside the valid range is also a result out of
+ * range.  A template never changes after it is compiled, so any number of
+ * threads can evaluate it at once, e.g., on different ranges of rows.
+ */
+class RomanTemplate {
+    static final int BLOCK = 1024;	// number of rows evaluated at once
+    static final int VARIABLE = Roman.EXP + 1;
+    	// token type, and program step, for a variable; the other steps are
+    	// Roman.INT for a numeral, and operator token types, e.g., Roman.ADD
+
+    String[] m_variables;	// name of each variable, in upper case
+    int[] m_step = new int[16];	// what each step of the program does
+    int[] m_operand = new int[16];
+    	// each step's numeral value or variable number, if any
+    int m_steps;	// number of steps in the program
+    int m_stackSize;	// most values that the program's stack holds
+
+    /** Create a template that has no program yet.
+     * @param p_variables the names of the variables
+     */
+    RomanTemplate(String[] p_variables)
+    {	// constructor
+    	m_variables = new String[p_variables.length];
+    	for (int v = 0; v < p_variables.length; v++)
+    	{	// for each variable
+    		m_variables[v] = p_variables[v].toUpperCase();
+    		if (! isName(m_variables[v]))
+    			throw new IllegalArgumentException("[] " + p_variables[v] +
+    				" isn't a variable name; it must be letters, not all Roman");
+    		for (int w = 0; w < v; w++)
+    			if (m_variables[w].equals(m_variables[v]))
+    				throw new IllegalArgumentException("[] " + p_variables[v] +
+    					" is named twice");
+    	}	// for each variable
+    }	// constructor
+
+    /** Compile an expression.
+     * @param p_expression the expression, e.g., "(A * Y) + B"
+     * @param p_variables the names of the variables, in the order of the
+     *	columns that evaluate is given
+     * @return RomanTemplate the compiled expression
+     * @throws IllegalArgumentException if a name isn't a valid variable
+     *	name, or if the expression has an error, which the exception's
+     *	message describes the way the calculator does
+     */
+    public static RomanTemplate compile(
+    	CharSequence p_expression,
+    	String... p_variables) {
+    	RomanTemplate template = new RomanTemplate(p_variables);
+    		// the compiled expression
+    	Roman.InfoForLine lineInfo = new Roman.InfoForLine();
+    		// the expression, as a line
+    	int start = 0;	// index of the expression's first non-blank char
+    	int end = p_expression.length();	// index after last non-blank char
+
+    	while (start < end && p_expression.charAt(start) <= ' ')
+    		start++;	// skip leading blank (or control character)
+    	while (end > start && p_expression.charAt(end - 1) <= ' ')
+    		end--;	// skip trailing blank (or control character)
+    	lineInfo.setLine(p_expression, start, end - start);
+    	template.tokenize(lineInfo);
+    	if (! lineInfo.m_lineHasError)	// tokens are valid
+    		template.translate(lineInfo);
+    	if (lineInfo.m_lineHasError)
+    		throw new IllegalArgumentException("[] There's " +
+    			Roman.DESCRIPTION_OF_ERROR[lineInfo.m_errorKind] +
+    			" detected at the end of this text: " +
+    			lineInfo.lineThrough(lineInfo.m_errorPosition));
+    	return template;
+    }	// compile method
+
+    /** Test whether text is a valid variable name.
+     * @param p_theText the text, in upper case
+     * @return boolean whether it's letters, not all Roman
+     */
+    static boolean isName(String p_theText) {
+    	boolean hasNonRoman = false;	// whether a letter isn't Roman
+    	for (int i = 0; i < p_theText.length(); i++)
+    	{	// for each char
+    		if (p_theText.charAt(i) < 'A' || p_theText.charAt(i) > 'Z')
+    			return false;	// not a letter
+    		if (Roman.letterClassOf(p_theText.charAt(i)) == Roman.NOT_A_LETTER)
+    			hasNonRoman = true;
+    	}	// for each char
+    	return hasNonRoman;
+    }	// isName method
+
+    /** Tokenize the expression, as InfoForLine.tokenize does, but also
+     * tokenizing variables.  A name that isn't one of the template's
+     * variables is an invalid character, at the end of the name.
+     * @param p_lineInfo info for the expression; its token buffer gets the
+     *	tokens, and its error fields get the error, if any
+     */
+    void tokenize(Roman.InfoForLine p_lineInfo) {
+    	Roman.TokenBuffer tokens = p_lineInfo.m_tokenizedLine;	// the tokens
+    	int length = p_lineInfo.m_lineLength;	// length of the expression
+    	int runEnd;	// index of the last letter of a run of letters
+    	int state;	// state of the numeral automaton
+    	int nextState;	// state after the next letter, if any
+    	int variable;	// number of the variable that a run names
+    	char c;	// a char of the expression
+    	int i;	// iteration for each char of the expression
+
+    	tokens.clear();
+    	for (i = 0; i < length && ! p_lineInfo.m_lineHasError; i++)
+    	{	// for each char, until an error
+    		c = p_lineInfo.charOfLine(i);
+    		if (c >= 'A' && c <= 'Z')
+    		{	// a run of letters, which is a numeral or a name
+    			for (runEnd = i; runEnd + 1 < length
+    				&& p_lineInfo.charOfLine(runEnd + 1) >= 'A'
+    				&& p_lineInfo.charOfLine(runEnd + 1) <= 'Z'; runEnd++)
+    				;	// find the run's last letter
+    			variable = variableNamed(p_lineInfo, i, runEnd);
+    			if (variable >= 0)	// a variable
+    				tokens.add(VARIABLE, runEnd, variable);
+    			else if (variable == -1)	// not a name, so a numeral
+    			{	// run the numeral automaton, as InfoForLine.tokenize does
+    				state = Roman.NUMERAL_START;
+    				while (i <= runEnd && (nextState = Roman.NEXT_NUMERAL_STATE[
+    					state * Roman.LETTER_CLASSES + Roman.letterClassOf(
+    					p_lineInfo.charOfLine(i))]) != Roman.NUMERAL_START)
+    				{	// next letter extends the numeral
+    					state = nextState;
+    					i++;
+    				}	// next letter extends the numeral
+    				if (i <= runEnd)	// another letter doesn't extend it
+    					Roman.processAnError(p_lineInfo, i,
+    						Roman.INVALID_CHARACTER);
+    				else tokens.add(Roman.INT, runEnd,
+    					Roman.VALUE_OF_NUMERAL_STATE[state]);
+    			}	// run the numeral automaton, as InfoForLine.tokenize does
+    			else Roman.processAnError(p_lineInfo, runEnd,
+    				Roman.INVALID_CHARACTER);	// not one of the variables
+    			i = runEnd;
+    		}	// a run of letters, which is a numeral or a name
+    		else switch (c)
+    		{	// what the char is
+    		case '+': tokens.add(Roman.ADD, i); break;
+    		case '-': tokens.add(Roman.SUB, i); break;
+    		case '*':
+    			if (p_lineInfo.charOfLine(i + 1) == '*')
+    				tokens.add(Roman.EXP, ++i);	// ** (exponentiate)
+    			else tokens.add(Roman.MUL, i);
+    			break;
+    		case '/': tokens.add(Roman.DIV, i); break;
+    		case '(': tokens.add(Roman.L_P, i); break;
+    		case ')': tokens.add(Roman.R_P, i); break;
+    		default:
+    			if (c > ' ')	// not a blank (or control character)
+    				Roman.processAnError(p_lineInfo, i, Roman.INVALID_CHARACTER);
+    		}	// what the char is
+    	}	// for each char, until an error
+    	tokens.add(Roman.END, length);	// the end of the expression
+    }	// tokenize method
+
+    /** Find the variable that a run of letters names.
+     * @param p_lineInfo info for the expression
+     * @param p_start index of the run's first letter
+     * @param p_end index of the run's last letter
+     * @return int the variable's number, or -1 if the run is all Roman
+     *	letters, or -2 if it names no variable
+     */
+    int variableNamed(Roman.InfoForLine p_lineInfo, int p_start, int p_end) {
+    	int i;	// iteration for each letter
+
+    	for (i = p_start; i <= p_end && Roman.letterClassOf(
+    		p_lineInfo.charOfLine(i)) != Roman.NOT_A_LETTER; i++)
+    		;	// look for a letter that isn't Roman
+    	if (i > p_end)	// all Roman letters
+    		return -1;
+    	for (int v = 0; v < m_variables.length; v++)
+    		if (m_variables[v].length() == p_end - p_start + 1)
+    		{	// same length; compare the letters
+    			for (i = p_start; i <= p_end &&
+    				p_lineInfo.charOfLine(i) == m_variables[v].charAt(i - p_start);
+    				i++)
+    				;	// compare the letters
+    			if (i > p_end)	// all the same
+    				return v;
+    		}	// same length; compare the letters
+    	return -2;
+    }	// variableNamed method
+
+    /** Translate the tokens into the program, checking the syntax the same
+     * way that InfoForLine.evaluateToken does.
+     * @param p_lineInfo info for the expression, which has been tokenized;
+     *	its error fields get the error, if any
+     */
+    void translate(Roman.InfoForLine p_lineInfo) {
+    	Roman.TokenBuffer tokens = p_lineInfo.m_tokenizedLine;	// the tokens
+    	int[] pending = new int[16];
+    		// for each enclosing expression, the operator that is to be
+    		// applied to the nested expression's result, or END if none
+    	int depth = 0;	// number of enclosing expressions
+    	int state = Roman.InfoForLine.EXPECTING_EXPRESSION;
+    		// what the next token must be
+    	int pendingOperator = Roman.END;	// operator whose operand is next
+    	int stackSize = 0;	// number of values on the program's stack
+    	int t;	// iteration for each token
+    	int type;	// type of a token
+    	int position;	// index of a token's last char
+
+    	for (t = 0; t < tokens.m_tokenCount; t++)
+    	{	// for each token
+    		type = tokens.m_tokenType[t];
+    		position = tokens.m_tokenEndIndex[t];
+    		if (state == Roman.InfoForLine.EXPECTING_EXPRESSION)
+    		{	// first token of an expression
+    			if (type < Roman.ENDER_BOUND)	// end of line or )
+    			{	// nothing in the expression
+    				Roman.processAnError(p_lineInfo, position,
+    					Roman.MISSING_EXPRESSION);
+    				return;
+    			}	// nothing in the expression
+    			if (type == Roman.L_P)
+    			{	// first operand is parenthesized expression
+    				if (depth == pending.length)	// full
+    					pending = Arrays.copyOf(pending, 2 * depth);
+    				pending[depth++] = Roman.END;	// no pending operator
+    				continue;
+    			}	// first operand is parenthesized expression
+    			if (type != Roman.INT && type != VARIABLE)
+    			{	// an operator, but there's no previous result
+    				Roman.processAnError(p_lineInfo, position,
+    					Roman.INVALID_EXPRESSION);
+    				return;
+    			}	// an operator, but there's no previous result
+    			addStep(type, (int)tokens.m_integerValue[t]);	// first operand
+    			state = Roman.InfoForLine.EXPECTING_OPERATOR;
+    		}	// first token of an expression
+    		else if (state == Roman.InfoForLine.EXPECTING_OPERATOR)
+    		{	// an operator, or the end of the expression
+    			if (type == ((depth == 0) ? Roman.END : Roman.R_P))
+    			{	// end of the expression
+    				if (depth == 0)	// end of line
+    					break;
+    				if (pending[--depth] != Roman.END)	// it was an operand
+    					addStep(pending[depth], 0);	// apply pending operator
+    				continue;
+    			}	// end of the expression
+    			if (type < Roman.OPERATOR_BOUND || type == VARIABLE)
+    			{	// not an operator
+    				Roman.processAnError(p_lineInfo, position,
+    					((type < Roman.ENDER_BOUND) ? Roman.INCOMPLETE_EXPRESSION
+    						: Roman.MISSING_OPERATOR));
+    				return;
+    			}	// not an operator
+    			pendingOperator = type;
+    			state = Roman.InfoForLine.EXPECTING_OPERAND;
+    		}	// an operator, or the end of the expression
+    		else
+    		{	// an operand
+    			if (type < Roman.ENDER_BOUND ||
+    				(type > Roman.OPERATOR_BOUND && type != VARIABLE))
+    			{	// an expression ender or an operator
+    				Roman.processAnError(p_lineInfo, position,
+    					Roman.MISSING_OPERAND);
+    				return;
+    			}	// an expression ender or an operator
+    			if (type == Roman.L_P)
+    			{	// operand is parenthesized expression
+    				if (depth == pending.length)	// full
+    					pending = Arrays.copyOf(pending, 2 * depth);
+    				pending[depth++] = pendingOperator;
+    				state = Roman.InfoForLine.EXPECTING_EXPRESSION;
+    				continue;
+    			}	// operand is parenthesized expression
+    			addStep(type, (int)tokens.m_integerValue[t]);	// the operand
+    			addStep(pendingOperator, 0);	// and the operator
+    			state = Roman.InfoForLine.EXPECTING_OPERATOR;
+    		}	// an operand
+    	}	// for each token
+    	for (t = 0; t < m_steps; t++)
+    	{	// find the most values that the program's stack holds
+    		stackSize += (m_step[t] == Roman.INT || m_step[t] == VARIABLE)
+    			? 1 : -1;	// an operand pushes one; an operator pops one
+    		m_stackSize = Math.max(m_stackSize, stackSize);
+    	}	// find the most values that the program's stack holds
+    }	// translate method
+
+    /** Evaluate the template for every row of values of the variables.
+     * @param p_columns the values of each variable, in the order of the
+     *	names given to compile; each column has a value for each row
+     * @param p_results gets each row's result, or 0 if the row has an error;
+     *	its length is the number of rows
+     * @param p_errors gets each row's kind of error, e.g.,
+     *	Roman.DIVISION_BY_ZERO, or Roman.NO_ERROR
+     */
+    public void evaluate(int[][] p_columns, int[] p_results, byte[] p_errors) {
+    	evaluate(p_columns, 0, p_results.length, p_results, p_errors);
+    }	// evaluate method for every row
+
+    /** Evaluate the template for a range of rows of values of the
+     * variables, e.g., one thread's share of the rows.
+     * @param p_columns the values of each variable, in the order of the
+     *	names given to compile; each column has a value for each row
+     * @param p_from the first row
+     * @param p_to the row after the last row
+     * @param p_results gets each row's result, or 0 if the row has an error
+     * @param p_errors gets each row's kind of error, e.g.,
+     *	Roman.DIVISION_BY_ZERO, or Roman.NO_ERROR
+     */
+    public void evaluate(
+    	int[][] p_columns,
+    	int p_from,
+    	int p_to,
+    	int[] p_results,
+    	byte[] p_errors) {
+    	int[][] stack = new int[m_stackSize][BLOCK];
+    		// the program's stack, with a block of rows in each entry
+    	int top;	// index of the top entry of the stack
+    	int rows;	// number of rows in a block
+
+    	for (int first = p_from; first < p_to; first += BLOCK)
+    	{	// for each block of rows
+    		rows = Math.min(BLOCK, p_to - first);
+    		Arrays.fill(p_errors, first, first + rows, (byte)Roman.NO_ERROR);
+    		top = -1;
+    		for (int s = 0; s < m_steps; s++)
+    		{	// for each step of the program
+    			if (m_step[s] == Roman.INT)	// a numeral
+    				Arrays.fill(stack[++top], 0, rows, m_operand[s]);
+    			else if (m_step[s] == VARIABLE)	// a variable
+    			{	// its values, which must be in range
+    				System.arraycopy(p_columns[m_operand[s]], first,
+    					stack[++top], 0, rows);
+    				checkRange(stack[top], first, rows, p_errors);
+    			}	// its values, which must be in range
+    			else applyOperator(m_step[s], stack[--top], stack[top + 1],
+    				first, rows, p_errors);	// result replaces first operand
+    		}	// for each step of the program
+    		for (int r = 0; r < rows; r++)
+    			p_results[first + r] = (p_errors[first + r] == Roman.NO_ERROR)
+    				? stack[0][r] : 0;
+    	}	// for each block of rows
+    }	// evaluate method for a range of rows
+
+    /** Apply an operator to a block of rows, as InfoForLine.applyOperator
+     * does to one row.
+     * @param p_operator the operator, e.g., Roman.ADD
+     * @param p_first each row's first operand, which gets the result
+     * @param p_second each row's second operand
+     * @param p_firstRow number of the block's first row
+     * @param p_rows number of rows in the block
+     * @param p_errors each row's kind of error, which is set if the row
+     *	doesn't have an error yet
+     */
+    static void applyOperator(
+    	int p_operator,
+    	int[] p_first,
+    	int[] p_second,
+    	int p_firstRow,
+    	int p_rows,
+    	byte[] p_errors) {
+    	int r;	// iteration for each row
+    	switch (p_operator)
+    	{	// evaluation depends on operator
+    	case Roman.ADD:
+    		for (r = 0; r < p_rows; r++)
+    			p_first[r] += p_second[r];
+    		break;
+    	case Roman.SUB:
+    		for (r = 0; r < p_rows; r++)
+    			p_first[r] -= p_second[r];
+    		break;
+    	case Roman.MUL:
+    		for (r = 0; r < p_rows; r++)
+    			p_first[r] *= p_second[r];
+    		break;
+    	case Roman.DIV:
+    		for (r = 0; r < p_rows; r++)
+    			if (p_second[r] == 0)	// divide by zero
+    			{	// error, and a result that is in range
+    				if (p_errors[p_firstRow + r] == Roman.NO_ERROR)
+    					p_errors[p_firstRow + r] = Roman.DIVISION_BY_ZERO;
+    				p_first[r] = 0;
+    			}	// error, and a result that is in range
+    			else p_first[r] /= p_second[r];
+    		break;
+    	default:	// we know that it's EXP (exponentiation).
+    		for (r = 0; r < p_rows; r++)
+    			p_first[r] = (int)Math.max(Integer.MIN_VALUE,
+    				Roman.power(p_first[r], p_second[r], Roman.MAXINT));
+    			// Roman.OUT_OF_RANGE becomes a value that checkRange rejects
+    	}	// evaluation depends on operator
+    	checkRange(p_first, p_firstRow, p_rows, p_errors);
+    }	// applyOperator method
+
+    /** Set the error of each row whose value is out of range, if the row
+     * doesn't have an error yet.
+     * @param p_values each row's value
+     * @param p_firstRow number of the block's first row
+     * @param p_rows number of rows in the block
+     * @param p_errors each row's kind of error
+     */
+    static void checkRange(
+    	int[] p_values,
+    	int p_firstRow,
+    	int p_rows,
+    	byte[] p_errors) {
+    	int outOfRange = 0;	// negative if any value is out of range
+    	int r;	// iteration for each row
+    	for (r = 0; r < p_rows; r++)
+    		outOfRange |= (Roman.MAXINT - p_values[r]) | (p_values[r] - Roman.MININT);
+    		// without a branch per row, so that it runs on vector registers
+    	if (outOfRange >= 0)	// every value is in range, the usual case
+    		return;
+    	for (r = 0; r < p_rows; r++)
+    		if ((p_values[r] < Roman.MININT || p_values[r] > Roman.MAXINT)
+    			&& p_errors[p_firstRow + r] == Roman.NO_ERROR)
+    			p_errors[p_firstRow + r] = Roman.RESULT_OUT_OF_RANGE;
+    }	// checkRange method
+
+    /** Append a step to the program.
+     * @param p_step what the step does, e.g., Roman.INT
+     * @param p_operand the numeral's value or variable's number, if any
+     */
+    void addStep(int p_step, int p_operand) {
+    	if (m_steps == m_step.length)	// program is full
+    	{	// grow it
+    		m_step = Arrays.copyOf(m_step, 2 * m_steps);
+    		m_operand = Arrays.copyOf(m_operand, 2 * m_steps);
+    	}	// grow it
+    	m_step[m_steps] = p_step;
+    	m_operand[m_steps] = p_operand;
+    	m_steps++;
+    }	// addStep method
+}	// RomanTemplate class
@@ -0,0 +1,390 @@
+/*
+ * File:	RomanThroughput.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanThroughput
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+// imports:
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Measures the whole interactive loop of the Roman numeral desk calculator
+ * (Roman.main) on a corpus that RomanWorkload generated, by running the
+ * calculator in a separate process with the corpus as its standard input,
+ * e.g.:
+ *	java RomanWorkload --size 1G --out c.txt --expect c.expect
+ *	java RomanThroughput --corpus c.txt --expect c.expect --label v1.2
+ *
+ * Class:	RomanThroughput
+ *
+ * Here are the phases:
+ * - Count the corpus's lines, which also reads it into the file cache, so
+ *   that each run measures the calculator rather than the disk.
+ * - Run the calculator once with empty input, to get its introductory text
+ *   and its startup time.
+ * - Run it --runs times on the corpus.  While it runs, compare its output
+ *   with the introductory text and the expected output, and sample its
+ *   peak resident set size (VmHWM in /proc/<pid>/status, which Linux
+ *   keeps; -1 elsewhere) every RSS_INTERVAL ms.  The JVM logs its garbage
+ *   collections (-Xlog:gc) to a file, from which the pauses are counted
+ *   and added up.
+ * - For each run, append a line to the --report file: a JSON object with
+ *   the --label (e.g., a version), the corpus, lines per second, MB (10**6
+ *   bytes) per second, peak RSS, GC pauses, and whether the output matched,
+ *   so that the reports of several versions can be compared.  Also display
+ *   a summary.
+ * The exit status is 1 if any run's output didn't match, so a script can
+ * stop on a wrong result.  It doesn't depend on the throughput; to catch a
+ * slow version, compare the reports' lines per second.
+ */
+class RomanThroughput {
+    static final String DEFAULT_REPORT = "roman-throughput.jsonl";
+    	// the report, if --report isn't specified
+    static final int RSS_INTERVAL = 10;	// ms between samples of RSS
+    static final int BUFFER_SIZE = 1 << 16;	// bytes compared at once
+    static final String USAGE = "[] Usage: java RomanThroughput --corpus"
+    	+ " <corpus file> --expect <expected output file> [--report <file>]"
+    	+ " [--label <label>] [--runs <n>] [--jvm \"<JVM options>\"]"
+    	+ " [--classpath <calculator's class path>]";
+
+    /** Main method for the harness.
+     * @param args arguments, in pairs: "--corpus" and the corpus file and
+     *	"--expect" and the expected output file, and optionally "--report"
+     *	and the report file, "--label" and the label of the runs, "--runs"
+     *	and the number of runs, "--jvm" and the calculator's JVM options, and
+     *	"--classpath" and the calculator's class path
+     */
+    public static void main(String[] args) {
+    	String corpus = null;	// name of the corpus file
+    	String expect = null;	// name of the expected output file
+    	String report = DEFAULT_REPORT;	// name of the report file
+    	String label = "";	// label of the runs
+    	int runs = 1;	// number of runs
+    	String jvmOptions = "";	// the calculator's JVM options
+    	String classPath = System.getProperty("java.class.path");
+    		// the calculator's class path
+    	boolean allMatched = true;	// whether every run's output matched
+
+    	try {
+    		for (int a = 0; a + 1 < args.length; a += 2)
+    		{	// for each pair of arguments
+    			switch (args[a])
+    			{	// which argument
+    			case "--corpus": corpus = args[a + 1]; break;
+    			case "--expect": expect = args[a + 1]; break;
+    			case "--report": report = args[a + 1]; break;
+    			case "--label": label = args[a + 1]; break;
+    			case "--runs": runs = Integer.parseInt(args[a + 1]); break;
+    			case "--jvm": jvmOptions = args[a + 1].trim(); break;
+    			case "--classpath": classPath = args[a + 1]; break;
+    			default: throw new IllegalArgumentException(args[a]);
+    			}	// which argument
+    		}	// for each pair of arguments
+    	}	// try
+    	catch (IllegalArgumentException e)
+    	{	// not a number, or not an argument
+    		corpus = null;
+    	}	// not a number, or not an argument
+    	if (corpus == null || expect == null || runs < 1
+    		|| args.length % 2 != 0)
+    	{	// invalid arguments
+    		System.err.println(USAGE);
+    		System.exit(2);
+    	}	// invalid arguments
+    	try (PrintWriter reportWriter =
+    		new PrintWriter(new FileWriter(report, true)))
+    	{	// measure, appending to the report
+    		RomanThroughput harness = new RomanThroughput(corpus, expect,
+    			jvmOptions, classPath);
+    		for (int r = 1; r <= runs; r++)
+    		{	// for each run
+    			Run run = harness.run();
+    			allMatched &= run.m_outputMatches;
+    			reportWriter.println(harness.toJson(run, label, r));
+    			reportWriter.flush();	// in case a later run fails
+    			System.out.println(harness.summary(run, r));
+    		}	// for each run
+    	}	// measure, appending to the report
+    	catch (IOException | InterruptedException e)
+    	{	// can't read, write, or run
+    		System.err.println("[] Measuring failed: " + e.getMessage());
+    		System.exit(1);
+    	}	// can't read, write, or run
+    	System.exit(allMatched ? 0 : 1);
+    }	// main method
+
+    /** The measurements of one run of the calculator.
+     */
+    static class Run {
+    	double m_seconds;	// time from starting the process to its end
+    	long m_peakRssKilobytes = -1;	// largest RSS sampled, or -1
+    	int m_gcPauses;	// number of GC pauses
+    	double m_gcPauseTotal;	// total of GC pauses, in ms
+    	double m_gcPauseMax;	// longest GC pause, in ms
+    	boolean m_outputMatches;	// whether the output was as expected
+    	long m_firstMismatch = -1;	// offset in output of first byte that
+    		// wasn't as expected, or -1 if it matched
+    	int m_exitCode;	// the process's exit status
+    }	// Run class
+
+    Path m_corpus;	// the corpus file
+    Path m_expect;	// the expected output file
+    List<String> m_command = new ArrayList<>();
+    	// command that runs the calculator, except for the GC log option
+    String m_jvmOptions;	// the calculator's JVM options
+    long m_corpusBytes;	// number of bytes in corpus
+    long m_corpusLines;	// number of lines in corpus
+    byte[] m_introduction;	// the calculator's introductory text
+    double m_startupSeconds;	// time to run the calculator on empty input
+
+    /** Create a harness: count the corpus's lines, and run the calculator
+     * on empty input.
+     * @param p_corpus name of the corpus file
+     * @param p_expect name of the expected output file
+     * @param p_jvmOptions the calculator's JVM options, separated by blanks
+     * @param p_classPath the calculator's class path
+     * @throws IOException if the corpus can't be read or the calculator run
+     * @throws InterruptedException if interrupted while waiting for it
+     */
+    RomanThroughput(String p_corpus, String p_expect, String p_jvmOptions,
+    	String p_classPath) throws IOException, InterruptedException {
+    	ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+    		// bytes of corpus being counted
+    	File empty = File.createTempFile("roman-empty", ".txt");
+    		// empty input
+    	long startTime;	// when the calculator was started
+    	Process process;	// the calculator
+
+    	m_corpus = Paths.get(p_corpus);
+    	m_expect = Paths.get(p_expect);
+    	m_jvmOptions = p_jvmOptions;
+    	try (FileChannel input = FileChannel.open(m_corpus))
+    	{	// count the corpus's lines
+    		while (input.read(buffer) > 0)
+    		{	// for each buffer of bytes
+    			buffer.flip();
+    			while (buffer.hasRemaining())	// for each byte
+    				if (buffer.get() == '\n')
+    					m_corpusLines++;
+    			buffer.clear();
+    		}	// for each buffer of bytes
+    		m_corpusBytes = input.size();
+    	}	// count the corpus's lines
+    	m_command.add(Paths.get(System.getProperty("java.home"), "bin", "java")
+    		.toString());
+    	if (!p_jvmOptions.isEmpty())
+    		m_command.addAll(Arrays.asList(p_jvmOptions.split("\\s+")));
+    	m_command.add("-cp");
+    	m_command.add(p_classPath);
+    	m_command.add("Roman");
+    	empty.deleteOnExit();
+    	startTime = System.nanoTime();
+    	process = new ProcessBuilder(m_command).redirectInput(empty)
+    		.redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    	m_introduction = process.getInputStream().readAllBytes();
+    	process.waitFor();
+    	m_startupSeconds = (System.nanoTime() - startTime) / 1e9;
+    }	// constructor
+
+    /** Run the calculator on the corpus, and measure it.
+     * @return Run the measurements
+     * @throws IOException if a file can't be read or the calculator run
+     * @throws InterruptedException if interrupted while waiting for it
+     */
+    Run run() throws IOException, InterruptedException {
+    	Run run = new Run();	// the measurements
+    	Path gcLog = Files.createTempFile("roman-gc", ".log");
+    		// the calculator's GC log
+    	List<String> command = new ArrayList<>(m_command);
+    		// the command, with the GC log option
+    	long startTime;	// when the calculator was started
+    	Process process;	// the calculator
+    	Thread sampler;	// samples the calculator's RSS
+    	Path status;	// the calculator's /proc status file
+
+    	command.add(command.size() - 3, "-Xlog:gc:file=" + gcLog);
+    	startTime = System.nanoTime();
+    	process = new ProcessBuilder(command).redirectInput(m_corpus.toFile())
+    		.redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    	status = Paths.get("/proc", Long.toString(process.pid()), "status");
+    	sampler = new Thread(() -> {
+    		while (process.isAlive())
+    		{	// sample until the calculator ends
+    			run.m_peakRssKilobytes = Math.max(run.m_peakRssKilobytes,
+    				peakRss(status));
+    			try {
+    				Thread.sleep(RSS_INTERVAL);
+    			}	// try
+    			catch (InterruptedException e)
+    			{	// stop sampling
+    				return;
+    			}	// stop sampling
+    		}	// sample until the calculator ends
+    	});
+    	sampler.setDaemon(true);
+    	sampler.start();
+    	try (InputStream output = process.getInputStream())
+    	{	// compare the output as it comes
+    		run.m_firstMismatch = compare(output);
+    	}	// compare the output as it comes
+    	run.m_exitCode = process.waitFor();
+    	run.m_seconds = (System.nanoTime() - startTime) / 1e9;
+    	sampler.join();
+    	run.m_outputMatches = run.m_firstMismatch < 0 && run.m_exitCode == 0;
+    	for (String line : Files.readAllLines(gcLog))
+    	{	// for each GC, e.g., "[0.5s][info][gc] GC(3) Pause Young ... 2.3ms"
+    		double pause;	// the pause's length, in ms
+    		if (!line.contains(" Pause ") || !line.endsWith("ms"))
+    			continue;	// not a pause
+    		pause = Double.parseDouble(line.substring(
+    			line.lastIndexOf(' ') + 1, line.length() - 2));
+    		run.m_gcPauses++;
+    		run.m_gcPauseTotal += pause;
+    		run.m_gcPauseMax = Math.max(run.m_gcPauseMax, pause);
+    	}	// for each GC
+    	Files.delete(gcLog);
+    	return run;
+    }	// run method
+
+    /** Get a process's peak resident set size.
+     * @param p_status the process's /proc status file
+     * @return long its VmHWM, in KB, or -1 if it can't be read
+     */
+    static long peakRss(Path p_status) {
+    	try {
+    		for (String line : Files.readAllLines(p_status))
+    			if (line.startsWith("VmHWM:"))	// e.g., "VmHWM:  41236 kB"
+    				return Long.parseLong(line.substring(6).trim().split(" ")[0]);
+    	}	// try
+    	catch (IOException | RuntimeException e)
+    	{	// no /proc, or the process has ended
+    	}	// no /proc, or the process has ended
+    	return -1;
+    }	// peakRss method
+
+    /** Compare the calculator's output with its introductory text and then
+     * the expected output, reading all of it.
+     * @param p_output the calculator's output
+     * @return long offset of the first byte that differs (or where one ends
+     *	before the other), or -1 if they're the same
+     * @throws IOException if a file can't be read
+     */
+    long compare(InputStream p_output) throws IOException {
+    	byte[] actual = new byte[BUFFER_SIZE];	// the output being compared
+    	byte[] expected = new byte[BUFFER_SIZE];	// what it should be
+    	long offset = 0;	// offset in output of actual[0]
+    	long mismatch = -1;	// offset of first difference, or -1
+    	int length;	// number of bytes in actual
+    	int expectedLength;	// number of bytes read into expected
+
+    	try (InputStream expect = new SequenceInputStream(
+    		new ByteArrayInputStream(m_introduction),
+    		Files.newInputStream(m_expect)))
+    	{	// compare each buffer of output
+    		while ((length = p_output.readNBytes(actual, 0, BUFFER_SIZE)) > 0)
+    		{	// for each buffer of output
+    			if (mismatch < 0)
+    			{	// no difference yet
+    				expectedLength = expect.readNBytes(expected, 0, length);
+    				for (int i = 0; i < length && mismatch < 0; i++)
+    					if (i >= expectedLength || actual[i] != expected[i])
+    						mismatch = offset + i;
+    			}	// no difference yet
+    			offset += length;
+    		}	// for each buffer of output
+    		if (mismatch < 0 && expect.read() >= 0)	// output ended too soon
+    			mismatch = offset;
+    	}	// compare each buffer of output
+    	return mismatch;
+    }	// compare method
+
+    /** Format a run as a line of JSON for the report.
+     * @param p_run the run
+     * @param p_label the label of the runs
+     * @param p_number the run's number, from 1
+     * @return String the JSON object
+     */
+    String toJson(Run p_run, String p_label, int p_number) {
+    	return "{\"label\":" + jsonString(p_label)
+    		+ ",\"timestamp\":" + jsonString(Instant.now().toString())
+    		+ ",\"run\":" + p_number
+    		+ ",\"corpus\":" + jsonString(m_corpus.toString())
+    		+ ",\"bytes\":" + m_corpusBytes
+    		+ ",\"lines\":" + m_corpusLines
+    		+ ",\"seconds\":" + p_run.m_seconds
+    		+ ",\"startupSeconds\":" + m_startupSeconds
+    		+ ",\"linesPerSecond\":" + Math.round(m_corpusLines / p_run.m_seconds)
+    		+ ",\"megabytesPerSecond\":"
+    		+ Math.round(m_corpusBytes / 1e4 / p_run.m_seconds) / 100.0
+    		+ ",\"peakRssKilobytes\":" + p_run.m_peakRssKilobytes
+    		+ ",\"gcPauses\":" + p_run.m_gcPauses
+    		+ ",\"gcPauseTotalMilliseconds\":"
+    		+ Math.round(p_run.m_gcPauseTotal * 1000) / 1000.0
+    		+ ",\"gcPauseMaxMilliseconds\":" + p_run.m_gcPauseMax
+    		+ ",\"outputMatches\":" + p_run.m_outputMatches
+    		+ ",\"firstMismatch\":" + p_run.m_firstMismatch
+    		+ ",\"exitCode\":" + p_run.m_exitCode
+    		+ ",\"javaVersion\":"
+    		+ jsonString(System.getProperty("java.version"))
+    		+ ",\"jvmOptions\":" + jsonString(m_jvmOptions) + "}";
+    }	// toJson method
+
+    /** Format a String as a JSON string, with quotes and escapes.
+     * @param p_text the String
+     * @return String the JSON string
+     */
+    static String jsonString(String p_text) {
+    	StringBuilder json = new StringBuilder("\"");	// the JSON string
+
+    	for (int i = 0; i < p_text.length(); i++)
+    	{	// for each char
+    		char c = p_text.charAt(i);	// the char
+    		if (c == '"' || c == '\\')
+    			json.append('\\').append(c);
+    		else if (c < ' ')	// a control char
+    			json.append(String.format("\\u%04x", (int)c));
+    		else json.append(c);
+    	}	// for each char
+    	return json.append('"').toString();
+    }	// jsonString method
+
+    /** Summarize a run for display.
+     * @param p_run the run
+     * @param p_number the run's number, from 1
+     * @return String the summary
+     */
+    String summary(Run p_run, int p_number) {
+    	return String.format("[] Run %d: %d lines in %.2f s (startup %.2f s):"
+    		+ " %.0f lines/s, %.1f MB/s; peak RSS %d KB;"
+    		+ " %d GC pauses, %.1f ms total, %.1f ms longest; output %s",
+    		p_number, m_corpusLines, p_run.m_seconds, m_startupSeconds,
+    		m_corpusLines / p_run.m_seconds,
+    		m_corpusBytes / 1e6 / p_run.m_seconds, p_run.m_peakRssKilobytes,
+    		p_run.m_gcPauses, p_run.m_gcPauseTotal, p_run.m_gcPauseMax,
+    		p_run.m_outputMatches ? "matches"
+    		: "DIFFERS at byte " + p_run.m_firstMismatch
+    		+ " (exit status " + p_run.m_exitCode + ")");
+    }	// summary method
+}	// RomanThroughput class
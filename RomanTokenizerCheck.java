@@ -0,0 +1,298 @@
+/*
+ * File:	RomanTokenizerCheck.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanTokenizerCheck
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+// imports:
+import java.util.Locale;
+import java.util.Random;
+
+/** Checks that the tokenizer's numeral automaton (Roman.NEXT_NUMERAL_STATE,
+ * which Roman.InfoForLine.tokenize runs) recognizes exactly what the
+ * calculator's original tokenizer recognized, e.g.:
+ *	java RomanTokenizerCheck --seed 7 --lines 200000
+ * It displays the number of lines that it checked and the number that
+ * differ, and the first few that differ; its exit status is 0 if none
+ * differ and 1 if some do.  Run it after any change to the automaton or to
+ * tokenize.
+ *
+ * Class:	RomanTokenizerCheck
+ *
+ * The lines are every numeral from MININT to MAXINT (including O), every
+ * string of up to MAX_LETTERS Roman letters (most of which aren't valid
+ * numerals), and --lines lines of up to MAX_RANDOM_LENGTH chars chosen at
+ * random (from the --seed) from RANDOM_CHARS, which mixes letters in both
+ * cases, operators, blanks, and invalid characters.  Each line is
+ * tokenized by the reference tokenizer (the reference method), which is
+ * the original tokenizer, digit by digit, with the FOLLOWERS table, and by
+ * tokenize, in integer mode, in fraction mode, and in the extended range;
+ * the token types, end indexes, and values, and the error position, must
+ * be the same.  No line has a VINCULUM or #, whose meanings the original
+ * tokenizer didn't have, so the extended range must not change anything.
+ */
+class RomanTokenizerCheck {
+    // These arrays of constants are indexed by a digit number (ones, tens,
+    // 100s, 1000s), as in the original tokenizer:
+    static final int[] VALUE_OF_DIGIT = {1, 10, 100, 1000};
+    	// the value of one of a digit (Roman I, X, C, M)
+    static final char[] ONE_CHAR_FOR_DIGIT = {'I', 'X', 'C', 'M'};
+    	// the Roman letter for one of that digit
+    static final char[] FIVE_CHAR_FOR_DIGIT = {'V', 'L', 'D', ' '};
+    	// the Roman letter for five of that digit; not applicable to 1000s
+    static final String[] FOLLOWERS = {"", "VI", "LXVI", "DCLXVI"};
+    	// the Roman letters that can begin a digit after the current digit
+
+    static final int MAX_LETTERS = 6;	// longest string of letters checked
+    static final int MAX_RANDOM_LENGTH = 16;	// longest random line
+    static final String RANDOM_CHARS = "MDCLXVIOmdclxvio+-*/() ?$";
+    	// chars of the random lines
+    static final int DEFAULT_LINES = 200000;	// random lines, if --lines
+    	// isn't specified
+    static final int DIFFERENCES_SHOWN = 10;	// most differences displayed
+    static final String[] MODES = {"integer mode", "fraction mode",
+    	"extended range"};	// name of each mode, for a difference
+    static final String USAGE = "[] Usage: java RomanTokenizerCheck"
+    	+ " [--seed <n>] [--lines <n>]";
+
+    Roman.InfoForLine[] m_lineInfos = new Roman.InfoForLine[MODES.length];
+    	// info for the line, in each mode
+    Roman.TokenBuffer m_expected = new Roman.TokenBuffer();
+    	// the reference tokenizer's tokens for the line
+    int m_expectedError;	// the reference tokenizer's error position, or
+    	// -1 if it found no error
+    long m_lines;	// number of lines checked
+    long m_differences;	// number of lines that differ
+
+    /** Main method for the check.
+     * @param args arguments: optionally "--seed" and the seed, and "--lines"
+     *	and the number of random lines
+     */
+    public static void main(String[] args) {
+    	long seed = 1;	// seed of the random lines
+    	int lines = DEFAULT_LINES;	// number of random lines
+    	RomanTokenizerCheck check = new RomanTokenizerCheck();
+    	Random random;	// source of the random lines' chars
+    	StringBuilder line = new StringBuilder();	// a line to check
+    	int a;	// iteration for each argument
+
+    	for (a = 0; a < args.length; a++)
+    	{	// for each argument
+    		if (args[a].equals("--seed") && a + 1 < args.length &&
+    			args[a + 1].matches("-?\\d+"))
+    			seed = Long.parseLong(args[++a]);
+    		else if (args[a].equals("--lines") && a + 1 < args.length &&
+    			args[a + 1].matches("\\d+"))
+    			lines = Integer.parseInt(args[++a]);
+    		else break;	// invalid argument
+    	}	// for each argument
+    	if (a < args.length)
+    	{	// invalid arguments
+    		System.err.println(USAGE);
+    		System.exit(2);
+    	}	// invalid arguments
+    	for (int n = Roman.MININT; n <= Roman.MAXINT; n++)
+    		check.check(Roman.toRoman(n));	// every numeral
+    	for (int length = 1; length <= MAX_LETTERS; length++)
+    		for (int letters = 0; letters < 1 << (3 * length); letters++)
+    		{	// every string of letters, as base-8 digits
+    			line.setLength(0);
+    			for (int i = 0; i < length; i++)
+    				line.append(Roman.ROMAN_LETTERS.charAt(
+    					letters >> (3 * i) & 7));
+    			check.check(line.toString());
+    		}	// every string of letters, as base-8 digits
+    	random = new Random(seed);
+    	for (int l = 0; l < lines; l++)
+    	{	// for each random line
+    		line.setLength(0);
+    		for (int i = random.nextInt(MAX_RANDOM_LENGTH) + 1; i > 0; i--)
+    			line.append(RANDOM_CHARS.charAt(
+    				random.nextInt(RANDOM_CHARS.length())));
+    		check.check(line.toString().trim());
+    	}	// for each random line
+    	System.out.println("[] Tokenizer check: " + check.m_lines +
+    		" lines, " + check.m_differences + " differences");
+    	if (check.m_differences > 0)	// the automaton is wrong
+    		System.exit(1);
+    }	// main method
+
+    /** Create a check, with info for lines in each mode.
+     */
+    RomanTokenizerCheck()
+    {	// constructor
+    	for (int m = 0; m < MODES.length; m++)
+    		m_lineInfos[m] = new Roman.InfoForLine();
+    	m_lineInfos[1].m_fractions = true;	// fraction mode
+    	m_lineInfos[2].m_maxResult = Roman.EXTENDED_MAX;	// extended range
+    }	// constructor
+
+    /** Check a line: tokenize it with the reference tokenizer and in each
+     * mode, and count it (and display it) if they differ.
+     * @param p_theLine the line, without leading or trailing blanks
+     */
+    void check(String p_theLine) {
+    	Roman.InfoForLine lineInfo;	// info for the line in a mode
+    	Roman.TokenBuffer tokens;	// its tokens
+    	long expectedValue;	// value of an expected token, in the mode
+    	boolean same;	// whether the mode's tokens are the same
+    	int t;	// iteration for each token
+
+    	if (p_theLine.isEmpty())	// the engine doesn't tokenize it
+    		return;
+    	m_lines++;
+    	reference(p_theLine.toUpperCase(Locale.ROOT) + " ");
+    	for (int m = 0; m < MODES.length; m++)
+    	{	// for each mode
+    		lineInfo = m_lineInfos[m];
+    		tokens = lineInfo.m_tokenizedLine;
+    		lineInfo.m_lineHasError = false;
+    		lineInfo.setLine(p_theLine, 0, p_theLine.length());
+    		lineInfo.tokenize();
+    		same = (lineInfo.m_lineHasError == (m_expectedError >= 0)) &&
+    			(! lineInfo.m_lineHasError ||
+    				(lineInfo.m_errorPosition == m_expectedError &&
+    				lineInfo.m_errorKind == Roman.INVALID_CHARACTER)) &&
+    			tokens.m_tokenCount == m_expected.m_tokenCount;
+    		for (t = 0; same && t < tokens.m_tokenCount; t++)
+    		{	// compare each token
+    			expectedValue = m_expected.m_integerValue[t];
+    			if (lineInfo.m_fractions && m_expected.m_tokenType[t] == Roman.INT)
+    				expectedValue = RomanFraction.ofInteger(expectedValue);
+    			same = tokens.m_tokenType[t] == m_expected.m_tokenType[t] &&
+    				tokens.m_tokenEndIndex[t] == m_expected.m_tokenEndIndex[t] &&
+    				tokens.m_integerValue[t] == expectedValue;
+    		}	// compare each token
+    		if (! same)
+    		{	// count it, and display the first few
+    			if (m_differences++ < DIFFERENCES_SHOWN)
+    				System.out.println("[] Difference in " + MODES[m] + ": "
+    					+ p_theLine);
+    			return;	// count the line once
+    		}	// count it, and display the first few
+    	}	// for each mode
+    }	// check method
+
+    /** Tokenize a line the way the calculator's original tokenizer did,
+     * digit by digit, into m_expected and m_expectedError.
+     * @param p_theLine the line, in upper case, with a blank appended
+     */
+    void reference(String p_theLine) {
+    	int i;	// for each character in line
+    	int d;	// for each possible digit (thousands through ones)
+    	int j;	// for each instance of a repeatable Roman letter, e.g., III
+    	char c1;	// a char from the line
+    	int value;	// value of a tokenized integer
+
+    	m_expected.clear();
+    	m_expectedError = -1;
+    	for (i = 0; i < p_theLine.length(); i++)
+    	{	// for each char in line; we know that last is blank
+    		c1 = p_theLine.charAt(i);	// ith character
+    		if (Roman.ROMAN_LETTERS.indexOf(c1) > -1)	// char is Roman letter
+    		{	// try to tokenize as an integer
+    			value = 0;	// start with 0; add to it later
+    			if (c1 != 'O')	// if int is 'O' (zero), we're done
+    				for (d = 3; d >= 0; d--)
+    				{	// for each possible digit (thousands through ones);
+    					// when finished, i points to the last char of the int
+    					c1 = p_theLine.charAt(i);
+    						// reset in case this is not first iteration
+    					if (d < 3 && c1 == ONE_CHAR_FOR_DIGIT[d] &&
+    						p_theLine.charAt(i + 1) == ONE_CHAR_FOR_DIGIT[d + 1])
+    					{	// 9 times the digit, e.g., IX
+    						value += 9 * VALUE_OF_DIGIT[d];
+    						i++;	// point to the digit's second char
+    						if (d > 0 &&
+    							FOLLOWERS[d].indexOf(p_theLine.charAt(i + 1)) > -1)
+    							i++;	// more chars in this int
+    						continue;	// we've found entire digit
+    					}	// 9 times the digit, e.g., IX
+    					if (d < 3 && c1 == ONE_CHAR_FOR_DIGIT[d] &&
+    						p_theLine.charAt(i + 1) == FIVE_CHAR_FOR_DIGIT[d])
+    					{	// 4 times the digit, e.g., IV
+    						value += 4 * VALUE_OF_DIGIT[d];
+    						i++;	// point to the digit's second char
+    						if (d > 0 &&
+    							FOLLOWERS[d].indexOf(p_theLine.charAt(i + 1)) > -1)
+    							i++;	// more chars in this int
+    						continue;	// we've found entire digit
+    					}	// 4 times the digit, e.g., IV
+    					if (c1 == FIVE_CHAR_FOR_DIGIT[d])
+    					{	// 5 char, e.g., V
+    						value += 5 * VALUE_OF_DIGIT[d];
+    						if (p_theLine.charAt(i + 1) == ONE_CHAR_FOR_DIGIT[d] ||
+    							(d > 0 &&
+    							FOLLOWERS[d].indexOf(p_theLine.charAt(i + 1)) > -1))
+    							i++;	// more chars in this int
+    						if (p_theLine.charAt(i) != ONE_CHAR_FOR_DIGIT[d])
+    							// a lower digit or a non-digit
+    							continue;	// we're done with this digit
+    						// if we found a 1 digit, fall through
+    					}	// 5 char, e.g., V
+    					if (p_theLine.charAt(i) == ONE_CHAR_FOR_DIGIT[d])
+    					{	// i points to the one char for this digit
+    						value += VALUE_OF_DIGIT[d];
+    						for (j = 1; j <= 2; j++)
+    							if (p_theLine.charAt(i + 1) ==
+    								ONE_CHAR_FOR_DIGIT[d])
+    							{	// the digit again, e.g., II
+    								value += VALUE_OF_DIGIT[d];
+    								i++;	// skip to next letter
+    							}	// the digit again, e.g., II
+    						if (d > 0 &&
+    							FOLLOWERS[d].indexOf(p_theLine.charAt(i + 1)) > -1)
+    							i++;	// more chars in this int
+    					}	// i points to the one char for this digit
+    				}	// for each possible digit (thousands through ones)
+    			if (Roman.ROMAN_LETTERS.indexOf(p_theLine.charAt(i + 1)) > -1)
+    				m_expectedError = i + 1;
+    					// int followed by another Roman letter is not valid
+    			else m_expected.add(Roman.INT, i, value);
+    		}	// try to tokenize as an integer
+    		else switch (c1)
+    		{	// try to tokenize as a non-integer; what is the char?
+    		case '+':
+    			m_expected.add(Roman.ADD, i);
+    			break;
+    		case '-':
+    			m_expected.add(Roman.SUB, i);
+    			break;
+    		case '*':
+    			if (p_theLine.charAt(i + 1) == '*')
+    			{	// ** (exponentiate)
+    				i++;	// advance to second asterisk
+    				m_expected.add(Roman.EXP, i);
+    			}	// ** (exponentiate)
+    			else m_expected.add(Roman.MUL, i);
+    			break;
+    		case '/':
+    			m_expected.add(Roman.DIV, i);
+    			break;
+    		case '(':
+    			m_expected.add(Roman.L_P, i);
+    			break;
+    		case ')':
+    			m_expected.add(Roman.R_P, i);
+    			break;
+    		case ' ':
+    			break;	// do nothing for white space
+    		default:
+    			m_expectedError = i;	// any other char is error
+    		}	// try to tokenize as a non-integer; what is the char?
+    		if (m_expectedError >= 0)	// if line has error
+    			i = p_theLine.length() - 1;
+    				// to end the iteration for each char in line
+    	}	// for each char in line; we know that last is blank
+    	m_expected.add(Roman.END, p_theLine.length() - 1);
+    		// append an artificial token for end of line
+    }	// reference method
+}	// RomanTokenizerCheck class
@@ -0,0 +1,682 @@
+/*
+ * File:	RomanWorkload.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanWorkload
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+// imports:
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+/** Generates a reproducible corpus of expressions for the Roman numeral desk
+ * calculator, along with the output that the calculator should give for
+ * it, for measuring the whole interactive loop with RomanThroughput, e.g.:
+ *	java RomanWorkload --size 1G --seed 7 --out c.txt --expect c.expect
+ *	java RomanThroughput --corpus c.txt --expect c.expect --report r.jsonl
+ *
+ * Class:	RomanWorkload
+ *
+ * The same --seed, --size, and --mix always give the same corpus.  The
+ * corpus is written as it is generated, so its size (from 1M to 10G or
+ * more) doesn't affect the memory that's needed.  Its last line is QUIT or
+ * EXIT, in one of several forms.  Each other line is one of these kinds,
+ * chosen at random in proportion to the weights of the --mix, e.g.,
+ * --mix short=80,chain=20; the KINDS and DEFAULT_WEIGHTS list them:
+ * - short: a few operands, perhaps with parentheses
+ * - long: hundreds of numerals, added and subtracted so that the result
+ *   stays in range
+ * - deep: parentheses nested tens to hundreds deep, around small numerals
+ *   that are added and subtracted
+ * - chain: a line that starts with an operator, so it uses the previous
+ *   line's result
+ * - invalid: a line with an invalid character in it
+ * - zero: a line with the DIGIT 0 in it
+ * - divide: a line that divides by zero (unless an earlier error prevents
+ *   it)
+ * - range: a line whose result is out of range (likewise)
+ * - empty: a line that is empty, blank, or only "="
+ * Lines are in upper or lower case, with or without blanks around the
+ * operators, and sometimes with blanks around them or an ending "=".
+ *
+ * The expected output isn't produced by the calculator: as each line is
+ * generated, its tokens are recorded, and a separate reference evaluator
+ * (the evaluate and operate methods) computes its result or error, by
+ * the calculator's documented rules: operators are applied from left to
+ * right (without precedence) and each result must be in the valid range.
+ * So the expected output can catch a change in the calculator's results.
+ * It has the records that the calculator writes for the lines, without the
+ * introductory text that comes before them.
+ */
+class RomanWorkload {
+    // These are the kinds of lines, which index KINDS and the weights:
+    static final int SHORT = 0;	// a few operands
+    static final int LONG = 1;	// hundreds of operands
+    static final int DEEP = 2;	// deeply nested parentheses
+    static final int CHAIN = 3;	// starts with an operator
+    static final int INVALID = 4;	// has an invalid character
+    static final int ZERO = 5;	// has the DIGIT 0
+    static final int DIVIDE = 6;	// divides by zero
+    static final int RANGE = 7;	// has a result out of range
+    static final int EMPTY = 8;	// empty, blank, or only "="
+    static final String[] KINDS = {"short", "long", "deep", "chain",
+    	"invalid", "zero", "divide", "range", "empty"};	// names for --mix
+    static final int[] DEFAULT_WEIGHTS = {45, 3, 3, 20, 6, 4, 6, 8, 5};
+    	// weight of each kind, if --mix isn't specified
+
+    // These are the types of the recorded tokens:
+    static final int NUMBER = 0;	// a numeral
+    static final int OPEN = 1;	// (
+    static final int CLOSE = 2;	// )
+    static final int PLUS = 3;	// +, and the other operators after it
+    static final int MINUS = 4;	// -
+    static final int TIMES = 5;	// *
+    static final int OVER = 6;	// /
+    static final int POWER = 7;	// **
+    static final String[] OPERATOR_TEXT = {null, null, null, "+", "-", "*",
+    	"/", "**"};	// text of each operator
+
+    static final int MAXINT = 3999;	// largest valid result
+    static final long FAILED = Long.MIN_VALUE;
+    	// what operate returns for an error
+    static final String INVALID_CHARS = "$%&!?@;~123456789";
+    	// characters that are invalid in an expression
+    static final String[] QUIT_LINES = {"QUIT", "exit", "  Quit =", "EXIT"};
+    	// forms of the last line
+    static final String LINE_SEPARATOR = System.lineSeparator();
+    static final String USAGE = "[] Usage: java RomanWorkload --size <bytes,"
+    	+ " e.g., 1M or 10G> --out <corpus file> --expect <expected output"
+    	+ " file> [--seed <n>] [--mix <kind>=<weight>,...]";
+    static final int BUFFER_SIZE = 1 << 20;	// bytes written at once
+
+    static final String[] ROMAN = new String[MAXINT + 1];
+    	// Roman numeral for each integer that can be a numeral
+    static {	// build the numerals
+    	String[][] digits = {	// numeral for each digit of each place
+    		{"", "I", "II", "III", "IV", "V", "VI", "VII", "VIII", "IX"},
+    		{"", "X", "XX", "XXX", "XL", "L", "LX", "LXX", "LXXX", "XC"},
+    		{"", "C", "CC", "CCC", "CD", "D", "DC", "DCC", "DCCC", "CM"},
+    		{"", "M", "MM", "MMM"}};
+    	ROMAN[0] = "O";
+    	for (int n = 1; n <= MAXINT; n++)
+    		ROMAN[n] = digits[3][n / 1000] + digits[2][n / 100 % 10]
+    			+ digits[1][n / 10 % 10] + digits[0][n % 10];
+    }	// build the numerals
+
+    Random m_random;	// source of the choices, from the seed
+    int[] m_cumulativeWeights = new int[KINDS.length];
+    	// sum of the weights of each kind and the kinds before it
+    StringBuilder m_line = new StringBuilder();
+    	// the line being generated, without blanks around it or "="
+    String m_spacing;	// text around each operator in the line
+    int[] m_tokenType = new int[1024];	// type of each token of the line
+    int[] m_tokenValue = new int[1024];	// value of each numeral
+    int[] m_tokenEnd = new int[1024];	// index of each token's last char
+    int m_tokenCount;	// number of tokens in the line
+    int m_nextToken;	// index of the next token to evaluate
+    int m_operandEnd;	// index of the last char of the last operand
+    int m_errorPosition;	// index of the char where an error is detected
+    String m_error;	// description of the line's error, or null if none
+    long m_previousResult;	// result of the last line that had one
+    long[] m_kindCounts = new long[KINDS.length];	// lines of each kind
+
+    /** Main method for the generator.
+     * @param args arguments: "--size" and the corpus's approximate size in
+     *	bytes (with an optional K, M, or G suffix), "--out" and the corpus
+     *	file, "--expect" and the expected output file, and optionally
+     *	"--seed" and the seed, and "--mix" and the weights of the kinds
+     */
+    public static void main(String[] args) {
+    	long size = -1;	// approximate number of bytes of corpus
+    	String corpusFile = null;	// name of the corpus file
+    	String expectFile = null;	// name of the expected output file
+    	long seed = 1;	// seed of the choices
+    	int[] weights = DEFAULT_WEIGHTS;	// weight of each kind
+    	RomanWorkload workload;	// the generator
+    	long lines;	// number of lines generated
+
+    	try {
+    		for (int a = 0; a + 1 < args.length; a += 2)
+    		{	// for each pair of arguments
+    			switch (args[a])
+    			{	// which argument
+    			case "--size": size = parseSize(args[a + 1]); break;
+    			case "--out": corpusFile = args[a + 1]; break;
+    			case "--expect": expectFile = args[a + 1]; break;
+    			case "--seed": seed = Long.parseLong(args[a + 1]); break;
+    			case "--mix": weights = parseMix(args[a + 1]); break;
+    			default: throw new IllegalArgumentException(args[a]);
+    			}	// which argument
+    		}	// for each pair of arguments
+    	}	// try
+    	catch (IllegalArgumentException e)
+    	{	// not a number, not a kind, etc.
+    		size = -1;
+    	}	// not a number, not a kind, etc.
+    	if (size < 0 || corpusFile == null || expectFile == null
+    		|| args.length % 2 != 0)
+    	{	// invalid arguments
+    		System.err.println(USAGE);
+    		System.exit(2);
+    	}	// invalid arguments
+    	workload = new RomanWorkload(seed, weights);
+    	try (FileChannel corpus = open(corpusFile);
+    		FileChannel expect = open(expectFile))
+    	{	// generate into the files
+    		lines = workload.generate(size, corpus, expect);
+    	}	// generate into the files
+    	catch (IOException e)
+    	{	// can't write
+    		System.err.println("[] Generating failed: " + e.getMessage());
+    		System.exit(1);
+    		return;
+    	}	// can't write
+    	System.out.println("[] " + lines + " lines");
+    	for (int k = 0; k < KINDS.length; k++)
+    		System.out.println("[] " + KINDS[k] + ": "
+    			+ workload.m_kindCounts[k]);
+    }	// main method
+
+    /** Create a generator.
+     * @param p_seed the seed of the choices
+     * @param p_weights the weight of each kind of line, which can be 0, but
+     *	not for all of them
+     */
+    RomanWorkload(long p_seed, int[] p_weights)
+    {	// constructor
+    	m_random = new Random(p_seed);
+    	for (int k = 0; k < KINDS.length; k++)
+    		m_cumulativeWeights[k] = p_weights[k]
+    			+ ((k == 0) ? 0 : m_cumulativeWeights[k - 1]);
+    }	// constructor
+
+    /** Parse a size, e.g., 10G.
+     * @param p_text the size, in bytes, with an optional K, M, or G suffix
+     * @return long the number of bytes
+     */
+    static long parseSize(String p_text) {
+    	char suffix = Character.toUpperCase(p_text.charAt(p_text.length() - 1));
+    	int shift = (suffix == 'K') ? 10 : (suffix == 'M') ? 20
+    		: (suffix == 'G') ? 30 : 0;	// power of 2 of the suffix
+
+    	return Long.parseLong((shift == 0) ? p_text
+    		: p_text.substring(0, p_text.length() - 1)) << shift;
+    }	// parseSize method
+
+    /** Parse a mix, e.g., short=80,chain=20; kinds that aren't in it have
+     * weight 0.
+     * @param p_text the mix
+     * @return int[] the weight of each kind
+     */
+    static int[] parseMix(String p_text) {
+    	int[] weights = new int[KINDS.length];	// the weights
+    	int total = 0;	// sum of the weights
+    	int k;	// index of a kind
+
+    	for (String entry : p_text.split(","))
+    	{	// for each kind and weight
+    		String[] parts = entry.split("=");	// the kind and the weight
+    		for (k = 0; k < KINDS.length && !KINDS[k].equals(parts[0]); k++)
+    			;	// look for the kind
+    		if (parts.length != 2 || k == KINDS.length)	// not a kind
+    			throw new IllegalArgumentException(entry);
+    		weights[k] = Integer.parseInt(parts[1]);
+    		if (weights[k] < 0)	// a weight can't be negative
+    			throw new IllegalArgumentException(entry);
+    		total += weights[k];
+    	}	// for each kind and weight
+    	if (total == 0)	// some kind needs a weight
+    		throw new IllegalArgumentException(p_text);
+    	return weights;
+    }	// parseMix method
+
+    /** Open a file for writing, replacing any file of the same name.
+     * @param p_name the file's name
+     * @return FileChannel the file
+     * @throws IOException if the file can't be opened
+     */
+    static FileChannel open(String p_name) throws IOException {
+    	return FileChannel.open(Paths.get(p_name), StandardOpenOption.CREATE,
+    		StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }	// open method
+
+    /** Generate lines until the corpus has at least the size, then the last
+     * line (QUIT or EXIT), writing the lines and the expected output.
+     * @param p_size approximate number of bytes of corpus
+     * @param p_corpus where to write the corpus
+     * @param p_expect where to write the expected output
+     * @return long the number of lines, including the last
+     * @throws IOException if a file can't be written
+     */
+    long generate(long p_size, FileChannel p_corpus, FileChannel p_expect)
+    	throws IOException {
+    	ByteBuffer corpus = ByteBuffer.allocate(BUFFER_SIZE);
+    		// corpus not yet written
+    	ByteBuffer expect = ByteBuffer.allocate(BUFFER_SIZE);
+    		// expected output not yet written
+    	StringBuilder output = new StringBuilder();	// output for a line
+    	long corpusSize = 0;	// bytes of corpus so far
+    	long lines = 0;	// number of lines so far
+    	String line;	// the line, as it is written
+
+    	while (corpusSize < p_size)
+    	{	// for each line
+    		line = generateLine(output);
+    		corpusSize += line.length() + 1;
+    		lines++;
+    		put(line + "\n", corpus, p_corpus);
+    		put(output, expect, p_expect);
+    	}	// for each line
+    	line = QUIT_LINES[m_random.nextInt(QUIT_LINES.length)];
+    	put(line + "\n", corpus, p_corpus);
+    	put("[] Bye!  Visit again!" + LINE_SEPARATOR, expect, p_expect);
+    	write(corpus, p_corpus);
+    	write(expect, p_expect);
+    	return lines + 1;
+    }	// generate method
+
+    /** Append text, which is ASCII, to a buffer, writing the buffer to its
+     * file whenever it is full.
+     * @param p_text the text
+     * @param p_buffer the buffer
+     * @param p_file the buffer's file
+     * @throws IOException if the file can't be written
+     */
+    static void put(CharSequence p_text, ByteBuffer p_buffer,
+    	FileChannel p_file) throws IOException {
+    	for (int i = 0; i < p_text.length(); i++)
+    	{	// for each char
+    		if (!p_buffer.hasRemaining())	// it's full
+    			write(p_buffer, p_file);
+    		p_buffer.put((byte)p_text.charAt(i));
+    	}	// for each char
+    }	// put method
+
+    /** Write a buffer to its file, and empty it.
+     * @param p_buffer the buffer
+     * @param p_file the buffer's file
+     * @throws IOException if the file can't be written
+     */
+    static void write(ByteBuffer p_buffer, FileChannel p_file)
+    	throws IOException {
+    	p_buffer.flip();
+    	while (p_buffer.hasRemaining())	// channel might write only part
+    		p_file.write(p_buffer);
+    	p_buffer.clear();
+    }	// write method
+
+    /** Generate a line of a randomly chosen kind, and its expected output.
+     * @param p_output where to put the expected output, which is replaced
+     * @return String the line, as it is written
+     */
+    String generateLine(StringBuilder p_output) {
+    	int choice = m_random.nextInt(m_cumulativeWeights[KINDS.length - 1]);
+    		// chooses the kind
+    	int kind = 0;	// the kind
+    	String line;	// the line, in its case, without the blanks or "="
+    	int insertAt;	// index in line of an inserted char
+    	long result;	// the line's result, or FAILED
+
+    	while (choice >= m_cumulativeWeights[kind])	// find the chosen kind
+    		kind++;
+    	m_kindCounts[kind]++;
+    	p_output.setLength(0);
+    	if (kind == EMPTY)
+    	{	// nothing to evaluate
+    		p_output.append("[] Please type an expression, QUIT, or EXIT.")
+    			.append(LINE_SEPARATOR);
+    		return (m_random.nextBoolean()) ? "" : (m_random.nextBoolean())
+    			? "   " : "=";
+    	}	// nothing to evaluate
+    	m_line.setLength(0);
+    	m_tokenCount = 0;
+    	m_spacing = (m_random.nextInt(3) == 0) ? "" : " ";
+    	switch (kind)
+    	{	// generate the tokens of the kind
+    	case LONG:
+    		appendSum(100 + m_random.nextInt(400));
+    		break;
+    	case DEEP:
+    		appendNested(10 + m_random.nextInt(190));
+    		break;
+    	case CHAIN:
+    		appendOperator();
+    		appendOperand(m_tokenType[0], 1);
+    		if (m_random.nextBoolean())	// continue the chain
+    			appendExpressionTail(m_random.nextInt(4), 1);
+    		break;
+    	case DIVIDE:
+    		appendExpression(1 + m_random.nextInt(3), 1);
+    		appendToken(OVER, OPERATOR_TEXT[OVER], 0);
+    		if (m_random.nextBoolean())	// a numeral that is zero
+    			appendToken(NUMBER, "O", 0);
+    		else	// an expression that is zero
+    			appendDifference();
+    		appendExpressionTail(m_random.nextInt(3), 1);
+    		break;
+    	case RANGE:
+    		appendExpression(1 + m_random.nextInt(3), 1);
+    		appendToken(TIMES, OPERATOR_TEXT[TIMES], 0);
+    		appendToken(NUMBER, ROMAN[MAXINT], MAXINT);
+    		appendToken(TIMES, OPERATOR_TEXT[TIMES], 0);
+    		appendToken(NUMBER, ROMAN[MAXINT], MAXINT);
+    		break;
+    	default:	// SHORT, INVALID, or ZERO
+    		appendExpression(1 + m_random.nextInt(4), 2);
+    		break;
+    	}	// generate the tokens of the kind
+    	line = (m_random.nextInt(10) == 0) ? m_line.toString().toLowerCase()
+    		: m_line.toString();
+
+    	if (kind == INVALID || kind == ZERO)
+    	{	// insert the char before a token or at the end
+    		insertAt = (m_random.nextInt(m_tokenCount + 1) == m_tokenCount)
+    			? line.length()
+    			: m_tokenEnd[m_random.nextInt(m_tokenCount)] + 1;
+    		line = line.substring(0, insertAt)
+    			+ ((kind == ZERO) ? '0'
+    			: INVALID_CHARS.charAt(m_random.nextInt(INVALID_CHARS.length())))
+    			+ line.substring(insertAt);
+    		if (kind == ZERO)
+    			p_output.append("[] For zero, specify the LETTER (NOT DIGIT) O.")
+    				.append(LINE_SEPARATOR);
+    		else appendError(p_output, "an invalid character", line, insertAt);
+    	}	// insert the char before a token or at the end
+    	else
+    	{	// evaluate the tokens
+    		m_nextToken = 0;
+    		m_error = null;
+    		result = evaluate(false);
+    		if (m_error != null)
+    			appendError(p_output, m_error, line, m_errorPosition);
+    		else
+    		{	// a result
+    			m_previousResult = result;
+    			p_output.append("[] Result")
+    				.append((m_tokenType[0] >= PLUS)
+    				? " (which uses previous line's result)" : "")
+    				.append(": Roman ")
+    				.append((result < 0) ? "-" : "")
+    				.append(ROMAN[(int)Math.abs(result)])
+    				.append(" (Arabic ").append(result).append(").")
+    				.append(LINE_SEPARATOR);
+    		}	// a result
+    	}	// evaluate the tokens
+    	switch (m_random.nextInt(8))
+    	{	// decorate the line, which the calculator ignores
+    	case 0: return "  " + line + " ";
+    	case 1: return line + " =";
+    	default: return line;
+    	}	// decorate the line
+    }	// generateLine method
+
+    /** Append an error message to the expected output.
+     * @param p_output the expected output
+     * @param p_description the description of the error
+     * @param p_line the line, without the blanks or "="
+     * @param p_position index in the line of the char where it's detected
+     */
+    static void appendError(StringBuilder p_output, String p_description,
+    	String p_line, int p_position) {
+    	p_output.append("[] There's ").append(p_description)
+    		.append(" detected at the end of this text:\n[] ")
+    		.append(p_line.substring(0, p_position + 1).toUpperCase())
+    		.append(LINE_SEPARATOR);
+    }	// appendError method
+
+    /** Append an operand and then operators and operands.
+     * @param p_operands the number of operands
+     * @param p_depth most levels of parentheses that an operand can have
+     */
+    void appendExpression(int p_operands, int p_depth) {
+    	appendOperand(PLUS, p_depth);
+    	appendExpressionTail(p_operands - 1, p_depth);
+    }	// appendExpression method
+
+    /** Append operators, each followed by an operand.
+     * @param p_operators the number of operators
+     * @param p_depth most levels of parentheses that an operand can have
+     */
+    void appendExpressionTail(int p_operators, int p_depth) {
+    	for (int o = 0; o < p_operators; o++)
+    	{	// for each operator
+    		appendOperator();
+    		appendOperand(m_tokenType[m_tokenCount - 1], p_depth);
+    	}	// for each operator
+    }	// appendExpressionTail method
+
+    /** Append an operator, usually + or -.
+     */
+    void appendOperator() {
+    	int choice = m_random.nextInt(20);	// chooses the operator
+    	int operator = (choice < 14) ? PLUS + choice % 2
+    		: (choice < 17) ? TIMES : (choice < 19) ? OVER : POWER;
+
+    	appendToken(operator, OPERATOR_TEXT[operator], 0);
+    }	// appendOperator method
+
+    /** Append an operand: a numeral, or sometimes an expression in
+     * parentheses.  Its value suits the operator before it, so that most
+     * lines have a result, e.g., a small operand after * or **.
+     * @param p_operator the operator before the operand
+     * @param p_depth most levels of parentheses that it can have
+     */
+    void appendOperand(int p_operator, int p_depth) {
+    	int value;	// value of a numeral
+
+    	if (p_depth > 0 && m_random.nextInt(5) == 0)
+    	{	// an expression in parentheses
+    		appendToken(OPEN, "(", 0);
+    		appendExpression(1 + m_random.nextInt(3), p_depth - 1);
+    		appendToken(CLOSE, ")", 0);
+    		return;
+    	}	// an expression in parentheses
+    	switch (p_operator)
+    	{	// a value that suits the operator
+    	case TIMES: value = m_random.nextInt(6); break;
+    	case OVER: value = 1 + m_random.nextInt(50); break;
+    	case POWER: value = m_random.nextInt(3); break;
+    	default: value = m_random.nextInt(MAXINT + 1) / (1 + m_random.nextInt(8));
+    	}	// a value that suits the operator
+    	appendToken(NUMBER, ROMAN[value], value);
+    }	// appendOperand method
+
+    /** Append numerals that are added and subtracted, choosing + or - for
+     * each so that the sum so far stays in range.
+     * @param p_operands the number of numerals
+     */
+    void appendSum(int p_operands) {
+    	int value = m_random.nextInt(MAXINT + 1);	// value of a numeral
+    	int sum = value;	// the sum so far
+
+    	appendToken(NUMBER, ROMAN[value], value);
+    	for (int o = 1; o < p_operands; o++)
+    	{	// for each operator and numeral
+    		value = m_random.nextInt(MAXINT + 1) / (1 + m_random.nextInt(8));
+    		appendToken((sum < 0) ? PLUS : MINUS,
+    			OPERATOR_TEXT[(sum < 0) ? PLUS : MINUS], 0);
+    		sum += (sum < 0) ? value : -value;
+    		appendToken(NUMBER, ROMAN[value], value);
+    	}	// for each operator and numeral
+    }	// appendSum method
+
+    /** Append an expression nested to a depth, e.g., ((I + II) - III) for 2,
+     * with the parentheses on the left or the right, of small numerals that
+     * are added and subtracted.
+     * @param p_depth the depth
+     */
+    void appendNested(int p_depth) {
+    	boolean nestLeft = m_random.nextBoolean();	// which side
+
+    	if (nestLeft)
+    	{	// e.g., ((I + II) - III)
+    		for (int d = 0; d < p_depth; d++)
+    			appendToken(OPEN, "(", 0);
+    		appendSmallNumeral();
+    		for (int d = 0; d < p_depth; d++)
+    		{	// for each level, an operator, operand, and its end
+    			appendToken(PLUS + d % 2, OPERATOR_TEXT[PLUS + d % 2], 0);
+    			appendSmallNumeral();
+    			appendToken(CLOSE, ")", 0);
+    		}	// for each level
+    	}	// e.g., ((I + II) - III)
+    	else
+    	{	// e.g., I + (II - (III))
+    		for (int d = 0; d < p_depth; d++)
+    		{	// for each level, an operand, operator, and its start
+    			appendSmallNumeral();
+    			appendToken(PLUS + d % 2, OPERATOR_TEXT[PLUS + d % 2], 0);
+    			appendToken(OPEN, "(", 0);
+    		}	// for each level
+    		appendSmallNumeral();
+    		for (int d = 0; d < p_depth; d++)
+    			appendToken(CLOSE, ")", 0);
+    	}	// e.g., I + (II - (III))
+    }	// appendNested method
+
+    /** Append a numeral from O through XX.
+     */
+    void appendSmallNumeral() {
+    	int value = m_random.nextInt(21);	// the numeral's value
+
+    	appendToken(NUMBER, ROMAN[value], value);
+    }	// appendSmallNumeral method
+
+    /** Append a difference whose value is zero, e.g., (XII - XII).
+     */
+    void appendDifference() {
+    	int value = m_random.nextInt(MAXINT + 1);	// value of each numeral
+
+    	appendToken(OPEN, "(", 0);
+    	appendToken(NUMBER, ROMAN[value], value);
+    	appendToken(MINUS, OPERATOR_TEXT[MINUS], 0);
+    	appendToken(NUMBER, ROMAN[value], value);
+    	appendToken(CLOSE, ")", 0);
+    }	// appendDifference method
+
+    /** Append a token to the line, and record it.
+     * @param p_type the token's type
+     * @param p_text the token's text
+     * @param p_value the token's value, if it's a numeral
+     */
+    void appendToken(int p_type, String p_text, int p_value) {
+    	if (m_tokenCount == m_tokenType.length)
+    	{	// grow the arrays
+    		m_tokenType = Arrays.copyOf(m_tokenType, 2 * m_tokenCount);
+    		m_tokenValue = Arrays.copyOf(m_tokenValue,
+    			2 * m_tokenCount);
+    		m_tokenEnd = Arrays.copyOf(m_tokenEnd, 2 * m_tokenCount);
+    	}	// grow the arrays
+    	if (p_type >= PLUS && m_tokenCount > 0)	// not the line's first token
+    		m_line.append(m_spacing);
+    	m_line.append(p_text);
+    	if (p_type >= PLUS)
+    		m_line.append(m_spacing);
+    	m_tokenType[m_tokenCount] = p_type;
+    	m_tokenValue[m_tokenCount] = p_value;
+    	m_tokenEnd[m_tokenCount] = m_line.length() - 1
+    		- ((p_type >= PLUS) ? m_spacing.length() : 0);
+    	m_tokenCount++;
+    }	// appendToken method
+
+    /** Evaluate the recorded tokens of an expression, from the next token
+     * through its end (the end of the line, or a right parenthesis), by
+     * applying the operators from left to right; the reference evaluator.
+     * On an error, set m_error and m_errorPosition.
+     * @param p_nested whether the expression is in parentheses
+     * @return long the result, or FAILED if there's an error
+     */
+    long evaluate(boolean p_nested) {
+    	long result;	// the result so far
+    	long operand;	// an operand's value
+    	int operator;	// an operator
+
+    	if (!p_nested && m_tokenType[0] >= PLUS)	// a chain
+    		result = m_previousResult;
+    	else result = evaluateOperand();
+    	while (result != FAILED && m_nextToken < m_tokenCount
+    		&& m_tokenType[m_nextToken] >= PLUS)
+    	{	// for each operator and operand
+    		operator = m_tokenType[m_nextToken++];
+    		operand = evaluateOperand();
+    		if (operand == FAILED)	// error in parentheses
+    			return FAILED;
+    		result = operate(operator, result, operand);
+    	}	// for each operator and operand
+    	if (p_nested)
+    		m_nextToken++;	// skip the )
+    	return result;
+    }	// evaluate method
+
+    /** Evaluate the next operand: a numeral or an expression in parentheses;
+     * set m_operandEnd to the index of its last char.
+     * @return long the value, or FAILED if there's an error
+     */
+    long evaluateOperand() {
+    	long value;	// the operand's value
+
+    	if (m_tokenType[m_nextToken] == NUMBER)
+    		value = m_tokenValue[m_nextToken++];
+    	else
+    	{	// an expression in parentheses
+    		m_nextToken++;	// skip the (
+    		value = evaluate(true);
+    	}	// an expression in parentheses
+    	m_operandEnd = m_tokenEnd[m_nextToken - 1];
+    	return value;
+    }	// evaluateOperand method
+
+    /** Apply an operator; an error is detected at the end of the second
+     * operand.
+     * @param p_operator the operator
+     * @param p_first the first operand
+     * @param p_second the second operand
+     * @return long the result, or FAILED if there's an error
+     */
+    long operate(int p_operator, long p_first, long p_second) {
+    	long result = 1;	// the result
+
+    	switch (p_operator)
+    	{	// which operator
+    	case PLUS: result = p_first + p_second; break;
+    	case MINUS: result = p_first - p_second; break;
+    	case TIMES: result = p_first * p_second; break;
+    	case OVER:
+    		if (p_second == 0)
+    		{	// can't divide by zero
+    			m_error = "a division by zero";
+    			m_errorPosition = m_operandEnd;
+    			return FAILED;
+    		}	// can't divide by zero
+    		result = p_first / p_second;	// which truncates toward zero
+    		break;
+    	default:	// POWER, which truncates toward zero, as Math.pow does
+    		if (p_second < 0)	// a fraction, unless the first is 0 or +-1
+    			result = (p_first == 0) ? MAXINT + 1
+    				: (Math.abs(p_first) != 1) ? 0
+    				: (p_first == 1 || p_second % 2 == 0) ? 1 : -1;
+    		else for (long e = 0; e < p_second && Math.abs(result) <= MAXINT;
+    			e++)
+    			result *= p_first;	// stops once it's out of range
+    	}	// which operator
+    	if (Math.abs(result) > MAXINT)
+    	{	// out of range
+    		m_error = "a result out of range";
+    		m_errorPosition = m_operandEnd;
+    		return FAILED;
+    	}	// out of range
+    	return result;
+    }	// operate method
+}	// RomanWorkload class
@@ -0,0 +1,569 @@
+/*
+ * File:	RomanWorksheet.java
+ *
+ * Package:	none
+ *
+ * Class:	RomanWorksheet
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+// imports:
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/** A worksheet of expressions, i.e., a file of lines that is kept in memory
+ * with each line's outcome, so that when a line is changed, inserted, or
+ * deleted, only the lines whose outcomes can change are evaluated again,
+ * e.g.:
+ *	java Roman --worksheet in.txt --out out.txt
+ * reads edits of in.txt from standard input, one per line:
+ *	SET <line number> <expression>	(replace the line)
+ *	INSERT <line number> <expression>	(insert it before the line)
+ *	DELETE <line number>
+ * After each edit, it displays the new outcome of each line that was
+ * evaluated again, and at the end of the edits, it writes all of the
+ * worksheet's results and messages to the output file (or, if --out is
+ * omitted, to standard output), the same ones that batch mode (RomanBatch)
+ * would write for the edited file.
+ *
+ * Class:	RomanWorksheet
+ *
+ * A line depends only on the line before it, and only if it starts with an
+ * operator, which uses the previous result: the result of the nearest line
+ * before it that has a result (or 0 if there is none).  So the dependencies
+ * form chains, and the worksheet keeps, for each line, its "carried" result,
+ * i.e., the previous result for the line after it, which is the line's own
+ * result if it has one, and otherwise the carried result of the line before
+ * it.  When a line is edited, it is evaluated, and then so is each
+ * following line, in order, until one's carried result is what it was
+ * before the edit; no line after that one can change.  A line that doesn't
+ * start with an operator is only passed over: its outcome doesn't depend on
+ * the previous result, so it ends the chain if it has a result.  A line
+ * that starts with an operator isn't tokenized again; its tokens are kept
+ * from when it was last edited, and only evaluated with the new previous
+ * result.  So an edit takes time proportional to the number of lines whose
+ * carried result changes, not to the number of lines in the worksheet.
+ *
+ * The lines are kept in parallel arrays, with a gap (as in a text editor)
+ * at the most recently inserted or deleted line, so that inserting or
+ * deleting a line only moves the lines between it and the previous edit.
+ * The tokens of the lines that start with an operator are kept in one
+ * Roman.TokenBuffer; a line's old tokens are abandoned when it is edited,
+ * and the buffer is compacted when more than half of it is abandoned.
+ *
+ * A line that contains QUIT or EXIT is kept like any other, so lines after
+ * it keep their outcomes, but writeTo stops there, as batch mode does.
+ */
+class RomanWorksheet {
+    static final int INITIAL_CAPACITY = 1024;	// lines before the arrays grow
+    static final String USAGE = "[] Usage: java Roman --worksheet <input file>"
+    	+ " [--out <output file>]";
+
+    // each line's text and outcome; line i is at index i if it's before the
+    // gap, and otherwise at index i + gapLength():
+    String[] m_text = new String[INITIAL_CAPACITY];	// text of each line
+    byte[] m_outcome = new byte[INITIAL_CAPACITY];
+    	// each line's outcome, e.g., RomanEngine.RESULT
+    int[] m_result = new int[INITIAL_CAPACITY];
+    	// each line's result, if its outcome is RESULT
+    byte[] m_errorKind = new byte[INITIAL_CAPACITY];
+    	// each line's kind of error, if its outcome is ERROR
+    int[] m_errorPosition = new int[INITIAL_CAPACITY];
+    	// position of each line's error, if its outcome is ERROR
+    int[] m_carried = new int[INITIAL_CAPACITY];
+    	// previous result for the line after each line
+    boolean[] m_usesPrevious = new boolean[INITIAL_CAPACITY];
+    	// whether each line starts with an operator, i.e., is tokenized
+    	// without error and depends on the line before it
+    int[] m_tokenStart = new int[INITIAL_CAPACITY];
+    	// index (in m_tokens) of the first token of each line that starts
+    	// with an operator
+    int[] m_tokenCount = new int[INITIAL_CAPACITY];
+    	// number of tokens (including the end of line) of each such line
+    int m_gapStart;	// index of the gap's first slot, i.e., number of lines
+    	// before the gap
+    int m_gapEnd = INITIAL_CAPACITY;	// index after the gap's last slot
+    Roman.TokenBuffer m_tokens = new Roman.TokenBuffer(INITIAL_CAPACITY);
+    	// tokens of the lines that start with an operator
+    int m_abandonedTokens;	// number of tokens in m_tokens of no line
+    RomanEngine.Session m_session = new RomanEngine.Session();
+    	// evaluates each line; its InfoForLine holds the previous result
+
+    /** Main method for worksheet mode.
+     * @param args arguments: "--worksheet", the input file, and optionally
+     *	"--out" and the output file
+     */
+    public static void main(String[] args) {
+    	String outputFile = null;	// output file; null for standard output
+    	RomanWorksheet worksheet = new RomanWorksheet();	// the input file
+    	BufferedReader edits = new BufferedReader(new InputStreamReader(
+    		System.in, Charset.defaultCharset()));	// edits of the worksheet
+    	Roman.ResultFormatter report = new Roman.ResultFormatter();
+    		// outcomes of the lines that each edit evaluated again
+    	WritableByteChannel console =
+    		new FileOutputStream(FileDescriptor.out).getChannel();
+    		// where the reports go
+    	String edit;	// an edit
+    	int a;	// iteration for each argument after the input file
+
+    	for (a = 2; a < args.length; a++)
+    	{	// for each argument after the input file
+    		if (args[a].equals("--out") && a + 1 < args.length)
+    			outputFile = args[++a];
+    		else break;	// invalid argument
+    	}	// for each argument after the input file
+    	if (args.length < 2 || a < args.length)	// missing or invalid argument
+    	{	// invalid arguments
+    		System.err.println(USAGE);
+    		System.exit(2);
+    	}	// invalid arguments
+    	try {
+    	worksheet.read(args[1]);
+    	while ((edit = edits.readLine()) != null)
+    	{	// for each edit
+    		worksheet.applyEdit(edit, report);
+    		report.writeTo(console);
+    	}	// for each edit
+    	try (FileChannel output = (outputFile == null)
+    			? new FileOutputStream(FileDescriptor.out).getChannel()
+    			: FileChannel.open(Paths.get(outputFile),
+    				StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+    				StandardOpenOption.TRUNCATE_EXISTING))
+    	{	// write the edited worksheet's results and messages
+    		worksheet.writeTo(output);
+    	}	// write the edited worksheet's results and messages
+    	}	// try
+    	catch (IOException e)
+    	{	// can't read or write a file
+    		System.err.println("[] Worksheet mode failed: " + e.getMessage());
+    		System.exit(1);
+    	}	// can't read or write a file
+    }	// main method
+
+    /** Append each line of a file to the worksheet.  A non-ASCII character
+     * is decoded with the default charset, as in the interactive calculator.
+     * @param p_fileName name of the file
+     * @throws IOException if the file can't be read
+     */
+    void read(String p_fileName) throws IOException {
+    	String line;	// a line of the file
+    	try (BufferedReader input = new BufferedReader(new InputStreamReader(
+    		Files.newInputStream(Paths.get(p_fileName)),
+    		Charset.defaultCharset())))
+    	{	// read the file
+    		while ((line = input.readLine()) != null)
+    			insertLine(lineCount(), line);	// evaluates only the new line
+    	}	// read the file
+    }	// read method
+
+    /** Apply an edit, e.g., "SET 12 +X", and append the outcome of each line
+     * that it evaluated again, or a message if the edit isn't valid.
+     * @param p_edit the edit: SET, INSERT, or DELETE, in either case, the
+     *	line number (starting at 1), and, for SET or INSERT, the line
+     * @param p_report gets the outcomes, each after the line's number
+     */
+    void applyEdit(String p_edit, Roman.ResultFormatter p_report) {
+    	String[] words = p_edit.trim().split(" ", 3);
+    		// the command, the line number, and the line
+    	String command = words[0].toUpperCase();	// SET, INSERT, or DELETE
+    	int lineNumber;	// index of the line that the edit is at
+    	int evaluated;	// number of lines that the edit evaluated again
+
+    	lineNumber = (words.length > 1 && words[1].matches("[1-9]\\d{0,8}"))
+    		? Integer.parseInt(words[1]) - 1 : -1;
+    	if (command.equals("SET") && lineNumber >= 0
+    		&& lineNumber < lineCount())
+    		evaluated = setLine(lineNumber, (words.length > 2) ? words[2] : "");
+    	else if (command.equals("INSERT") && lineNumber >= 0
+    		&& lineNumber <= lineCount())
+    		evaluated = insertLine(lineNumber,
+    			(words.length > 2) ? words[2] : "");
+    	else if (command.equals("DELETE") && lineNumber >= 0
+    		&& lineNumber < lineCount() && words.length == 2)
+    		evaluated = deleteLine(lineNumber);
+    	else
+    	{	// not a valid edit
+    		p_report.appendMessage("[] Type SET, INSERT, or DELETE and a line "
+    			+ "number from 1 through " + lineCount() + " (" + (lineCount() + 1)
+    			+ " for INSERT),\n[] then, except for DELETE, the line.");
+    		return;
+    	}	// not a valid edit
+    	for (int i = lineNumber; i < lineNumber + evaluated; i++)
+    	{	// for each line that the edit evaluated again
+    		p_report.appendMessage("[] Line " + (i + 1) + ":");
+    		appendOutcome(i, p_report);
+    	}	// for each line that the edit evaluated again
+    	p_report.appendMessage("[] " + evaluated + " of " + lineCount()
+    		+ " lines evaluated.");
+    }	// applyEdit method
+
+    /** Get the number of lines in the worksheet.
+     * @return int the number of lines
+     */
+    public int lineCount() {
+    	return m_text.length - gapLength();
+    }	// lineCount method
+
+    /** Get a line's text.
+     * @param p_line index of the line
+     * @return String its text, as it was given
+     */
+    public String getLine(int p_line) {
+    	return m_text[slotOf(p_line)];
+    }	// getLine method
+
+    /** Get a line's outcome.
+     * @param p_line index of the line
+     * @return int its outcome, e.g., RomanEngine.RESULT
+     */
+    public int getOutcome(int p_line) {
+    	return m_outcome[slotOf(p_line)];
+    }	// getOutcome method
+
+    /** Get a line's result.
+     * @param p_line index of the line, whose outcome is RESULT
+     * @return int its result
+     */
+    public int getResult(int p_line) {
+    	return m_result[slotOf(p_line)];
+    }	// getResult method
+
+    /** Get a line's kind of error.
+     * @param p_line index of the line
+     * @return int its kind of error, or Roman.NO_ERROR
+     */
+    public int getErrorKind(int p_line) {
+    	return m_errorKind[slotOf(p_line)];
+    }	// getErrorKind method
+
+    /** Replace a line, and evaluate it and the lines whose outcomes depend
+     * on it.
+     * @param p_line index of the line
+     * @param p_text the line's new text, without a line ending
+     * @return int the number of lines evaluated, starting with this one
+     */
+    public int setLine(int p_line, CharSequence p_text) {
+    	int slot = slotOf(p_line);	// index of the line in the arrays
+    	int oldCarried = m_carried[slot];	// its carried result before
+    	evaluateLine(slot, p_text.toString(), carriedBefore(p_line));
+    	if (m_carried[slot] == oldCarried)	// the next line is unaffected
+    		return 1;
+    	return 1 + propagate(p_line + 1);
+    }	// setLine method
+
+    /** Insert a line, and evaluate it and the lines whose outcomes depend
+     * on it.
+     * @param p_line index that the line gets, from 0 through lineCount()
+     * @param p_text the line's text, without a line ending
+     * @return int the number of lines evaluated, starting with this one
+     */
+    public int insertLine(int p_line, CharSequence p_text) {
+    	int slot;	// index of the line in the arrays
+    	moveGap(p_line);
+    	if (m_gapStart == m_gapEnd)	// no room
+    		grow();
+    	slot = m_gapStart++;	// the gap's first slot becomes the line
+    	m_usesPrevious[slot] = false;	// has no tokens to abandon
+    	evaluateLine(slot, p_text.toString(), carriedBefore(p_line));
+    	if (m_carried[slot] == carriedBefore(p_line))
+    		// the next line has the same previous result as before
+    		return 1;
+    	return 1 + propagate(p_line + 1);
+    }	// insertLine method
+
+    /** Delete a line, and evaluate the lines whose outcomes depended on it.
+     * @param p_line index of the line
+     * @return int the number of lines evaluated, starting with the one
+     *	that follows the deleted one (which then has its index)
+     */
+    public int deleteLine(int p_line) {
+    	int slot;	// index of the line in the arrays
+    	moveGap(p_line);
+    	slot = m_gapEnd++;	// the line becomes the gap's last slot
+    	abandonTokens(slot);
+    	m_text[slot] = null;	// so that it can be collected
+    	if (m_carried[slot] == carriedBefore(p_line))
+    		// the next line has the same previous result as before
+    		return 0;
+    	return propagate(p_line);
+    }	// deleteLine method
+
+    /** Append a line's result or message, as batch mode would for it.
+     * @param p_line index of the line
+     * @param p_output gets the result or message
+     */
+    public void appendOutcome(int p_line, Roman.ResultFormatter p_output) {
+    	int slot = slotOf(p_line);	// index of the line in the arrays
+    	switch (m_outcome[slot])
+    	{	// what the line was
+    	case RomanEngine.RESULT:
+    		p_output.appendResult(m_result[slot], m_usesPrevious[slot]);
+    		break;
+    	case RomanEngine.ERROR:	// needs the line, for the text of the error
+    		RomanEngine.prepareLine(m_text[slot], m_session);
+    		m_session.m_lineInfo.m_errorKind = m_errorKind[slot];
+    		m_session.m_lineInfo.m_errorPosition = m_errorPosition[slot];
+    		p_output.appendOutcome(RomanEngine.ERROR, m_session);
+    		break;
+    	default:	// a message that doesn't depend on the line
+    		p_output.appendOutcome(m_outcome[slot], m_session);
+    	}	// what the line was
+    }	// appendOutcome method
+
+    /** Write the results and messages of the lines, through the first that
+     * contains QUIT or EXIT, as batch mode would for the worksheet's lines.
+     * @param p_channel the channel for the results and messages
+     * @throws IOException if the channel can't be written
+     */
+    public void writeTo(WritableByteChannel p_channel) throws IOException {
+    	Roman.ResultFormatter output = new Roman.ResultFormatter();
+    		// the lines' results and messages, until they are written
+    	for (int i = 0; i < lineCount(); i++)
+    	{	// for each line, through QUIT or EXIT
+    		appendOutcome(i, output);
+    		if (output.m_length >= RomanBatch.FLUSH_THRESHOLD)
+    			output.writeTo(p_channel);
+    		if (getOutcome(i) == RomanEngine.QUIT)	// contains QUIT or EXIT
+    			break;	// quit
+    	}	// for each line, through QUIT or EXIT
+    	output.writeTo(p_channel);	// write what remains
+    }	// writeTo method
+
+    /** Evaluate a line from its text, keeping its tokens if it starts with
+     * an operator, and set its outcome and carried result.
+     * @param p_slot index of the line in the arrays
+     * @param p_text the line's text
+     * @param p_previousResult the previous result for the line
+     */
+    void evaluateLine(int p_slot, String p_text, int p_previousResult) {
+    	Roman.InfoForLine lineInfo = m_session.m_lineInfo;
+    		// info for the line
+    	Roman.TokenBuffer tokens = lineInfo.m_tokenizedLine;
+    		// the line's tokens, once it's tokenized
+    	int outcome;	// outcome of evaluating the line
+
+    	abandonTokens(p_slot);
+    	m_text[p_slot] = p_text;
+    	lineInfo.m_result = p_previousResult;
+    	outcome = RomanEngine.prepareLine(p_text, m_session);	// 1) and 2)
+    	if (outcome == RomanEngine.RESULT)	// line might have a result
+    	{	// 3) and 4)
+    		outcome = RomanEngine.tokenizeAndEvaluate(lineInfo, null);
+    		if (lineInfo.m_usedPreviousResult)
+    		{	// starts with an operator; keep its tokens
+    			m_usesPrevious[p_slot] = true;
+    			m_tokenStart[p_slot] = m_tokens.m_tokenCount;
+    			m_tokenCount[p_slot] = tokens.m_tokenCount;
+    			for (int t = 0; t < tokens.m_tokenCount; t++)
+    				m_tokens.add(tokens.m_tokenType[t],
+    					tokens.m_tokenEndIndex[t], tokens.m_integerValue[t]);
+    		}	// starts with an operator; keep its tokens
+    	}	// 3) and 4)
+    	setOutcome(p_slot, outcome, p_previousResult);
+    }	// evaluateLine method
+
+    /** Evaluate a line that starts with an operator from its kept tokens,
+     * with a new previous result, and set its outcome and carried result.
+     * @param p_slot index of the line in the arrays
+     * @param p_previousResult the new previous result for the line
+     */
+    void reevaluateLine(int p_slot, int p_previousResult) {
+    	Roman.InfoForLine lineInfo = m_session.m_lineInfo;
+    		// info for the line
+    	long resultOfEvaluation;	// result of evaluation of line
+    	int end = m_tokenStart[p_slot] + m_tokenCount[p_slot];
+    		// index (in m_tokens) after the line's last token
+
+    	lineInfo.m_tokenizedLine.clear();
+    	for (int t = m_tokenStart[p_slot]; t < end; t++)
+    		lineInfo.m_tokenizedLine.add(m_tokens.m_tokenType[t],
+    			m_tokens.m_tokenEndIndex[t], m_tokens.m_integerValue[t]);
+    	lineInfo.m_lineHasError = false;	// no error detected yet
+    	lineInfo.m_errorKind = Roman.NO_ERROR;
+    	lineInfo.m_result = p_previousResult;
+    	resultOfEvaluation = lineInfo.evaluateIteratively();	// 4)
+    	if (! lineInfo.m_lineHasError)	// if line is error-free
+    		lineInfo.m_result = resultOfEvaluation;
+    	setOutcome(p_slot, lineInfo.m_lineHasError
+    		? RomanEngine.ERROR : RomanEngine.RESULT, p_previousResult);
+    }	// reevaluateLine method
+
+    /** Set a line's outcome, from the session's InfoForLine, and its
+     * carried result.
+     * @param p_slot index of the line in the arrays
+     * @param p_outcome the line's outcome
+     * @param p_previousResult the previous result for the line
+     */
+    void setOutcome(int p_slot, int p_outcome, int p_previousResult) {
+    	Roman.InfoForLine lineInfo = m_session.m_lineInfo;
+    		// info for the line
+    	int result = (int)lineInfo.m_result;
+    		// the line's result, which is in the valid range
+    	m_outcome[p_slot] = (byte)p_outcome;
+    	m_result[p_slot] = result;
+    	m_errorKind[p_slot] = (byte)lineInfo.m_errorKind;
+    	m_errorPosition[p_slot] = lineInfo.m_errorPosition;
+    	m_carried[p_slot] = (p_outcome == RomanEngine.RESULT)
+    		? result : p_previousResult;
+    }	// setOutcome method
+
+    /** Evaluate lines, starting with one whose previous result has changed,
+     * until one's carried result hasn't changed.
+     * @param p_line index of the first line
+     * @return int the number of lines evaluated
+     */
+    int propagate(int p_line) {
+    	int previousResult;	// the previous result for a line
+    	int oldCarried;	// a line's carried result before
+    	int slot;	// index of a line in the arrays
+    	int i;	// iteration for each line, until the chain ends
+
+    	for (i = p_line; i < lineCount(); i++)
+    	{	// for each line, until its carried result hasn't changed
+    		slot = slotOf(i);
+    		previousResult = carriedBefore(i);
+    		oldCarried = m_carried[slot];
+    		if (m_usesPrevious[slot])	// starts with an operator
+    			reevaluateLine(slot, previousResult);
+    		else if (m_outcome[slot] != RomanEngine.RESULT)
+    			// no result, so it passes the previous result on
+    			m_carried[slot] = previousResult;
+    		if (m_carried[slot] == oldCarried)	// the next line is unaffected
+    			return i - p_line + 1;
+    	}	// for each line, until its carried result hasn't changed
+    	return i - p_line;	// the chain reaches the last line
+    }	// propagate method
+
+    /** Get the previous result for a line, i.e., the carried result of the
+     * line before it.
+     * @param p_line index of the line
+     * @return int the previous result, which is 0 for the first line
+     */
+    int carriedBefore(int p_line) {
+    	return (p_line == 0) ? 0 : m_carried[slotOf(p_line - 1)];
+    }	// carriedBefore method
+
+    /** Get the index in the arrays of a line.
+     * @param p_line index of the line
+     * @return int its index in the arrays
+     */
+    int slotOf(int p_line) {
+    	if (p_line < 0 || p_line >= lineCount())
+    		throw new IndexOutOfBoundsException("[] There is no line " +
+    			(p_line + 1) + " of " + lineCount());
+    	return (p_line < m_gapStart) ? p_line : p_line + gapLength();
+    }	// slotOf method
+
+    /** Get the number of unused slots in the arrays.
+     * @return int the gap's length
+     */
+    int gapLength() {
+    	return m_gapEnd - m_gapStart;
+    }	// gapLength method
+
+    /** Move the gap to a line, so that it's the number of lines before the
+     * gap, by moving the lines between the gap and the line.
+     * @param p_line index of the line, from 0 through lineCount()
+     */
+    void moveGap(int p_line) {
+    	if (p_line < 0 || p_line > lineCount())
+    		throw new IndexOutOfBoundsException("[] There is no line " +
+    			(p_line + 1) + " of " + lineCount());
+    	if (p_line < m_gapStart)	// move the lines from p_line to after gap
+    		moveLines(p_line, p_line + gapLength(), m_gapStart - p_line);
+    	else	// move the lines from after the gap to before it
+    		moveLines(m_gapEnd, m_gapStart, p_line - m_gapStart);
+    	m_gapEnd += p_line - m_gapStart;
+    	m_gapStart = p_line;
+    }	// moveGap method
+
+    /** Move lines from some slots of the arrays to others.
+     * @param p_from index of the first slot to move from
+     * @param p_to index of the first slot to move to
+     * @param p_count number of lines to move
+     */
+    void moveLines(int p_from, int p_to, int p_count) {
+    	System.arraycopy(m_text, p_from, m_text, p_to, p_count);
+    	System.arraycopy(m_outcome, p_from, m_outcome, p_to, p_count);
+    	System.arraycopy(m_result, p_from, m_result, p_to, p_count);
+    	System.arraycopy(m_errorKind, p_from, m_errorKind, p_to, p_count);
+    	System.arraycopy(m_errorPosition, p_from, m_errorPosition, p_to,
+    		p_count);
+    	System.arraycopy(m_carried, p_from, m_carried, p_to, p_count);
+    	System.arraycopy(m_usesPrevious, p_from, m_usesPrevious, p_to,
+    		p_count);
+    	System.arraycopy(m_tokenStart, p_from, m_tokenStart, p_to, p_count);
+    	System.arraycopy(m_tokenCount, p_from, m_tokenCount, p_to, p_count);
+    	if (p_from > p_to)	// the moved lines' old slots after them are freed
+    		Arrays.fill(m_text, Math.max(p_from, p_to + p_count),
+    			p_from + p_count, null);
+    	else	// the old slots before them are freed
+    		Arrays.fill(m_text, p_from,
+    			Math.min(p_to, p_from + p_count), null);
+    }	// moveLines method
+
+    /** Double the capacity of the arrays, which have no gap, so that the
+     * gap, at the end of the lines before it, is as long as all of the lines.
+     */
+    void grow() {
+    	int capacity = m_text.length;	// capacity before growing
+    	int after = capacity - m_gapEnd;	// number of lines after the gap
+    	m_text = Arrays.copyOf(m_text, 2 * capacity);
+    	m_outcome = Arrays.copyOf(m_outcome, 2 * capacity);
+    	m_result = Arrays.copyOf(m_result, 2 * capacity);
+    	m_errorKind = Arrays.copyOf(m_errorKind, 2 * capacity);
+    	m_errorPosition = Arrays.copyOf(m_errorPosition, 2 * capacity);
+    	m_carried = Arrays.copyOf(m_carried, 2 * capacity);
+    	m_usesPrevious = Arrays.copyOf(m_usesPrevious, 2 * capacity);
+    	m_tokenStart = Arrays.copyOf(m_tokenStart, 2 * capacity);
+    	m_tokenCount = Arrays.copyOf(m_tokenCount, 2 * capacity);
+    	m_gapEnd = 2 * capacity - after;
+    	moveLines(capacity - after, m_gapEnd, after);	// to the end
+    }	// grow method
+
+    /** Abandon a line's kept tokens, if any, e.g., because it's edited, and
+     * compact the kept tokens if more than half of them are abandoned.
+     * @param p_slot index of the line in the arrays
+     */
+    void abandonTokens(int p_slot) {
+    	Roman.TokenBuffer tokens;	// the compacted tokens
+    	int slot;	// index of a line in the arrays
+
+    	if (! m_usesPrevious[p_slot])	// no tokens kept
+    		return;
+    	m_usesPrevious[p_slot] = false;
+    	m_abandonedTokens += m_tokenCount[p_slot];
+    	if (m_abandonedTokens <= m_tokens.m_tokenCount / 2)
+    		return;	// not worth compacting yet
+    	tokens = new Roman.TokenBuffer(Math.max(INITIAL_CAPACITY,
+    		2 * (m_tokens.m_tokenCount - m_abandonedTokens)));
+    	for (int i = 0; i < lineCount(); i++)
+    	{	// for each line, copy its kept tokens, if any
+    		slot = slotOf(i);
+    		if (! m_usesPrevious[slot])	// no tokens kept
+    			continue;
+    		int start = m_tokenStart[slot];	// index of its first old token
+    		m_tokenStart[slot] = tokens.m_tokenCount;
+    		for (int t = start; t < start + m_tokenCount[slot]; t++)
+    			tokens.add(m_tokens.m_tokenType[t], m_tokens.m_tokenEndIndex[t],
+    				m_tokens.m_integerValue[t]);
+    	}	// for each line, copy its kept tokens, if any
+    	m_tokens = tokens;
+    	m_abandonedTokens = 0;
+    }	// abandonTokens method
+}	// RomanWorksheet class
@@ -0,0 +1,385 @@
+/*
+ * File:	RomanBenchmark.java
+ *
+ * Package:	roman
+ *
+ * Class:	RomanBenchmark
+ *
+ * Author:	Gary Sockut
+ *
+ * Created on October 17, 2026
+ *
+ * Notes:	See JavaDoc comment below.
+ */
+
+package roman;
+
+// imports:
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** JMH benchmarks for the hot paths of the Roman numeral desk calculator:
+ * tokenizing, parsing and evaluating, converting to Roman, and the whole
+ * processing of a line.  See benchmarks/pom.xml for how to run them with the
+ * GC profiler, which reports how much each one allocates.
+ * JMH doesn't allow benchmarks in the default package, so the build copies
+ * the calculator's sources into package roman, along with this class.
+ *
+ * Class:	RomanBenchmark
+ *
+ * Each benchmark works on lines that are prepared in setup, so that only
+ * the measured step is timed.  The tokenize benchmarks retokenize the same
+ * line each time; the parseAndEvaluate benchmarks re-evaluate the same
+ * tokenized line each time, which is valid since evaluation doesn't change
+ * the tokens.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class RomanBenchmark {
+    static final String SHORT_LINE = "(MCM + XX) * II - MMMCMXCIX / (IV ** II)";
+    	// a typical line that the user enters
+    static final int LONG_LINE_TERMS = 20000;	// number of terms in long line
+    static final int DEEP_NESTING = 1000;	// depth of parentheses in deep line
+    static final int EXP_LINE_TERMS = 2000;	// number of powers in power line
+    static final String EXP_TERM = "(II ** XI)";	// each power in power
+    	// line; ** comes last in a line without parentheses
+    static final int DIVISION_LINE_TERMS = 2000;	// number of divisions in
+    	// division line
+    static final String DIVISION_TERMS = " / VII * VII / XI * XI";
+    	// divisions and multiplications that leave a fraction mode result
+    	// as it was
+    static final String[] PIPELINE_LINES = {"mcm + xx", "(X * X) / V =",
+    	"+ I", "MMMCMXCIX - (C * XX)", "- iv", "((I + II) * III) ** II",
+    	"  XLII  ", "MMMM", "(I + ", "v / (I - I)"};
+    	// lines for the whole pipeline, in lower and upper case, including
+    	// some with errors
+    static final String TEMPLATE = "(A * Y) + B";	// formula for columns
+    static final int TEMPLATE_ROWS = 1 << 16;	// rows of the columns
+    static final int COLUMN_NUMERALS = 1 << 16;	// numerals in the column
+
+    Roman.InfoForLine m_shortLine;	// the short line, tokenized
+    Roman.InfoForLine m_longLine;	// a line of many numerals, tokenized
+    Roman.InfoForLine m_flatLine;	// a long line without parentheses
+    Roman.InfoForLine m_deepLine;	// a deeply parenthesised line
+    Roman.InfoForLine m_expLine;	// a line of many powers
+    Roman.InfoForLine m_flatFractionLine;	// the long line, in fraction mode
+    Roman.InfoForLine m_divisionLine;	// a line of many divisions
+    Roman.InfoForLine m_divisionFractionLine;	// the same, in fraction mode
+    RomanEngine.Session m_session;	// session for the whole pipeline
+    Roman.ResultFormatter m_output;	// output for the whole pipeline
+    int m_nextLine;	// index of the next line in PIPELINE_LINES
+    RomanTemplate m_template;	// TEMPLATE, compiled
+    int[][] m_columns;	// values of A, Y, and B for each row
+    int[] m_results;	// result of each row
+    byte[] m_errors;	// error of each row
+    int[] m_years;	// values of the column of numerals, e.g., years
+    byte[] m_numerals;	// the column of numerals
+    int[] m_offsets;	// where each numeral of the column starts
+    ByteBuffer m_encoded;	// the column, encoded, one numeral per line
+    short[] m_sortKeys;	// the column's sort keys, sorted
+    int[] m_sortRows;	// the column's rows, sorted by key
+    byte[] m_sortedNumerals;	// the column, sorted
+    int[] m_sortedOffsets;	// where each numeral of the sorted column starts
+
+    /** Prepare the lines. */
+    @Setup
+    public void setUp() {
+    	StringBuilder longText = new StringBuilder();	// the long line
+    	StringBuilder deepText = new StringBuilder();	// the deep line
+    	StringBuilder expText = new StringBuilder();	// the power line
+    	StringBuilder divisionText = new StringBuilder("MCM");
+    		// the division line
+
+    	m_shortLine = prepare(SHORT_LINE);
+    	for (int t = 0; t < LONG_LINE_TERMS; t++)
+    		longText.append(t == 0 ? "" : (t % 2 == 0) ? " + " : " - ")
+    			.append(Roman.toRoman(1 + t % 3999));
+    	m_longLine = prepare(longText.toString());
+    	m_flatLine = m_longLine;	// a long line is also a flat expression
+    	for (int d = 0; d < DEEP_NESTING; d++)
+    		deepText.append("(I + ");
+    	deepText.append('I');
+    	for (int d = 0; d < DEEP_NESTING; d++)
+    		deepText.append(')');
+    	m_deepLine = prepare(deepText.toString());
+    	for (int t = 0; t < EXP_LINE_TERMS; t++)	// alternate + and -, so
+    		// each partial result stays in the valid range
+    		expText.append(t == 0 ? "" : (t % 2 == 0) ? " + " : " - ")
+    			.append(EXP_TERM);
+    	m_expLine = prepare(expText.toString());
+    	m_flatFractionLine = prepare(longText.toString(), true);
+    	for (int t = 0; t < DIVISION_LINE_TERMS; t += 2)
+    		divisionText.append(DIVISION_TERMS);
+    	m_divisionLine = prepare(divisionText.toString());
+    	m_divisionFractionLine = prepare(divisionText.toString(), true);
+    	m_session = new RomanEngine.Session();
+    	m_output = new Roman.ResultFormatter();
+    	m_template = RomanTemplate.compile(TEMPLATE, "A", "Y", "B");
+    	m_columns = new int[3][TEMPLATE_ROWS];
+    	for (int c = 0; c < m_columns.length; c++)
+    		for (int r = 0; r < TEMPLATE_ROWS; r++)	// 0 to 99, the same in
+    			// every run, and different in each column
+    			m_columns[c][r] = (r * 7919 + c * 31) % 100;
+    	m_results = new int[TEMPLATE_ROWS];
+    	m_errors = new byte[TEMPLATE_ROWS];
+    	m_years = new int[COLUMN_NUMERALS];
+    	m_offsets = new int[COLUMN_NUMERALS + 1];
+    	m_encoded = ByteBuffer.allocate(COLUMN_NUMERALS * 17);
+    	for (int i = 0; i < COLUMN_NUMERALS; i++)
+    	{	// for each numeral, which is a year, as in a data file
+    		m_years[i] = 1000 + (i * 7919) % 2000;
+    		m_offsets[i + 1] = m_offsets[i] +
+    			Roman.toRoman(m_years[i]).length();
+    	}	// for each numeral
+    	m_numerals = new byte[m_offsets[COLUMN_NUMERALS]];
+    	for (int i = 0; i < COLUMN_NUMERALS; i++)
+    		System.arraycopy(Roman.ROMAN_BYTES[m_years[i] - Roman.MININT], 0,
+    			m_numerals, m_offsets[i], m_offsets[i + 1] - m_offsets[i]);
+    	m_sortKeys = new short[COLUMN_NUMERALS];
+    	m_sortRows = RomanSort.sortColumn(m_numerals, m_offsets, m_sortKeys);
+    	m_sortedNumerals = new byte[m_numerals.length];
+    	m_sortedOffsets = new int[COLUMN_NUMERALS + 1];
+    	for (int i = 0; i < COLUMN_NUMERALS; i++)
+    	{	// copy each numeral to its place in the sorted column
+    		m_sortedOffsets[i + 1] = m_sortedOffsets[i] +
+    			m_offsets[m_sortRows[i] + 1] - m_offsets[m_sortRows[i]];
+    		System.arraycopy(m_numerals, m_offsets[m_sortRows[i]],
+    			m_sortedNumerals, m_sortedOffsets[i],
+    			m_sortedOffsets[i + 1] - m_sortedOffsets[i]);
+    	}	// copy each numeral to its place in the sorted column
+    }	// setUp method
+
+    /** Make an InfoForLine for a line and tokenize the line.
+     * @param p_theLine the line, in upper case and trimmed
+     * @return Roman.InfoForLine the info for the line
+     */
+    static Roman.InfoForLine prepare(String p_theLine) {
+    	return prepare(p_theLine, false);
+    }	// prepare method
+
+    /** Make an InfoForLine for a line and tokenize the line, in integer mode
+     * or in fraction mode.
+     * @param p_theLine the line, in upper case and trimmed
+     * @param p_fractions whether the line is in fraction mode
+     * @return Roman.InfoForLine the info for the line
+     */
+    static Roman.InfoForLine prepare(String p_theLine, boolean p_fractions) {
+    	Roman.InfoForLine lineInfo = new Roman.InfoForLine();
+    	lineInfo.m_fractions = p_fractions;
+    	lineInfo.setLine(p_theLine, 0, p_theLine.length());
+    	lineInfo.tokenize();
+    	if (lineInfo.m_lineHasError)	// the benchmarks need valid lines
+    		throw new IllegalStateException("invalid line: " + p_theLine);
+    	return lineInfo;
+    }	// prepare method
+
+    /** Tokenize a short line.
+     * @return int the number of tokens
+     */
+    @Benchmark
+    public int tokenizeShort() {
+    	m_shortLine.tokenize();
+    	return m_shortLine.m_tokenizedLine.m_tokenCount;
+    }	// tokenizeShort method
+
+    /** Tokenize a line of many numerals.
+     * @return int the number of tokens
+     */
+    @Benchmark
+    public int tokenizeLong() {
+    	m_longLine.tokenize();
+    	return m_longLine.m_tokenizedLine.m_tokenCount;
+    }	// tokenizeLong method
+
+    /** Parse and evaluate a long expression without parentheses.
+     * @return long the result
+     */
+    @Benchmark
+    public long parseAndEvaluateFlat() {
+    	m_flatLine.m_lineHasError = false;
+    	return m_flatLine.parseAndEvaluate(0);
+    }	// parseAndEvaluateFlat method
+
+    /** Parse and evaluate a deeply parenthesised expression.
+     * @return long the result
+     */
+    @Benchmark
+    public long parseAndEvaluateDeep() {
+    	m_deepLine.m_lineHasError = false;
+    	return m_deepLine.parseAndEvaluate(0);
+    }	// parseAndEvaluateDeep method
+
+    /** Evaluate a deeply parenthesised expression without recursion.
+     * @return long the result
+     */
+    @Benchmark
+    public long evaluateIterativelyDeep() {
+    	m_deepLine.m_lineHasError = false;
+    	return m_deepLine.evaluateIteratively();
+    }	// evaluateIterativelyDeep method
+
+    /** Parse and evaluate a long expression of powers, for Roman.power.
+     * @return long the result
+     */
+    @Benchmark
+    public long parseAndEvaluatePowers() {
+    	m_expLine.m_lineHasError = false;
+    	return m_expLine.parseAndEvaluate(0);
+    }	// parseAndEvaluatePowers method
+
+    /** Parse and evaluate the long line in fraction mode, whose operands
+     * and results are all integers, to compare with parseAndEvaluateFlat.
+     * @return long the result, a packed RomanFraction
+     */
+    @Benchmark
+    public long parseAndEvaluateFlatFractions() {
+    	m_flatFractionLine.m_lineHasError = false;
+    	return m_flatFractionLine.parseAndEvaluate(0);
+    }	// parseAndEvaluateFlatFractions method
+
+    /** Parse and evaluate a line of many divisions, in integer mode.
+     * @return long the result
+     */
+    @Benchmark
+    public long parseAndEvaluateDivisions() {
+    	m_divisionLine.m_lineHasError = false;
+    	return m_divisionLine.parseAndEvaluate(0);
+    }	// parseAndEvaluateDivisions method
+
+    /** Parse and evaluate a line of many divisions, in fraction mode, in
+     * which every other result is a fraction that must be reduced.
+     * @return long the result, a packed RomanFraction
+     */
+    @Benchmark
+    public long parseAndEvaluateDivisionsFractions() {
+    	m_divisionFractionLine.m_lineHasError = false;
+    	return m_divisionFractionLine.parseAndEvaluate(0);
+    }	// parseAndEvaluateDivisionsFractions method
+
+    /** Convert every integer in the valid range to Roman.
+     * @param p_blackhole consumes the numerals
+     */
+    @Benchmark
+    public void toRomanFullRange(Blackhole p_blackhole) {
+    	for (int n = Roman.MININT; n <= Roman.MAXINT; n++)
+    		p_blackhole.consume(Roman.toRoman(n));
+    }	// toRomanFullRange method
+
+    /** Evaluate a compiled formula over columns of values; divide the time
+     * by TEMPLATE_ROWS for the time per row.
+     * @return int the last row's result
+     */
+    @Benchmark
+    public int templateColumns() {
+    	m_template.evaluate(m_columns, m_results, m_errors);
+    	return m_results[TEMPLATE_ROWS - 1];
+    }	// templateColumns method
+
+    /** Convert a column of numerals to integers, one at a time, with the
+     * numeral automaton; divide the time by COLUMN_NUMERALS for the time
+     * per numeral.
+     * @return int the number of numerals that aren't valid
+     */
+    @Benchmark
+    public int decodeColumnScalar() {
+    	return RomanColumns.decodeScalar(m_numerals, m_offsets, m_years);
+    }	// decodeColumnScalar method
+
+    /** Convert a column of numerals to integers with the Vector API.
+     * @return int the number of numerals that aren't valid
+     */
+    @Benchmark
+    public int decodeColumnVector() {
+    	return RomanColumnsVector.decode(m_numerals, m_offsets, m_years);
+    }	// decodeColumnVector method
+
+    /** Convert a column of integers to numerals, one at a time.
+     * @return int the number of integers converted
+     */
+    @Benchmark
+    public int encodeColumnScalar() {
+    	m_encoded.clear();
+    	return RomanColumns.encodeScalar(m_years, 0, COLUMN_NUMERALS,
+    		m_encoded);
+    }	// encodeColumnScalar method
+
+    /** Convert a column of integers to numerals with the Vector API.
+     * @return int the number of integers converted
+     */
+    @Benchmark
+    public int encodeColumnVector() {
+    	m_encoded.clear();
+    	return RomanColumnsVector.encode(m_years, 0, COLUMN_NUMERALS,
+    		m_encoded);
+    }	// encodeColumnVector method
+
+    /** Sort a column of numerals with RomanSort's keys and radix sort.
+     * @return int the row of the smallest numeral
+     */
+    @Benchmark
+    public int sortColumnRadix() {
+    	return RomanSort.sortColumn(m_numerals, m_offsets, m_sortKeys)[0];
+    }	// sortColumnRadix method
+
+    /** Sort a column of numerals the way a caller without RomanSort would:
+     * decode the numerals, box them, and sort the rows with a comparator.
+     * @return int the row of the smallest numeral
+     */
+    @Benchmark
+    public int sortColumnBoxed() {
+    	int[] values = new int[COLUMN_NUMERALS];	// each numeral's value
+    	Integer[] rows = new Integer[COLUMN_NUMERALS];	// rows, to be sorted
+
+    	RomanColumns.decodeScalar(m_numerals, m_offsets, values);
+    	for (int i = 0; i < COLUMN_NUMERALS; i++)
+    		rows[i] = i;
+    	Arrays.sort(rows, Comparator.comparingInt(r -> values[r]));
+    	return rows[0];
+    }	// sortColumnBoxed method
+
+    /** Find the numerals from XL through CC in the sorted column, by binary
+     * search over the numerals themselves.
+     * @return int the number of numerals in the range
+     */
+    @Benchmark
+    public int rangeOfSortedColumn() {
+    	return RomanSort.firstAtLeast(m_sortedNumerals, m_sortedOffsets,
+    		RomanSort.keyOf("CC") + 1) - RomanSort.firstAtLeast(
+    		m_sortedNumerals, m_sortedOffsets, RomanSort.keyOf("XL"));
+    }	// rangeOfSortedColumn method
+
+    /** Process a line the way Roman.main does: convert it to upper case,
+     * evaluate it, and format its result or message, but without writing
+     * the output anywhere.
+     * @return int the number of bytes of output
+     */
+    @Benchmark
+    public int wholePipeline() {
+    	String line = PIPELINE_LINES[m_nextLine];	// the line to process
+    	int length;	// number of bytes of output
+
+    	m_nextLine = (m_nextLine + 1) % PIPELINE_LINES.length;
+    	m_output.appendOutcome(RomanEngine.evaluate(line.toUpperCase(),
+    		m_session), m_session);
+    	length = m_output.m_length;
+    	m_output.clear();
+    	return length;
+    }	// wholePipeline method
+}	// RomanBenchmark class